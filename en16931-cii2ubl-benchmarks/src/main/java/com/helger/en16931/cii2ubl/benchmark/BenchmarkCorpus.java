@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.StringParser;
+import com.helger.commons.system.SystemProperties;
+import com.helger.en16931.cii2ubl.CIIInvoiceGenerator;
+import com.helger.en16931.cii2ubl.CIIUnmarshallerPool;
+
+/**
+ * Provides the CII documents used by the benchmarks. Two kinds of data sets
+ * are supported:
+ * <ul>
+ * <li>{@value #DATASET_CORPUS} - all valid CII documents of the test corpus of
+ * the library module</li>
+ * <li>{@value #DATASET_SYNTHETIC_PREFIX}<i>n</i> - a single large invoice with
+ * <i>n</i> line items, created by {@link CIIInvoiceGenerator}</li>
+ * </ul>
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Immutable
+public final class BenchmarkCorpus
+{
+  /** The system property to define the directory of the CII corpus */
+  public static final String SYSTEM_PROPERTY_CORPUS_DIR = "cii2ubl.benchmark.corpus";
+  public static final String DATASET_CORPUS = "corpus";
+  public static final String DATASET_SYNTHETIC_PREFIX = "synthetic-";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (BenchmarkCorpus.class);
+  private static final String [] DEFAULT_CORPUS_DIRS = new String [] { "en16931-cii2ubl/src/test/resources/cii",
+                                                                        "../en16931-cii2ubl/src/test/resources/cii" };
+
+  private BenchmarkCorpus ()
+  {}
+
+  /**
+   * @return The directory containing the CII corpus. Either the directory
+   *         defined by the system property {@value #SYSTEM_PROPERTY_CORPUS_DIR}
+   *         or the test resources of the library module relative to the
+   *         current working directory.
+   * @throws IllegalStateException
+   *         If no corpus directory was found
+   */
+  @Nonnull
+  public static File getCorpusDir ()
+  {
+    final String sDir = SystemProperties.getPropertyValueOrNull (SYSTEM_PROPERTY_CORPUS_DIR);
+    if (StringHelper.hasText (sDir))
+      return new File (sDir);
+
+    for (final String sDefaultDir : DEFAULT_CORPUS_DIRS)
+    {
+      final File aDir = new File (sDefaultDir);
+      if (aDir.isDirectory ())
+        return aDir;
+    }
+    throw new IllegalStateException ("Failed to find the CII corpus directory. Please provide it via the system property '" +
+                                     SYSTEM_PROPERTY_CORPUS_DIR +
+                                     "'");
+  }
+
+  /**
+   * Read all CII documents of the corpus. Documents that are not valid
+   * according to the XML Schema are ignored.
+   *
+   * @return All valid CII documents of the corpus as byte arrays, sorted by
+   *         path. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static ICommonsList <byte []> readCorpus ()
+  {
+    final ICommonsList <byte []> ret = new CommonsArrayList <> ();
+    final CIIUnmarshallerPool aPool = CIIUnmarshallerPool.getShared (true);
+    try (final Stream <Path> aStream = Files.walk (getCorpusDir ().toPath ()))
+    {
+      aStream.filter (x -> Files.isRegularFile (x) && x.getFileName ().toString ().endsWith (".xml")).sorted ().forEach (aPath -> {
+        try
+        {
+          final byte [] aBytes = Files.readAllBytes (aPath);
+          final ErrorList aErrorList = new ErrorList ();
+          if (aPool.read (aBytes, aErrorList) != null && aErrorList.containsNoError ())
+            ret.add (aBytes);
+          else
+            LOGGER.info ("Ignoring invalid corpus document " + aPath);
+        }
+        catch (final IOException ex)
+        {
+          throw new UncheckedIOException (ex);
+        }
+      });
+    }
+    catch (final IOException ex)
+    {
+      throw new UncheckedIOException (ex);
+    }
+    if (ret.isEmpty ())
+      throw new IllegalStateException ("The CII corpus in " + getCorpusDir ().getAbsolutePath () + " is empty");
+    return ret;
+  }
+
+  /**
+   * Create a synthetic large invoice with {@link CIIInvoiceGenerator}. The line
+   * count is used as the seed, so the same data set always contains the same
+   * document.
+   *
+   * @param nLineCount
+   *        The number of line items of the resulting document. Must be &gt; 0.
+   * @return The serialized CII document and never <code>null</code>.
+   */
+  @Nonnull
+  public static byte [] createSynthetic (@Nonnegative final int nLineCount)
+  {
+    return CIIInvoiceGenerator.builder ()
+                              .seed (nLineCount)
+                              .lineCount (nLineCount)
+                              .taxCategoryCount (3)
+                              .paymentMeansCount (2)
+                              .referencedDocumentCount (1)
+                              .build ()
+                              .getAsBytes ();
+  }
+
+  /**
+   * Get the documents of the provided data set.
+   *
+   * @param sDataSet
+   *        The data set name. Either {@value #DATASET_CORPUS} or
+   *        {@value #DATASET_SYNTHETIC_PREFIX} followed by the number of lines.
+   * @return A non-<code>null</code> non-empty list of serialized CII documents.
+   * @throws IllegalArgumentException
+   *         If the data set name is unknown
+   */
+  @Nonnull
+  @Nonempty
+  @ReturnsMutableCopy
+  public static ICommonsList <byte []> getDataSet (@Nonnull final String sDataSet)
+  {
+    if (DATASET_CORPUS.equals (sDataSet))
+      return readCorpus ();
+
+    if (sDataSet.startsWith (DATASET_SYNTHETIC_PREFIX))
+    {
+      final int nLineCount = StringParser.parseInt (sDataSet.substring (DATASET_SYNTHETIC_PREFIX.length ()), -1);
+      if (nLineCount > 0)
+      {
+        final ICommonsList <byte []> ret = new CommonsArrayList <> ();
+        ret.add (createSynthetic (nLineCount));
+        return ret;
+      }
+    }
+    throw new IllegalArgumentException ("Unsupported data set '" + sDataSet + "'");
+  }
+}
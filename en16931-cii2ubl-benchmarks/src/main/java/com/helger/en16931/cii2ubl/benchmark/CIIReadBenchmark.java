@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.en16931.cii2ubl.CIIUnmarshallerPool;
+
+/**
+ * Measures the unmarshalling of CII documents only. One operation reads all
+ * documents of the selected data set.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 3, time = 2)
+@Measurement (iterations = 5, time = 2)
+@Fork (1)
+@State (Scope.Benchmark)
+public class CIIReadBenchmark
+{
+  // JMH parameters must be public and non-final
+  @Param ({ BenchmarkCorpus.DATASET_CORPUS,
+            BenchmarkCorpus.DATASET_SYNTHETIC_PREFIX + "1000",
+            BenchmarkCorpus.DATASET_SYNTHETIC_PREFIX + "10000" })
+  public String dataSet;
+
+  @Param ({ "true", "false" })
+  public boolean validateSchema;
+
+  private ICommonsList <byte []> m_aDocuments;
+  private CIIUnmarshallerPool m_aPool;
+
+  @Setup (Level.Trial)
+  public void setup ()
+  {
+    m_aDocuments = BenchmarkCorpus.getDataSet (dataSet);
+    m_aPool = CIIUnmarshallerPool.getShared (validateSchema);
+  }
+
+  @Benchmark
+  public void read (final Blackhole aBlackhole)
+  {
+    for (final byte [] aBytes : m_aDocuments)
+      aBlackhole.consume (m_aPool.read (aBytes, new ErrorList ()));
+  }
+}
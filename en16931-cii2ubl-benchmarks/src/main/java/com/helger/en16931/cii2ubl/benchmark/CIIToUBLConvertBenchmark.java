@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.en16931.cii2ubl.AbstractCIIToUBLConverter;
+import com.helger.en16931.cii2ubl.CIIToUBLSettings;
+import com.helger.en16931.cii2ubl.CIIUnmarshallerPool;
+import com.helger.en16931.cii2ubl.EUBLVersion;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Measures the mapping from the CII domain model to the UBL domain model only,
+ * without any XML parsing or serialization. One operation converts all
+ * documents of the selected data set.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 3, time = 2)
+@Measurement (iterations = 5, time = 2)
+@Fork (1)
+@State (Scope.Benchmark)
+public class CIIToUBLConvertBenchmark
+{
+  // JMH parameters must be public and non-final
+  @Param ({ BenchmarkCorpus.DATASET_CORPUS,
+            BenchmarkCorpus.DATASET_SYNTHETIC_PREFIX + "1000",
+            BenchmarkCorpus.DATASET_SYNTHETIC_PREFIX + "10000" })
+  public String dataSet;
+
+  @Param ({ "2.1", "2.2", "2.3" })
+  public String ublVersion;
+
+  private ICommonsList <CrossIndustryInvoiceType> m_aDocuments;
+  private AbstractCIIToUBLConverter <?> m_aConverter;
+  private CIIToUBLSettings m_aSettings;
+
+  @Setup (Level.Trial)
+  public void setup ()
+  {
+    final CIIUnmarshallerPool aPool = CIIUnmarshallerPool.getShared (false);
+    m_aDocuments = new CommonsArrayList <> ();
+    for (final byte [] aBytes : BenchmarkCorpus.getDataSet (dataSet))
+      m_aDocuments.add (aPool.read (aBytes, new ErrorList ()));
+
+    final EUBLVersion eVersion = EUBLVersion.getFromIDOrNull (ublVersion);
+    if (eVersion == null)
+      throw new IllegalArgumentException ("Unsupported UBL version '" + ublVersion + "'");
+    m_aConverter = eVersion.createConverter ();
+    m_aSettings = m_aConverter.getSettings ();
+  }
+
+  @Benchmark
+  public void convert (final Blackhole aBlackhole)
+  {
+    for (final CrossIndustryInvoiceType aCII : m_aDocuments)
+      aBlackhole.consume (m_aConverter.convertCIItoUBL (aCII, m_aSettings, new ErrorList ()));
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.benchmark;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.en16931.cii2ubl.AbstractCIIToUBLConverter;
+import com.helger.en16931.cii2ubl.CIIUnmarshallerPool;
+import com.helger.en16931.cii2ubl.EUBLVersion;
+import com.helger.en16931.cii2ubl.UBLMarshallerPool;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Measures the marshalling of the UBL domain model only. One operation writes
+ * all documents of the selected data set.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 3, time = 2)
+@Measurement (iterations = 5, time = 2)
+@Fork (1)
+@State (Scope.Benchmark)
+public class UBLWriteBenchmark
+{
+  // JMH parameters must be public and non-final
+  @Param ({ BenchmarkCorpus.DATASET_CORPUS,
+            BenchmarkCorpus.DATASET_SYNTHETIC_PREFIX + "1000",
+            BenchmarkCorpus.DATASET_SYNTHETIC_PREFIX + "10000" })
+  public String dataSet;
+
+  @Param ({ "2.1", "2.2", "2.3" })
+  public String ublVersion;
+
+  @Param ({ "true", "false" })
+  public boolean validateSchema;
+
+  private ICommonsList <Serializable> m_aDocuments;
+  private UBLMarshallerPool m_aPool;
+
+  @Setup (Level.Trial)
+  public void setup ()
+  {
+    final EUBLVersion eVersion = EUBLVersion.getFromIDOrNull (ublVersion);
+    if (eVersion == null)
+      throw new IllegalArgumentException ("Unsupported UBL version '" + ublVersion + "'");
+    final AbstractCIIToUBLConverter <?> aConverter = eVersion.createConverter ();
+
+    final CIIUnmarshallerPool aPool = CIIUnmarshallerPool.getShared (false);
+    m_aDocuments = new CommonsArrayList <> ();
+    for (final byte [] aBytes : BenchmarkCorpus.getDataSet (dataSet))
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = aPool.read (aBytes, aErrorList);
+      final Serializable aUBL = aCII == null ? null : aConverter.convertCIItoUBL (aCII, aErrorList);
+      if (aUBL == null || aErrorList.containsAtLeastOneError ())
+        throw new IllegalStateException ("Failed to convert benchmark document: " + aErrorList);
+      m_aDocuments.add (aUBL);
+    }
+    m_aPool = new UBLMarshallerPool (validateSchema, false, UBLMarshallerPool.DEFAULT_MAX_IDLE);
+  }
+
+  @Benchmark
+  public void write (final Blackhole aBlackhole)
+  {
+    for (final Serializable aUBL : m_aDocuments)
+    {
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      aBlackhole.consume (m_aPool.write (aUBL, aBAOS, new ErrorList ()));
+      aBlackhole.consume (aBAOS.size ());
+    }
+  }
+}
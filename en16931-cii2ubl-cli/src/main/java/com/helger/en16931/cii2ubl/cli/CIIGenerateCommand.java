@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.StringParser;
+import com.helger.en16931.cii2ubl.CIIInvoiceGenerator;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
+
+/**
+ * Sub command to create synthetic CII invoices with
+ * {@link CIIInvoiceGenerator}. The same options always create the same files.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Command (description = "Generate synthetic CII invoices for testing", name = "generate", mixinStandardHelpOptions = true, separator = " ")
+public class CIIGenerateCommand implements Callable <Integer>
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (CIIGenerateCommand.class);
+
+  @Spec
+  private CommandSpec m_aSpec;
+
+  @Option (names = { "-t", "--target" },
+           paramLabel = "directory",
+           defaultValue = ".",
+           description = "The target directory for the generated files (default: ${DEFAULT-VALUE})")
+  private String m_sOutputDir;
+
+  @Option (names = "--count", paramLabel = "count", defaultValue = "1", description = "The number of files to create (default: ${DEFAULT-VALUE})")
+  private int m_nCount;
+
+  @Option (names = "--seed",
+           paramLabel = "seed",
+           defaultValue = "0",
+           description = "The seed of the first file. Each further file uses the next seed (default: ${DEFAULT-VALUE})")
+  private long m_nSeed;
+
+  @Option (names = "--lines",
+           paramLabel = "count",
+           defaultValue = "" + CIIInvoiceGenerator.DEFAULT_LINE_COUNT,
+           description = "The number of line items per file. Use 'min-max' to pick a random number per file (default: ${DEFAULT-VALUE})")
+  private String m_sLines;
+
+  @Option (names = "--tax-categories",
+           paramLabel = "count",
+           defaultValue = "" + CIIInvoiceGenerator.DEFAULT_TAX_CATEGORY_COUNT,
+           description = "The number of different tax categories between 1 and " +
+                         CIIInvoiceGenerator.MAX_TAX_CATEGORY_COUNT +
+                         " (default: ${DEFAULT-VALUE})")
+  private int m_nTaxCategories;
+
+  @Option (names = "--payment-means",
+           paramLabel = "count",
+           defaultValue = "" + CIIInvoiceGenerator.DEFAULT_PAYMENT_MEANS_COUNT,
+           description = "The number of payment means (default: ${DEFAULT-VALUE})")
+  private int m_nPaymentMeans;
+
+  @Option (names = "--referenced-documents",
+           paramLabel = "count",
+           defaultValue = "" + CIIInvoiceGenerator.DEFAULT_REFERENCED_DOCUMENT_COUNT,
+           description = "The number of additional referenced documents (default: ${DEFAULT-VALUE})")
+  private int m_nReferencedDocuments;
+
+  @Option (names = "--attachment-size",
+           paramLabel = "bytes",
+           defaultValue = "" + CIIInvoiceGenerator.DEFAULT_ATTACHMENT_SIZE,
+           description = "The size of the attachment of each referenced document in bytes (default: ${DEFAULT-VALUE})")
+  private int m_nAttachmentSize;
+
+  @Option (names = "--credit-note", description = "Create credit notes instead of invoices")
+  private boolean m_bCreditNote;
+
+  public Integer call () throws Exception
+  {
+    // Parse the line count range
+    final String [] aLines = StringHelper.getExplodedArray ('-', m_sLines, 2);
+    final int nMinLines = StringParser.parseInt (aLines[0].trim (), -1);
+    final int nMaxLines = aLines.length > 1 ? StringParser.parseInt (aLines[1].trim (), -1) : nMinLines;
+    if (nMinLines <= 0 || nMaxLines < nMinLines)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "Invalid line count '" + m_sLines + "'");
+    if (m_nTaxCategories < 1 || m_nTaxCategories > CIIInvoiceGenerator.MAX_TAX_CATEGORY_COUNT)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "Invalid tax category count " + m_nTaxCategories);
+
+    final File aOutputDir = Paths.get (m_sOutputDir).toAbsolutePath ().normalize ().toFile ();
+    Files.createDirectories (aOutputDir.toPath ());
+
+    // Decides the line counts if a range is used
+    final Random aRandom = new Random (m_nSeed);
+    for (int i = 0; i < m_nCount; ++i)
+    {
+      final long nSeed = m_nSeed + i;
+      final int nLines = nMinLines + aRandom.nextInt (nMaxLines - nMinLines + 1);
+      final CIIInvoiceGenerator aGenerator = CIIInvoiceGenerator.builder ()
+                                                                .seed (nSeed)
+                                                                .lineCount (nLines)
+                                                                .taxCategoryCount (m_nTaxCategories)
+                                                                .paymentMeansCount (m_nPaymentMeans)
+                                                                .referencedDocumentCount (m_nReferencedDocuments)
+                                                                .attachmentSize (m_nAttachmentSize)
+                                                                .creditNote (m_bCreditNote)
+                                                                .build ();
+      final File aFile = new File (aOutputDir, "generated-cii-" + nSeed + ".xml");
+      try (final OutputStream aOS = new BufferedOutputStream (Files.newOutputStream (aFile.toPath ())))
+      {
+        aGenerator.write (aOS);
+      }
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Generated " + aFile.getAbsolutePath () + " with " + nLines + " line(s)");
+    }
+
+    if (LOGGER.isInfoEnabled ())
+      LOGGER.info ("Generated " + m_nCount + " CII file(s) in " + aOutputDir.getAbsolutePath ());
+    return Integer.valueOf (CIIToUBLConverter.EXIT_CODE_SUCCESS);
+  }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.collection.impl.CommonsEnumMap;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.error.IError;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.StringParser;
+import com.helger.en16931.cii2ubl.AbstractCIIToUBLConverter;
+import com.helger.en16931.cii2ubl.CIIInvoiceGenerator;
+import com.helger.en16931.cii2ubl.CIIToUBLSettings;
+import com.helger.en16931.cii2ubl.CIIUnmarshallerPool;
+import com.helger.en16931.cii2ubl.EUBLCreationMode;
+import com.helger.en16931.cii2ubl.EUBLVersion;
+import com.helger.en16931.cii2ubl.UBLMarshallerPool;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Sub command that runs the converter as a long running process with a local
+ * HTTP endpoint. That avoids the JVM startup and JAXB initialization costs for
+ * every single conversion.<br>
+ * Usage: <code>POST /convert?ubl=2.3&amp;mode=AUTOMATIC</code> with the CII
+ * document as the request body. The response body contains the UBL document
+ * (status 200) or the conversion errors as plain text (status 422).
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Command (description = "Run a local HTTP server that converts CII to UBL", name = "serve", mixinStandardHelpOptions = true, separator = " ")
+public class CIIServeCommand implements Callable <Integer>
+{
+  /** The path of the conversion endpoint */
+  public static final String PATH_CONVERT = "/convert";
+  /** The query parameter for the UBL version */
+  public static final String PARAM_UBL = "ubl";
+  /** The query parameter for the UBL creation mode */
+  public static final String PARAM_MODE = "mode";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (CIIServeCommand.class);
+
+  private static final int HTTP_OK = 200;
+  private static final int HTTP_BAD_REQUEST = 400;
+  private static final int HTTP_NOT_FOUND = 404;
+  private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+  private static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+  private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+  private static final int HTTP_INTERNAL_SERVER_ERROR = 500;
+
+  private static final String CONTENT_TYPE_XML = "application/xml; charset=UTF-8";
+  private static final String CONTENT_TYPE_TEXT = "text/plain; charset=UTF-8";
+
+  @Spec
+  private CommandSpec m_aSpec;
+
+  @Option (names = "--host",
+           paramLabel = "address",
+           defaultValue = "127.0.0.1",
+           description = "The address to listen on (default: ${DEFAULT-VALUE})")
+  private String m_sHost;
+
+  @Option (names = "--port", paramLabel = "port", defaultValue = "8080", description = "The port to listen on (default: ${DEFAULT-VALUE})")
+  private int m_nPort;
+
+  @Option (names = { "--threads", "--parallelism" },
+           paramLabel = "count",
+           defaultValue = "auto",
+           description = "The number of requests handled concurrently. Use 'auto' for the number of available processors (default: ${DEFAULT-VALUE})")
+  private String m_sThreads;
+
+  @Option (names = "--max-request-size",
+           paramLabel = "bytes",
+           defaultValue = "" + (32 * 1024 * 1024),
+           description = "The maximum size of a CII request body in bytes (default: ${DEFAULT-VALUE})")
+  private long m_nMaxRequestSize;
+
+  @Option (names = "--ubl",
+           paramLabel = "version",
+           defaultValue = "2.1",
+           description = "The UBL version used if the request contains no '" + PARAM_UBL + "' parameter (default: ${DEFAULT-VALUE})")
+  private String m_sUBLVersion;
+
+  @Option (names = "--mode",
+           paramLabel = "mode",
+           defaultValue = "AUTOMATIC",
+           description = "The creation mode used if the request contains no '" +
+                         PARAM_MODE +
+                         "' parameter. Allowed values: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+  private EUBLCreationMode m_eMode;
+
+  @Option (names = "--ubl-vatscheme",
+           paramLabel = "vat scheme",
+           defaultValue = AbstractCIIToUBLConverter.DEFAULT_VAT_SCHEME,
+           description = "The UBL VAT scheme to be used (default: ${DEFAULT-VALUE})")
+  private String m_sVATScheme;
+
+  @Option (names = "--ubl-customizationid",
+           paramLabel = "ID",
+           defaultValue = AbstractCIIToUBLConverter.DEFAULT_CUSTOMIZATION_ID,
+           description = "The UBL customization ID to be used (default: ${DEFAULT-VALUE})")
+  private String m_sCustomizationID;
+
+  @Option (names = "--ubl-profileid",
+           paramLabel = "ID",
+           defaultValue = AbstractCIIToUBLConverter.DEFAULT_PROFILE_ID,
+           description = "The UBL profile ID to be used (default: ${DEFAULT-VALUE})")
+  private String m_sProfileID;
+
+  @Option (names = "--ubl-cardaccountnetworkid",
+           paramLabel = "ID",
+           defaultValue = AbstractCIIToUBLConverter.DEFAULT_CARD_ACCOUNT_NETWORK_ID,
+           description = "The UBL CardAccount network ID to be used (default: ${DEFAULT-VALUE})")
+  private String m_sCardAccountNetworkID;
+
+  // The converters are stateless and can be shared by all request threads
+  private final ICommonsMap <EUBLVersion, AbstractCIIToUBLConverter <?>> m_aConverters = new CommonsEnumMap <> (EUBLVersion.class);
+  private final ICommonsMap <EUBLCreationMode, CIIToUBLSettings> m_aSettings = new CommonsEnumMap <> (EUBLCreationMode.class);
+
+  @Nonnull
+  private static ICommonsMap <String, String> _parseQuery (@Nullable final String sRawQuery)
+  {
+    final ICommonsMap <String, String> ret = new CommonsHashMap <> ();
+    if (StringHelper.hasText (sRawQuery))
+      for (final String sPair : StringHelper.getExploded ('&', sRawQuery))
+      {
+        final String [] aParts = StringHelper.getExplodedArray ('=', sPair, 2);
+        try
+        {
+          ret.put (URLDecoder.decode (aParts[0], StandardCharsets.UTF_8.name ()),
+                   aParts.length > 1 ? URLDecoder.decode (aParts[1], StandardCharsets.UTF_8.name ()) : "");
+        }
+        catch (final IOException | IllegalArgumentException ex)
+        {
+          // Ignore malformed parameters
+        }
+      }
+    return ret;
+  }
+
+  /**
+   * Read the request body, but at most the provided number of bytes.
+   *
+   * @return <code>null</code> if the body is larger than the limit.
+   */
+  @Nullable
+  private static byte [] _readBody (@Nonnull final InputStream aIS, @Nonnegative final long nMaxSize) throws IOException
+  {
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      final byte [] aBuffer = new byte [16 * 1024];
+      long nTotal = 0;
+      int nRead;
+      while ((nRead = aIS.read (aBuffer)) > 0)
+      {
+        nTotal += nRead;
+        if (nTotal > nMaxSize)
+          return null;
+        aBAOS.write (aBuffer, 0, nRead);
+      }
+      return aBAOS.toByteArray ();
+    }
+  }
+
+  private static void _respond (@Nonnull final HttpExchange aExchange,
+                                final int nStatus,
+                                @Nonnull final String sContentType,
+                                @Nonnull final byte [] aBody) throws IOException
+  {
+    aExchange.getResponseHeaders ().set ("Content-Type", sContentType);
+    aExchange.sendResponseHeaders (nStatus, aBody.length == 0 ? -1 : aBody.length);
+    if (aBody.length > 0)
+      try (final OutputStream aOS = aExchange.getResponseBody ())
+      {
+        aOS.write (aBody);
+      }
+  }
+
+  private static void _respondText (@Nonnull final HttpExchange aExchange, final int nStatus, @Nonnull final String sText) throws IOException
+  {
+    _respond (aExchange, nStatus, CONTENT_TYPE_TEXT, (sText + "\n").getBytes (StandardCharsets.UTF_8));
+  }
+
+  private static void _respondErrors (@Nonnull final HttpExchange aExchange, final int nStatus, @Nonnull final ErrorList aErrorList) throws IOException
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    for (final IError aError : aErrorList)
+      aSB.append (aError.getAsString (Locale.US)).append ('\n');
+    _respond (aExchange, nStatus, CONTENT_TYPE_TEXT, aSB.toString ().getBytes (StandardCharsets.UTF_8));
+  }
+
+  private void _handleConvert (@Nonnull final HttpExchange aExchange) throws IOException
+  {
+    try
+    {
+      if (!PATH_CONVERT.equals (aExchange.getRequestURI ().getPath ()))
+      {
+        _respondText (aExchange, HTTP_NOT_FOUND, "Not found");
+        return;
+      }
+      if (!"POST".equals (aExchange.getRequestMethod ()))
+      {
+        aExchange.getResponseHeaders ().set ("Allow", "POST");
+        _respondText (aExchange, HTTP_METHOD_NOT_ALLOWED, "Only POST is supported");
+        return;
+      }
+
+      final Map <String, String> aParams = _parseQuery (aExchange.getRequestURI ().getRawQuery ());
+      final String sVersion = aParams.getOrDefault (PARAM_UBL, m_sUBLVersion);
+      final EUBLVersion eVersion = EUBLVersion.getFromIDOrNull (sVersion);
+      if (eVersion == null)
+      {
+        _respondText (aExchange, HTTP_BAD_REQUEST, "Unsupported UBL version '" + sVersion + "'");
+        return;
+      }
+      final String sMode = aParams.get (PARAM_MODE);
+      final EUBLCreationMode eMode = sMode == null ? m_eMode : _getMode (sMode);
+      if (eMode == null)
+      {
+        _respondText (aExchange, HTTP_BAD_REQUEST, "Unsupported creation mode '" + sMode + "'");
+        return;
+      }
+
+      // Check the declared size first, to avoid reading at all
+      final long nContentLength = StringParser.parseLong (aExchange.getRequestHeaders ().getFirst ("Content-Length"), -1);
+      final byte [] aCII = nContentLength > m_nMaxRequestSize ? null : _readBody (aExchange.getRequestBody (), m_nMaxRequestSize);
+      if (aCII == null)
+      {
+        _respondText (aExchange, HTTP_PAYLOAD_TOO_LARGE, "The request body exceeds the maximum size of " + m_nMaxRequestSize + " bytes");
+        return;
+      }
+
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCIIInvoice = CIIUnmarshallerPool.getShared (true).read (aCII, aErrorList);
+      if (aCIIInvoice == null || aErrorList.containsAtLeastOneError ())
+      {
+        _respondErrors (aExchange, HTTP_UNPROCESSABLE_ENTITY, aErrorList);
+        return;
+      }
+
+      final Serializable aUBL = m_aConverters.get (eVersion).convertCIItoUBL (aCIIInvoice, m_aSettings.get (eMode), aErrorList);
+      if (aUBL == null || aErrorList.containsAtLeastOneError ())
+      {
+        _respondErrors (aExchange, HTTP_UNPROCESSABLE_ENTITY, aErrorList);
+        return;
+      }
+
+      try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+      {
+        if (UBLMarshallerPool.getShared ().write (aUBL, aBAOS, aErrorList).isFailure ())
+        {
+          _respondErrors (aExchange, HTTP_UNPROCESSABLE_ENTITY, aErrorList);
+          return;
+        }
+        _respond (aExchange, HTTP_OK, CONTENT_TYPE_XML, aBAOS.toByteArray ());
+      }
+    }
+    catch (final RuntimeException ex)
+    {
+      LOGGER.error ("Internal error converting CII", ex);
+      _respondText (aExchange, HTTP_INTERNAL_SERVER_ERROR, "Internal error: " + ex.getMessage ());
+    }
+    finally
+    {
+      aExchange.close ();
+    }
+  }
+
+  @Nullable
+  private static EUBLCreationMode _getMode (@Nonnull final String sMode)
+  {
+    for (final EUBLCreationMode e : EUBLCreationMode.values ())
+      if (e.name ().equalsIgnoreCase (sMode.trim ()))
+        return e;
+    return null;
+  }
+
+  /**
+   * Convert a generated invoice once with all versions, so that all JAXB
+   * contexts are created before the first request arrives.
+   */
+  private void _warmUp (@Nonnegative final int nThreads)
+  {
+    CIIUnmarshallerPool.getShared (true).warmUp (nThreads);
+
+    final byte [] aCII = CIIInvoiceGenerator.builder ().build ().getAsBytes ();
+    for (final AbstractCIIToUBLConverter <?> aConverter : m_aConverters.values ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCIIInvoice = CIIUnmarshallerPool.getShared (true).read (aCII, aErrorList);
+      final Serializable aUBL = aCIIInvoice == null ? null : aConverter.convertCIItoUBL (aCIIInvoice, aErrorList);
+      if (aUBL != null)
+      {
+        UBLMarshallerPool.getShared ().warmUp (aUBL.getClass (), nThreads);
+        try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+        {
+          UBLMarshallerPool.getShared ().write (aUBL, aBAOS, aErrorList);
+        }
+      }
+      if (aErrorList.containsAtLeastOneError ())
+        LOGGER.warn ("Failed to warm up converter " + aConverter.getClass ().getSimpleName () + ": " + aErrorList);
+    }
+  }
+
+  /**
+   * Validate the options, warm up the converters and start the HTTP server.
+   * The server uses a fixed thread pool of daemon threads as its executor.
+   *
+   * @return The started server. Never <code>null</code>.
+   * @throws IOException
+   *         If the server cannot be bound to the host and port.
+   */
+  @Nonnull
+  HttpServer startServer () throws IOException
+  {
+    if (EUBLVersion.getFromIDOrNull (m_sUBLVersion) == null)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "Unsupported UBL version '" + m_sUBLVersion + "'");
+    if (m_nMaxRequestSize < 1)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "Invalid maximum request size " + m_nMaxRequestSize);
+
+    final int nThreads;
+    if (StringHelper.hasNoText (m_sThreads) || "auto".equalsIgnoreCase (m_sThreads.trim ()))
+      nThreads = Runtime.getRuntime ().availableProcessors ();
+    else
+      nThreads = StringParser.parseInt (m_sThreads.trim (), -1);
+    if (nThreads < 1)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "Invalid thread count '" + m_sThreads + "'");
+
+    final CIIToUBLSettings aBaseSettings = CIIToUBLSettings.builder ()
+                                                           .vatScheme (m_sVATScheme)
+                                                           .customizationID (m_sCustomizationID)
+                                                           .profileID (m_sProfileID)
+                                                           .cardAccountNetworkID (m_sCardAccountNetworkID)
+                                                           .build ();
+    for (final EUBLCreationMode eMode : EUBLCreationMode.values ())
+      m_aSettings.put (eMode, CIIToUBLSettings.builder (aBaseSettings).ublCreationMode (eMode).build ());
+    for (final EUBLVersion eVersion : EUBLVersion.values ())
+      m_aConverters.put (eVersion, eVersion.createConverter ().setSettings (aBaseSettings));
+
+    if (LOGGER.isInfoEnabled ())
+      LOGGER.info ("Warming up");
+    _warmUp (nThreads);
+
+    final AtomicInteger aThreadIndex = new AtomicInteger (0);
+    final ExecutorService aES = Executors.newFixedThreadPool (nThreads, r -> {
+      final Thread t = new Thread (r, "cii2ubl-http-" + aThreadIndex.incrementAndGet ());
+      t.setDaemon (true);
+      return t;
+    });
+
+    final HttpServer aServer = HttpServer.create (new InetSocketAddress (m_sHost, m_nPort), 0);
+    aServer.createContext (PATH_CONVERT, this::_handleConvert);
+    aServer.setExecutor (aES);
+    aServer.start ();
+    if (LOGGER.isInfoEnabled ())
+      LOGGER.info ("Listening on http://" +
+                   m_sHost +
+                   ":" +
+                   aServer.getAddress ().getPort () +
+                   PATH_CONVERT +
+                   " with " +
+                   nThreads +
+                   " thread(s) and a maximum request size of " +
+                   m_nMaxRequestSize +
+                   " bytes");
+    return aServer;
+  }
+
+  public Integer call () throws Exception
+  {
+    final HttpServer aServer = startServer ();
+    final ExecutorService aES = (ExecutorService) aServer.getExecutor ();
+
+    // Run until the process is terminated
+    final CountDownLatch aStopped = new CountDownLatch (1);
+    Runtime.getRuntime ().addShutdownHook (new Thread ( () -> {
+      LOGGER.info ("Stopping HTTP server");
+      aServer.stop (1);
+      aES.shutdown ();
+      try
+      {
+        aES.awaitTermination (10, TimeUnit.SECONDS);
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+      }
+      aStopped.countDown ();
+    }, "cii2ubl-shutdown"));
+    aStopped.await ();
+    return Integer.valueOf (CIIToUBLConverter.EXIT_CODE_SUCCESS);
+  }
+}
@@ -17,41 +17,65 @@
  */
 package com.helger.en16931.cii2ubl.cli;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.helger.commons.collection.impl.CommonsArrayList;
 import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
+import com.helger.commons.collection.impl.ICommonsOrderedSet;
 import com.helger.commons.error.IError;
+import com.helger.commons.error.SingleError;
 import com.helger.commons.error.list.ErrorList;
 import com.helger.commons.io.file.FileSystemIterator;
 import com.helger.commons.io.file.FilenameHelper;
 import com.helger.commons.state.ESuccess;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.StringParser;
 import com.helger.en16931.cii2ubl.AbstractCIIToUBLConverter;
-import com.helger.en16931.cii2ubl.CIIToUBL21Converter;
-import com.helger.en16931.cii2ubl.CIIToUBL22Converter;
-import com.helger.en16931.cii2ubl.CIIToUBL23Converter;
+import com.helger.en16931.cii2ubl.CIIHeaderModel;
+import com.helger.en16931.cii2ubl.CIIToUBLConversionEvent;
+import com.helger.en16931.cii2ubl.CIIToUBLConversionStatistics;
+import com.helger.en16931.cii2ubl.CIIToUBLMultiVersionConverter;
+import com.helger.en16931.cii2ubl.CIIToUBLSettings;
 import com.helger.en16931.cii2ubl.CIIToUBLVersion;
+import com.helger.en16931.cii2ubl.CIIUnmarshallerPool;
 import com.helger.en16931.cii2ubl.EUBLCreationMode;
-import com.helger.ubl21.UBL21Writer;
-import com.helger.ubl22.UBL22Writer;
-import com.helger.ubl23.UBL23Writer;
+import com.helger.en16931.cii2ubl.EUBLVersion;
+import com.helger.en16931.cii2ubl.UBLMarshallerPool;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
 
 /**
  * Main command line client
@@ -59,15 +83,23 @@ import picocli.CommandLine.Parameters;
 @Command (description = "CII to UBL Converter for EN 16931 invoices",
           name = "CIItoUBLConverter",
           mixinStandardHelpOptions = true,
-          separator = " ")
+          separator = " ",
+          subcommands = { CIIGenerateCommand.class, CIIServeCommand.class })
 public class CIIToUBLConverter implements Callable <Integer>
 {
+  /** All files were converted successfully */
+  public static final int EXIT_CODE_SUCCESS = 0;
+  /** At least one file could not be converted */
+  public static final int EXIT_CODE_CONVERSION_ERROR = 1;
+  /** All files could be converted but at least one could not be written */
+  public static final int EXIT_CODE_WRITE_ERROR = 2;
+
   private static final Logger LOGGER = LoggerFactory.getLogger (CIIToUBLConverter.class);
 
   @Option (names = "--ubl",
            paramLabel = "version",
            defaultValue = "2.1",
-           description = "Version of the target UBL Format: '2.1', '2.2' or '2.3' (default: ${DEFAULT-VALUE})")
+           description = "Version of the target UBL Format: '2.1', '2.2' or '2.3'. Separate multiple versions with a comma to create all of them from a single read (default: ${DEFAULT-VALUE})")
   private String m_sUBLVersion;
 
   @Option (names = "--mode", paramLabel = "mode", defaultValue = "INVOICE", description = "Allowed values: ${COMPLETION-CANDIDATES}")
@@ -109,9 +141,146 @@ public class CIIToUBLConverter implements Callable <Integer>
            description = "The UBL CardAccount network ID to be used (default: ${DEFAULT-VALUE})")
   private String m_sCardAccountNetworkID;
 
-  @Parameters (arity = "1..*", paramLabel = "source files", description = "One or more CII file(s)")
+  @Option (names = { "--threads", "--parallelism" },
+           paramLabel = "count",
+           defaultValue = "1",
+           description = "The number of files to convert in parallel. Use 'auto' for the number of available processors (default: ${DEFAULT-VALUE})")
+  private String m_sThreads;
+
+  @Option (names = "--executor",
+           paramLabel = "type",
+           defaultValue = "PLATFORM",
+           description = "The kind of threads used for conversion. 'VIRTUAL' requires Java 21 or later and ignores '--threads'. Allowed values: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+  private EExecutorType m_eExecutor;
+
+  @Option (names = "--max-open-files",
+           paramLabel = "count",
+           defaultValue = "256",
+           description = "The maximum number of files converted concurrently with the 'VIRTUAL' executor (default: ${DEFAULT-VALUE})")
+  private int m_nMaxOpenFiles;
+
+  @Option (names = "--streaming",
+           description = "Convert the line items one by one to keep the memory usage low for huge invoices. The source files are not validated against the XML Schema and only a single UBL version can be created in this mode")
+  private boolean m_bStreaming;
+
+  @Option (names = "--attachment-passthrough",
+           paramLabel = "characters",
+           defaultValue = "0",
+           description = "Copy the base64 text of attachments with at least this many characters to the output without decoding it. Requires '--streaming'. Use 0 to disable it (default: ${DEFAULT-VALUE})")
+  private int m_nAttachmentPassthroughThreshold;
+
+  @Option (names = "--watch",
+           description = "Keep running and convert new files as they appear in the source directories. Only files with the extension '.xml' are considered")
+  private boolean m_bWatch;
+
+  @Option (names = "--watch-stable-delay",
+           paramLabel = "milliseconds",
+           defaultValue = "1000",
+           description = "The time a file in a watched directory must not change before it is converted (default: ${DEFAULT-VALUE})")
+  private long m_nWatchStableDelay;
+
+  @Option (names = "--watch-done",
+           paramLabel = "action",
+           defaultValue = "MOVE",
+           description = "What to do with converted files in a watched directory. 'MOVE' moves them to the sub directory 'processed' or 'failed', 'MARK' creates a '.done' or '.failed' file next to them. Allowed values: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+  private EWatchDoneAction m_eWatchDone;
+
+  @Option (names = "--incremental",
+           description = "Only convert source files that changed since the last run with the same target directory and settings. The state is kept in the file '" +
+                         ConversionManifest.FILENAME +
+                         "' in the target directory. Cannot be combined with '--watch'")
+  private boolean m_bIncremental;
+
+  @Option (names = "--fail-fast",
+           description = "Stop reading and converting a file on the first error, e.g. to quickly check if files are convertible. Cannot be combined with '--streaming'")
+  private boolean m_bFailFast;
+
+  @Option (names = "--stats",
+           description = "Log a summary of the conversion times per phase (percentiles) and the throughput at the end. With '--streaming' only the total time is known. Cannot be combined with '--watch'")
+  private boolean m_bStats;
+
+  // Optional so that the sub commands don't need source files
+  @Parameters (arity = "0..*", paramLabel = "source files", description = "One or more CII file(s)")
   private List <File> m_aSourceFiles;
 
+  @Spec
+  private CommandSpec m_aSpec;
+
+  // Only set with --stats
+  private CIIToUBLConversionStatistics m_aStats;
+
+  /**
+   * The measured values of a single file conversion for the statistics.
+   */
+  private static final class PhaseTimes
+  {
+    private long m_nReadNanos;
+    private long m_nConvertNanos;
+    private long m_nWriteNanos;
+    private int m_nLineCount = CIIToUBLConversionEvent.UNKNOWN;
+  }
+
+  /**
+   * Remembers if writing to the underlying stream failed, so that a failed
+   * streaming conversion can be told apart from a failed write.
+   */
+  private static final class WriteErrorTrackingOutputStream extends FilterOutputStream
+  {
+    private boolean m_bWriteError;
+
+    WriteErrorTrackingOutputStream (@Nonnull final OutputStream aOS)
+    {
+      super (aOS);
+    }
+
+    @Override
+    public void write (final int b) throws IOException
+    {
+      try
+      {
+        out.write (b);
+      }
+      catch (final IOException ex)
+      {
+        m_bWriteError = true;
+        throw ex;
+      }
+    }
+
+    @Override
+    public void write (@Nonnull final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      try
+      {
+        out.write (aBuf, nOfs, nLen);
+      }
+      catch (final IOException ex)
+      {
+        m_bWriteError = true;
+        throw ex;
+      }
+    }
+
+    @Override
+    public void flush () throws IOException
+    {
+      try
+      {
+        out.flush ();
+      }
+      catch (final IOException ex)
+      {
+        m_bWriteError = true;
+        throw ex;
+      }
+    }
+
+    boolean hasWriteError ()
+    {
+      return m_bWriteError;
+    }
+  }
+
   @Nonnull
   private static String _normalizeOutputDirectory (@Nonnull final String dir)
   {
@@ -165,110 +334,537 @@ public class CIIToUBLConverter implements Callable <Integer>
 
   }
 
-  // doing the business
-  public Integer call () throws Exception
+  @Nonnegative
+  private static int _parseThreadCount (@Nullable final String sThreads)
   {
-    m_sOutputDir = _normalizeOutputDirectory (m_sOutputDir);
-    m_aSourceFiles = _normalizeInputFiles (m_aSourceFiles);
+    if (StringHelper.hasNoText (sThreads) || "auto".equalsIgnoreCase (sThreads.trim ()))
+      return Runtime.getRuntime ().availableProcessors ();
 
-    final AbstractCIIToUBLConverter <?> aConverter;
-    if ("2.1".equals (m_sUBLVersion))
-      aConverter = new CIIToUBL21Converter ();
-    else
-      if ("2.2".equals (m_sUBLVersion))
-        aConverter = new CIIToUBL22Converter ();
-      else
-        if ("2.3".equals (m_sUBLVersion))
-          aConverter = new CIIToUBL23Converter ();
-        else
-          throw new IllegalStateException ("Unsupported UBL version '" + m_sUBLVersion + "' provided.");
+    final int ret = StringParser.parseInt (sThreads.trim (), -1);
+    if (ret < 1)
+      throw new IllegalArgumentException ("Invalid thread count '" + sThreads + "' provided. Use a positive number or 'auto'.");
+    return ret;
+  }
+
+  @Nonnull
+  private ICommonsList <EUBLVersion> _parseUBLVersions ()
+  {
+    final ICommonsList <EUBLVersion> ret = new CommonsArrayList <> ();
+    for (final String sVersion : StringHelper.getExploded (',', m_sUBLVersion))
+    {
+      final EUBLVersion eVersion = EUBLVersion.getFromIDOrNull (sVersion.trim ());
+      if (eVersion == null)
+        throw new IllegalArgumentException ("Unsupported UBL version '" + sVersion + "' provided.");
+      if (!ret.contains (eVersion))
+        ret.add (eVersion);
+    }
+    if (ret.isEmpty ())
+      throw new IllegalArgumentException ("No UBL version provided.");
+    return ret;
+  }
 
-    aConverter.setUBLCreationMode (m_eMode)
-              .setVATScheme (m_sVATScheme)
-              .setCustomizationID (m_sCustomizationID)
-              .setProfileID (m_sProfileID)
-              .setCardAccountNetworkID (m_sCardAccountNetworkID);
+  @Nonnull
+  private CIIToUBLMultiVersionConverter _createConverter ()
+  {
+    // The settings are immutable, so the converters can be shared between
+    // threads
+    return new CIIToUBLMultiVersionConverter (_parseUBLVersions (),
+                                              CIIToUBLSettings.builder ()
+                                                              .ublCreationMode (m_eMode)
+                                                              .vatScheme (m_sVATScheme)
+                                                              .customizationID (m_sCustomizationID)
+                                                              .profileID (m_sProfileID)
+                                                              .cardAccountNetworkID (m_sCardAccountNetworkID)
+                                                              .failFast (m_bFailFast)
+                                                              .attachmentPassthroughThreshold (m_nAttachmentPassthroughThreshold)
+                                                              .build ());
+  }
 
-    final Locale aErrorLocale = Locale.US;
-    for (final File f : m_aSourceFiles)
+  @Nonnull
+  private String _getSettingsHash (@Nonnull final CIIToUBLMultiVersionConverter aConverter)
+  {
+    // Everything that influences the created files
+    final StringBuilder aSB = new StringBuilder ();
+    for (final EUBLVersion eVersion : aConverter.getAllVersions ())
+      aSB.append (eVersion.getID ()).append (',');
+    aSB.append (aConverter.getSettings ().toString ()).append ('\n').append (m_sOutputFileSuffix).append ('\n').append (m_bStreaming);
+    return ConversionManifest.getSettingsHash (aSB.toString ());
+  }
+
+  /**
+   * Read, convert and write a single file. This method is called from the
+   * worker threads and must therefore not log the results - that is done in
+   * {@link #_logResult(FileConversionResult)} in the order of the source
+   * files.
+   *
+   * @param aConverter
+   *        The converter to use. May be shared with other threads.
+   * @param aSrcFile
+   *        The source file to convert.
+   * @return The conversion result and never <code>null</code>.
+   */
+  @Nonnull
+  private FileConversionResult _convertFile (@Nonnull final CIIToUBLMultiVersionConverter aConverter, @Nonnull final File aSrcFile)
+  {
+    // In streaming mode the converter reports to the statistics itself,
+    // because the phases are interleaved
+    if (m_aStats == null || m_bStreaming)
+      return _convertFile (aConverter, aSrcFile, null);
+
+    final PhaseTimes aTimes = new PhaseTimes ();
+    final FileConversionResult ret = _convertFile (aConverter, aSrcFile, aTimes);
+    m_aStats.onConversion (new CIIToUBLConversionEvent (aTimes.m_nReadNanos,
+                                                        aTimes.m_nConvertNanos,
+                                                        aTimes.m_nWriteNanos,
+                                                        aSrcFile.length (),
+                                                        aTimes.m_nLineCount,
+                                                        ret.getErrorList ().getCount (IError::isError),
+                                                        ret.isSuccess ()));
+    return ret;
+  }
+
+  @Nonnull
+  private FileConversionResult _convertFile (@Nonnull final CIIToUBLMultiVersionConverter aConverter,
+                                             @Nonnull final File aSrcFile,
+                                             @Nullable final PhaseTimes aTimes)
+  {
+    if (LOGGER.isDebugEnabled ())
+      LOGGER.debug ("Converting file=" + aSrcFile.getAbsolutePath ());
+
+    // Only add the version to the filename if multiple versions are created
+    final ICommonsOrderedSet <EUBLVersion> aVersions = aConverter.getAllVersions ();
+    final ICommonsList <File> aDestFiles = new CommonsArrayList <> ();
+    for (final EUBLVersion eVersion : aVersions)
+      aDestFiles.add (new File (m_sOutputDir,
+                                FilenameHelper.getBaseName (aSrcFile) +
+                                              m_sOutputFileSuffix +
+                                              (aVersions.size () > 1 ? "-" + eVersion.getID () : "") +
+                                              ".xml"));
+
+    final ErrorList aErrorList = new ErrorList ();
+    try
     {
-      if (LOGGER.isDebugEnabled ())
-        LOGGER.debug ("Converting file=" + f.getAbsolutePath ());
+      if (m_bStreaming)
+      {
+        // Reading, converting and writing are interleaved. Only a single
+        // version is allowed (see call)
+        final EFileConversionStatus eStatus = _convertFileStreaming (aConverter.getConverter (aVersions.getFirst ()),
+                                                                     aSrcFile,
+                                                                     aDestFiles.getFirst (),
+                                                                     aErrorList);
+        return new FileConversionResult (aSrcFile, aDestFiles, eStatus, aErrorList);
+      }
 
-      final File aDestFile = new File (m_sOutputDir, FilenameHelper.getBaseName (f) + m_sOutputFileSuffix + ".xml");
+      // Read only once for all versions
+      final long nStart = System.nanoTime ();
+      final CrossIndustryInvoiceType aCIIInvoice = CIIUnmarshallerPool.getShared (true, m_bFailFast).read (aSrcFile, aErrorList);
+      final long nRead = System.nanoTime ();
+      if (aTimes != null)
+      {
+        aTimes.m_nReadNanos = nRead - nStart;
+        if (aCIIInvoice != null)
+          aTimes.m_nLineCount = CIIHeaderModel.getLineCount (aCIIInvoice);
+      }
+      if (aCIIInvoice == null || aErrorList.containsAtLeastOneError ())
+        return new FileConversionResult (aSrcFile, aDestFiles, EFileConversionStatus.CONVERSION_ERROR, aErrorList);
 
-      // TODO switch between versions
-      final ErrorList aErrorList = new ErrorList ();
-      final Serializable aUBL = aConverter.convertCIItoUBL (f, aErrorList);
-      if (aErrorList.containsAtLeastOneError () || aUBL == null)
+      final ICommonsOrderedMap <EUBLVersion, Serializable> aUBLs = aConverter.convertCIItoUBL (aCIIInvoice, aErrorList);
+      final long nConverted = System.nanoTime ();
+      if (aTimes != null)
+        aTimes.m_nConvertNanos = nConverted - nRead;
+      if (aErrorList.containsAtLeastOneError () || aUBLs.size () != aVersions.size ())
+        return new FileConversionResult (aSrcFile, aDestFiles, EFileConversionStatus.CONVERSION_ERROR, aErrorList);
+
+      boolean bWriteError = false;
+      int nIndex = 0;
+      for (final Serializable aUBL : aUBLs.values ())
+        if (UBLMarshallerPool.getShared ().write (aUBL, aDestFiles.get (nIndex++), aErrorList).isFailure ())
+          bWriteError = true;
+      if (aTimes != null)
+        aTimes.m_nWriteNanos = System.nanoTime () - nConverted;
+      if (bWriteError)
       {
-        if (LOGGER.isErrorEnabled ())
-          LOGGER.error ("Failed to convert CII file '" + f.getAbsolutePath () + "' to UBL:");
-        for (final IError aError : aErrorList)
-          LOGGER.error (aError.getAsString (aErrorLocale));
+        // Don't leave an incomplete set of files behind
+        _deleteIncompleteFiles (aDestFiles);
       }
+      return new FileConversionResult (aSrcFile,
+                                       aDestFiles,
+                                       bWriteError ? EFileConversionStatus.WRITE_ERROR : EFileConversionStatus.SUCCESS,
+                                       aErrorList);
+    }
+    catch (final RuntimeException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Internal error converting CII file: " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return new FileConversionResult (aSrcFile, aDestFiles, EFileConversionStatus.CONVERSION_ERROR, aErrorList);
+    }
+  }
+
+  @Nonnull
+  private static EFileConversionStatus _convertFileStreaming (@Nonnull final AbstractCIIToUBLConverter <?> aConverter,
+                                                              @Nonnull final File aSrcFile,
+                                                              @Nonnull final File aDestFile,
+                                                              @Nonnull final ErrorList aErrorList)
+  {
+    EFileConversionStatus eStatus;
+    try (final OutputStream aFileOS = Files.newOutputStream (aDestFile.toPath ());
+         final WriteErrorTrackingOutputStream aOS = new WriteErrorTrackingOutputStream (new BufferedOutputStream (aFileOS)))
+    {
+      final ESuccess eSuccess = aConverter.convertStreaming (aSrcFile.toPath (), aOS, aConverter.getSettings (), aErrorList);
+      if (eSuccess.isSuccess ())
+        eStatus = EFileConversionStatus.SUCCESS;
       else
       {
-        final boolean bFormattedOutput = true;
-        final ESuccess eSuccess;
-        if (aUBL instanceof oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType)
+        // The converter reports failed writes to the output stream as
+        // conversion errors
+        eStatus = aOS.hasWriteError () ? EFileConversionStatus.WRITE_ERROR : EFileConversionStatus.CONVERSION_ERROR;
+      }
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to write UBL file: " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      eStatus = EFileConversionStatus.WRITE_ERROR;
+    }
+
+    if (eStatus != EFileConversionStatus.SUCCESS)
+    {
+      // Don't leave an incomplete file behind
+      _deleteIncompleteFiles (new CommonsArrayList <> (aDestFile));
+    }
+    return eStatus;
+  }
+
+  private static void _deleteIncompleteFiles (@Nonnull final List <File> aDestFiles)
+  {
+    for (final File aDestFile : aDestFiles)
+      try
+      {
+        Files.deleteIfExists (aDestFile.toPath ());
+      }
+      catch (final IOException ex)
+      {
+        LOGGER.warn ("Failed to delete incomplete UBL file " + aDestFile.getAbsolutePath ());
+      }
+  }
+
+  private static void _logResult (@Nonnull final FileConversionResult aResult)
+  {
+    final Locale aErrorLocale = Locale.US;
+    switch (aResult.getStatus ())
+    {
+      case SUCCESS:
+        if (LOGGER.isInfoEnabled ())
+          for (final File aDestFile : aResult.getAllDestinationFiles ())
+            LOGGER.info ("Successfully wrote UBL file " + aDestFile.getAbsolutePath ());
+        break;
+      case CONVERSION_ERROR:
+        if (LOGGER.isErrorEnabled ())
+          LOGGER.error ("Failed to convert CII file '" + aResult.getSourceFile ().getAbsolutePath () + "' to UBL:");
+        for (final IError aError : aResult.getErrorList ())
+          LOGGER.error (aError.getAsString (aErrorLocale));
+        break;
+      case WRITE_ERROR:
+        if (LOGGER.isErrorEnabled ())
+          LOGGER.error ("Failed to write UBL file(s) for CII file '" + aResult.getSourceFile ().getAbsolutePath () + "':");
+        for (final IError aError : aResult.getErrorList ())
+          LOGGER.error (aError.getAsString (aErrorLocale));
+        break;
+      default:
+        throw new IllegalStateException ("Unsupported status " + aResult.getStatus ());
+    }
+  }
+
+  @Nonnull
+  private ICommonsList <FileConversionResult> _convertSequential (@Nonnull final CIIToUBLMultiVersionConverter aConverter)
+  {
+    final ICommonsList <FileConversionResult> ret = new CommonsArrayList <> (m_aSourceFiles.size ());
+    for (final File f : m_aSourceFiles)
+    {
+      final FileConversionResult aResult = _convertFile (aConverter, f);
+      _logResult (aResult);
+      ret.add (aResult);
+    }
+    return ret;
+  }
+
+  @Nullable
+  private static ExecutorService _createVirtualThreadExecutor ()
+  {
+    try
+    {
+      // Available since Java 21 only, so it needs to be resolved via
+      // reflection
+      final Method aMethod = Executors.class.getMethod ("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) aMethod.invoke (null);
+    }
+    catch (final ReflectiveOperationException | RuntimeException ex)
+    {
+      return null;
+    }
+  }
+
+  @Nonnull
+  private static ExecutorService _createPlatformThreadExecutor (@Nonnegative final int nThreads)
+  {
+    final AtomicInteger aThreadIndex = new AtomicInteger (0);
+    return Executors.newFixedThreadPool (nThreads, r -> {
+      final Thread t = new Thread (r, "cii2ubl-worker-" + aThreadIndex.incrementAndGet ());
+      t.setDaemon (true);
+      return t;
+    });
+  }
+
+  @Nonnull
+  private ICommonsList <FileConversionResult> _convertParallel (@Nonnull final ExecutorService aES,
+                                                                @Nonnull final CIIToUBLMultiVersionConverter aConverter,
+                                                                @Nullable final Semaphore aOpenFileLimit) throws InterruptedException
+  {
+    try
+    {
+      final ICommonsList <Future <FileConversionResult>> aFutures = new CommonsArrayList <> (m_aSourceFiles.size ());
+      for (final File f : m_aSourceFiles)
+        aFutures.add (aES.submit ( () -> {
+          if (aOpenFileLimit == null)
+            return _convertFile (aConverter, f);
+
+          aOpenFileLimit.acquire ();
+          try
+          {
+            return _convertFile (aConverter, f);
+          }
+          finally
+          {
+            aOpenFileLimit.release ();
+          }
+        }));
+
+      // Collect and log in source file order, so that the output is
+      // deterministic
+      final ICommonsList <FileConversionResult> ret = new CommonsArrayList <> (aFutures.size ());
+      for (final Future <FileConversionResult> aFuture : aFutures)
+      {
+        final FileConversionResult aResult;
+        try
         {
-          eSuccess = UBL21Writer.invoice ()
-                                .setFormattedOutput (bFormattedOutput)
-                                .write ((oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType) aUBL, aDestFile);
+          aResult = aFuture.get ();
         }
-        else
-          if (aUBL instanceof oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType)
+        catch (final ExecutionException ex)
+        {
+          // _convertFile catches all runtime exceptions
+          throw new IllegalStateException ("Unexpected error in conversion worker", ex.getCause ());
+        }
+        _logResult (aResult);
+        ret.add (aResult);
+      }
+      return ret;
+    }
+    finally
+    {
+      aES.shutdownNow ();
+    }
+  }
+
+  @Nonnull
+  private ICommonsList <FileConversionResult> _convertAll (@Nonnull final CIIToUBLMultiVersionConverter aConverter) throws InterruptedException
+  {
+    if (m_eExecutor == EExecutorType.VIRTUAL)
+    {
+      if (m_nMaxOpenFiles < 1)
+        throw new IllegalArgumentException ("Invalid maximum number of open files " + m_nMaxOpenFiles + " provided.");
+
+      final ExecutorService aES = _createVirtualThreadExecutor ();
+      if (aES != null)
+      {
+        if (LOGGER.isDebugEnabled ())
+          LOGGER.debug ("Converting " + m_aSourceFiles.size () + " file(s) using virtual threads with at most " + m_nMaxOpenFiles + " open file(s)");
+
+        return _convertParallel (aES, aConverter, new Semaphore (m_nMaxOpenFiles));
+      }
+      LOGGER.warn ("Virtual threads are not supported by this Java runtime (Java 21 or later is needed). Falling back to platform threads.");
+    }
+
+    final int nThreads = Math.min (_parseThreadCount (m_sThreads), Math.max (m_aSourceFiles.size (), 1));
+    if (LOGGER.isDebugEnabled ())
+      LOGGER.debug ("Converting " + m_aSourceFiles.size () + " file(s) using " + nThreads + " thread(s)");
+
+    if (nThreads == 1)
+      return _convertSequential (aConverter);
+
+    // Avoid that all threads create their own unmarshaller at the same time
+    CIIUnmarshallerPool.getShared (true, m_bFailFast).warmUp (nThreads);
+    return _convertParallel (_createPlatformThreadExecutor (nThreads), aConverter, null);
+  }
+
+  private void _watch () throws IOException, InterruptedException
+  {
+    final ICommonsList <File> aDirs = new CommonsArrayList <> ();
+    for (final File aFile : m_aSourceFiles)
+    {
+      if (!aFile.isDirectory ())
+        throw new CommandLine.ParameterException (m_aSpec.commandLine (), "Only directories can be watched but '" + aFile + "' is none");
+      final File aDir = _normalizeFile (aFile.toPath ());
+      if (aDir.getAbsolutePath ().equals (m_sOutputDir))
+        throw new CommandLine.ParameterException (m_aSpec.commandLine (),
+                                                  "The target directory may not be a watched directory: '" + aDir + "'");
+      aDirs.add (aDir);
+    }
+    if (m_nWatchStableDelay < 0)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "Invalid stable delay " + m_nWatchStableDelay);
+
+    final CIIToUBLMultiVersionConverter aConverter = _createConverter ();
+    ExecutorService aES = null;
+    Function <File, FileConversionResult> aFileConverter = f -> _convertFile (aConverter, f);
+    if (m_eExecutor == EExecutorType.VIRTUAL)
+    {
+      if (m_nMaxOpenFiles < 1)
+        throw new IllegalArgumentException ("Invalid maximum number of open files " + m_nMaxOpenFiles + " provided.");
+
+      aES = _createVirtualThreadExecutor ();
+      if (aES != null)
+      {
+        if (LOGGER.isInfoEnabled ())
+          LOGGER.info ("Watching " + aDirs + " using virtual threads with at most " + m_nMaxOpenFiles + " open file(s)");
+
+        final Semaphore aOpenFileLimit = new Semaphore (m_nMaxOpenFiles);
+        aFileConverter = f -> {
+          // The watcher cannot handle an interruption here
+          aOpenFileLimit.acquireUninterruptibly ();
+          try
           {
-            eSuccess = UBL21Writer.creditNote ()
-                                  .setFormattedOutput (bFormattedOutput)
-                                  .write ((oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType) aUBL, aDestFile);
+            return _convertFile (aConverter, f);
           }
-          else
-            if (aUBL instanceof oasis.names.specification.ubl.schema.xsd.invoice_22.InvoiceType)
-            {
-              eSuccess = UBL22Writer.invoice ()
-                                    .setFormattedOutput (bFormattedOutput)
-                                    .write ((oasis.names.specification.ubl.schema.xsd.invoice_22.InvoiceType) aUBL, aDestFile);
-            }
-            else
-              if (aUBL instanceof oasis.names.specification.ubl.schema.xsd.creditnote_22.CreditNoteType)
-              {
-                eSuccess = UBL22Writer.creditNote ()
-                                      .setFormattedOutput (bFormattedOutput)
-                                      .write ((oasis.names.specification.ubl.schema.xsd.creditnote_22.CreditNoteType) aUBL, aDestFile);
-              }
-              else
-                if (aUBL instanceof oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType)
-                {
-                  eSuccess = UBL23Writer.invoice ()
-                                        .setFormattedOutput (bFormattedOutput)
-                                        .write ((oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType) aUBL, aDestFile);
-                }
-                else
-                  if (aUBL instanceof oasis.names.specification.ubl.schema.xsd.creditnote_23.CreditNoteType)
-                  {
-                    eSuccess = UBL23Writer.creditNote ()
-                                          .setFormattedOutput (bFormattedOutput)
-                                          .write ((oasis.names.specification.ubl.schema.xsd.creditnote_23.CreditNoteType) aUBL, aDestFile);
-                  }
-                  else
-                    throw new IllegalStateException ("Unsupported UBL version '" + m_sUBLVersion + "'");
-
-        if (eSuccess.isSuccess ())
+          finally
+          {
+            aOpenFileLimit.release ();
+          }
+        };
+      }
+      else
+        LOGGER.warn ("Virtual threads are not supported by this Java runtime (Java 21 or later is needed). Falling back to platform threads.");
+    }
+    if (aES == null)
+    {
+      final int nThreads = _parseThreadCount (m_sThreads);
+      CIIUnmarshallerPool.getShared (true, m_bFailFast).warmUp (nThreads);
+      aES = _createPlatformThreadExecutor (nThreads);
+      if (LOGGER.isInfoEnabled ())
+        LOGGER.info ("Watching " + aDirs + " using " + nThreads + " thread(s)");
+    }
+    try
+    {
+      new HotFolderWatcher (aDirs, m_nWatchStableDelay, m_eWatchDone, aFileConverter, CIIToUBLConverter::_logResult, aES).run ();
+    }
+    finally
+    {
+      aES.shutdownNow ();
+    }
+  }
+
+  // doing the business
+  public Integer call () throws Exception
+  {
+    if (m_aSourceFiles == null || m_aSourceFiles.isEmpty ())
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "Missing required parameter: 'source files'");
+    if (m_bFailFast && m_bStreaming)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "The options '--fail-fast' and '--streaming' cannot be combined");
+    if (m_nAttachmentPassthroughThreshold < 0)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (),
+                                                "Invalid attachment passthrough threshold " + m_nAttachmentPassthroughThreshold);
+    if (m_nAttachmentPassthroughThreshold > 0 && !m_bStreaming)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "The option '--attachment-passthrough' requires '--streaming'");
+    if (m_bStreaming && _parseUBLVersions ().size () > 1)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "The option '--streaming' can only create a single UBL version");
+
+    if (m_bWatch && m_bIncremental)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "The options '--watch' and '--incremental' cannot be combined");
+    if (m_bWatch && m_bStats)
+      throw new CommandLine.ParameterException (m_aSpec.commandLine (), "The options '--watch' and '--stats' cannot be combined");
+
+    m_sOutputDir = _normalizeOutputDirectory (m_sOutputDir);
+    if (m_bWatch)
+    {
+      // Runs until the process is terminated
+      _watch ();
+      return Integer.valueOf (EXIT_CODE_SUCCESS);
+    }
+
+    m_aSourceFiles = _normalizeInputFiles (m_aSourceFiles);
+    if (m_bStats)
+      m_aStats = new CIIToUBLConversionStatistics ();
+
+    final CIIToUBLMultiVersionConverter aConverter = _createConverter ();
+    if (m_aStats != null && m_bStreaming)
+      for (final EUBLVersion eVersion : aConverter.getAllVersions ())
+        aConverter.getConverter (eVersion).setConversionListener (m_aStats);
+    ConversionManifest aManifest = null;
+    String sSettingsHash = null;
+    int nSkipped = 0;
+    if (m_bIncremental)
+    {
+      aManifest = ConversionManifest.read (Paths.get (m_sOutputDir, ConversionManifest.FILENAME));
+      sSettingsHash = _getSettingsHash (aConverter);
+      final ICommonsList <File> aChangedFiles = new CommonsArrayList <> ();
+      for (final File f : m_aSourceFiles)
+        if (aManifest.isUpToDate (f, sSettingsHash))
         {
-          if (LOGGER.isInfoEnabled ())
-            LOGGER.info ("Successfully wrote UBL file " + aDestFile.getAbsolutePath ());
+          if (LOGGER.isDebugEnabled ())
+            LOGGER.debug ("Skipping unchanged file=" + f.getAbsolutePath ());
         }
         else
-        {
-          if (LOGGER.isErrorEnabled ())
-            LOGGER.error ("Failed to write UBL file " + aDestFile.getAbsolutePath ());
-        }
+          aChangedFiles.add (f);
+      nSkipped = m_aSourceFiles.size () - aChangedFiles.size ();
+      m_aSourceFiles = aChangedFiles;
+    }
+
+    final ICommonsList <FileConversionResult> aResults = _convertAll (aConverter);
+
+    if (aManifest != null)
+    {
+      for (final FileConversionResult aResult : aResults)
+        if (aResult.isSuccess ())
+          aManifest.put (aResult.getSourceFile (), aResult.getAllDestinationFiles (), sSettingsHash);
+        else
+          aManifest.remove (aResult.getSourceFile ());
+      try
+      {
+        aManifest.write ();
+      }
+      catch (final IOException ex)
+      {
+        // Only means that the files are converted again next time
+        LOGGER.warn ("Failed to write the conversion manifest to '" + m_sOutputDir + "': " + ex.getMessage ());
       }
     }
 
-    return Integer.valueOf (0);
+    // Summary
+    final int nSuccess = aResults.getCount (FileConversionResult::isSuccess);
+    final int nConversionErrors = aResults.getCount (x -> x.getStatus () == EFileConversionStatus.CONVERSION_ERROR);
+    final int nWriteErrors = aResults.getCount (x -> x.getStatus () == EFileConversionStatus.WRITE_ERROR);
+    if (LOGGER.isInfoEnabled ())
+      LOGGER.info ("Processed " +
+                   aResults.size () +
+                   " file(s): " +
+                   nSuccess +
+                   " succeeded, " +
+                   nConversionErrors +
+                   " failed to convert, " +
+                   nWriteErrors +
+                   " failed to write" +
+                   (m_bIncremental ? ", " + nSkipped + " unchanged file(s) skipped" : ""));
+    if (m_aStats != null && LOGGER.isInfoEnabled ())
+      for (final String sLine : StringHelper.getExploded ('\n', m_aStats.getSummary ()))
+        LOGGER.info (sLine);
+
+    if (nConversionErrors > 0)
+      return Integer.valueOf (EXIT_CODE_CONVERSION_ERROR);
+    if (nWriteErrors > 0)
+      return Integer.valueOf (EXIT_CODE_WRITE_ERROR);
+    return Integer.valueOf (EXIT_CODE_SUCCESS);
   }
 
   public static void main (final String [] aArgs)
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsLinkedHashMap;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.StringParser;
+import com.helger.en16931.cii2ubl.CIIToUBLVersion;
+
+/**
+ * The manifest of the incremental mode of the command line client. It
+ * remembers for each converted source file the size, modification time and
+ * content hash, the converter version, a hash of the settings and the created
+ * files. A source file is only converted again, if one of these changed or if
+ * one of the created files is missing.<br>
+ * The manifest is a simple tab separated text file in the target directory.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@NotThreadSafe
+final class ConversionManifest
+{
+  /** The filename of the manifest in the target directory */
+  static final String FILENAME = ".cii2ubl-manifest.tsv";
+
+  private static final String HEADER = "#cii2ubl-manifest-1";
+  private static final char SEPARATOR = '\t';
+  private static final String HASH_ALGORITHM = "SHA-256";
+  private static final Logger LOGGER = LoggerFactory.getLogger (ConversionManifest.class);
+
+  private static final class Entry
+  {
+    private final String m_sSourcePath;
+    private final long m_nSize;
+    private final long m_nLastModified;
+    private final String m_sContentHash;
+    private final String m_sConverterVersion;
+    private final String m_sSettingsHash;
+    private final ICommonsList <String> m_aOutputPaths;
+
+    Entry (@Nonnull final String sSourcePath,
+           @Nonnegative final long nSize,
+           final long nLastModified,
+           @Nonnull final String sContentHash,
+           @Nonnull final String sConverterVersion,
+           @Nonnull final String sSettingsHash,
+           @Nonnull final ICommonsList <String> aOutputPaths)
+    {
+      m_sSourcePath = sSourcePath;
+      m_nSize = nSize;
+      m_nLastModified = nLastModified;
+      m_sContentHash = sContentHash;
+      m_sConverterVersion = sConverterVersion;
+      m_sSettingsHash = sSettingsHash;
+      m_aOutputPaths = aOutputPaths;
+    }
+  }
+
+  private final Path m_aFile;
+  private final ICommonsOrderedMap <String, Entry> m_aEntries = new CommonsLinkedHashMap <> ();
+
+  private ConversionManifest (@Nonnull final Path aFile)
+  {
+    m_aFile = aFile;
+  }
+
+  /**
+   * @return The number of source files in the manifest.
+   */
+  @Nonnegative
+  int size ()
+  {
+    return m_aEntries.size ();
+  }
+
+  @Nonnull
+  private static MessageDigest _createDigest ()
+  {
+    try
+    {
+      return MessageDigest.getInstance (HASH_ALGORITHM);
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("Hash algorithm " + HASH_ALGORITHM + " is not supported", ex);
+    }
+  }
+
+  /**
+   * Get the hash of the provided file content.
+   *
+   * @param aFile
+   *        The file to hash. May not be <code>null</code>.
+   * @return The hex encoded hash and never <code>null</code>.
+   * @throws IOException
+   *         If the file cannot be read
+   */
+  @Nonnull
+  @Nonempty
+  static String getContentHash (@Nonnull final File aFile) throws IOException
+  {
+    final MessageDigest aDigest = _createDigest ();
+    try (final InputStream aIS = Files.newInputStream (aFile.toPath ()))
+    {
+      final byte [] aBuffer = new byte [64 * 1024];
+      int nRead;
+      while ((nRead = aIS.read (aBuffer)) > 0)
+        aDigest.update (aBuffer, 0, nRead);
+    }
+    return StringHelper.getHexEncoded (aDigest.digest ());
+  }
+
+  /**
+   * Get the hash of everything that influences the created files, except for
+   * the source file content.
+   *
+   * @param sSettings
+   *        A stable string representation of the settings. May not be
+   *        <code>null</code>.
+   * @return The hex encoded hash and never <code>null</code>.
+   */
+  @Nonnull
+  @Nonempty
+  static String getSettingsHash (@Nonnull final String sSettings)
+  {
+    return StringHelper.getHexEncoded (_createDigest ().digest (sSettings.getBytes (StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Read the manifest. A missing or unreadable manifest results in an empty
+   * manifest, so that all files are converted.
+   *
+   * @param aFile
+   *        The manifest file. May not be <code>null</code>.
+   * @return The manifest and never <code>null</code>.
+   */
+  @Nonnull
+  static ConversionManifest read (@Nonnull final Path aFile)
+  {
+    final ConversionManifest ret = new ConversionManifest (aFile);
+    if (Files.isRegularFile (aFile))
+    {
+      try (final BufferedReader aReader = Files.newBufferedReader (aFile, StandardCharsets.UTF_8))
+      {
+        String sLine = aReader.readLine ();
+        if (!HEADER.equals (sLine))
+        {
+          LOGGER.warn ("Ignoring manifest " + aFile + " with an unsupported format");
+          return ret;
+        }
+        while ((sLine = aReader.readLine ()) != null)
+        {
+          final ICommonsList <String> aParts = StringHelper.getExploded (SEPARATOR, sLine);
+          if (aParts.size () < 7)
+            continue;
+          final long nSize = StringParser.parseLong (aParts.get (1), -1);
+          final long nLastModified = StringParser.parseLong (aParts.get (2), -1);
+          if (nSize < 0)
+            continue;
+          ret.m_aEntries.put (aParts.get (0),
+                              new Entry (aParts.get (0),
+                                         nSize,
+                                         nLastModified,
+                                         aParts.get (3),
+                                         aParts.get (4),
+                                         aParts.get (5),
+                                         new CommonsArrayList <> (aParts.subList (6, aParts.size ()))));
+        }
+      }
+      catch (final IOException ex)
+      {
+        LOGGER.warn ("Failed to read manifest " + aFile + " - converting all files", ex);
+        ret.m_aEntries.clear ();
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Check if the provided source file was already converted with the same
+   * settings and is unchanged. The content hash is only calculated if the
+   * size is unchanged but the modification time differs.
+   *
+   * @param aSrcFile
+   *        The source file. May not be <code>null</code>.
+   * @param sSettingsHash
+   *        The current settings hash. May not be <code>null</code>.
+   * @return <code>true</code> if the file does not need to be converted
+   *         again.
+   */
+  boolean isUpToDate (@Nonnull final File aSrcFile, @Nonnull final String sSettingsHash)
+  {
+    final Entry aEntry = m_aEntries.get (aSrcFile.getAbsolutePath ());
+    if (aEntry == null)
+      return false;
+    if (!CIIToUBLVersion.BUILD_VERSION.equals (aEntry.m_sConverterVersion) || !sSettingsHash.equals (aEntry.m_sSettingsHash))
+      return false;
+    for (final String sOutputPath : aEntry.m_aOutputPaths)
+      if (!new File (sOutputPath).isFile ())
+        return false;
+
+    final long nSize = aSrcFile.length ();
+    if (nSize != aEntry.m_nSize)
+      return false;
+    final long nLastModified = aSrcFile.lastModified ();
+    if (nLastModified == aEntry.m_nLastModified)
+      return true;
+
+    // Touched but maybe not modified
+    try
+    {
+      if (!getContentHash (aSrcFile).equals (aEntry.m_sContentHash))
+        return false;
+    }
+    catch (final IOException ex)
+    {
+      return false;
+    }
+    m_aEntries.put (aEntry.m_sSourcePath,
+                    new Entry (aEntry.m_sSourcePath,
+                               nSize,
+                               nLastModified,
+                               aEntry.m_sContentHash,
+                               aEntry.m_sConverterVersion,
+                               aEntry.m_sSettingsHash,
+                               aEntry.m_aOutputPaths));
+    return true;
+  }
+
+  /**
+   * Remember a successfully converted source file.
+   *
+   * @param aSrcFile
+   *        The source file. May not be <code>null</code>.
+   * @param aOutputFiles
+   *        All files created from the source file. May not be
+   *        <code>null</code>.
+   * @param sSettingsHash
+   *        The settings hash used. May not be <code>null</code>.
+   */
+  void put (@Nonnull final File aSrcFile, @Nonnull final ICommonsList <File> aOutputFiles, @Nonnull final String sSettingsHash)
+  {
+    final String sSourcePath = aSrcFile.getAbsolutePath ();
+    try
+    {
+      final ICommonsList <String> aOutputPaths = new CommonsArrayList <> (aOutputFiles, File::getAbsolutePath);
+      if (sSourcePath.indexOf (SEPARATOR) >= 0 || aOutputPaths.containsAny (x -> x.indexOf (SEPARATOR) >= 0))
+      {
+        // Cannot be stored
+        m_aEntries.remove (sSourcePath);
+        return;
+      }
+      m_aEntries.put (sSourcePath,
+                      new Entry (sSourcePath,
+                                 aSrcFile.length (),
+                                 aSrcFile.lastModified (),
+                                 getContentHash (aSrcFile),
+                                 CIIToUBLVersion.BUILD_VERSION,
+                                 sSettingsHash,
+                                 aOutputPaths));
+    }
+    catch (final IOException ex)
+    {
+      // Will be converted again next time
+      m_aEntries.remove (sSourcePath);
+    }
+  }
+
+  /**
+   * Forget a source file, e.g. because the conversion failed.
+   *
+   * @param aSrcFile
+   *        The source file. May not be <code>null</code>.
+   */
+  void remove (@Nonnull final File aSrcFile)
+  {
+    m_aEntries.remove (aSrcFile.getAbsolutePath ());
+  }
+
+  /**
+   * Write the manifest. A temporary file is written first and moved over the
+   * old manifest, so that an interrupted run does not leave a broken manifest
+   * behind.
+   *
+   * @throws IOException
+   *         If writing fails
+   */
+  void write () throws IOException
+  {
+    final Path aTempFile = m_aFile.resolveSibling (m_aFile.getFileName () + ".tmp");
+    try (final BufferedWriter aWriter = Files.newBufferedWriter (aTempFile, StandardCharsets.UTF_8))
+    {
+      aWriter.write (HEADER);
+      aWriter.newLine ();
+      for (final Entry aEntry : m_aEntries.values ())
+      {
+        final StringBuilder aSB = new StringBuilder ();
+        aSB.append (aEntry.m_sSourcePath)
+           .append (SEPARATOR)
+           .append (aEntry.m_nSize)
+           .append (SEPARATOR)
+           .append (aEntry.m_nLastModified)
+           .append (SEPARATOR)
+           .append (aEntry.m_sContentHash)
+           .append (SEPARATOR)
+           .append (aEntry.m_sConverterVersion)
+           .append (SEPARATOR)
+           .append (aEntry.m_sSettingsHash);
+        for (final String sOutputPath : aEntry.m_aOutputPaths)
+          aSB.append (SEPARATOR).append (sOutputPath);
+        aWriter.write (aSB.toString ());
+        aWriter.newLine ();
+      }
+    }
+    try
+    {
+      Files.move (aTempFile, m_aFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (final AtomicMoveNotSupportedException ex)
+    {
+      Files.move (aTempFile, m_aFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
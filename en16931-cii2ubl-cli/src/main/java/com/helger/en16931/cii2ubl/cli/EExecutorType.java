@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+/**
+ * The kind of threads used by the command line client to convert files.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public enum EExecutorType
+{
+  /** Classical platform threads with a fixed pool size */
+  PLATFORM,
+  /** One virtual thread per file (Java 21+) */
+  VIRTUAL;
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+/**
+ * The status of a single file conversion in the command line client.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public enum EFileConversionStatus
+{
+  /** Converted and written successfully */
+  SUCCESS,
+  /** Reading or converting the CII file failed */
+  CONVERSION_ERROR,
+  /** The UBL file could not be written */
+  WRITE_ERROR;
+}
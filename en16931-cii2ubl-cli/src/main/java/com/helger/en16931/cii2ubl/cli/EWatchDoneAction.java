@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+/**
+ * What happens with a source file in a watched directory after it was
+ * converted.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public enum EWatchDoneAction
+{
+  /**
+   * Move the file to the sub directory <code>processed</code> or
+   * <code>failed</code> of the watched directory
+   */
+  MOVE,
+  /**
+   * Leave the file where it is and create an empty marker file with the
+   * suffix <code>.done</code> or <code>.failed</code> next to it
+   */
+  MARK;
+}
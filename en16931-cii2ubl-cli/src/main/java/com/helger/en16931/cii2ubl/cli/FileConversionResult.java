@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import java.io.File;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The result of converting a single file in the command line client.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Immutable
+public final class FileConversionResult
+{
+  private final File m_aSourceFile;
+  private final ICommonsList <File> m_aDestinationFiles;
+  private final EFileConversionStatus m_eStatus;
+  private final ErrorList m_aErrorList;
+
+  public FileConversionResult (@Nonnull final File aSourceFile,
+                               @Nonnull @Nonempty final ICommonsList <File> aDestinationFiles,
+                               @Nonnull final EFileConversionStatus eStatus,
+                               @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aSourceFile, "SourceFile");
+    ValueEnforcer.notEmptyNoNullValue (aDestinationFiles, "DestinationFiles");
+    ValueEnforcer.notNull (eStatus, "Status");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+    m_aSourceFile = aSourceFile;
+    m_aDestinationFiles = aDestinationFiles.getClone ();
+    m_eStatus = eStatus;
+    m_aErrorList = aErrorList;
+  }
+
+  @Nonnull
+  public File getSourceFile ()
+  {
+    return m_aSourceFile;
+  }
+
+  /**
+   * @return All destination files, one per created UBL version. Never
+   *         <code>null</code> nor empty.
+   */
+  @Nonnull
+  @Nonempty
+  @ReturnsMutableCopy
+  public ICommonsList <File> getAllDestinationFiles ()
+  {
+    return m_aDestinationFiles.getClone ();
+  }
+
+  @Nonnull
+  public EFileConversionStatus getStatus ()
+  {
+    return m_eStatus;
+  }
+
+  public boolean isSuccess ()
+  {
+    return m_eStatus == EFileConversionStatus.SUCCESS;
+  }
+
+  @Nonnull
+  public ErrorList getErrorList ()
+  {
+    return m_aErrorList;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("SourceFile", m_aSourceFile)
+                                       .append ("DestinationFiles", m_aDestinationFiles)
+                                       .append ("Status", m_eStatus)
+                                       .append ("ErrorList", m_aErrorList)
+                                       .getToString ();
+  }
+}
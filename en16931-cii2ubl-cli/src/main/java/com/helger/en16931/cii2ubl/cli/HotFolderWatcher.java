@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.CommonsLinkedHashMap;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsMap;
+
+/**
+ * Watches directories for new CII files and converts them as soon as they
+ * are no longer written to. A file is considered complete if its size and
+ * modification time did not change for the configured delay. Only files with
+ * the extension <code>.xml</code> are considered, so that temporary files of
+ * the producers are ignored. Sub directories are not watched.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+final class HotFolderWatcher
+{
+  static final String DIR_PROCESSED = "processed";
+  static final String DIR_FAILED = "failed";
+  static final String SUFFIX_DONE = ".done";
+  static final String SUFFIX_FAILED = ".failed";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (HotFolderWatcher.class);
+
+  /**
+   * The last observed state of a file that is not yet stable.
+   */
+  private static final class PendingFile
+  {
+    private long m_nSize = -1;
+    private long m_nLastModified = -1;
+    private long m_nLastChangeNanos;
+  }
+
+  private final ICommonsList <File> m_aDirs;
+  private final long m_nStableDelayMillis;
+  private final EWatchDoneAction m_eDoneAction;
+  private final Function <File, FileConversionResult> m_aConverter;
+  private final Consumer <FileConversionResult> m_aResultHandler;
+  private final ExecutorService m_aES;
+  // Only accessed by the watching thread
+  private final ICommonsMap <Path, PendingFile> m_aPending = new CommonsLinkedHashMap <> ();
+  // Accessed by the watching thread and the conversion threads
+  private final Set <Path> m_aInProgress = ConcurrentHashMap.newKeySet ();
+
+  HotFolderWatcher (@Nonnull final ICommonsList <File> aDirs,
+                    @Nonnegative final long nStableDelayMillis,
+                    @Nonnull final EWatchDoneAction eDoneAction,
+                    @Nonnull final Function <File, FileConversionResult> aConverter,
+                    @Nonnull final Consumer <FileConversionResult> aResultHandler,
+                    @Nonnull final ExecutorService aES)
+  {
+    m_aDirs = aDirs;
+    m_nStableDelayMillis = nStableDelayMillis;
+    m_eDoneAction = eDoneAction;
+    m_aConverter = aConverter;
+    m_aResultHandler = aResultHandler;
+    m_aES = aES;
+  }
+
+  private boolean _isCandidate (@Nonnull final Path aPath)
+  {
+    final String sName = aPath.getFileName ().toString ();
+    if (!sName.toLowerCase (Locale.ROOT).endsWith (".xml"))
+      return false;
+    if (m_aInProgress.contains (aPath) || !Files.isRegularFile (aPath))
+      return false;
+    if (m_eDoneAction == EWatchDoneAction.MARK &&
+        (Files.exists (aPath.resolveSibling (sName + SUFFIX_DONE)) || Files.exists (aPath.resolveSibling (sName + SUFFIX_FAILED))))
+      return false;
+    return true;
+  }
+
+  private void _schedule (@Nonnull final Path aPath)
+  {
+    if (!m_aPending.containsKey (aPath) && _isCandidate (aPath))
+    {
+      final PendingFile aPendingFile = new PendingFile ();
+      aPendingFile.m_nLastChangeNanos = System.nanoTime ();
+      m_aPending.put (aPath, aPendingFile);
+    }
+  }
+
+  private void _scanAll ()
+  {
+    for (final File aDir : m_aDirs)
+      try (final DirectoryStream <Path> aDS = Files.newDirectoryStream (aDir.toPath ()))
+      {
+        for (final Path aPath : aDS)
+          _schedule (aPath);
+      }
+      catch (final IOException ex)
+      {
+        LOGGER.error ("Failed to list directory " + aDir.getAbsolutePath (), ex);
+      }
+  }
+
+  private void _finish (@Nonnull final Path aPath, final boolean bSuccess)
+  {
+    try
+    {
+      final String sName = aPath.getFileName ().toString ();
+      switch (m_eDoneAction)
+      {
+        case MOVE:
+        {
+          final Path aTargetDir = aPath.resolveSibling (bSuccess ? DIR_PROCESSED : DIR_FAILED);
+          Files.createDirectories (aTargetDir);
+          Files.move (aPath, aTargetDir.resolve (sName), StandardCopyOption.REPLACE_EXISTING);
+          break;
+        }
+        case MARK:
+          Files.write (aPath.resolveSibling (sName + (bSuccess ? SUFFIX_DONE : SUFFIX_FAILED)), new byte [0]);
+          break;
+        default:
+          throw new IllegalStateException ("Unsupported action " + m_eDoneAction);
+      }
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.error ("Failed to mark " + aPath.toAbsolutePath () + " as processed", ex);
+    }
+  }
+
+  private void _convert (@Nonnull final Path aPath)
+  {
+    m_aInProgress.add (aPath);
+    // execute instead of submit, so that nothing is swallowed by a Future
+    m_aES.execute ( () -> {
+      try
+      {
+        boolean bSuccess = false;
+        try
+        {
+          final FileConversionResult aResult = m_aConverter.apply (aPath.toFile ());
+          m_aResultHandler.accept (aResult);
+          bSuccess = aResult.isSuccess ();
+        }
+        catch (final RuntimeException ex)
+        {
+          LOGGER.error ("Failed to convert " + aPath.toAbsolutePath (), ex);
+        }
+        // Always move or mark the file, so that it does not stay pending
+        _finish (aPath, bSuccess);
+      }
+      finally
+      {
+        m_aInProgress.remove (aPath);
+      }
+    });
+  }
+
+  private void _processStableFiles ()
+  {
+    final long nNow = System.nanoTime ();
+    final Iterator <Map.Entry <Path, PendingFile>> it = m_aPending.entrySet ().iterator ();
+    while (it.hasNext ())
+    {
+      final Map.Entry <Path, PendingFile> aEntry = it.next ();
+      final Path aPath = aEntry.getKey ();
+      final PendingFile aPendingFile = aEntry.getValue ();
+      try
+      {
+        final long nSize = Files.size (aPath);
+        final long nLastModified = Files.getLastModifiedTime (aPath).toMillis ();
+        if (nSize != aPendingFile.m_nSize || nLastModified != aPendingFile.m_nLastModified)
+        {
+          // Still written
+          aPendingFile.m_nSize = nSize;
+          aPendingFile.m_nLastModified = nLastModified;
+          aPendingFile.m_nLastChangeNanos = nNow;
+        }
+        else
+          if (TimeUnit.NANOSECONDS.toMillis (nNow - aPendingFile.m_nLastChangeNanos) >= m_nStableDelayMillis)
+          {
+            it.remove ();
+            _convert (aPath);
+          }
+      }
+      catch (final IOException ex)
+      {
+        // Deleted or renamed in the meantime
+        it.remove ();
+      }
+    }
+  }
+
+  /**
+   * Watch the directories until the thread is interrupted. Files already
+   * contained in the directories are converted as well.
+   *
+   * @throws IOException
+   *         If the watch service cannot be created
+   * @throws InterruptedException
+   *         If the thread was interrupted
+   */
+  void run () throws IOException, InterruptedException
+  {
+    try (final WatchService aWS = FileSystems.getDefault ().newWatchService ())
+    {
+      final ICommonsMap <WatchKey, Path> aKeys = new CommonsHashMap <> ();
+      for (final File aDir : m_aDirs)
+        aKeys.put (aDir.toPath ()
+                       .register (aWS, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY),
+                   aDir.toPath ());
+
+      // Register first, so that no file is missed
+      _scanAll ();
+
+      // Check the pending files a few times per stable delay
+      final long nPollMillis = Math.max (10, Math.min (m_nStableDelayMillis / 4, 250));
+      while (true)
+      {
+        final WatchKey aKey = m_aPending.isEmpty () ? aWS.take () : aWS.poll (nPollMillis, TimeUnit.MILLISECONDS);
+        if (aKey != null)
+        {
+          final Path aDir = aKeys.get (aKey);
+          for (final WatchEvent <?> aEvent : aKey.pollEvents ())
+          {
+            if (aEvent.kind () == StandardWatchEventKinds.OVERFLOW)
+              _scanAll ();
+            else
+              if (aDir != null)
+                _schedule (aDir.resolve ((Path) aEvent.context ()));
+          }
+          if (!aKey.reset ())
+            LOGGER.warn ("Directory " + aDir + " can no longer be watched");
+        }
+        _processStableFiles ();
+      }
+    }
+  }
+}
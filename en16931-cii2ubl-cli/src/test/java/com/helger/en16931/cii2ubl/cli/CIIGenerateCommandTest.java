@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.io.file.FileOperations;
+import com.helger.commons.io.file.SimpleFileIO;
+
+import picocli.CommandLine;
+
+/**
+ * Test class for class {@link CIIGenerateCommand}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIGenerateCommandTest
+{
+  @Test
+  public void testGenerate () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-generate");
+    try
+    {
+      final Path aDir1 = aDir.resolve ("run1");
+      final Path aDir2 = aDir.resolve ("run2");
+      // The target directory is created
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS,
+                    CIIToUBLConverterTest.run ("generate", "-t", aDir1.toString (), "--count", "3", "--seed", "5", "--lines", "2-4"));
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS,
+                    CIIToUBLConverterTest.run ("generate", "-t", aDir2.toString (), "--count", "3", "--seed", "5", "--lines", "2-4"));
+
+      final String [] aNames = aDir1.toFile ().list ();
+      Arrays.sort (aNames);
+      assertArrayEquals (new String [] { "generated-cii-5.xml", "generated-cii-6.xml", "generated-cii-7.xml" }, aNames);
+
+      // Same options - same files
+      final ICommonsList <File> aFiles = new CommonsArrayList <> ();
+      for (final String sName : aNames)
+      {
+        final File aFile = aDir1.resolve (sName).toFile ();
+        final byte [] aBytes = SimpleFileIO.getAllFileBytes (aFile);
+        assertTrue (sName, aBytes.length > 0);
+        assertArrayEquals (sName, aBytes, SimpleFileIO.getAllFileBytes (aDir2.resolve (sName).toFile ()));
+        aFiles.add (aFile);
+      }
+      // Different seeds - different files
+      assertFalse (Arrays.equals (SimpleFileIO.getAllFileBytes (aFiles.get (0)), SimpleFileIO.getAllFileBytes (aFiles.get (1))));
+
+      // The generated files can be converted
+      final Path aTargetDir = Files.createDirectory (aDir.resolve ("ubl"));
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS, CIIToUBLConverterTest.run (CIIToUBLConverterTest.getArgs (aTargetDir, aFiles)));
+      assertEquals (3, aTargetDir.toFile ().list ().length);
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testInvalidOptions () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-generate");
+    try
+    {
+      for (final String sLines : new String [] { "0", "4-2", "bla", "1-x" })
+        assertEquals (sLines, CommandLine.ExitCode.USAGE, CIIToUBLConverterTest.run ("generate", "-t", aDir.toString (), "--lines", sLines));
+      assertEquals (CommandLine.ExitCode.USAGE, CIIToUBLConverterTest.run ("generate", "-t", aDir.toString (), "--tax-categories", "0"));
+      // Nothing was created
+      assertEquals (0, aDir.toFile ().list ().length);
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+}
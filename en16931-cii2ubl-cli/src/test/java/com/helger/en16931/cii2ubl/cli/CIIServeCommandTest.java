@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Test;
+
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.io.stream.StreamHelper;
+import com.sun.net.httpserver.HttpServer;
+
+import picocli.CommandLine;
+
+/**
+ * Test class for class {@link CIIServeCommand}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIServeCommandTest
+{
+  private static final File TEST_FILE = new File ("src/test/resources/CII_example1.xml");
+
+  private static final class Response
+  {
+    private final int m_nStatus;
+    private final String m_sBody;
+
+    Response (final int nStatus, @Nonnull final String sBody)
+    {
+      m_nStatus = nStatus;
+      m_sBody = sBody;
+    }
+  }
+
+  @Nonnull
+  private static Response _send (@Nonnull final String sMethod,
+                                 @Nonnull final String sURL,
+                                 @Nullable final byte [] aBody) throws IOException
+  {
+    final HttpURLConnection aConn = (HttpURLConnection) new URL (sURL).openConnection ();
+    try
+    {
+      aConn.setRequestMethod (sMethod);
+      if (aBody != null)
+      {
+        aConn.setDoOutput (true);
+        aConn.setRequestProperty ("Content-Type", "application/xml");
+        try (final OutputStream aOS = aConn.getOutputStream ())
+        {
+          aOS.write (aBody);
+        }
+      }
+      final int nStatus = aConn.getResponseCode ();
+      final InputStream aIS = nStatus < 400 ? aConn.getInputStream () : aConn.getErrorStream ();
+      final byte [] aResponse = aIS == null ? new byte [0] : StreamHelper.getAllBytes (aIS);
+      return new Response (nStatus, new String (aResponse, StandardCharsets.UTF_8));
+    }
+    finally
+    {
+      aConn.disconnect ();
+    }
+  }
+
+  @Test
+  public void testServe () throws Exception
+  {
+    final CIIServeCommand aCmd = new CIIServeCommand ();
+    // Use an ephemeral port
+    new CommandLine (aCmd).parseArgs ("--port", "0", "--threads", "1");
+    final HttpServer aServer = aCmd.startServer ();
+    try
+    {
+      final String sBaseURL = "http://127.0.0.1:" + aServer.getAddress ().getPort ();
+      final byte [] aCII = SimpleFileIO.getAllFileBytes (TEST_FILE);
+
+      Response aResponse = _send ("POST", sBaseURL + CIIServeCommand.PATH_CONVERT + "?ubl=2.3", aCII);
+      assertEquals (aResponse.m_sBody, 200, aResponse.m_nStatus);
+      assertTrue (aResponse.m_sBody, aResponse.m_sBody.contains (">12115118</"));
+
+      // Default version
+      aResponse = _send ("POST", sBaseURL + CIIServeCommand.PATH_CONVERT, aCII);
+      assertEquals (aResponse.m_sBody, 200, aResponse.m_nStatus);
+      assertTrue (aResponse.m_sBody, aResponse.m_sBody.contains (">12115118</"));
+
+      // Invalid CII
+      aResponse = _send ("POST", sBaseURL + CIIServeCommand.PATH_CONVERT, "<bla/>".getBytes (StandardCharsets.UTF_8));
+      assertEquals (422, aResponse.m_nStatus);
+      assertTrue (aResponse.m_sBody.length () > 0);
+
+      assertEquals (400, _send ("POST", sBaseURL + CIIServeCommand.PATH_CONVERT + "?ubl=1.0", aCII).m_nStatus);
+      assertEquals (400, _send ("POST", sBaseURL + CIIServeCommand.PATH_CONVERT + "?mode=bla", aCII).m_nStatus);
+      assertEquals (404, _send ("POST", sBaseURL + CIIServeCommand.PATH_CONVERT + "/sub", aCII).m_nStatus);
+      assertEquals (405, _send ("GET", sBaseURL + CIIServeCommand.PATH_CONVERT, null).m_nStatus);
+    }
+    finally
+    {
+      aServer.stop (0);
+      ((ExecutorService) aServer.getExecutor ()).shutdownNow ();
+    }
+  }
+
+  @Test
+  public void testMaxRequestSize () throws Exception
+  {
+    final CIIServeCommand aCmd = new CIIServeCommand ();
+    new CommandLine (aCmd).parseArgs ("--port", "0", "--threads", "1", "--max-request-size", "100");
+    final HttpServer aServer = aCmd.startServer ();
+    try
+    {
+      final String sURL = "http://127.0.0.1:" + aServer.getAddress ().getPort () + CIIServeCommand.PATH_CONVERT;
+      assertEquals (413, _send ("POST", sURL, SimpleFileIO.getAllFileBytes (TEST_FILE)).m_nStatus);
+    }
+    finally
+    {
+      aServer.stop (0);
+      ((ExecutorService) aServer.getExecutor ()).shutdownNow ();
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.io.file.FileOperations;
+import com.helger.commons.io.file.SimpleFileIO;
+
+import picocli.CommandLine;
+
+/**
+ * Test class for class {@link CIIToUBLConverter}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLConverterTest
+{
+  private static final File TEST_FILE = new File ("src/test/resources/CII_example1.xml");
+
+  static int run (@Nonnull final String... aArgs)
+  {
+    return new CommandLine (new CIIToUBLConverter ()).setCaseInsensitiveEnumValuesAllowed (true).execute (aArgs);
+  }
+
+  @Nonnull
+  static ICommonsList <File> createSourceFiles (@Nonnull final Path aDir, final int nCount) throws Exception
+  {
+    final byte [] aBytes = SimpleFileIO.getAllFileBytes (TEST_FILE);
+    final ICommonsList <File> ret = new CommonsArrayList <> ();
+    for (int i = 0; i < nCount; ++i)
+    {
+      final File aFile = aDir.resolve ("source" + i + ".xml").toFile ();
+      SimpleFileIO.writeFile (aFile, aBytes);
+      ret.add (aFile);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  static String [] getArgs (@Nonnull final Path aTargetDir,
+                            @Nonnull final ICommonsList <File> aSourceFiles,
+                            @Nonnull final String... aOptions)
+  {
+    final ICommonsList <String> ret = new CommonsArrayList <> (aOptions);
+    ret.add ("-t");
+    ret.add (aTargetDir.toString ());
+    for (final File aFile : aSourceFiles)
+      ret.add (aFile.getAbsolutePath ());
+    return ret.toArray (new String [0]);
+  }
+
+  @Test
+  public void testSuccess () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-cli");
+    try
+    {
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS, run ("-t", aDir.toString (), TEST_FILE.getAbsolutePath ()));
+      final File aDestFile = aDir.resolve ("CII_example1-ubl.xml").toFile ();
+      assertTrue (aDestFile.isFile ());
+      assertTrue (aDestFile.length () > 0);
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testConversionError () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-cli");
+    try
+    {
+      final File aSrcFile = aDir.resolve ("invalid.xml").toFile ();
+      SimpleFileIO.writeFile (aSrcFile, "<bla/>".getBytes (StandardCharsets.UTF_8));
+      final File aTargetDir = aDir.resolve ("target").toFile ();
+      assertTrue (aTargetDir.mkdir ());
+
+      // Valid and invalid file - the conversion error wins
+      assertEquals (CIIToUBLConverter.EXIT_CODE_CONVERSION_ERROR,
+                    run ("-t", aTargetDir.getAbsolutePath (), TEST_FILE.getAbsolutePath (), aSrcFile.getAbsolutePath ()));
+      assertTrue (new File (aTargetDir, "CII_example1-ubl.xml").isFile ());
+      assertFalse (new File (aTargetDir, "invalid-ubl.xml").exists ());
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testWriteError () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-cli");
+    try
+    {
+      // The target "directory" is a regular file
+      final File aTargetFile = aDir.resolve ("target").toFile ();
+      SimpleFileIO.writeFile (aTargetFile, "x".getBytes (StandardCharsets.UTF_8));
+
+      assertEquals (CIIToUBLConverter.EXIT_CODE_WRITE_ERROR, run ("-t", aTargetFile.getAbsolutePath (), TEST_FILE.getAbsolutePath ()));
+      assertEquals (CIIToUBLConverter.EXIT_CODE_WRITE_ERROR,
+                    run ("--streaming", "-t", aTargetFile.getAbsolutePath (), TEST_FILE.getAbsolutePath ()));
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testUsageError ()
+  {
+    // Picocli reports usage errors with exit code 2 as well
+    assertEquals (CommandLine.ExitCode.USAGE, run ());
+    assertEquals (CommandLine.ExitCode.USAGE, run ("--fail-fast", "--streaming", TEST_FILE.getAbsolutePath ()));
+    assertEquals (CommandLine.ExitCode.USAGE, run ("--attachment-passthrough", "10", TEST_FILE.getAbsolutePath ()));
+    assertEquals (CommandLine.ExitCode.USAGE, run ("--threads"));
+  }
+
+  @Test
+  public void testParallelEqualsSequential () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-cli");
+    try
+    {
+      final ICommonsList <File> aSrcFiles = createSourceFiles (aDir, 8);
+      final Path aSeqDir = Files.createDirectory (aDir.resolve ("seq"));
+      final Path aParDir = Files.createDirectory (aDir.resolve ("par"));
+
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS, run (getArgs (aSeqDir, aSrcFiles, "--threads", "1")));
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS, run (getArgs (aParDir, aSrcFiles, "--threads", "4")));
+
+      for (int i = 0; i < aSrcFiles.size (); ++i)
+      {
+        final String sName = "source" + i + "-ubl.xml";
+        final byte [] aSeq = SimpleFileIO.getAllFileBytes (aSeqDir.resolve (sName).toFile ());
+        assertTrue (sName, aSeq.length > 0);
+        assertArrayEquals (sName, aSeq, SimpleFileIO.getAllFileBytes (aParDir.resolve (sName).toFile ()));
+      }
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testInvalidThreads ()
+  {
+    assertEquals (CIIToUBLConverter.EXIT_CODE_CONVERSION_ERROR, run ("--threads", "0", TEST_FILE.getAbsolutePath ()));
+    assertEquals (CIIToUBLConverter.EXIT_CODE_CONVERSION_ERROR, run ("--threads", "bla", TEST_FILE.getAbsolutePath ()));
+  }
+
+  @Test (timeout = 60_000)
+  public void testVirtualExecutor () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-cli");
+    try
+    {
+      final ICommonsList <File> aSrcFiles = createSourceFiles (aDir, 6);
+      // A failing file must release its permit as well
+      final File aInvalidFile = aDir.resolve ("invalid.xml").toFile ();
+      SimpleFileIO.writeFile (aInvalidFile, "<bla/>".getBytes (StandardCharsets.UTF_8));
+      aSrcFiles.add (1, aInvalidFile);
+      final Path aSeqDir = Files.createDirectory (aDir.resolve ("seq"));
+      final Path aVirtualDir = Files.createDirectory (aDir.resolve ("virtual"));
+
+      assertEquals (CIIToUBLConverter.EXIT_CODE_CONVERSION_ERROR, run (getArgs (aSeqDir, aSrcFiles)));
+      // Falls back to platform threads before Java 21
+      assertEquals (CIIToUBLConverter.EXIT_CODE_CONVERSION_ERROR,
+                    run (getArgs (aVirtualDir, aSrcFiles, "--executor", "virtual", "--max-open-files", "1", "--threads", "3")));
+
+      for (int i = 0; i < 6; ++i)
+      {
+        final String sName = "source" + i + "-ubl.xml";
+        final byte [] aSeq = SimpleFileIO.getAllFileBytes (aSeqDir.resolve (sName).toFile ());
+        assertTrue (sName, aSeq.length > 0);
+        assertArrayEquals (sName, aSeq, SimpleFileIO.getAllFileBytes (aVirtualDir.resolve (sName).toFile ()));
+      }
+      assertFalse (aVirtualDir.resolve ("invalid-ubl.xml").toFile ().exists ());
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testInvalidMaxOpenFiles ()
+  {
+    assertEquals (CIIToUBLConverter.EXIT_CODE_CONVERSION_ERROR,
+                  run ("--executor", "VIRTUAL", "--max-open-files", "0", TEST_FILE.getAbsolutePath ()));
+    // Unknown executor type
+    assertEquals (CommandLine.ExitCode.USAGE, run ("--executor", "FIBER", TEST_FILE.getAbsolutePath ()));
+  }
+
+  @Test
+  public void testMultipleVersions () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-cli");
+    try
+    {
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS, run ("--ubl", "2.1,2.3", "-t", aDir.toString (), TEST_FILE.getAbsolutePath ()));
+      final byte [] aUBL21 = SimpleFileIO.getAllFileBytes (aDir.resolve ("CII_example1-ubl-2.1.xml").toFile ());
+      final byte [] aUBL23 = SimpleFileIO.getAllFileBytes (aDir.resolve ("CII_example1-ubl-2.3.xml").toFile ());
+      assertTrue (aUBL21.length > 0);
+      assertTrue (aUBL23.length > 0);
+      assertFalse (aDir.resolve ("CII_example1-ubl.xml").toFile ().exists ());
+
+      // Only a single version can be streamed
+      final Path aStreamingDir = Files.createDirectory (aDir.resolve ("streaming"));
+      assertEquals (CommandLine.ExitCode.USAGE,
+                    run ("--streaming", "--ubl", "2.1,2.3", "-t", aStreamingDir.toString (), TEST_FILE.getAbsolutePath ()));
+      assertEquals (0, aStreamingDir.toFile ().list ().length);
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+}
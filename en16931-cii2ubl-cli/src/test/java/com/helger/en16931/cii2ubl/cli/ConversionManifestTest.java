@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.io.file.FileOperations;
+import com.helger.commons.io.file.SimpleFileIO;
+
+/**
+ * Test class for class {@link ConversionManifest}.
+ *
+ * @author Philip Helger
+ */
+public final class ConversionManifestTest
+{
+  private static final String SETTINGS_HASH = ConversionManifest.getSettingsHash ("settings");
+
+  @Test
+  public void testReadWrite () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-manifest");
+    try
+    {
+      final File aSrcFile = aDir.resolve ("a.xml").toFile ();
+      SimpleFileIO.writeFile (aSrcFile, "<a/>".getBytes (StandardCharsets.UTF_8));
+      final File aDestFile = aDir.resolve ("a-ubl.xml").toFile ();
+      SimpleFileIO.writeFile (aDestFile, "<b/>".getBytes (StandardCharsets.UTF_8));
+
+      final Path aManifestFile = aDir.resolve (ConversionManifest.FILENAME);
+      ConversionManifest aManifest = ConversionManifest.read (aManifestFile);
+      assertEquals (0, aManifest.size ());
+      assertFalse (aManifest.isUpToDate (aSrcFile, SETTINGS_HASH));
+
+      aManifest.put (aSrcFile, new CommonsArrayList <> (aDestFile), SETTINGS_HASH);
+      assertTrue (aManifest.isUpToDate (aSrcFile, SETTINGS_HASH));
+      aManifest.write ();
+      assertFalse (Files.exists (aDir.resolve (ConversionManifest.FILENAME + ".tmp")));
+
+      aManifest = ConversionManifest.read (aManifestFile);
+      assertEquals (1, aManifest.size ());
+      assertTrue (aManifest.isUpToDate (aSrcFile, SETTINGS_HASH));
+      // Other settings
+      assertFalse (aManifest.isUpToDate (aSrcFile, ConversionManifest.getSettingsHash ("other settings")));
+
+      aManifest.remove (aSrcFile);
+      assertEquals (0, aManifest.size ());
+      assertFalse (aManifest.isUpToDate (aSrcFile, SETTINGS_HASH));
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testChanges () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-manifest");
+    try
+    {
+      final File aSrcFile = aDir.resolve ("a.xml").toFile ();
+      SimpleFileIO.writeFile (aSrcFile, "<a/>".getBytes (StandardCharsets.UTF_8));
+      final File aDestFile = aDir.resolve ("a-ubl.xml").toFile ();
+      SimpleFileIO.writeFile (aDestFile, "<b/>".getBytes (StandardCharsets.UTF_8));
+      final long nLastModified = aSrcFile.lastModified ();
+
+      final ConversionManifest aManifest = ConversionManifest.read (aDir.resolve (ConversionManifest.FILENAME));
+      aManifest.put (aSrcFile, new CommonsArrayList <> (aDestFile), SETTINGS_HASH);
+
+      // Touched only - the content hash is unchanged
+      assertTrue (aSrcFile.setLastModified (nLastModified + 10_000));
+      assertTrue (aManifest.isUpToDate (aSrcFile, SETTINGS_HASH));
+
+      // Same size but different content
+      SimpleFileIO.writeFile (aSrcFile, "<c/>".getBytes (StandardCharsets.UTF_8));
+      assertTrue (aSrcFile.setLastModified (nLastModified + 20_000));
+      assertFalse (aManifest.isUpToDate (aSrcFile, SETTINGS_HASH));
+
+      // Different size, even with the old modification time
+      aManifest.put (aSrcFile, new CommonsArrayList <> (aDestFile), SETTINGS_HASH);
+      SimpleFileIO.writeFile (aSrcFile, "<cc/>".getBytes (StandardCharsets.UTF_8));
+      assertTrue (aSrcFile.setLastModified (nLastModified + 20_000));
+      assertFalse (aManifest.isUpToDate (aSrcFile, SETTINGS_HASH));
+
+      // Deleted output
+      aManifest.put (aSrcFile, new CommonsArrayList <> (aDestFile), SETTINGS_HASH);
+      assertTrue (aManifest.isUpToDate (aSrcFile, SETTINGS_HASH));
+      assertTrue (aDestFile.delete ());
+      assertFalse (aManifest.isUpToDate (aSrcFile, SETTINGS_HASH));
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testUnsupportedFormat () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-manifest");
+    try
+    {
+      final Path aManifestFile = aDir.resolve (ConversionManifest.FILENAME);
+      SimpleFileIO.writeFile (aManifestFile.toFile (), "#something-else\n/a.xml\t4\t0\tx\ty\tz\n".getBytes (StandardCharsets.UTF_8));
+      assertEquals (0, ConversionManifest.read (aManifestFile).size ());
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testIncrementalCommandLine () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-manifest");
+    try
+    {
+      final ICommonsList <File> aSrcFiles = CIIToUBLConverterTest.createSourceFiles (aDir, 2);
+      final Path aTargetDir = Files.createDirectory (aDir.resolve ("target"));
+      final String [] aArgs = CIIToUBLConverterTest.getArgs (aTargetDir, aSrcFiles, "--incremental");
+
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS, CIIToUBLConverterTest.run (aArgs));
+      assertTrue (Files.isRegularFile (aTargetDir.resolve (ConversionManifest.FILENAME)));
+      final File aDestFile0 = aTargetDir.resolve ("source0-ubl.xml").toFile ();
+      final File aDestFile1 = aTargetDir.resolve ("source1-ubl.xml").toFile ();
+      final byte [] aUBL0 = SimpleFileIO.getAllFileBytes (aDestFile0);
+      // Detect if the files are written again
+      final long nOld = aDestFile0.lastModified () - 60_000;
+      assertTrue (aDestFile0.setLastModified (nOld));
+      assertTrue (aDestFile1.setLastModified (nOld));
+
+      // Nothing changed - nothing converted
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS, CIIToUBLConverterTest.run (aArgs));
+      assertEquals (nOld, aDestFile0.lastModified ());
+      assertEquals (nOld, aDestFile1.lastModified ());
+
+      // Touched - rehashed but not converted
+      assertTrue (aSrcFiles.get (0).setLastModified (aSrcFiles.get (0).lastModified () + 10_000));
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS, CIIToUBLConverterTest.run (aArgs));
+      assertEquals (nOld, aDestFile0.lastModified ());
+
+      // Deleted output - only this file is converted again
+      assertTrue (aDestFile1.delete ());
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS, CIIToUBLConverterTest.run (aArgs));
+      assertEquals (nOld, aDestFile0.lastModified ());
+      assertTrue (aDestFile1.isFile ());
+      assertNotEquals (nOld, aDestFile1.lastModified ());
+
+      // Without the manifest everything is converted again, with the same result
+      assertEquals (CIIToUBLConverter.EXIT_CODE_SUCCESS,
+                    CIIToUBLConverterTest.run (CIIToUBLConverterTest.getArgs (aTargetDir, aSrcFiles)));
+      assertNotEquals (nOld, aDestFile0.lastModified ());
+      assertArrayEquals (aUBL0, SimpleFileIO.getAllFileBytes (aDestFile0));
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.FileOperations;
+
+/**
+ * Test class for class {@link HotFolderWatcher}.
+ *
+ * @author Philip Helger
+ */
+public final class HotFolderWatcherTest
+{
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  /**
+   * Remembers how often and with which size each file was converted. Files
+   * starting with "fail" fail to convert.
+   */
+  private static final class MockConverter implements Function <File, FileConversionResult>
+  {
+    private final Map <String, Long> m_aSizes = new ConcurrentHashMap <> ();
+    private final Map <String, Integer> m_aCounts = new ConcurrentHashMap <> ();
+
+    public FileConversionResult apply (@Nonnull final File aFile)
+    {
+      m_aSizes.put (aFile.getName (), Long.valueOf (aFile.length ()));
+      m_aCounts.merge (aFile.getName (), Integer.valueOf (1), (a, b) -> Integer.valueOf (a.intValue () + b.intValue ()));
+      final boolean bFail = aFile.getName ().startsWith ("fail");
+      return new FileConversionResult (aFile,
+                                       new CommonsArrayList <> (),
+                                       bFail ? EFileConversionStatus.CONVERSION_ERROR : EFileConversionStatus.SUCCESS,
+                                       new ErrorList ());
+    }
+  }
+
+  private static void _waitFor (@Nonnull final BooleanSupplier aCondition) throws InterruptedException
+  {
+    final long nEnd = System.currentTimeMillis () + TIMEOUT_MILLIS;
+    while (!aCondition.getAsBoolean ())
+    {
+      assertTrue ("Timeout", System.currentTimeMillis () < nEnd);
+      Thread.sleep (20);
+    }
+  }
+
+  @Nonnull
+  private static Thread _start (@Nonnull final HotFolderWatcher aWatcher)
+  {
+    final Thread t = new Thread ( () -> {
+      try
+      {
+        aWatcher.run ();
+      }
+      catch (final InterruptedException ex)
+      {
+        // Stopped
+      }
+      catch (final Exception ex)
+      {
+        throw new IllegalStateException (ex);
+      }
+    }, "cii2ubl-watcher-test");
+    t.setDaemon (true);
+    t.start ();
+    return t;
+  }
+
+  private static void _write (@Nonnull final Path aPath, @Nonnull final String sContent) throws Exception
+  {
+    Files.write (aPath, sContent.getBytes (StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testMove () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-watch");
+    final ExecutorService aES = Executors.newFixedThreadPool (2);
+    try
+    {
+      // Existing files are converted as well
+      _write (aDir.resolve ("ok1.xml"), "<a/>");
+      _write (aDir.resolve ("fail1.xml"), "<b/>");
+      _write (aDir.resolve ("ignore.txt"), "<c/>");
+
+      final MockConverter aConverter = new MockConverter ();
+      final Thread t = _start (new HotFolderWatcher (new CommonsArrayList <> (aDir.toFile ()),
+                                                     50,
+                                                     EWatchDoneAction.MOVE,
+                                                     aConverter,
+                                                     x -> {},
+                                                     aES));
+      try
+      {
+        // New files
+        _write (aDir.resolve ("ok2.xml"), "<d/>");
+        _write (aDir.resolve ("fail2.XML"), "<e/>");
+
+        final Path aProcessed = aDir.resolve (HotFolderWatcher.DIR_PROCESSED);
+        final Path aFailed = aDir.resolve (HotFolderWatcher.DIR_FAILED);
+        _waitFor ( () -> Files.exists (aProcessed.resolve ("ok1.xml")) &&
+                         Files.exists (aProcessed.resolve ("ok2.xml")) &&
+                         Files.exists (aFailed.resolve ("fail1.xml")) &&
+                         Files.exists (aFailed.resolve ("fail2.XML")));
+        assertFalse (Files.exists (aDir.resolve ("ok1.xml")));
+        assertFalse (Files.exists (aDir.resolve ("fail2.XML")));
+
+        // Not an XML file
+        assertTrue (Files.exists (aDir.resolve ("ignore.txt")));
+        assertNull (aConverter.m_aSizes.get ("ignore.txt"));
+      }
+      finally
+      {
+        t.interrupt ();
+        t.join (TIMEOUT_MILLIS);
+      }
+      assertFalse (t.isAlive ());
+    }
+    finally
+    {
+      aES.shutdownNow ();
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testMark () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-watch");
+    final ExecutorService aES = Executors.newFixedThreadPool (2);
+    try
+    {
+      // Already marked - not converted again
+      _write (aDir.resolve ("old.xml"), "<a/>");
+      _write (aDir.resolve ("old.xml" + HotFolderWatcher.SUFFIX_DONE), "");
+
+      final MockConverter aConverter = new MockConverter ();
+      final Thread t = _start (new HotFolderWatcher (new CommonsArrayList <> (aDir.toFile ()),
+                                                     50,
+                                                     EWatchDoneAction.MARK,
+                                                     aConverter,
+                                                     x -> {},
+                                                     aES));
+      try
+      {
+        _write (aDir.resolve ("ok.xml"), "<b/>");
+        _write (aDir.resolve ("fail.xml"), "<c/>");
+
+        _waitFor ( () -> Files.exists (aDir.resolve ("ok.xml" + HotFolderWatcher.SUFFIX_DONE)) &&
+                         Files.exists (aDir.resolve ("fail.xml" + HotFolderWatcher.SUFFIX_FAILED)));
+        // The files stay where they are
+        assertTrue (Files.exists (aDir.resolve ("ok.xml")));
+        assertTrue (Files.exists (aDir.resolve ("fail.xml")));
+        assertFalse (Files.exists (aDir.resolve ("ok.xml" + HotFolderWatcher.SUFFIX_FAILED)));
+        assertFalse (Files.exists (aDir.resolve ("fail.xml" + HotFolderWatcher.SUFFIX_DONE)));
+
+        // Give the watcher the chance to pick them up again
+        Thread.sleep (300);
+        assertEquals (Integer.valueOf (1), aConverter.m_aCounts.get ("ok.xml"));
+        assertEquals (Integer.valueOf (1), aConverter.m_aCounts.get ("fail.xml"));
+        assertNull (aConverter.m_aSizes.get ("old.xml"));
+      }
+      finally
+      {
+        t.interrupt ();
+        t.join (TIMEOUT_MILLIS);
+      }
+      assertFalse (t.isAlive ());
+    }
+    finally
+    {
+      aES.shutdownNow ();
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testStableDelay () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-watch");
+    final ExecutorService aES = Executors.newFixedThreadPool (2);
+    try
+    {
+      final MockConverter aConverter = new MockConverter ();
+      final Thread t = _start (new HotFolderWatcher (new CommonsArrayList <> (aDir.toFile ()),
+                                                     1000,
+                                                     EWatchDoneAction.MARK,
+                                                     aConverter,
+                                                     x -> {},
+                                                     aES));
+      try
+      {
+        // A slow producer writes the file in chunks
+        final Path aFile = aDir.resolve ("slow.xml");
+        _write (aFile, "0123456789");
+        for (int i = 0; i < 5; ++i)
+        {
+          Thread.sleep (100);
+          Files.write (aFile, "0123456789".getBytes (StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        }
+        // Still within the delay after the last change
+        assertNull (aConverter.m_aSizes.get ("slow.xml"));
+
+        _waitFor ( () -> Files.exists (aDir.resolve ("slow.xml" + HotFolderWatcher.SUFFIX_DONE)));
+        // Converted only once and with the final size
+        assertEquals (Long.valueOf (60), aConverter.m_aSizes.get ("slow.xml"));
+        assertEquals (Integer.valueOf (1), aConverter.m_aCounts.get ("slow.xml"));
+      }
+      finally
+      {
+        t.interrupt ();
+        t.join (TIMEOUT_MILLIS);
+      }
+      assertFalse (t.isAlive ());
+    }
+    finally
+    {
+      aES.shutdownNow ();
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+}
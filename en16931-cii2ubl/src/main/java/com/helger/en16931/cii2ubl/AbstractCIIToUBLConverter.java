@@ -18,40 +18,56 @@
 package com.helger.en16931.cii2ubl;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.helger.cii.d16b.CIID16BReader;
 import com.helger.commons.ValueEnforcer;
 import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.collection.impl.CommonsArrayList;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.collection.impl.ICommonsSet;
-import com.helger.commons.datetime.PDTFromString;
 import com.helger.commons.error.IError;
 import com.helger.commons.error.SingleError;
 import com.helger.commons.error.list.ErrorList;
 import com.helger.commons.error.list.IErrorList;
+import com.helger.commons.io.stream.CountingInputStream;
 import com.helger.commons.math.MathHelper;
+import com.helger.commons.state.ESuccess;
 import com.helger.commons.state.ETriState;
 import com.helger.commons.string.StringHelper;
 import com.helger.commons.traits.IGenericImplTrait;
-import com.helger.jaxb.validation.WrappedCollectingValidationEventHandler;
 
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.InvoiceLineType;
 import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
 import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
 import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
 import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ExchangedDocumentType;
 import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.HeaderTradeSettlementType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.NoteType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
 import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeTransactionType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeAllowanceChargeType;
 import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradePartyType;
 import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeSettlementHeaderMonetarySummationType;
 import un.unece.uncefact.data.standard.unqualifieddatatype._100.AmountType;
@@ -78,6 +94,12 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
   public static final String DEFAULT_CARD_ACCOUNT_NETWORK_ID = "mapped-from-cii";
   public static final boolean DEFAULT_SWAP_QUANTITY_SIGN_IF_NEEDED = true;
   public static final boolean DEFAULT_SWAP_PRICE_SIGN_IF_NEEDED = true;
+  /** By default the lines are always converted sequentially */
+  public static final int DEFAULT_PARALLEL_LINE_THRESHOLD = 0;
+  public static final int DEFAULT_PARALLEL_LINE_CHUNK_SIZE = 1024;
+  public static final boolean DEFAULT_FAIL_FAST = false;
+  /** By default attachments are always decoded */
+  public static final int DEFAULT_ATTACHMENT_PASSTHROUGH_THRESHOLD = 0;
 
   private static final Logger LOGGER = LoggerFactory.getLogger (AbstractCIIToUBLConverter.class);
 
@@ -94,13 +116,10 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
     INVOICE_TYPE_CODES.add ("877");
   }
 
-  private EUBLCreationMode m_eCreationMode = DEFAULT_UBL_CREATION_MODE;
-  private String m_sVATScheme = DEFAULT_VAT_SCHEME;
-  private String m_sCustomizationID = DEFAULT_CUSTOMIZATION_ID;
-  private String m_sProfileID = DEFAULT_PROFILE_ID;
-  private String m_sCardAccountNetworkID = DEFAULT_CARD_ACCOUNT_NETWORK_ID;
-  private boolean m_bSwapQuantitySignIfNeeded = DEFAULT_SWAP_QUANTITY_SIGN_IF_NEEDED;
-  private boolean m_bSwapPriceSignIfNeeded = DEFAULT_SWAP_PRICE_SIGN_IF_NEEDED;
+  // Replaced as a whole by the setters. Volatile, because converters may be
+  // shared between threads after they were configured
+  private volatile CIIToUBLSettings m_aSettings = CIIToUBLSettings.DEFAULT;
+  private volatile ICIIToUBLConversionListener m_aConversionListener;
 
   protected AbstractCIIToUBLConverter ()
   {}
@@ -121,97 +140,197 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
     return true;
   }
 
+  /**
+   * @return The current settings of this converter as an immutable object.
+   *         Never <code>null</code>.
+   * @since 1.4.9
+   */
+  @Nonnull
+  public final CIIToUBLSettings getSettings ()
+  {
+    return m_aSettings;
+  }
+
+  /**
+   * Set all settings at once.
+   *
+   * @param aSettings
+   *        The settings to use. May not be <code>null</code>.
+   * @return this for chaining
+   * @since 1.4.9
+   */
+  @Nonnull
+  public final IMPLTYPE setSettings (@Nonnull final CIIToUBLSettings aSettings)
+  {
+    ValueEnforcer.notNull (aSettings, "Settings");
+    m_aSettings = aSettings;
+    return thisAsT ();
+  }
+
   @Nonnull
   public final EUBLCreationMode getUBLCreationMode ()
   {
-    return m_eCreationMode;
+    return m_aSettings.getUBLCreationMode ();
   }
 
   @Nonnull
   public final IMPLTYPE setUBLCreationMode (@Nonnull final EUBLCreationMode eCreationMode)
   {
-    ValueEnforcer.notNull (eCreationMode, "CreationMode");
-    m_eCreationMode = eCreationMode;
-    return thisAsT ();
+    return setSettings (CIIToUBLSettings.builder (m_aSettings).ublCreationMode (eCreationMode).build ());
   }
 
   @Nonnull
   public final String getVATScheme ()
   {
-    return m_sVATScheme;
+    return m_aSettings.getVATScheme ();
   }
 
   @Nonnull
   public final IMPLTYPE setVATScheme (@Nonnull final String sVATScheme)
   {
-    ValueEnforcer.notNull (sVATScheme, "VATScheme");
-    m_sVATScheme = sVATScheme;
-    return thisAsT ();
+    return setSettings (CIIToUBLSettings.builder (m_aSettings).vatScheme (sVATScheme).build ());
   }
 
   @Nonnull
   public final String getCustomizationID ()
   {
-    return m_sCustomizationID;
+    return m_aSettings.getCustomizationID ();
   }
 
   @Nonnull
   public final IMPLTYPE setCustomizationID (@Nonnull final String sCustomizationID)
   {
-    ValueEnforcer.notNull (sCustomizationID, "CustomizationID");
-    m_sCustomizationID = sCustomizationID;
-    return thisAsT ();
+    return setSettings (CIIToUBLSettings.builder (m_aSettings).customizationID (sCustomizationID).build ());
   }
 
   @Nonnull
   public final String getProfileID ()
   {
-    return m_sProfileID;
+    return m_aSettings.getProfileID ();
   }
 
   @Nonnull
   public final IMPLTYPE setProfileID (@Nonnull final String sProfileID)
   {
-    ValueEnforcer.notNull (sProfileID, "ProfileID");
-    m_sProfileID = sProfileID;
-    return thisAsT ();
+    return setSettings (CIIToUBLSettings.builder (m_aSettings).profileID (sProfileID).build ());
   }
 
   @Nonnull
   public final String getCardAccountNetworkID ()
   {
-    return m_sCardAccountNetworkID;
+    return m_aSettings.getCardAccountNetworkID ();
   }
 
   @Nonnull
   public final IMPLTYPE setCardAccountNetworkID (@Nonnull final String sCardAccountNetworkID)
   {
-    ValueEnforcer.notNull (sCardAccountNetworkID, "CardAccountNetworkID");
-    m_sCardAccountNetworkID = sCardAccountNetworkID;
-    return thisAsT ();
+    return setSettings (CIIToUBLSettings.builder (m_aSettings).cardAccountNetworkID (sCardAccountNetworkID).build ());
   }
 
   public final boolean isSwapQuantitySignIfNeeded ()
   {
-    return m_bSwapQuantitySignIfNeeded;
+    return m_aSettings.isSwapQuantitySignIfNeeded ();
   }
 
   @Nonnull
   public final IMPLTYPE setSwapQuantitySignIfNeeded (final boolean bSwapQuantitySignIfNeeded)
   {
-    m_bSwapQuantitySignIfNeeded = bSwapQuantitySignIfNeeded;
-    return thisAsT ();
+    return setSettings (CIIToUBLSettings.builder (m_aSettings).swapQuantitySignIfNeeded (bSwapQuantitySignIfNeeded).build ());
   }
 
   public final boolean isSwapPriceSignIfNeeded ()
   {
-    return m_bSwapPriceSignIfNeeded;
+    return m_aSettings.isSwapPriceSignIfNeeded ();
   }
 
   @Nonnull
   public final IMPLTYPE setSwapPriceSignIfNeeded (final boolean bSwapPriceSignIfNeeded)
   {
-    m_bSwapPriceSignIfNeeded = bSwapPriceSignIfNeeded;
+    return setSettings (CIIToUBLSettings.builder (m_aSettings).swapPriceSignIfNeeded (bSwapPriceSignIfNeeded).build ());
+  }
+
+  /**
+   * @return <code>true</code> if reading and converting stops on the first
+   *         error.
+   * @since 1.4.9
+   */
+  public final boolean isFailFast ()
+  {
+    return m_aSettings.isFailFast ();
+  }
+
+  /**
+   * Stop reading and converting on the first error. In case of an error, no
+   * UBL document is returned and the error list only contains the errors up to
+   * the point where the conversion was stopped. See {@link CIIToUBLSettings.Builder#failFast(boolean)}
+   * for the details.
+   *
+   * @param bFailFast
+   *        <code>true</code> to stop on the first error, <code>false</code> to
+   *        collect all errors.
+   * @return this for chaining
+   * @since 1.4.9
+   */
+  @Nonnull
+  public final IMPLTYPE setFailFast (final boolean bFailFast)
+  {
+    return setSettings (CIIToUBLSettings.builder (m_aSettings).failFast (bFailFast).build ());
+  }
+
+  /**
+   * @return The attachment store used to deduplicate and externalize embedded
+   *         attachments. May be <code>null</code>.
+   * @since 1.4.9
+   */
+  @Nullable
+  public final CIIToUBLAttachmentStore getAttachmentStore ()
+  {
+    return m_aSettings.getAttachmentStore ();
+  }
+
+  /**
+   * Set the attachment store used to deduplicate and externalize embedded
+   * attachments.
+   *
+   * @param aAttachmentStore
+   *        The attachment store to use. May be <code>null</code> to embed all
+   *        attachments as they are.
+   * @return this for chaining
+   * @since 1.4.9
+   */
+  @Nonnull
+  public final IMPLTYPE setAttachmentStore (@Nullable final CIIToUBLAttachmentStore aAttachmentStore)
+  {
+    return setSettings (CIIToUBLSettings.builder (m_aSettings).attachmentStore (aAttachmentStore).build ());
+  }
+
+  /**
+   * @return The listener that is informed about each conversion that reads
+   *         the CII itself. May be <code>null</code>.
+   * @since 1.4.9
+   */
+  @Nullable
+  public final ICIIToUBLConversionListener getConversionListener ()
+  {
+    return m_aConversionListener;
+  }
+
+  /**
+   * Set the listener that is informed about each conversion that reads the
+   * CII itself, e.g. {@link #convertCIItoUBL(File, ErrorList)} or
+   * {@link #convert(InputStream, OutputStream, ErrorList)}. Conversions of
+   * already parsed CII documents are not reported.
+   *
+   * @param aConversionListener
+   *        The listener to use. May be <code>null</code> to disable it.
+   * @return this for chaining
+   * @since 1.4.9
+   * @see CIIToUBLConversionStatistics
+   */
+  @Nonnull
+  public final IMPLTYPE setConversionListener (@Nullable final ICIIToUBLConversionListener aConversionListener)
+  {
+    m_aConversionListener = aConversionListener;
     return thisAsT ();
   }
 
@@ -269,24 +388,22 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
     }
   }
 
+  /**
+   * Parse a date string. See {@link CIIDateParser} for details.
+   *
+   * @param sDate
+   *        The date string to parse. May be <code>null</code>.
+   * @param sFormat
+   *        The UNTDID 2379 format code. Defaults to "102" if empty.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if no date was provided or if it could not be
+   *         parsed.
+   */
   @Nullable
   protected static LocalDate parseDate (@Nullable final String sDate, @Nullable final String sFormat, @Nonnull final IErrorList aErrorList)
   {
-    if (StringHelper.hasNoText (sDate))
-      return null;
-
-    // Default to 102
-    final String sRealFormat = StringHelper.getNotEmpty (sFormat, "102");
-    final String sPattern = _getDatePattern (sRealFormat, aErrorList);
-    if (sPattern == null)
-      return null;
-
-    // Try to parse it
-    final LocalDate aDate = PDTFromString.getLocalDateFromString (sDate, sPattern);
-    if (aDate == null)
-      aErrorList.add (_buildError (null, "Failed to parse the date '" + sDate + "' using format '" + sRealFormat + "'"));
-
-    return aDate;
+    return CIIDateParser.parseDate (sDate, sFormat, aErrorList);
   }
 
   @Nullable
@@ -458,6 +575,101 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
     return ret;
   }
 
+  /**
+   * @param aID
+   *        CII ID. May be <code>null</code>.
+   * @return The provided ID if it has a non-empty value, <code>null</code>
+   *         otherwise.
+   * @since 1.4.9
+   */
+  @Nullable
+  protected static IDType _getNonEmpty (@Nullable final IDType aID)
+  {
+    return aID != null && StringHelper.hasText (aID.getValue ()) ? aID : null;
+  }
+
+  /**
+   * @param aText
+   *        CII text. May be <code>null</code>.
+   * @return The provided text if it has a non-empty value, <code>null</code>
+   *         otherwise.
+   * @since 1.4.9
+   */
+  @Nullable
+  protected static TextType _getNonEmpty (@Nullable final TextType aText)
+  {
+    return aText != null && StringHelper.hasText (aText.getValue ()) ? aText : null;
+  }
+
+  /**
+   * @param aCode
+   *        CII code. May be <code>null</code>.
+   * @return The provided code if it has a non-empty value, <code>null</code>
+   *         otherwise.
+   * @since 1.4.9
+   */
+  @Nullable
+  protected static CodeType _getNonEmpty (@Nullable final CodeType aCode)
+  {
+    return aCode != null && StringHelper.hasText (aCode.getValue ()) ? aCode : null;
+  }
+
+  /**
+   * Get the text of a CII note as it is used for a UBL note. A subject code is
+   * prefixed in the form <code>#code#</code>.
+   *
+   * @param aNote
+   *        CII note. May not be <code>null</code>.
+   * @return The note text and never <code>null</code>.
+   * @since 1.4.9
+   */
+  @Nonnull
+  protected static String _getNoteText (@Nonnull final NoteType aNote)
+  {
+    final StringBuilder aSB = new StringBuilder ();
+
+    if (StringHelper.hasText (aNote.getSubjectCodeValue ()))
+      aSB.append ('#').append (aNote.getSubjectCodeValue ()).append ('#');
+
+    boolean bFirst = true;
+    for (final TextType aText : aNote.getContent ())
+    {
+      if (aSB.length () > 0 && !bFirst)
+        aSB.append ('\n');
+      aSB.append (aText.getValue ());
+      bFirst = false;
+    }
+    return aSB.toString ();
+  }
+
+  /**
+   * Check if a CII allowance/charge is an allowance or a charge and add an
+   * error if the charge indicator is missing.
+   *
+   * @param aAllowanceCharge
+   *        CII allowance/charge. May not be <code>null</code>.
+   * @param aErrorPath
+   *        The path of the element for the error message. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ETriState#TRUE} for a charge, {@link ETriState#FALSE} for
+   *         an allowance and {@link ETriState#UNDEFINED} if it cannot be
+   *         determined.
+   * @since 1.4.9
+   */
+  @Nonnull
+  protected static ETriState _getChargeIndicator (@Nonnull final TradeAllowanceChargeType aAllowanceCharge,
+                                                  @Nonnull final String [] aErrorPath,
+                                                  @Nonnull final IErrorList aErrorList)
+  {
+    if (aAllowanceCharge.getChargeIndicator () != null)
+      return _parseIndicator (aAllowanceCharge.getChargeIndicator (), aErrorList);
+
+    aErrorList.add (_buildError (aErrorPath, "Failed to determine if " + aErrorPath[aErrorPath.length - 1] + " is an Allowance or a Charge"));
+    return ETriState.UNDEFINED;
+  }
+
   protected static boolean isPaymentMeansCodeCreditTransfer (@Nullable final String s)
   {
     // the EN 16931 XSLT only checks for 30 and 58
@@ -539,6 +751,40 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
                                                @Nonnull final Consumer <BigDecimal> aQuantitySetter,
                                                @Nullable final BigDecimal aPriceAmount,
                                                @Nullable final Consumer <BigDecimal> aPriceAmountSetter)
+  {
+    swapQuantityAndPriceIfNeeded (m_aSettings,
+                                  bLineExtensionAmountIsNegative,
+                                  aQuantity,
+                                  aQuantitySetter,
+                                  aPriceAmount,
+                                  aPriceAmountSetter);
+  }
+
+  /**
+   * The goal is to have a positive price, because of EN validation rule BT-146.
+   * This method fiddles with Quantity and Price to align this as best as
+   * possible.
+   *
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param bLineExtensionAmountIsNegative
+   *        is the line sum negative?
+   * @param aQuantity
+   *        Existing line quantity.
+   * @param aQuantitySetter
+   *        Setter to change line quantity
+   * @param aPriceAmount
+   *        Optional line price amount
+   * @param aPriceAmountSetter
+   *        Optional setter to change line price amount
+   * @since 1.4.9
+   */
+  protected static void swapQuantityAndPriceIfNeeded (@Nonnull final CIIToUBLSettings aSettings,
+                                                      final boolean bLineExtensionAmountIsNegative,
+                                                      @Nonnull final BigDecimal aQuantity,
+                                                      @Nonnull final Consumer <BigDecimal> aQuantitySetter,
+                                                      @Nullable final BigDecimal aPriceAmount,
+                                                      @Nullable final Consumer <BigDecimal> aPriceAmountSetter)
   {
     final boolean bHasPrice = aPriceAmount != null && aPriceAmountSetter != null;
 
@@ -567,12 +813,12 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
           {
             // Non-negative quantity and negative price
             // We need to swap quantity and price
-            if (isSwapQuantitySignIfNeeded ())
+            if (aSettings.isSwapQuantitySignIfNeeded ())
               aQuantitySetter.accept (aQuantity.negate ());
             else
               LOGGER.info ("Swapping of the quantity sign is disabled, so not doing it");
 
-            if (isSwapPriceSignIfNeeded ())
+            if (aSettings.isSwapPriceSignIfNeeded ())
               aPriceAmountSetter.accept (aPriceAmount.negate ());
             else
               LOGGER.info ("Swapping of the price sign is disabled, so not doing it");
@@ -606,12 +852,12 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
         if (bNegQuantity && bNegPrice)
         {
           // If both are negative, swap both signs to make them positive
-          if (isSwapQuantitySignIfNeeded ())
+          if (aSettings.isSwapQuantitySignIfNeeded ())
             aQuantitySetter.accept (aQuantity.negate ());
           else
             LOGGER.info ("Swapping of the quantity sign is disabled, so not doing it");
 
-          if (isSwapPriceSignIfNeeded ())
+          if (aSettings.isSwapPriceSignIfNeeded ())
             aPriceAmountSetter.accept (aPriceAmount.negate ());
           else
             LOGGER.info ("Swapping of the price sign is disabled, so not doing it");
@@ -644,39 +890,57 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
   @Nonnull
   protected static ETriState isInvoiceType (@Nonnull final CrossIndustryInvoiceType aCIIInvoice)
   {
-    ETriState eIsInvoice = ETriState.UNDEFINED;
-
-    // First check TypeCode
-    final String sTypeCode;
+    // TypeCode
     final ExchangedDocumentType aExchangedDoc = aCIIInvoice.getExchangedDocument ();
-    if (aExchangedDoc != null)
-    {
-      sTypeCode = StringHelper.trim (aExchangedDoc.getTypeCodeValue ());
-      if (INVOICE_TYPE_CODES.contains (sTypeCode))
-        eIsInvoice = ETriState.TRUE;
-      else
-        if (CREDIT_NOTE_TYPE_CODES.contains (sTypeCode))
-          eIsInvoice = ETriState.FALSE;
-    }
-    else
-      sTypeCode = null;
+    final String sTypeCode = aExchangedDoc == null ? null : aExchangedDoc.getTypeCodeValue ();
 
-    // Check total
+    // Total
     final SupplyChainTradeTransactionType aTransaction = aCIIInvoice.getSupplyChainTradeTransaction ();
     final HeaderTradeSettlementType aSettlement = aTransaction == null ? null : aTransaction.getApplicableHeaderTradeSettlement ();
     final TradeSettlementHeaderMonetarySummationType aTotal = aSettlement == null ? null
                                                                                   : aSettlement.getSpecifiedTradeSettlementHeaderMonetarySummation ();
     final AmountType aDuePayable = aTotal == null || aTotal.hasNoDuePayableAmountEntries () ? null : aTotal.getDuePayableAmount ().get (0);
 
+    return isInvoiceType (sTypeCode, aDuePayable == null ? null : aDuePayable.getValue ());
+  }
+
+  /**
+   * Determine if a CII document is an invoice or a credit note, based on the
+   * document type code and if that is inconclusive based on the sign of the
+   * due payable amount.
+   *
+   * @param sTypeCode
+   *        The document type code (BT-3). May be <code>null</code>.
+   * @param aDuePayable
+   *        The first due payable amount (BT-115). May be <code>null</code>.
+   * @return {@link ETriState#TRUE} for an invoice, {@link ETriState#FALSE} for
+   *         a credit note and {@link ETriState#UNDEFINED} if it cannot be
+   *         determined.
+   * @since 1.4.9
+   */
+  @Nonnull
+  protected static ETriState isInvoiceType (@Nullable final String sTypeCode, @Nullable final BigDecimal aDuePayable)
+  {
+    ETriState eIsInvoice = ETriState.UNDEFINED;
+
+    // First check TypeCode
+    final String sTrimmedTypeCode = StringHelper.trim (sTypeCode);
+    if (INVOICE_TYPE_CODES.contains (sTrimmedTypeCode))
+      eIsInvoice = ETriState.TRUE;
+    else
+      if (CREDIT_NOTE_TYPE_CODES.contains (sTrimmedTypeCode))
+        eIsInvoice = ETriState.FALSE;
+
+    // Check total
     if (eIsInvoice.isUndefined () && aDuePayable != null)
     {
-      eIsInvoice = ETriState.valueOf (MathHelper.isGE0 (aDuePayable.getValue ()));
+      eIsInvoice = ETriState.valueOf (MathHelper.isGE0 (aDuePayable));
     }
 
     if (eIsInvoice.isUndefined ())
     {
       LOGGER.warn ("Could not determine, if the provided CII document is an Invoice or a CreditNote. TypeCode =is '" +
-                   sTypeCode +
+                   sTrimmedTypeCode +
                    "'; DuePayable = " +
                    aDuePayable);
     }
@@ -688,7 +952,91 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
   }
 
   /**
-   * Convert CII to UBL
+   * @return The shared CII unmarshaller pool matching the fail-fast setting of
+   *         this converter.
+   */
+  @Nonnull
+  private CIIUnmarshallerPool _getCIIPool ()
+  {
+    return CIIUnmarshallerPool.getShared (true, m_aSettings.isFailFast ());
+  }
+
+  /**
+   * Read the CII, convert it to UBL and optionally write the UBL, while
+   * measuring the phases for the conversion listener.
+   *
+   * @param aReader
+   *        The function to read the CII. May not be <code>null</code>.
+   * @param aDocumentBytes
+   *        The supplier for the CII document size. It is invoked after
+   *        reading. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write the UBL to, if there is no error. May be
+   *        <code>null</code> to not write.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The UBL document or <code>null</code> if reading, converting or
+   *         writing failed.
+   */
+  @Nullable
+  private Serializable _readAndConvert (@Nonnull final Function <ErrorList, CrossIndustryInvoiceType> aReader,
+                                        @Nonnull final LongSupplier aDocumentBytes,
+                                        @Nullable @WillNotClose final OutputStream aOS,
+                                        @Nonnull final ErrorList aErrorList)
+  {
+    final ICIIToUBLConversionListener aListener = m_aConversionListener;
+    final int nErrorsBefore = aListener == null ? 0 : aErrorList.getCount (IError::isError);
+    final long nStart = System.nanoTime ();
+
+    final CrossIndustryInvoiceType aCIIInvoice = aReader.apply (aErrorList);
+    final long nRead = System.nanoTime ();
+    Serializable aUBL = null;
+    long nConverted = nRead;
+    long nWritten = nRead;
+    if (aCIIInvoice != null)
+    {
+      aUBL = convertCIItoUBL (aCIIInvoice, aErrorList);
+      nConverted = System.nanoTime ();
+      nWritten = nConverted;
+      if (aOS != null && aUBL != null && aErrorList.containsNoError ())
+      {
+        if (UBLMarshallerPool.getShared ().write (aUBL, aOS, aErrorList).isFailure ())
+          aUBL = null;
+        nWritten = System.nanoTime ();
+      }
+    }
+
+    if (aListener != null)
+    {
+      final int nErrors = aErrorList.getCount (IError::isError) - nErrorsBefore;
+      aListener.onConversion (new CIIToUBLConversionEvent (nRead - nStart,
+                                                           nConverted - nRead,
+                                                           nWritten - nConverted,
+                                                           aDocumentBytes.getAsLong (),
+                                                           aCIIInvoice == null ? CIIToUBLConversionEvent.UNKNOWN
+                                                                               : CIIHeaderModel.getLineCount (aCIIInvoice),
+                                                           Math.max (nErrors, 0),
+                                                           aUBL != null && nErrors <= 0));
+    }
+    return aUBL;
+  }
+
+  @Nullable
+  private Serializable _readAndConvert (@Nonnull @WillNotClose final InputStream aIS,
+                                        @Nullable @WillNotClose final OutputStream aOS,
+                                        @Nonnull final ErrorList aErrorList)
+  {
+    if (m_aConversionListener == null)
+      return _readAndConvert (e -> _getCIIPool ().read (aIS, null, e), () -> CIIToUBLConversionEvent.UNKNOWN, aOS, aErrorList);
+
+    // Count the bytes, as the size is not known in advance
+    final CountingInputStream aCIS = new CountingInputStream (aIS);
+    return _readAndConvert (e -> _getCIIPool ().read (aCIS, null, e), aCIS::getBytesRead, aOS, aErrorList);
+  }
+
+  /**
+   * Convert CII to UBL. The CII file is read with the shared validating
+   * {@link CIIUnmarshallerPool}.
    *
    * @param aFile
    *        Source file with CII to be parsed. May not be <code>null</code>.
@@ -701,13 +1049,257 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
   public Serializable convertCIItoUBL (@Nonnull final File aFile, @Nonnull final ErrorList aErrorList)
   {
     // Parse XML and convert to domain model
-    final CrossIndustryInvoiceType aCIIInvoice = CIID16BReader.crossIndustryInvoice ()
-                                                              .setValidationEventHandler (new WrappedCollectingValidationEventHandler (aErrorList))
-                                                              .read (aFile);
-    if (aCIIInvoice == null)
-      return null;
+    return _readAndConvert (e -> _getCIIPool ().read (aFile, e), aFile::length, null, aErrorList);
+  }
+
+  /**
+   * Convert CII to UBL. The CII file is read with the shared validating
+   * {@link CIIUnmarshallerPool}.
+   *
+   * @param aPath
+   *        Source path with CII to be parsed. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The parsed Invoice or CreditNote as UBL 2.x. May be
+   *         <code>null</code> in case of error.
+   * @since 1.4.9
+   */
+  @Nullable
+  public Serializable convertCIItoUBL (@Nonnull final Path aPath, @Nonnull final ErrorList aErrorList)
+  {
+    return _readAndConvert (e -> _getCIIPool ().read (aPath, e), () -> aPath.toFile ().length (), null, aErrorList);
+  }
+
+  /**
+   * Convert CII to UBL. The CII is read with the shared validating
+   * {@link CIIUnmarshallerPool}.
+   *
+   * @param aIS
+   *        Source input stream with CII to be parsed. May not be
+   *        <code>null</code>. It is not closed by this method.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The parsed Invoice or CreditNote as UBL 2.x. May be
+   *         <code>null</code> in case of error.
+   * @since 1.4.9
+   */
+  @Nullable
+  public Serializable convertCIItoUBL (@Nonnull @WillNotClose final InputStream aIS, @Nonnull final ErrorList aErrorList)
+  {
+    return _readAndConvert (aIS, null, aErrorList);
+  }
+
+  /**
+   * Convert CII to UBL. The CII is read with the shared validating
+   * {@link CIIUnmarshallerPool}.
+   *
+   * @param aBytes
+   *        Source bytes with CII to be parsed. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The parsed Invoice or CreditNote as UBL 2.x. May be
+   *         <code>null</code> in case of error.
+   * @since 1.4.9
+   */
+  @Nullable
+  public Serializable convertCIItoUBL (@Nonnull final byte [] aBytes, @Nonnull final ErrorList aErrorList)
+  {
+    return _readAndConvert (e -> _getCIIPool ().read (aBytes, e), () -> aBytes.length, null, aErrorList);
+  }
+
+  /**
+   * Convert CII to UBL. The CII is read with the shared validating
+   * {@link CIIUnmarshallerPool}.
+   *
+   * @param aBuffer
+   *        Source buffer with CII to be parsed. The content between position
+   *        and limit is used. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The parsed Invoice or CreditNote as UBL 2.x. May be
+   *         <code>null</code> in case of error.
+   * @since 1.4.9
+   */
+  @Nullable
+  public Serializable convertCIItoUBL (@Nonnull final ByteBuffer aBuffer, @Nonnull final ErrorList aErrorList)
+  {
+    return _readAndConvert (e -> _getCIIPool ().read (aBuffer, e), aBuffer::remaining, null, aErrorList);
+  }
+
+  /**
+   * Read CII from the provided input stream, convert it to UBL and write the
+   * result to the provided output stream, without any intermediate files. The
+   * UBL is written with the shared {@link UBLMarshallerPool} and only if the
+   * conversion was successful.
+   *
+   * @param aIS
+   *        Source input stream with CII to be parsed. May not be
+   *        <code>null</code>. It is not closed by this method.
+   * @param aOS
+   *        The output stream to write the UBL to. May not be
+   *        <code>null</code>. It is not closed by this method.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if the UBL was written and no error is
+   *         contained in the error list.
+   * @since 1.4.9
+   */
+  @Nonnull
+  public ESuccess convert (@Nonnull @WillNotClose final InputStream aIS,
+                           @Nonnull @WillNotClose final OutputStream aOS,
+                           @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+
+    final Serializable aUBL = _readAndConvert (aIS, aOS, aErrorList);
+    return ESuccess.valueOf (aUBL != null && aErrorList.containsNoError ());
+  }
+
+  /**
+   * Convert the provided CII file to UBL in a streaming way, using the
+   * settings of this converter. See
+   * {@link #convertStreaming(Path, OutputStream, CIIToUBLSettings, ErrorList)}
+   * for details.
+   *
+   * @param aPath
+   *        Source path with CII to be converted. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write the UBL to. May not be
+   *        <code>null</code>. It is not closed by this method.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if the UBL was written completely and no
+   *         error was added to the error list.
+   * @since 1.4.9
+   */
+  @Nonnull
+  public ESuccess convertStreaming (@Nonnull final Path aPath,
+                                    @Nonnull @WillNotClose final OutputStream aOS,
+                                    @Nonnull final ErrorList aErrorList)
+  {
+    return convertStreaming (aPath, aOS, m_aSettings, aErrorList);
+  }
+
+  /**
+   * Convert the provided CII file to UBL in a streaming way, for invoices with
+   * a huge number of line items. Only the header and a single line item are
+   * kept in memory at a time, and each UBL line is written to the output as
+   * soon as it was converted. The source file is read twice. In contrast to
+   * the other conversion methods, it is <b>not</b> validated against the CII
+   * XML Schema. The UBL output is not indented.<br>
+   * Because the output is written while converting, it may be incomplete if
+   * an error occurs in a line item. In that case the output must be
+   * discarded.<br>
+   * As reading, converting and writing are interleaved, the conversion
+   * listener only receives the total duration (see
+   * {@link CIIToUBLConversionEvent#isInterleaved()}).
+   *
+   * @param aPath
+   *        Source path with CII to be converted. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write the UBL to. May not be
+   *        <code>null</code>. It is not closed by this method.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if the UBL was written completely and no
+   *         error was added to the error list.
+   * @since 1.4.9
+   */
+  @Nonnull
+  public ESuccess convertStreaming (@Nonnull final Path aPath,
+                                    @Nonnull @WillNotClose final OutputStream aOS,
+                                    @Nonnull final CIIToUBLSettings aSettings,
+                                    @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aPath, "Path");
+    ValueEnforcer.notNull (aOS, "OutputStream");
+    ValueEnforcer.notNull (aSettings, "Settings");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final ICIIToUBLConversionListener aListener = m_aConversionListener;
+    if (aListener == null)
+      return CIIToUBLStreamingConverter.convert (this, aPath, aOS, aSettings, null, aErrorList);
+
+    final int nErrorsBefore = aErrorList.getCount (IError::isError);
+    final long nStart = System.nanoTime ();
+    final AtomicInteger aLineCount = new AtomicInteger (CIIToUBLConversionEvent.UNKNOWN);
+    final ESuccess eSuccess = CIIToUBLStreamingConverter.convert (this, aPath, aOS, aSettings, aLineCount::set, aErrorList);
+    final long nDuration = System.nanoTime () - nStart;
+
+    final int nErrors = aErrorList.getCount (IError::isError) - nErrorsBefore;
+    aListener.onConversion (CIIToUBLConversionEvent.createInterleaved (nDuration,
+                                                                       aPath.toFile ().length (),
+                                                                       aLineCount.get (),
+                                                                       Math.max (nErrors, 0),
+                                                                       eSuccess.isSuccess ()));
+    return eSuccess;
+  }
+
+  /**
+   * Convert the provided CII document to UBL and write it directly to the
+   * provided output stream, using the settings of this converter. See
+   * {@link #convertDirect(CrossIndustryInvoiceType, OutputStream, CIIToUBLSettings, ErrorList)}
+   * for details.
+   *
+   * @param aCIIInvoice
+   *        The CII invoice to be converted. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write the UBL to. May not be
+   *        <code>null</code>. It is not closed by this method.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if the UBL was written completely and no
+   *         error was added to the error list.
+   * @since 1.4.9
+   */
+  @Nonnull
+  public ESuccess convertDirect (@Nonnull final CrossIndustryInvoiceType aCIIInvoice,
+                                 @Nonnull @WillNotClose final OutputStream aOS,
+                                 @Nonnull final ErrorList aErrorList)
+  {
+    return convertDirect (aCIIInvoice, aOS, m_aSettings, aErrorList);
+  }
+
+  /**
+   * Convert the provided CII document to UBL and write it directly to the
+   * provided output stream. Only the header is created as a UBL object and
+   * marshalled with JAXB. The lines are written with StAX while walking the
+   * CII line items, so no UBL line objects are created. This is meant for
+   * bulk conversions that only need the serialized UBL. The result is the
+   * same as writing the result of
+   * {@link #convertCIItoUBL(CrossIndustryInvoiceType, CIIToUBLSettings, ErrorList)},
+   * except that the output is not indented.<br>
+   * Because the lines are written while converting, the output may be
+   * incomplete if an error occurs in a line item. In that case the output
+   * must be discarded.
+   *
+   * @param aCIIInvoice
+   *        The CII invoice to be converted. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write the UBL to. May not be
+   *        <code>null</code>. It is not closed by this method.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if the UBL was written completely and no
+   *         error was added to the error list.
+   * @since 1.4.9
+   */
+  @Nonnull
+  public ESuccess convertDirect (@Nonnull final CrossIndustryInvoiceType aCIIInvoice,
+                                 @Nonnull @WillNotClose final OutputStream aOS,
+                                 @Nonnull final CIIToUBLSettings aSettings,
+                                 @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCIIInvoice, "CIIInvoice");
+    ValueEnforcer.notNull (aOS, "OutputStream");
+    ValueEnforcer.notNull (aSettings, "Settings");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
 
-    return convertCIItoUBL (aCIIInvoice, aErrorList);
+    return CIIToUBLDirectConverter.convert (this, aCIIInvoice, aOS, aSettings, aErrorList);
   }
 
   /**
@@ -723,5 +1315,433 @@ public abstract class AbstractCIIToUBLConverter <IMPLTYPE extends AbstractCIIToU
    *         <code>null</code> in case of error.
    */
   @Nullable
-  public abstract Serializable convertCIItoUBL (@Nonnull CrossIndustryInvoiceType aCIIInvoice, @Nonnull ErrorList aErrorList);
+  public Serializable convertCIItoUBL (@Nonnull final CrossIndustryInvoiceType aCIIInvoice, @Nonnull final ErrorList aErrorList)
+  {
+    return convertCIItoUBL (aCIIInvoice, m_aSettings, aErrorList);
+  }
+
+  /**
+   * Convert CII to UBL using the provided settings instead of the settings of
+   * this object. This method does not access any mutable state of this
+   * converter, so that a single converter instance can be shared between
+   * threads.
+   *
+   * @param aCIIInvoice
+   *        The CII invoice to be converted. May not be <code>null</code>.
+   *        Ideally this is a valid CII invoice only and not some handcrafted
+   *        domain object.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The parsed {@link InvoiceType} or {@link CreditNoteType}. May be
+   *         <code>null</code> in case of error.
+   * @since 1.4.9
+   */
+  @Nullable
+  public Serializable convertCIItoUBL (@Nonnull final CrossIndustryInvoiceType aCIIInvoice,
+                                       @Nonnull final CIIToUBLSettings aSettings,
+                                       @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCIIInvoice, "CIIInvoice");
+    ValueEnforcer.notNull (aSettings, "Settings");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final CIIDocumentModel aModel = CIIDocumentModel.create (aCIIInvoice, aSettings, aErrorList);
+    if (aModel == null)
+    {
+      // Mandatory elements are missing
+      return null;
+    }
+    return convertCIItoUBL (aModel, aSettings, aErrorList);
+  }
+
+  /**
+   * Convert CII to UBL based on the already extracted document model. The
+   * version independent information is only extracted once, so the same model
+   * may be used to create multiple UBL versions.
+   *
+   * @param aModel
+   *        The model of the CII document to be converted. May not be
+   *        <code>null</code>.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The created {@link InvoiceType} or {@link CreditNoteType}. May be
+   *         <code>null</code> in case of error.
+   * @since 1.4.9
+   */
+  @Nullable
+  public Serializable convertCIItoUBL (@Nonnull final CIIDocumentModel aModel,
+                                       @Nonnull final CIIToUBLSettings aSettings,
+                                       @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aModel, "Model");
+    ValueEnforcer.notNull (aSettings, "Settings");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final boolean bInvoice = isCreateInvoice (aModel.getHeader (), aSettings.getUBLCreationMode ());
+    final CIIToUBLFlightRecorder.ConvertEvent aEvent = CIIToUBLFlightRecorder.beginConvert ();
+    if (aEvent == null)
+      return _convertCIItoUBL (aModel, bInvoice, aSettings, aErrorList);
+
+    final int nErrorIndex = aErrorList.size ();
+    final Serializable ret = _convertCIItoUBL (aModel, bInvoice, aSettings, aErrorList);
+    aEvent.finish (aModel.getHeader (), getClass (), ret, ret != null && !containsErrorSince (aErrorList, nErrorIndex));
+    return ret;
+  }
+
+  /**
+   * Convert CII to a UBL Invoice or Credit Note, independent of the creation
+   * mode of the settings. This is the common implementation of the
+   * <code>convertToInvoice</code> and <code>convertToCreditNote</code> methods
+   * of the implementations.
+   *
+   * @param aCIIInvoice
+   *        The CII invoice to be converted. May not be <code>null</code>.
+   * @param bInvoice
+   *        <code>true</code> to create an Invoice, <code>false</code> to create
+   *        a Credit Note.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The created UBL document or <code>null</code> in case of error.
+   * @since 1.4.9
+   */
+  @Nullable
+  protected final Serializable convertCIItoUBL (@Nonnull final CrossIndustryInvoiceType aCIIInvoice,
+                                                final boolean bInvoice,
+                                                @Nonnull final CIIToUBLSettings aSettings,
+                                                @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCIIInvoice, "CIIInvoice");
+    ValueEnforcer.notNull (aSettings, "Settings");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final CIIDocumentModel aModel = CIIDocumentModel.create (aCIIInvoice, aSettings, aErrorList);
+    if (aModel == null)
+    {
+      // Mandatory elements are missing or fail-fast stopped the mapping
+      return null;
+    }
+    return _convertCIItoUBL (aModel, bInvoice, aSettings, aErrorList);
+  }
+
+  @Nullable
+  private Serializable _convertCIItoUBL (@Nonnull final CIIDocumentModel aModel,
+                                         final boolean bInvoice,
+                                         @Nonnull final CIIToUBLSettings aSettings,
+                                         @Nonnull final ErrorList aErrorList)
+  {
+    // Errors that existed before don't count
+    final int nErrorIndex = aErrorList.size ();
+    final oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType aUBLInvoice = UBL23Emitter.createInvoice (aModel,
+                                                                                                                     bInvoice,
+                                                                                                                     aSettings,
+                                                                                                                     aErrorList);
+    if (aSettings.isFailFast () && containsErrorSince (aErrorList, nErrorIndex))
+    {
+      // The document is incomplete
+      return null;
+    }
+    return mapDocument (aUBLInvoice, bInvoice);
+  }
+
+  /**
+   * Check if an Invoice or a Credit Note should be created.
+   *
+   * @param aHeader
+   *        The header model of the CII document. May not be <code>null</code>.
+   * @param eMode
+   *        The UBL creation mode to use. May not be <code>null</code>.
+   * @return <code>true</code> to create an Invoice, <code>false</code> to
+   *         create a Credit Note.
+   */
+  static boolean isCreateInvoice (@Nonnull final CIIHeaderModel aHeader, @Nonnull final EUBLCreationMode eMode)
+  {
+    switch (eMode)
+    {
+      case AUTOMATIC:
+        // Default to invoice
+        return aHeader.getInvoiceType ().getAsBooleanValue (true);
+      case INVOICE:
+        return true;
+      case CREDIT_NOTE:
+        return false;
+    }
+    throw new IllegalStateException ("Unsupported creation mode");
+  }
+
+  /**
+   * Map the UBL 2.3 Invoice created by {@link UBL23Emitter} to the UBL version
+   * and document type of this converter.
+   *
+   * @param aUBLInvoice
+   *        The created Invoice. May not be <code>null</code>.
+   * @param bInvoice
+   *        <code>true</code> to map to an Invoice, <code>false</code> to map to
+   *        a Credit Note.
+   * @return The mapped UBL document and never <code>null</code>.
+   */
+  @Nonnull
+  final Serializable mapDocument (@Nonnull final oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType aUBLInvoice,
+                                  final boolean bInvoice)
+  {
+    return bInvoice ? mapInvoice (aUBLInvoice) : mapCreditNote (aUBLInvoice);
+  }
+
+  /**
+   * Map the UBL 2.3 Invoice created from the CII document to the Invoice of
+   * this UBL version.
+   *
+   * @param aUBLInvoice
+   *        The created Invoice. May not be <code>null</code>.
+   * @return The UBL Invoice and never <code>null</code>.
+   * @since 1.4.9
+   */
+  @Nonnull
+  protected abstract Serializable mapInvoice (@Nonnull oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType aUBLInvoice);
+
+  /**
+   * Map the UBL 2.3 Invoice created from the CII document to the Credit Note
+   * of this UBL version.
+   *
+   * @param aUBLInvoice
+   *        The created Invoice. May not be <code>null</code>.
+   * @return The UBL Credit Note and never <code>null</code>.
+   * @since 1.4.9
+   */
+  @Nonnull
+  protected abstract Serializable mapCreditNote (@Nonnull oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType aUBLInvoice);
+
+  /**
+   * Map the UBL 2.3 Invoice line created from a CII line item to the Invoice
+   * line of this UBL version.
+   *
+   * @param aUBLLine
+   *        The created Invoice line. May not be <code>null</code>.
+   * @return The UBL Invoice line and never <code>null</code>.
+   * @since 1.4.9
+   */
+  @Nonnull
+  protected abstract Serializable mapInvoiceLine (@Nonnull InvoiceLineType aUBLLine);
+
+  /**
+   * Map the UBL 2.3 Invoice line created from a CII line item to the Credit
+   * Note line of this UBL version.
+   *
+   * @param aUBLLine
+   *        The created Invoice line. May not be <code>null</code>.
+   * @return The UBL Credit Note line and never <code>null</code>.
+   * @since 1.4.9
+   */
+  @Nonnull
+  protected abstract Serializable mapCreditNoteLine (@Nonnull InvoiceLineType aUBLLine);
+
+  /**
+   * Convert all provided CII line items in order. This is the common line loop
+   * of {@link CIIDocumentModel#create(CrossIndustryInvoiceType, CIIToUBLSettings, ErrorList)}.
+   * If the settings request it for the number of line items (see
+   * {@link CIIToUBLSettings#isParallelLineConversion(int)}), the lines are
+   * converted in chunks on the common fork-join pool. Each chunk uses its own
+   * error list, and both the created lines and the errors are passed on in the
+   * original line order, so that the result is identical to the sequential
+   * conversion.<br>
+   * In fail-fast mode (see {@link CIIToUBLSettings#isFailFast()}) the
+   * conversion stops after the first line that created an error. Errors that
+   * were contained in the error list before are ignored.
+   *
+   * @param <S>
+   *        The source line type
+   * @param <T>
+   *        The target line type
+   * @param sInvoiceID
+   *        The CII invoice ID for monitoring. May be <code>null</code>.
+   * @param aLineItems
+   *        The CII line items to convert. May not be <code>null</code>.
+   * @param aLineConverter
+   *        The function to convert a single line item, using the provided
+   *        error list. It must only access the provided line item, as it may
+   *        be invoked concurrently. May not be <code>null</code>.
+   * @param aLineConsumer
+   *        The consumer for the created UBL lines, e.g. the adder of the UBL
+   *        document. Is always invoked in the calling thread. May not be
+   *        <code>null</code>.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @since 1.4.9
+   */
+  protected static <S, T> void convertLines (@Nullable final String sInvoiceID,
+                                             @Nonnull final List <? extends S> aLineItems,
+                                             @Nonnull final BiFunction <? super S, ? super ErrorList, ? extends T> aLineConverter,
+                                             @Nonnull final Consumer <? super T> aLineConsumer,
+                                             @Nonnull final CIIToUBLSettings aSettings,
+                                             @Nonnull final ErrorList aErrorList)
+  {
+    final boolean bFailFast = aSettings.isFailFast ();
+    final int nLineCount = aLineItems.size ();
+    if (!aSettings.isParallelLineConversion (nLineCount))
+    {
+      final CIIToUBLFlightRecorder.LineBatchEvent aEvent = CIIToUBLFlightRecorder.beginLineBatch ();
+      int nConverted = 0;
+      int nCheckedErrors = aErrorList.size ();
+      for (final S aLineItem : aLineItems)
+      {
+        aLineConsumer.accept (aLineConverter.apply (aLineItem, aErrorList));
+        ++nConverted;
+        if (bFailFast)
+        {
+          if (containsErrorSince (aErrorList, nCheckedErrors))
+            break;
+          nCheckedErrors = aErrorList.size ();
+        }
+      }
+      if (aEvent != null)
+        aEvent.finish (sInvoiceID, 0, nConverted);
+      return;
+    }
+
+    final int nChunkSize = aSettings.getParallelLineChunkSize ();
+    if (LOGGER.isDebugEnabled ())
+      LOGGER.debug ("Converting " + nLineCount + " lines in parallel using chunks of " + nChunkSize + " lines");
+
+    // The first line of the first failed chunk - only used in fail-fast mode
+    final AtomicInteger aFirstFailedLine = bFailFast ? new AtomicInteger (Integer.MAX_VALUE) : null;
+    final ICommonsList <LineChunk <S, T>> aChunks = new CommonsArrayList <> ();
+    for (int nFirstLine = 0; nFirstLine < nLineCount; nFirstLine += nChunkSize)
+    {
+      final int nEndLine = Math.min (nFirstLine + nChunkSize, nLineCount);
+      aChunks.add (new LineChunk <> (sInvoiceID, aLineItems, nFirstLine, nEndLine, aLineConverter, aFirstFailedLine));
+    }
+
+    // Runs the first chunk in the calling thread and forks all others
+    ForkJoinTask.invokeAll (aChunks);
+
+    // Merge in the original order
+    for (final LineChunk <S, T> aChunk : aChunks)
+    {
+      aChunk.m_aLines.forEach (aLineConsumer);
+      aErrorList.addAll (aChunk.m_aErrorList);
+      if (bFailFast && aChunk.m_aErrorList.containsAtLeastOneError ())
+      {
+        // Later chunks may have been stopped early, but all previous chunks
+        // are complete
+        break;
+      }
+    }
+  }
+
+  /**
+   * Check if the error list contains an error from the provided index on.
+   *
+   * @param aErrorList
+   *        The error list to check. May not be <code>null</code>.
+   * @param nStartIndex
+   *        The index of the first entry to check. Must be &ge; 0.
+   * @return <code>true</code> if at least one of the checked entries is an
+   *         error.
+   * @since 1.4.9
+   */
+  protected static boolean containsErrorSince (@Nonnull final ErrorList aErrorList, @Nonnegative final int nStartIndex)
+  {
+    for (int i = nStartIndex; i < aErrorList.size (); ++i)
+      if (aErrorList.get (i).isError ())
+        return true;
+    return false;
+  }
+
+  /**
+   * A consecutive range of line items that is converted in a single fork-join
+   * task. Each chunk has its own error list so that no synchronization is
+   * needed.
+   *
+   * @author Philip Helger
+   * @param <S>
+   *        The source line type
+   * @param <T>
+   *        The target line type
+   */
+  private static final class LineChunk <S, T> extends RecursiveAction
+  {
+    private final String m_sInvoiceID;
+    private final List <? extends S> m_aLineItems;
+    private final int m_nFirstLine;
+    private final int m_nEndLine;
+    private final BiFunction <? super S, ? super ErrorList, ? extends T> m_aLineConverter;
+    private final AtomicInteger m_aFirstFailedLine;
+    private final ICommonsList <T> m_aLines;
+    private final ErrorList m_aErrorList = new ErrorList ();
+
+    LineChunk (@Nullable final String sInvoiceID,
+               @Nonnull final List <? extends S> aLineItems,
+               final int nFirstLine,
+               final int nEndLine,
+               @Nonnull final BiFunction <? super S, ? super ErrorList, ? extends T> aLineConverter,
+               @Nullable final AtomicInteger aFirstFailedLine)
+    {
+      m_sInvoiceID = sInvoiceID;
+      m_aLineItems = aLineItems;
+      m_nFirstLine = nFirstLine;
+      m_nEndLine = nEndLine;
+      m_aLineConverter = aLineConverter;
+      m_aFirstFailedLine = aFirstFailedLine;
+      m_aLines = new CommonsArrayList <> (nEndLine - nFirstLine);
+    }
+
+    @Override
+    protected void compute ()
+    {
+      final CIIToUBLFlightRecorder.LineBatchEvent aEvent = CIIToUBLFlightRecorder.beginLineBatch ();
+      for (int i = m_nFirstLine; i < m_nEndLine; ++i)
+      {
+        if (m_aFirstFailedLine != null && m_aFirstFailedLine.get () < m_nFirstLine)
+        {
+          // A previous chunk failed in fail-fast mode
+          break;
+        }
+        m_aLines.add (m_aLineConverter.apply (m_aLineItems.get (i), m_aErrorList));
+        if (m_aFirstFailedLine != null && m_aErrorList.containsAtLeastOneError ())
+        {
+          m_aFirstFailedLine.accumulateAndGet (m_nFirstLine, Math::min);
+          break;
+        }
+      }
+      if (aEvent != null)
+        aEvent.finish (m_sInvoiceID, m_nFirstLine, m_aLines.size ());
+    }
+  }
+
+  /**
+   * Convert a single CII line item to a UBL Invoice or Credit Note line. This
+   * is used by the streaming conversion.
+   *
+   * @param aLineItem
+   *        The CII line item to convert. May not be <code>null</code>.
+   * @param bInvoice
+   *        <code>true</code> to create an invoice line, <code>false</code> to
+   *        create a credit note line.
+   * @param sDefaultCurrencyCode
+   *        The document currency code. May be <code>null</code>.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The created UBL line and never <code>null</code>.
+   * @since 1.4.9
+   */
+  @Nonnull
+  protected Serializable convertToLine (@Nonnull final SupplyChainTradeLineItemType aLineItem,
+                                        final boolean bInvoice,
+                                        @Nullable final String sDefaultCurrencyCode,
+                                        @Nonnull final CIIToUBLSettings aSettings,
+                                        @Nonnull final ErrorList aErrorList)
+  {
+    final CIILineModel aLine = CIILineModel.create (aLineItem, aSettings, aErrorList);
+    final InvoiceLineType aUBLLine = UBL23Emitter.createInvoiceLine (aLine, sDefaultCurrencyCode, aSettings, aErrorList);
+    return bInvoice ? mapInvoiceLine (aUBLLine) : mapCreditNoteLine (aUBLLine);
+  }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.CGlobal;
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsImmutableObject;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.IErrorList;
+import com.helger.commons.state.ETriState;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeAllowanceChargeType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeTaxType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.AmountType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
+
+/**
+ * The UBL version independent part of a CII allowance or charge. This is used
+ * for BG-20 Document level allowances, BG-21 Document level charges, BG-27
+ * Invoice line allowances, BG-28 Invoice line charges and the price discount
+ * (BT-147).
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public final class CIIAllowanceChargeModel
+{
+  private final boolean m_bCharge;
+  private final String m_sReasonCode;
+  private final TextType m_aReason;
+  private final BigDecimal m_aMultiplierFactor;
+  private final AmountType m_aAmount;
+  private final AmountType m_aBaseAmount;
+  private final List <CIITaxCategoryModel> m_aTaxCategories;
+
+  private CIIAllowanceChargeModel (@Nonnull final TradeAllowanceChargeType aAllowanceCharge, final boolean bCharge)
+  {
+    m_bCharge = bCharge;
+    final String sReasonCode = aAllowanceCharge.getReasonCodeValue ();
+    m_sReasonCode = StringHelper.hasText (sReasonCode) ? sReasonCode : null;
+    m_aReason = aAllowanceCharge.getReason ();
+    // TODO calc is correct?
+    final BigDecimal aPercent = aAllowanceCharge.getCalculationPercentValue ();
+    m_aMultiplierFactor = aPercent == null ? null : aPercent.divide (CGlobal.BIGDEC_100);
+    m_aAmount = aAllowanceCharge.hasActualAmountEntries () ? aAllowanceCharge.getActualAmountAtIndex (0) : null;
+    m_aBaseAmount = aAllowanceCharge.getBasisAmount ();
+    final ICommonsList <CIITaxCategoryModel> aTaxCategories = new CommonsArrayList <> ();
+    for (final TradeTaxType aTradeTax : aAllowanceCharge.getCategoryTradeTax ())
+      aTaxCategories.add (CIITaxCategoryModel.create (aTradeTax));
+    m_aTaxCategories = Collections.unmodifiableList (aTaxCategories);
+  }
+
+  /**
+   * @return <code>true</code> for a charge, <code>false</code> for an
+   *         allowance.
+   */
+  public boolean isCharge ()
+  {
+    return m_bCharge;
+  }
+
+  /**
+   * @return The reason code (e.g. BT-98 or BT-105). May be <code>null</code>
+   *         but never empty.
+   */
+  @Nullable
+  public String getReasonCode ()
+  {
+    return m_sReasonCode;
+  }
+
+  /**
+   * @return The reason (e.g. BT-97 or BT-104). May be <code>null</code>.
+   */
+  @Nullable
+  public TextType getReason ()
+  {
+    return m_aReason;
+  }
+
+  /**
+   * @return The percentage (e.g. BT-94 or BT-101) divided by 100. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public BigDecimal getMultiplierFactor ()
+  {
+    return m_aMultiplierFactor;
+  }
+
+  /**
+   * @return The amount (e.g. BT-92 or BT-99). May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getAmount ()
+  {
+    return m_aAmount;
+  }
+
+  /**
+   * @return The base amount (e.g. BT-93 or BT-100). May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getBaseAmount ()
+  {
+    return m_aBaseAmount;
+  }
+
+  /**
+   * @return All tax categories. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIITaxCategoryModel> getAllTaxCategories ()
+  {
+    return m_aTaxCategories;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("Charge", m_bCharge)
+                                       .append ("ReasonCode", m_sReasonCode)
+                                       .append ("Reason", m_aReason)
+                                       .append ("MultiplierFactor", m_aMultiplierFactor)
+                                       .append ("Amount", m_aAmount)
+                                       .append ("BaseAmount", m_aBaseAmount)
+                                       .append ("TaxCategories", m_aTaxCategories)
+                                       .getToString ();
+  }
+
+  /**
+   * Extract the allowance or charge from the provided CII element.
+   *
+   * @param aAllowanceCharge
+   *        The CII allowance or charge. May not be <code>null</code>.
+   * @param aErrorPath
+   *        The path of the CII element for error messages. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if it cannot be determined if it is an allowance
+   *         or a charge. In that case an error was added.
+   */
+  @Nullable
+  public static CIIAllowanceChargeModel create (@Nonnull final TradeAllowanceChargeType aAllowanceCharge,
+                                                @Nonnull final String [] aErrorPath,
+                                                @Nonnull final IErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aAllowanceCharge, "AllowanceCharge");
+    ValueEnforcer.notNull (aErrorPath, "ErrorPath");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final ETriState eIsCharge = AbstractCIIToUBLConverter._getChargeIndicator (aAllowanceCharge, aErrorPath, aErrorList);
+    if (!eIsCharge.isDefined ())
+      return null;
+    return new CIIAllowanceChargeModel (aAllowanceCharge, eIsCharge.getAsBooleanValue ());
+  }
+
+  /**
+   * Extract all allowances and charges from the provided CII elements.
+   *
+   * @param aAllowanceCharges
+   *        The CII allowances and charges. May not be <code>null</code>.
+   * @param aErrorPath
+   *        The path of the CII elements for error messages. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return All allowances and charges that could be determined, in the
+   *         original order. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static ICommonsList <CIIAllowanceChargeModel> createAll (@Nonnull final List <TradeAllowanceChargeType> aAllowanceCharges,
+                                                                  @Nonnull final String [] aErrorPath,
+                                                                  @Nonnull final IErrorList aErrorList)
+  {
+    final ICommonsList <CIIAllowanceChargeModel> ret = new CommonsArrayList <> (aAllowanceCharges.size ());
+    for (final TradeAllowanceChargeType aAllowanceCharge : aAllowanceCharges)
+    {
+      final CIIAllowanceChargeModel aModel = create (aAllowanceCharge, aErrorPath, aErrorList);
+      if (aModel != null)
+        ret.add (aModel);
+    }
+    return ret;
+  }
+}
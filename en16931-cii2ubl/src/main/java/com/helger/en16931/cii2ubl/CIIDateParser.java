@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.collection.impl.ICommonsSet;
+import com.helger.commons.datetime.PDTFormatter;
+import com.helger.commons.datetime.PDTFromString;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.error.list.IErrorList;
+import com.helger.commons.string.StringHelper;
+
+/**
+ * Parses the CII date strings based on the UNTDID 2379 format codes. All
+ * formatters are created once and the overwhelmingly common format "102"
+ * (CCYYMMDD) is parsed by hand without a formatter. The number of parsed dates
+ * is counted, so that the effect can be monitored.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@ThreadSafe
+public final class CIIDateParser
+{
+  /** The format code used if none is provided */
+  public static final String DEFAULT_FORMAT = "102";
+
+  private static final String [] SUPPORTED_FORMATS = new String [] { "2", "3", "4", "101", "102", "103", "105" };
+  // Never modified after the static initialization
+  private static final ICommonsMap <String, DateTimeFormatter> FORMATTERS = new CommonsHashMap <> ();
+  static
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    for (final String sFormat : SUPPORTED_FORMATS)
+      FORMATTERS.put (sFormat, PDTFormatter.getForPattern (AbstractCIIToUBLConverter._getDatePattern (sFormat, aErrorList)));
+  }
+
+  private static final LongAdder FAST_PATH_COUNT = new LongAdder ();
+  private static final LongAdder FORMATTER_COUNT = new LongAdder ();
+  private static final LongAdder FAILURE_COUNT = new LongAdder ();
+
+  private CIIDateParser ()
+  {}
+
+  /**
+   * @return All supported format codes. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static ICommonsSet <String> getAllSupportedFormats ()
+  {
+    return FORMATTERS.copyOfKeySet ();
+  }
+
+  /**
+   * Get the precompiled formatter for the provided format code.
+   *
+   * @param sFormat
+   *        The format code. May be <code>null</code>.
+   * @return <code>null</code> if the format is not supported.
+   */
+  @Nullable
+  public static DateTimeFormatter getFormatter (@Nullable final String sFormat)
+  {
+    return sFormat == null ? null : FORMATTERS.get (sFormat);
+  }
+
+  private static int _digit (@Nonnull final String s, final int nIndex)
+  {
+    final char c = s.charAt (nIndex);
+    return c >= '0' && c <= '9' ? c - '0' : -1;
+  }
+
+  /**
+   * Parse a date in the format CCYYMMDD without a formatter.
+   *
+   * @param sDate
+   *        The date string with exactly 8 characters. May not be
+   *        <code>null</code>.
+   * @return <code>null</code> if the string is not a valid date.
+   */
+  @Nullable
+  static LocalDate parse102 (@Nonnull final String sDate)
+  {
+    int nValue = 0;
+    for (int i = 0; i < 8; ++i)
+    {
+      final int nDigit = _digit (sDate, i);
+      if (nDigit < 0)
+        return null;
+      nValue = nValue * 10 + nDigit;
+    }
+    try
+    {
+      return LocalDate.of (nValue / 10000, (nValue / 100) % 100, nValue % 100);
+    }
+    catch (final DateTimeException ex)
+    {
+      // E.g. 30th of February
+      return null;
+    }
+  }
+
+  /**
+   * Parse the provided date string.
+   *
+   * @param sDate
+   *        The date string to parse. May be <code>null</code>.
+   * @param sFormat
+   *        The UNTDID 2379 format code. Defaults to {@value #DEFAULT_FORMAT}
+   *        if empty.
+   * @param aErrorList
+   *        The error list to be filled if the format is unsupported or the
+   *        date cannot be parsed. May not be <code>null</code>.
+   * @return <code>null</code> if no date was provided or if it could not be
+   *         parsed.
+   */
+  @Nullable
+  public static LocalDate parseDate (@Nullable final String sDate, @Nullable final String sFormat, @Nonnull final IErrorList aErrorList)
+  {
+    if (StringHelper.hasNoText (sDate))
+      return null;
+
+    final String sRealFormat = StringHelper.getNotEmpty (sFormat, DEFAULT_FORMAT);
+    final LocalDate aDate;
+    if (DEFAULT_FORMAT.equals (sRealFormat) && sDate.length () == 8)
+    {
+      FAST_PATH_COUNT.increment ();
+      aDate = parse102 (sDate);
+    }
+    else
+    {
+      final DateTimeFormatter aFormatter = FORMATTERS.get (sRealFormat);
+      if (aFormatter == null)
+      {
+        FAILURE_COUNT.increment ();
+        aErrorList.add (AbstractCIIToUBLConverter._buildError (null, "Unsupported date format '" + sRealFormat + "'"));
+        return null;
+      }
+      FORMATTER_COUNT.increment ();
+      aDate = PDTFromString.getLocalDateFromString (sDate, aFormatter);
+    }
+
+    if (aDate == null)
+    {
+      FAILURE_COUNT.increment ();
+      aErrorList.add (AbstractCIIToUBLConverter._buildError (null,
+                                                             "Failed to parse the date '" + sDate + "' using format '" + sRealFormat + "'"));
+    }
+    return aDate;
+  }
+
+  /**
+   * @return The number of dates parsed with the hand written "102" parser.
+   */
+  public static long getFastPathCount ()
+  {
+    return FAST_PATH_COUNT.sum ();
+  }
+
+  /**
+   * @return The number of dates parsed with a precompiled formatter.
+   */
+  public static long getFormatterCount ()
+  {
+    return FORMATTER_COUNT.sum ();
+  }
+
+  /**
+   * @return The number of dates that could not be parsed, either because of an
+   *         unsupported format or because of an invalid date string.
+   */
+  public static long getFailureCount ()
+  {
+    return FAILURE_COUNT.sum ();
+  }
+
+  /**
+   * Reset all counters to 0.
+   */
+  public static void resetCounters ()
+  {
+    FAST_PATH_COUNT.reset ();
+    FORMATTER_COUNT.reset ();
+    FAILURE_COUNT.reset ();
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsImmutableObject;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * The UBL version independent model of a complete CII document: the
+ * {@link CIIHeaderModel} and one {@link CIILineModel} per line item. It is
+ * created once per document, so that all errors of the document are reported
+ * exactly once, no matter for how many UBL versions the document is
+ * converted.<br>
+ * The model references the JAXB objects of the source document, so it must
+ * not be modified while it is in use.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public final class CIIDocumentModel
+{
+  private final CIIHeaderModel m_aHeader;
+  private final List <CIILineModel> m_aLines;
+
+  private CIIDocumentModel (@Nonnull final CIIHeaderModel aHeader, @Nonnull final List <CIILineModel> aLines)
+  {
+    m_aHeader = aHeader;
+    m_aLines = aLines;
+  }
+
+  /**
+   * @return The model of the document header. Never <code>null</code>.
+   */
+  @Nonnull
+  public CIIHeaderModel getHeader ()
+  {
+    return m_aHeader;
+  }
+
+  /**
+   * @return The models of all line items in document order. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIILineModel> getAllLines ()
+  {
+    return m_aLines;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("Header", m_aHeader).append ("Lines", m_aLines).getToString ();
+  }
+
+  /**
+   * Extract the header model and the models of all line items from the
+   * provided CII document. If the settings request it for the number of line
+   * items (see {@link CIIToUBLSettings#isParallelLineConversion(int)}), the
+   * line models are created in chunks on the common fork-join pool, with the
+   * same result as the sequential creation.<br>
+   * In fail-fast mode (see {@link CIIToUBLSettings#isFailFast()}) the mapping
+   * stops at the first error. Errors that were contained in the error list
+   * before are ignored.
+   *
+   * @param aCIIInvoice
+   *        The CII document. May not be <code>null</code>.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all errors of the document. May
+   *        not be <code>null</code>.
+   * @return <code>null</code> if one of the mandatory header elements is
+   *         missing (see {@link CIIHeaderModel#create(CrossIndustryInvoiceType, ErrorList)})
+   *         or if the mapping was stopped in fail-fast mode.
+   */
+  @Nullable
+  public static CIIDocumentModel create (@Nonnull final CrossIndustryInvoiceType aCIIInvoice,
+                                         @Nonnull final CIIToUBLSettings aSettings,
+                                         @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCIIInvoice, "CIIInvoice");
+    ValueEnforcer.notNull (aSettings, "Settings");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    // Errors that existed before don't count
+    final int nErrorIndex = aErrorList.size ();
+    final boolean bFailFast = aSettings.isFailFast ();
+
+    final CIIHeaderModel aHeader = CIIHeaderModel.create (aCIIInvoice, bFailFast, aErrorList);
+    if (aHeader == null)
+    {
+      // Mandatory elements are missing or fail-fast stopped the mapping
+      return null;
+    }
+    if (bFailFast && AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorIndex))
+    {
+      // Don't start the line mapping
+      return null;
+    }
+
+    final ICommonsList <CIILineModel> aLines = new CommonsArrayList <> (aHeader.getLineCount ());
+    AbstractCIIToUBLConverter.convertLines (aHeader.getID (),
+                                            aHeader.getSupplyChainTradeTransaction ().getIncludedSupplyChainTradeLineItem (),
+                                            (x, e) -> CIILineModel.create (x, aSettings, e),
+                                            aLines::add,
+                                            aSettings,
+                                            aErrorList);
+    if (bFailFast && AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorIndex))
+    {
+      // A line failed
+      return null;
+    }
+    return new CIIDocumentModel (aHeader, Collections.unmodifiableList (aLines));
+  }
+}
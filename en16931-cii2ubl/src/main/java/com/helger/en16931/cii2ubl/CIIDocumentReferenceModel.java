@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsImmutableObject;
+import com.helger.commons.error.list.IErrorList;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.qualifieddatatype._100.FormattedDateTimeType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ReferencedDocumentType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.BinaryObjectType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
+
+/**
+ * The UBL version independent part of a CII referenced document, e.g. BG-3
+ * Preceding invoice reference, BG-24 Additional supporting documents or the
+ * line object identifier (BT-128).
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public final class CIIDocumentReferenceModel
+{
+  private final String m_sID;
+  private final String m_sSchemeID;
+  private final LocalDate m_aIssueDate;
+  private final List <TextType> m_aDescriptions;
+  private final BinaryObjectType m_aAttachment;
+  private final String m_sURI;
+
+  private CIIDocumentReferenceModel (@Nonnull final ReferencedDocumentType aRD,
+                                     @Nonnull final String sID,
+                                     @Nonnull final IErrorList aErrorList)
+  {
+    m_sID = sID;
+    m_sSchemeID = aRD.getReferenceTypeCodeValue ();
+
+    // IssueDate is optional
+    final FormattedDateTimeType aFDT = aRD.getFormattedIssueDateTime ();
+    m_aIssueDate = aFDT == null ? null : AbstractCIIToUBLConverter._parseDate (aFDT.getDateTimeString (), aErrorList);
+
+    // Name is optional
+    m_aDescriptions = Collections.unmodifiableList (aRD.getName ());
+
+    // Attachment (0..1 for CII)
+    m_aAttachment = aRD.getAttachmentBinaryObjectCount () > 0 ? aRD.getAttachmentBinaryObjectAtIndex (0) : null;
+    m_sURI = aRD.getURIIDValue ();
+  }
+
+  /**
+   * @return The document identifier. Never <code>null</code> nor empty.
+   */
+  @Nonnull
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  /**
+   * @return The reference type code, used as the scheme of the ID. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public String getSchemeID ()
+  {
+    return m_sSchemeID;
+  }
+
+  /**
+   * @return The issue date. May be <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getIssueDate ()
+  {
+    return m_aIssueDate;
+  }
+
+  /**
+   * @return All document descriptions. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <TextType> getAllDescriptions ()
+  {
+    return m_aDescriptions;
+  }
+
+  /**
+   * @return <code>true</code> if an attachment is present.
+   */
+  public boolean hasAttachment ()
+  {
+    return m_aAttachment != null;
+  }
+
+  /**
+   * @return The attached document. May be <code>null</code>.
+   */
+  @Nullable
+  public BinaryObjectType getAttachment ()
+  {
+    return m_aAttachment;
+  }
+
+  /**
+   * @return The external document location. May be <code>null</code>.
+   */
+  @Nullable
+  public String getURI ()
+  {
+    return m_sURI;
+  }
+
+  /**
+   * Write the attachment to the attachment store of the provided settings, if
+   * the store externalizes attachments. Only a single external reference is
+   * possible, so attachments with an external document location are never
+   * externalized.
+   *
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if the attachment should be embedded.
+   */
+  @Nullable
+  public CIIToUBLAttachmentStore.StoredAttachment externalizeAttachment (@Nonnull final CIIToUBLSettings aSettings,
+                                                                         @Nonnull final IErrorList aErrorList)
+  {
+    final CIIToUBLAttachmentStore aStore = aSettings.getAttachmentStore ();
+    if (m_aAttachment == null || aStore == null || StringHelper.hasText (m_sURI))
+      return null;
+    return aStore.externalize (m_aAttachment.getValue (), aErrorList);
+  }
+
+  /**
+   * Get the content of the attachment to be embedded. If the settings contain
+   * an attachment store, the content is deduplicated.
+   *
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @return The attachment content. May be <code>null</code>.
+   */
+  @Nullable
+  public byte [] getEmbeddedAttachmentValue (@Nonnull final CIIToUBLSettings aSettings)
+  {
+    if (m_aAttachment == null)
+      return null;
+    final CIIToUBLAttachmentStore aStore = aSettings.getAttachmentStore ();
+    return aStore != null ? aStore.getShared (m_aAttachment.getValue ()) : m_aAttachment.getValue ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("ID", m_sID)
+                                       .append ("SchemeID", m_sSchemeID)
+                                       .append ("IssueDate", m_aIssueDate)
+                                       .append ("Descriptions", m_aDescriptions)
+                                       .append ("HasAttachment", hasAttachment ())
+                                       .append ("URI", m_sURI)
+                                       .getToString ();
+  }
+
+  /**
+   * Extract the document reference from the provided CII element.
+   *
+   * @param aRD
+   *        The CII referenced document. May be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with date parsing errors. May not be
+   *        <code>null</code>.
+   * @return <code>null</code> if the referenced document or its identifier is
+   *         missing.
+   */
+  @Nullable
+  public static CIIDocumentReferenceModel create (@Nullable final ReferencedDocumentType aRD, @Nonnull final IErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    if (aRD == null)
+      return null;
+
+    final String sID = aRD.getIssuerAssignedIDValue ();
+    if (StringHelper.hasNoText (sID))
+      return null;
+
+    return new CIIDocumentReferenceModel (aRD, sID, aErrorList);
+  }
+}
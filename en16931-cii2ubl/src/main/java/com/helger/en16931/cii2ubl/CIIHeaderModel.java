@@ -0,0 +1,1000 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsImmutableObject;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.math.MathHelper;
+import com.helger.commons.state.ETriState;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ExchangedDocumentType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.HeaderTradeAgreementType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.HeaderTradeDeliveryType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.HeaderTradeSettlementType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.NoteType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ProcuringProjectType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ReferencedDocumentType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SpecifiedPeriodType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainEventType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeTransactionType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeAccountingAccountType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradePaymentTermsType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeSettlementHeaderMonetarySummationType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeSettlementPaymentMeansType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeTaxType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.AmountType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
+
+/**
+ * The UBL version independent part of a CII document header, extracted once
+ * per document and named after the EN 16931 business terms. All decisions,
+ * date parsing and the respective error reporting happen here, so that they
+ * happen only once, no matter for how many UBL versions the document is
+ * converted. The line items are extracted separately with
+ * {@link CIILineModel}, and both are combined in {@link CIIDocumentModel}.<br>
+ * The model references the JAXB objects of the source document, so it must
+ * not be modified while it is in use.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public final class CIIHeaderModel
+{
+  /**
+   * Aborts the mapping in fail-fast mode. It is always caught in
+   * {@link CIIHeaderModel#create(CrossIndustryInvoiceType, boolean, ErrorList)},
+   * so no stack trace is needed.
+   */
+  private static final class FailFastException extends RuntimeException
+  {
+    FailFastException ()
+    {
+      super (null, null, false, false);
+    }
+  }
+
+  private final CrossIndustryInvoiceType m_aCIIInvoice;
+  private final ExchangedDocumentType m_aED;
+  private final SupplyChainTradeTransactionType m_aSCTT;
+  private final HeaderTradeAgreementType m_aHeaderAgreement;
+  private final HeaderTradeDeliveryType m_aHeaderDelivery;
+  private final HeaderTradeSettlementType m_aHeaderSettlement;
+  private final ETriState m_eInvoiceType;
+  private final LocalDate m_aIssueDate;
+  private final LocalDate m_aDueDate;
+  private final LocalDate m_aTaxPointDate;
+  private final String m_sAccountingCost;
+  private final boolean m_bInvoicePeriod;
+  private final LocalDate m_aInvoicePeriodStartDate;
+  private final LocalDate m_aInvoicePeriodEndDate;
+  private final boolean m_bActualDeliveryEvent;
+  private final LocalDate m_aActualDeliveryDate;
+  private final List <String> m_aNotes;
+  private final boolean m_bOrderReference;
+  private final String m_sOrderID;
+  private final String m_sSalesOrderID;
+  private final CIIDocumentReferenceModel m_aBillingReference;
+  private final CIIDocumentReferenceModel m_aDespatchDocumentReference;
+  private final CIIDocumentReferenceModel m_aReceiptDocumentReference;
+  private final List <CIIDocumentReferenceModel> m_aOriginatorDocumentReferences;
+  private final CIIDocumentReferenceModel m_aContractDocumentReference;
+  private final List <CIIDocumentReferenceModel> m_aAdditionalDocumentReferences;
+  private final String m_sProjectReference;
+  private final CIIPartyModel m_aSeller;
+  private final CIIPartyModel m_aBuyer;
+  private final CIIPartyModel m_aPayee;
+  private final CIIPartyModel m_aTaxRepresentative;
+  private final CIIPartyModel m_aShipTo;
+  private final List <CIIPaymentMeansModel> m_aPaymentMeans;
+  private final List <List <TextType>> m_aPaymentTerms;
+  private final List <CIIAllowanceChargeModel> m_aAllowanceCharges;
+  private final List <AmountType> m_aTaxTotalAmounts;
+  private final List <CIITaxSubtotalModel> m_aTaxSubtotals;
+  private final AmountType m_aLineTotalAmount;
+  private final AmountType m_aTaxBasisTotalAmount;
+  private final AmountType m_aGrandTotalAmount;
+  private final AmountType m_aAllowanceTotalAmount;
+  private final AmountType m_aChargeTotalAmount;
+  private final AmountType m_aPrepaidAmount;
+  private final AmountType m_aRoundingAmount;
+  private final AmountType m_aDuePayableAmount;
+
+  private CIIHeaderModel (@Nonnull final CrossIndustryInvoiceType aCIIInvoice,
+                          @Nonnull final SupplyChainTradeTransactionType aSCTT,
+                          @Nonnull final HeaderTradeAgreementType aHeaderAgreement,
+                          @Nonnull final HeaderTradeDeliveryType aHeaderDelivery,
+                          @Nonnull final HeaderTradeSettlementType aHeaderSettlement,
+                          final boolean bFailFast,
+                          @Nonnull final ErrorList aErrorList)
+  {
+    // Errors that existed before don't count
+    final int nErrorIndex = aErrorList.size ();
+
+    m_aCIIInvoice = aCIIInvoice;
+    m_aED = aCIIInvoice.getExchangedDocument ();
+    m_aSCTT = aSCTT;
+    m_aHeaderAgreement = aHeaderAgreement;
+    m_aHeaderDelivery = aHeaderDelivery;
+    m_aHeaderSettlement = aHeaderSettlement;
+    m_eInvoiceType = AbstractCIIToUBLConverter.isInvoiceType (aCIIInvoice);
+
+    // BT-2
+    m_aIssueDate = m_aED != null && m_aED.getIssueDateTime () != null ? AbstractCIIToUBLConverter._parseDate (m_aED.getIssueDateTime ()
+                                                                                                                    .getDateTimeString (),
+                                                                                                              aErrorList)
+                                                                      : null;
+
+    // BT-9 - the first one that can be parsed
+    LocalDate aDueDate = null;
+    for (final TradePaymentTermsType aPaymentTerms : aHeaderSettlement.getSpecifiedTradePaymentTerms ())
+      if (aPaymentTerms.getDueDateDateTime () != null)
+      {
+        aDueDate = AbstractCIIToUBLConverter._parseDate (aPaymentTerms.getDueDateDateTime ().getDateTimeString (), aErrorList);
+        if (aDueDate != null)
+          break;
+      }
+    m_aDueDate = aDueDate;
+
+    // BT-7 - the first one that can be parsed
+    LocalDate aTaxPointDate = null;
+    for (final TradeTaxType aTradeTax : aHeaderSettlement.getApplicableTradeTax ())
+      if (aTradeTax.getTaxPointDate () != null)
+      {
+        aTaxPointDate = AbstractCIIToUBLConverter._parseDate (aTradeTax.getTaxPointDate ().getDateString (), aErrorList);
+        if (aTaxPointDate != null)
+          break;
+      }
+    m_aTaxPointDate = aTaxPointDate;
+
+    // BT-19 - the first non-empty one
+    String sAccountingCost = null;
+    for (final TradeAccountingAccountType aAccount : aHeaderSettlement.getReceivableSpecifiedTradeAccountingAccount ())
+    {
+      final String sID = aAccount.getIDValue ();
+      if (StringHelper.hasText (sID))
+      {
+        sAccountingCost = sID;
+        break;
+      }
+    }
+    m_sAccountingCost = sAccountingCost;
+
+    // BG-14 - only if start and end are present
+    final SpecifiedPeriodType aSPT = aHeaderSettlement.getBillingSpecifiedPeriod ();
+    m_bInvoicePeriod = aSPT != null && aSPT.getStartDateTime () != null && aSPT.getEndDateTime () != null;
+    if (m_bInvoicePeriod)
+    {
+      m_aInvoicePeriodStartDate = AbstractCIIToUBLConverter._parseDate (aSPT.getStartDateTime ().getDateTimeString (), aErrorList);
+      m_aInvoicePeriodEndDate = AbstractCIIToUBLConverter._parseDate (aSPT.getEndDateTime ().getDateTimeString (), aErrorList);
+    }
+    else
+    {
+      m_aInvoicePeriodStartDate = null;
+      m_aInvoicePeriodEndDate = null;
+    }
+
+    // BT-72
+    final SupplyChainEventType aSCE = aHeaderDelivery.getActualDeliverySupplyChainEvent ();
+    m_bActualDeliveryEvent = aSCE != null && aSCE.getOccurrenceDateTime () != null;
+    m_aActualDeliveryDate = m_bActualDeliveryEvent ? AbstractCIIToUBLConverter._parseDate (aSCE.getOccurrenceDateTime ()
+                                                                                              .getDateTimeString (),
+                                                                                          aErrorList)
+                                                   : null;
+    _checkFailFast (bFailFast, aErrorList, nErrorIndex);
+
+    // BG-1
+    final ICommonsList <String> aNotes = new CommonsArrayList <> ();
+    if (m_aED != null)
+      for (final NoteType aEDNote : m_aED.getIncludedNote ())
+        aNotes.add (AbstractCIIToUBLConverter._getNoteText (aEDNote));
+    m_aNotes = Collections.unmodifiableList (aNotes);
+
+    // BT-13 and BT-14
+    final ReferencedDocumentType aBuyerOrderRef = aHeaderAgreement.getBuyerOrderReferencedDocument ();
+    final ReferencedDocumentType aSellerOrderRef = aHeaderAgreement.getSellerOrderReferencedDocument ();
+    String sOrderID = aBuyerOrderRef == null ? null : aBuyerOrderRef.getIssuerAssignedIDValue ();
+    String sSalesOrderID = null;
+    if (aSellerOrderRef != null)
+    {
+      if (sOrderID == null)
+      {
+        // Mandatory element in UBL
+        sOrderID = "";
+      }
+      sSalesOrderID = aSellerOrderRef.getIssuerAssignedIDValue ();
+    }
+    // Ignore defacto empty elements
+    m_bOrderReference = StringHelper.hasText (sOrderID) || StringHelper.hasText (sSalesOrderID);
+    m_sOrderID = sOrderID;
+    m_sSalesOrderID = sSalesOrderID;
+
+    // BG-3
+    m_aBillingReference = CIIDocumentReferenceModel.create (aHeaderSettlement.getInvoiceReferencedDocument (), aErrorList);
+
+    // BT-16
+    m_aDespatchDocumentReference = CIIDocumentReferenceModel.create (aHeaderDelivery.getDespatchAdviceReferencedDocument (), aErrorList);
+
+    // BT-15
+    m_aReceiptDocumentReference = CIIDocumentReferenceModel.create (aHeaderDelivery.getReceivingAdviceReferencedDocument (), aErrorList);
+
+    // BT-17 - "Tender or lot reference" with TypeCode "50"
+    final ICommonsList <CIIDocumentReferenceModel> aOriginatorDocRefs = new CommonsArrayList <> ();
+    for (final ReferencedDocumentType aRD : aHeaderAgreement.getAdditionalReferencedDocument ())
+      if (AbstractCIIToUBLConverter.isOriginatorDocumentReferenceTypeCode (aRD.getTypeCodeValue ()))
+        _addIfNotNull (aOriginatorDocRefs, CIIDocumentReferenceModel.create (aRD, aErrorList));
+    m_aOriginatorDocumentReferences = Collections.unmodifiableList (aOriginatorDocRefs);
+
+    // BT-12
+    m_aContractDocumentReference = CIIDocumentReferenceModel.create (aHeaderAgreement.getContractReferencedDocument (), aErrorList);
+
+    // BG-24 - except BT-17
+    final ICommonsList <CIIDocumentReferenceModel> aAdditionalDocRefs = new CommonsArrayList <> ();
+    for (final ReferencedDocumentType aRD : aHeaderAgreement.getAdditionalReferencedDocument ())
+      if (!AbstractCIIToUBLConverter.isOriginatorDocumentReferenceTypeCode (aRD.getTypeCodeValue ()))
+        _addIfNotNull (aAdditionalDocRefs, CIIDocumentReferenceModel.create (aRD, aErrorList));
+    m_aAdditionalDocumentReferences = Collections.unmodifiableList (aAdditionalDocRefs);
+    _checkFailFast (bFailFast, aErrorList, nErrorIndex);
+
+    // BT-11
+    final ProcuringProjectType aSpecifiedProcuring = aHeaderAgreement.getSpecifiedProcuringProject ();
+    final String sProjectReference = aSpecifiedProcuring == null ? null : aSpecifiedProcuring.getIDValue ();
+    m_sProjectReference = StringHelper.hasText (sProjectReference) ? sProjectReference : null;
+
+    // BG-4 with BT-90 for direct debit
+    // how to determine if it is the Seller or the Payee?
+    // For direct debit it's always assumed to be the seller
+    m_aSeller = CIIPartyModel.create (aHeaderAgreement.getSellerTradeParty (), true, _getSEPACreditorID (aHeaderSettlement));
+
+    // BG-7
+    m_aBuyer = CIIPartyModel.create (aHeaderAgreement.getBuyerTradeParty ());
+
+    // BG-10
+    m_aPayee = CIIPartyModel.create (aHeaderSettlement.getPayeeTradeParty ());
+
+    // BG-11
+    m_aTaxRepresentative = CIIPartyModel.create (aHeaderAgreement.getSellerTaxRepresentativeTradeParty ());
+
+    // BG-13
+    m_aShipTo = CIIPartyModel.create (aHeaderDelivery.getShipToTradeParty ());
+
+    // BG-16
+    final ICommonsList <CIIPaymentMeansModel> aPaymentMeans = new CommonsArrayList <> ();
+    for (final TradeSettlementPaymentMeansType aPM : aHeaderSettlement.getSpecifiedTradeSettlementPaymentMeans ())
+      _addIfNotNull (aPaymentMeans, CIIPaymentMeansModel.create (aHeaderSettlement, aPM, aErrorList));
+    m_aPaymentMeans = Collections.unmodifiableList (aPaymentMeans);
+    _checkFailFast (bFailFast, aErrorList, nErrorIndex);
+
+    // BT-20
+    final ICommonsList <List <TextType>> aPaymentTerms = new CommonsArrayList <> ();
+    for (final TradePaymentTermsType aPT : aHeaderSettlement.getSpecifiedTradePaymentTerms ())
+    {
+      final ICommonsList <TextType> aDescs = new CommonsArrayList <> ();
+      for (final TextType aDesc : aPT.getDescription ())
+        _addIfNotNull (aDescs, AbstractCIIToUBLConverter._getNonEmpty (aDesc));
+      if (aDescs.isNotEmpty ())
+        aPaymentTerms.add (Collections.unmodifiableList (aDescs));
+    }
+    m_aPaymentTerms = Collections.unmodifiableList (aPaymentTerms);
+
+    // BG-20 and BG-21
+    m_aAllowanceCharges = Collections.unmodifiableList (CIIAllowanceChargeModel.createAll (aHeaderSettlement.getSpecifiedTradeAllowanceCharge (),
+                                                                                           new String [] { "CrossIndustryInvoice",
+                                                                                                           "SupplyChainTradeTransaction",
+                                                                                                           "ApplicableHeaderTradeSettlement",
+                                                                                                           "SpecifiedTradeAllowanceCharge" },
+                                                                                           aErrorList));
+    _checkFailFast (bFailFast, aErrorList, nErrorIndex);
+
+    // BT-110 and BT-111
+    final TradeSettlementHeaderMonetarySummationType aSTSHMS = aHeaderSettlement.getSpecifiedTradeSettlementHeaderMonetarySummation ();
+    m_aTaxTotalAmounts = aSTSHMS == null ? Collections.emptyList () : Collections.unmodifiableList (aSTSHMS.getTaxTotalAmount ());
+
+    // BG-23
+    final ICommonsList <CIITaxSubtotalModel> aTaxSubtotals = new CommonsArrayList <> ();
+    for (final TradeTaxType aTradeTax : aHeaderSettlement.getApplicableTradeTax ())
+      aTaxSubtotals.add (CIITaxSubtotalModel.create (aTradeTax));
+    m_aTaxSubtotals = Collections.unmodifiableList (aTaxSubtotals);
+
+    // BG-22
+    if (aSTSHMS != null)
+    {
+      m_aLineTotalAmount = aSTSHMS.hasLineTotalAmountEntries () ? aSTSHMS.getLineTotalAmountAtIndex (0) : null;
+      m_aTaxBasisTotalAmount = aSTSHMS.hasTaxBasisTotalAmountEntries () ? aSTSHMS.getTaxBasisTotalAmountAtIndex (0) : null;
+      m_aGrandTotalAmount = aSTSHMS.hasGrandTotalAmountEntries () ? aSTSHMS.getGrandTotalAmountAtIndex (0) : null;
+      m_aAllowanceTotalAmount = aSTSHMS.hasAllowanceTotalAmountEntries () ? aSTSHMS.getAllowanceTotalAmountAtIndex (0) : null;
+      m_aChargeTotalAmount = aSTSHMS.hasChargeTotalAmountEntries () ? aSTSHMS.getChargeTotalAmountAtIndex (0) : null;
+      m_aPrepaidAmount = aSTSHMS.hasTotalPrepaidAmountEntries () ? aSTSHMS.getTotalPrepaidAmountAtIndex (0) : null;
+      // Work around
+      // https://github.com/ConnectingEurope/eInvoicing-EN16931/issues/242
+      // Fixed in release 1.3.4 of EN rules, but check left in for
+      // compatibility
+      final AmountType aRoundingAmount = aSTSHMS.hasRoundingAmountEntries () ? aSTSHMS.getRoundingAmountAtIndex (0) : null;
+      m_aRoundingAmount = aRoundingAmount != null &&
+                          aRoundingAmount.getValue () != null &&
+                          MathHelper.isNE0 (aRoundingAmount.getValue ()) ? aRoundingAmount : null;
+      m_aDuePayableAmount = aSTSHMS.hasDuePayableAmountEntries () ? aSTSHMS.getDuePayableAmountAtIndex (0) : null;
+    }
+    else
+    {
+      m_aLineTotalAmount = null;
+      m_aTaxBasisTotalAmount = null;
+      m_aGrandTotalAmount = null;
+      m_aAllowanceTotalAmount = null;
+      m_aChargeTotalAmount = null;
+      m_aPrepaidAmount = null;
+      m_aRoundingAmount = null;
+      m_aDuePayableAmount = null;
+    }
+  }
+
+  private static <T> void _addIfNotNull (@Nonnull final List <T> aList, @Nullable final T aElement)
+  {
+    if (aElement != null)
+      aList.add (aElement);
+  }
+
+  /**
+   * @return BT-90 as a seller identifier with scheme "SEPA", if at least one
+   *         payment means is a direct debit. May be <code>null</code>.
+   */
+  @Nullable
+  private static IDType _getSEPACreditorID (@Nonnull final HeaderTradeSettlementType aHeaderSettlement)
+  {
+    final IDType aCreditorRefID = AbstractCIIToUBLConverter._getNonEmpty (aHeaderSettlement.getCreditorReferenceID ());
+    if (aCreditorRefID == null)
+      return null;
+
+    for (final TradeSettlementPaymentMeansType aPM : aHeaderSettlement.getSpecifiedTradeSettlementPaymentMeans ())
+      if (AbstractCIIToUBLConverter.isPaymentMeansCodeDirectDebit (aPM.getTypeCodeValue ()))
+      {
+        final IDType ret = new IDType ();
+        ret.setValue (aCreditorRefID.getValue ());
+        ret.setSchemeID ("SEPA");
+        ret.setSchemeName (aCreditorRefID.getSchemeName ());
+        ret.setSchemeAgencyID (aCreditorRefID.getSchemeAgencyID ());
+        ret.setSchemeAgencyName (aCreditorRefID.getSchemeAgencyName ());
+        ret.setSchemeVersionID (aCreditorRefID.getSchemeVersionID ());
+        ret.setSchemeDataURI (aCreditorRefID.getSchemeDataURI ());
+        ret.setSchemeURI (aCreditorRefID.getSchemeURI ());
+        return ret;
+      }
+    return null;
+  }
+
+  /**
+   * @return The source CII document. Never <code>null</code>.
+   */
+  @Nonnull
+  public CrossIndustryInvoiceType getCIIInvoice ()
+  {
+    return m_aCIIInvoice;
+  }
+
+  @Nullable
+  public ExchangedDocumentType getExchangedDocument ()
+  {
+    return m_aED;
+  }
+
+  @Nonnull
+  public SupplyChainTradeTransactionType getSupplyChainTradeTransaction ()
+  {
+    return m_aSCTT;
+  }
+
+  @Nonnull
+  public HeaderTradeAgreementType getHeaderAgreement ()
+  {
+    return m_aHeaderAgreement;
+  }
+
+  @Nonnull
+  public HeaderTradeDeliveryType getHeaderDelivery ()
+  {
+    return m_aHeaderDelivery;
+  }
+
+  @Nonnull
+  public HeaderTradeSettlementType getHeaderSettlement ()
+  {
+    return m_aHeaderSettlement;
+  }
+
+  /**
+   * @return {@link ETriState#TRUE} if the document is an invoice,
+   *         {@link ETriState#FALSE} if it is a credit note and
+   *         {@link ETriState#UNDEFINED} if it cannot be determined. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public ETriState getInvoiceType ()
+  {
+    return m_eInvoiceType;
+  }
+
+  /**
+   * @return BT-1 Invoice number. May be <code>null</code>.
+   */
+  @Nullable
+  public String getID ()
+  {
+    return m_aED == null ? null : m_aED.getIDValue ();
+  }
+
+  /**
+   * @return BT-2 Invoice issue date. May be <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getIssueDate ()
+  {
+    return m_aIssueDate;
+  }
+
+  /**
+   * @return BT-3 Invoice type code. May be <code>null</code>.
+   */
+  @Nullable
+  public String getTypeCode ()
+  {
+    return m_aED == null ? null : m_aED.getTypeCodeValue ();
+  }
+
+  /**
+   * @return BT-5 Invoice currency code. May be <code>null</code>.
+   */
+  @Nullable
+  public String getDocumentCurrencyCode ()
+  {
+    return m_aHeaderSettlement.getInvoiceCurrencyCodeValue ();
+  }
+
+  /**
+   * @return BT-6 VAT accounting currency code. May be <code>null</code>.
+   */
+  @Nullable
+  public String getTaxCurrencyCode ()
+  {
+    return m_aHeaderSettlement.getTaxCurrencyCodeValue ();
+  }
+
+  /**
+   * @return BT-7 Value added tax point date. May be <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getTaxPointDate ()
+  {
+    return m_aTaxPointDate;
+  }
+
+  /**
+   * @return BT-9 Payment due date. May be <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getDueDate ()
+  {
+    return m_aDueDate;
+  }
+
+  /**
+   * @return BT-10 Buyer reference. May be <code>null</code>.
+   */
+  @Nullable
+  public String getBuyerReference ()
+  {
+    return m_aHeaderAgreement.getBuyerReferenceValue ();
+  }
+
+  /**
+   * @return BT-19 Buyer accounting reference. May be <code>null</code>.
+   */
+  @Nullable
+  public String getAccountingCost ()
+  {
+    return m_sAccountingCost;
+  }
+
+  /**
+   * @return <code>true</code> if BG-14 Invoicing period is present with start
+   *         and end date.
+   */
+  public boolean hasInvoicePeriod ()
+  {
+    return m_bInvoicePeriod;
+  }
+
+  /**
+   * @return BT-73 Invoicing period start date. May be <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getInvoicePeriodStartDate ()
+  {
+    return m_aInvoicePeriodStartDate;
+  }
+
+  /**
+   * @return BT-74 Invoicing period end date. May be <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getInvoicePeriodEndDate ()
+  {
+    return m_aInvoicePeriodEndDate;
+  }
+
+  /**
+   * @return <code>true</code> if an actual delivery event with an occurrence
+   *         date is present.
+   */
+  public boolean hasActualDeliveryEvent ()
+  {
+    return m_bActualDeliveryEvent;
+  }
+
+  /**
+   * @return BT-72 Actual delivery date. May be <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getActualDeliveryDate ()
+  {
+    return m_aActualDeliveryDate;
+  }
+
+  /**
+   * @return All BG-1 Invoice notes, with the subject code as a
+   *         <code>#code#</code> prefix. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <String> getAllNotes ()
+  {
+    return m_aNotes;
+  }
+
+  /**
+   * @return <code>true</code> if BT-13 Purchase order reference or BT-14 Sales
+   *         order reference is present.
+   */
+  public boolean hasOrderReference ()
+  {
+    return m_bOrderReference;
+  }
+
+  /**
+   * @return BT-13 Purchase order reference. Is an empty string if only the
+   *         sales order reference is present. May be <code>null</code>.
+   */
+  @Nullable
+  public String getOrderID ()
+  {
+    return m_sOrderID;
+  }
+
+  /**
+   * @return BT-14 Sales order reference. May be <code>null</code>.
+   */
+  @Nullable
+  public String getSalesOrderID ()
+  {
+    return m_sSalesOrderID;
+  }
+
+  /**
+   * @return BG-3 Preceding invoice reference. May be <code>null</code>.
+   */
+  @Nullable
+  public CIIDocumentReferenceModel getBillingReference ()
+  {
+    return m_aBillingReference;
+  }
+
+  /**
+   * @return BT-16 Despatch advice reference. May be <code>null</code>.
+   */
+  @Nullable
+  public CIIDocumentReferenceModel getDespatchDocumentReference ()
+  {
+    return m_aDespatchDocumentReference;
+  }
+
+  /**
+   * @return BT-15 Receiving advice reference. May be <code>null</code>.
+   */
+  @Nullable
+  public CIIDocumentReferenceModel getReceiptDocumentReference ()
+  {
+    return m_aReceiptDocumentReference;
+  }
+
+  /**
+   * @return All BT-17 Tender or lot references. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIIDocumentReferenceModel> getAllOriginatorDocumentReferences ()
+  {
+    return m_aOriginatorDocumentReferences;
+  }
+
+  /**
+   * @return BT-12 Contract reference. May be <code>null</code>.
+   */
+  @Nullable
+  public CIIDocumentReferenceModel getContractDocumentReference ()
+  {
+    return m_aContractDocumentReference;
+  }
+
+  /**
+   * @return All BG-24 Additional supporting documents. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIIDocumentReferenceModel> getAllAdditionalDocumentReferences ()
+  {
+    return m_aAdditionalDocumentReferences;
+  }
+
+  /**
+   * @return BT-11 Project reference. May be <code>null</code>.
+   */
+  @Nullable
+  public String getProjectReference ()
+  {
+    return m_sProjectReference;
+  }
+
+  /**
+   * @return BG-4 Seller, including BT-90 for direct debits. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public CIIPartyModel getSeller ()
+  {
+    return m_aSeller;
+  }
+
+  /**
+   * @return BG-7 Buyer. May be <code>null</code>.
+   */
+  @Nullable
+  public CIIPartyModel getBuyer ()
+  {
+    return m_aBuyer;
+  }
+
+  /**
+   * @return BG-10 Payee. May be <code>null</code>.
+   */
+  @Nullable
+  public CIIPartyModel getPayee ()
+  {
+    return m_aPayee;
+  }
+
+  /**
+   * @return BG-11 Seller tax representative party. May be <code>null</code>.
+   */
+  @Nullable
+  public CIIPartyModel getTaxRepresentative ()
+  {
+    return m_aTaxRepresentative;
+  }
+
+  /**
+   * @return The ship to party of BG-13 Delivery information. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public CIIPartyModel getShipTo ()
+  {
+    return m_aShipTo;
+  }
+
+  /**
+   * @return All supported BG-16 Payment instructions. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIIPaymentMeansModel> getAllPaymentMeans ()
+  {
+    return m_aPaymentMeans;
+  }
+
+  /**
+   * @return The non-empty BT-20 Payment terms, one list per payment terms
+   *         element. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <List <TextType>> getAllPaymentTerms ()
+  {
+    return m_aPaymentTerms;
+  }
+
+  /**
+   * @return All BG-20 Document level allowances and BG-21 Document level
+   *         charges. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIIAllowanceChargeModel> getAllAllowanceCharges ()
+  {
+    return m_aAllowanceCharges;
+  }
+
+  /**
+   * @return BT-110 Invoice total VAT amount and BT-111 Invoice total VAT
+   *         amount in accounting currency. Never <code>null</code> but maybe
+   *         empty.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <AmountType> getAllTaxTotalAmounts ()
+  {
+    return m_aTaxTotalAmounts;
+  }
+
+  /**
+   * @return All BG-23 VAT breakdowns. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIITaxSubtotalModel> getAllTaxSubtotals ()
+  {
+    return m_aTaxSubtotals;
+  }
+
+  /**
+   * @return BT-106 Sum of Invoice line net amount. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getLineTotalAmount ()
+  {
+    return m_aLineTotalAmount;
+  }
+
+  /**
+   * @return BT-109 Invoice total amount without VAT. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getTaxBasisTotalAmount ()
+  {
+    return m_aTaxBasisTotalAmount;
+  }
+
+  /**
+   * @return BT-112 Invoice total amount with VAT. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getGrandTotalAmount ()
+  {
+    return m_aGrandTotalAmount;
+  }
+
+  /**
+   * @return BT-107 Sum of allowances on document level. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public AmountType getAllowanceTotalAmount ()
+  {
+    return m_aAllowanceTotalAmount;
+  }
+
+  /**
+   * @return BT-108 Sum of charges on document level. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getChargeTotalAmount ()
+  {
+    return m_aChargeTotalAmount;
+  }
+
+  /**
+   * @return BT-113 Paid amount. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getPrepaidAmount ()
+  {
+    return m_aPrepaidAmount;
+  }
+
+  /**
+   * @return BT-114 Rounding amount, if it is not 0. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getRoundingAmount ()
+  {
+    return m_aRoundingAmount;
+  }
+
+  /**
+   * @return BT-115 Amount due for payment. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getDuePayableAmount ()
+  {
+    return m_aDuePayableAmount;
+  }
+
+  /**
+   * @return The number of line items. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getLineCount ()
+  {
+    return m_aSCTT.getIncludedSupplyChainTradeLineItemCount ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("ID", getID ())
+                                       .append ("InvoiceType", m_eInvoiceType)
+                                       .append ("IssueDate", m_aIssueDate)
+                                       .append ("DueDate", m_aDueDate)
+                                       .append ("TaxPointDate", m_aTaxPointDate)
+                                       .append ("AccountingCost", m_sAccountingCost)
+                                       .append ("InvoicePeriod", m_bInvoicePeriod)
+                                       .append ("InvoicePeriodStartDate", m_aInvoicePeriodStartDate)
+                                       .append ("InvoicePeriodEndDate", m_aInvoicePeriodEndDate)
+                                       .append ("ActualDeliveryEvent", m_bActualDeliveryEvent)
+                                       .append ("ActualDeliveryDate", m_aActualDeliveryDate)
+                                       .append ("Notes", m_aNotes)
+                                       .append ("OrderReference", m_bOrderReference)
+                                       .append ("OrderID", m_sOrderID)
+                                       .append ("SalesOrderID", m_sSalesOrderID)
+                                       .append ("BillingReference", m_aBillingReference)
+                                       .append ("DespatchDocumentReference", m_aDespatchDocumentReference)
+                                       .append ("ReceiptDocumentReference", m_aReceiptDocumentReference)
+                                       .append ("OriginatorDocumentReferences", m_aOriginatorDocumentReferences)
+                                       .append ("ContractDocumentReference", m_aContractDocumentReference)
+                                       .append ("AdditionalDocumentReferences", m_aAdditionalDocumentReferences)
+                                       .append ("ProjectReference", m_sProjectReference)
+                                       .append ("Seller", m_aSeller)
+                                       .append ("Buyer", m_aBuyer)
+                                       .append ("Payee", m_aPayee)
+                                       .append ("TaxRepresentative", m_aTaxRepresentative)
+                                       .append ("ShipTo", m_aShipTo)
+                                       .append ("PaymentMeans", m_aPaymentMeans)
+                                       .append ("PaymentTerms", m_aPaymentTerms)
+                                       .append ("AllowanceCharges", m_aAllowanceCharges)
+                                       .append ("TaxTotalAmounts", m_aTaxTotalAmounts)
+                                       .append ("TaxSubtotals", m_aTaxSubtotals)
+                                       .append ("LineTotalAmount", m_aLineTotalAmount)
+                                       .append ("TaxBasisTotalAmount", m_aTaxBasisTotalAmount)
+                                       .append ("GrandTotalAmount", m_aGrandTotalAmount)
+                                       .append ("AllowanceTotalAmount", m_aAllowanceTotalAmount)
+                                       .append ("ChargeTotalAmount", m_aChargeTotalAmount)
+                                       .append ("PrepaidAmount", m_aPrepaidAmount)
+                                       .append ("RoundingAmount", m_aRoundingAmount)
+                                       .append ("DuePayableAmount", m_aDuePayableAmount)
+                                       .getToString ();
+  }
+
+  private static void _checkFailFast (final boolean bFailFast, @Nonnull final ErrorList aErrorList, final int nErrorIndex)
+  {
+    if (bFailFast && AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorIndex))
+      throw new FailFastException ();
+  }
+
+  /**
+   * Get the number of line items of the provided CII document, without
+   * creating the header model.
+   *
+   * @param aCIIInvoice
+   *        The CII document. May not be <code>null</code>.
+   * @return The number of line items. Always &ge; 0.
+   * @see #getLineCount()
+   */
+  @Nonnegative
+  public static int getLineCount (@Nonnull final CrossIndustryInvoiceType aCIIInvoice)
+  {
+    ValueEnforcer.notNull (aCIIInvoice, "CIIInvoice");
+
+    final SupplyChainTradeTransactionType aSCTT = aCIIInvoice.getSupplyChainTradeTransaction ();
+    return aSCTT == null ? 0 : aSCTT.getIncludedSupplyChainTradeLineItemCount ();
+  }
+
+  /**
+   * Extract the header model from the provided CII document.
+   *
+   * @param aCIIInvoice
+   *        The CII document. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all errors of the document header.
+   *        May not be <code>null</code>.
+   * @return <code>null</code> if one of the mandatory elements
+   *         SupplyChainTradeTransaction, ApplicableHeaderTradeAgreement,
+   *         ApplicableHeaderTradeDelivery or ApplicableHeaderTradeSettlement is
+   *         missing.
+   */
+  @Nullable
+  public static CIIHeaderModel create (@Nonnull final CrossIndustryInvoiceType aCIIInvoice, @Nonnull final ErrorList aErrorList)
+  {
+    return create (aCIIInvoice, false, aErrorList);
+  }
+
+  /**
+   * Extract the header model from the provided CII document.
+   *
+   * @param aCIIInvoice
+   *        The CII document. May not be <code>null</code>.
+   * @param bFailFast
+   *        <code>true</code> to stop the mapping after the first business
+   *        group that added an error to the error list. Errors that were
+   *        contained in the error list before are ignored.
+   * @param aErrorList
+   *        The error list to be filled with all errors of the document header.
+   *        May not be <code>null</code>.
+   * @return <code>null</code> if one of the mandatory elements
+   *         SupplyChainTradeTransaction, ApplicableHeaderTradeAgreement,
+   *         ApplicableHeaderTradeDelivery or ApplicableHeaderTradeSettlement is
+   *         missing, or if the mapping was stopped in fail-fast mode.
+   */
+  @Nullable
+  public static CIIHeaderModel create (@Nonnull final CrossIndustryInvoiceType aCIIInvoice,
+                                       final boolean bFailFast,
+                                       @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCIIInvoice, "CIIInvoice");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final SupplyChainTradeTransactionType aSCTT = aCIIInvoice.getSupplyChainTradeTransaction ();
+    if (aSCTT == null)
+    {
+      // Mandatory element
+      return null;
+    }
+
+    final HeaderTradeAgreementType aHeaderAgreement = aSCTT.getApplicableHeaderTradeAgreement ();
+    final HeaderTradeDeliveryType aHeaderDelivery = aSCTT.getApplicableHeaderTradeDelivery ();
+    final HeaderTradeSettlementType aHeaderSettlement = aSCTT.getApplicableHeaderTradeSettlement ();
+    if (aHeaderAgreement == null || aHeaderDelivery == null || aHeaderSettlement == null)
+    {
+      // All mandatory elements
+      return null;
+    }
+
+    try
+    {
+      return new CIIHeaderModel (aCIIInvoice, aSCTT, aHeaderAgreement, aHeaderDelivery, aHeaderSettlement, bFailFast, aErrorList);
+    }
+    catch (final FailFastException ex)
+    {
+      // The error is already contained in the error list
+      return null;
+    }
+  }
+}
@@ -0,0 +1,598 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.builder.IBuilder;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * A deterministic generator for synthetic CII D16B invoices. The same settings
+ * (including the seed) always create exactly the same document. The created
+ * documents are valid according to the CII XML Schema and the EN 16931
+ * business rules, so they can be used to test and benchmark the conversion with
+ * arbitrary numbers of line items, tax categories, payment means, referenced
+ * documents and attachment sizes. The document is written with StAX, so that
+ * even huge documents can be created with little memory. Instances are created
+ * via {@link #builder()}.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Immutable
+public final class CIIInvoiceGenerator
+{
+  public static final long DEFAULT_SEED = 0;
+  public static final int DEFAULT_LINE_COUNT = 10;
+  public static final int DEFAULT_TAX_CATEGORY_COUNT = 1;
+  public static final int DEFAULT_PAYMENT_MEANS_COUNT = 1;
+  public static final int DEFAULT_REFERENCED_DOCUMENT_COUNT = 0;
+  public static final int DEFAULT_ATTACHMENT_SIZE = 0;
+  public static final boolean DEFAULT_CREDIT_NOTE = false;
+
+  private static final String NS_RSM = "urn:un:unece:uncefact:data:standard:CrossIndustryInvoice:100";
+  private static final String NS_RAM = "urn:un:unece:uncefact:data:standard:ReusableAggregateBusinessInformationEntity:100";
+  private static final String NS_UDT = "urn:un:unece:uncefact:data:standard:UnqualifiedDataType:100";
+
+  // Category code and rate
+  private static final String [] [] TAX_CATEGORIES = new String [] [] { { "S", "19" },
+                                                                        { "S", "7" },
+                                                                        { "Z", "0" },
+                                                                        { "E", "0" },
+                                                                        { "S", "16" },
+                                                                        { "S", "5" },
+                                                                        { "S", "10" },
+                                                                        { "S", "25" } };
+  /** The maximum number of distinct tax categories */
+  public static final int MAX_TAX_CATEGORY_COUNT = TAX_CATEGORIES.length;
+
+  // All of them require an IBAN
+  private static final String [] PAYMENT_MEANS_CODES = new String [] { "58", "30", "42" };
+  private static final String [] UNIT_CODES = new String [] { "C62", "H87", "HUR", "KGM", "XPP" };
+  private static final LocalDate BASE_DATE = LocalDate.of (2022, 1, 1);
+  // Must be a multiple of 3 so that no padding is created in between
+  private static final int ATTACHMENT_CHUNK_SIZE = 3 * 1024;
+
+  private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance ();
+
+  private final long m_nSeed;
+  private final int m_nLineCount;
+  private final int m_nTaxCategoryCount;
+  private final int m_nPaymentMeansCount;
+  private final int m_nReferencedDocumentCount;
+  private final int m_nAttachmentSize;
+  private final boolean m_bCreditNote;
+
+  CIIInvoiceGenerator (final long nSeed,
+                       @Nonnegative final int nLineCount,
+                       @Nonnegative final int nTaxCategoryCount,
+                       @Nonnegative final int nPaymentMeansCount,
+                       @Nonnegative final int nReferencedDocumentCount,
+                       @Nonnegative final int nAttachmentSize,
+                       final boolean bCreditNote)
+  {
+    m_nSeed = nSeed;
+    m_nLineCount = nLineCount;
+    m_nTaxCategoryCount = nTaxCategoryCount;
+    m_nPaymentMeansCount = nPaymentMeansCount;
+    m_nReferencedDocumentCount = nReferencedDocumentCount;
+    m_nAttachmentSize = nAttachmentSize;
+    m_bCreditNote = bCreditNote;
+  }
+
+  public long getSeed ()
+  {
+    return m_nSeed;
+  }
+
+  @Nonnegative
+  public int getLineCount ()
+  {
+    return m_nLineCount;
+  }
+
+  @Nonnegative
+  public int getTaxCategoryCount ()
+  {
+    return m_nTaxCategoryCount;
+  }
+
+  @Nonnegative
+  public int getPaymentMeansCount ()
+  {
+    return m_nPaymentMeansCount;
+  }
+
+  @Nonnegative
+  public int getReferencedDocumentCount ()
+  {
+    return m_nReferencedDocumentCount;
+  }
+
+  /**
+   * @return The number of bytes of the attachment of each referenced document.
+   *         0 means that no attachments are created.
+   */
+  @Nonnegative
+  public int getAttachmentSize ()
+  {
+    return m_nAttachmentSize;
+  }
+
+  public boolean isCreditNote ()
+  {
+    return m_bCreditNote;
+  }
+
+  private static void _element (@Nonnull final XMLStreamWriter aWriter,
+                                @Nonnull final String sPrefix,
+                                @Nonnull final String sNamespaceURI,
+                                @Nonnull final String sLocalName,
+                                @Nonnull final String sValue) throws XMLStreamException
+  {
+    aWriter.writeStartElement (sPrefix, sLocalName, sNamespaceURI);
+    aWriter.writeCharacters (sValue);
+    aWriter.writeEndElement ();
+  }
+
+  private static void _ram (@Nonnull final XMLStreamWriter aWriter,
+                            @Nonnull final String sLocalName,
+                            @Nonnull final String sValue) throws XMLStreamException
+  {
+    _element (aWriter, "ram", NS_RAM, sLocalName, sValue);
+  }
+
+  private static void _ramStart (@Nonnull final XMLStreamWriter aWriter, @Nonnull final String sLocalName) throws XMLStreamException
+  {
+    aWriter.writeStartElement ("ram", sLocalName, NS_RAM);
+  }
+
+  private static void _ramWithAttr (@Nonnull final XMLStreamWriter aWriter,
+                                    @Nonnull final String sLocalName,
+                                    @Nonnull final String sAttrName,
+                                    @Nonnull final String sAttrValue,
+                                    @Nonnull final String sValue) throws XMLStreamException
+  {
+    _ramStart (aWriter, sLocalName);
+    aWriter.writeAttribute (sAttrName, sAttrValue);
+    aWriter.writeCharacters (sValue);
+    aWriter.writeEndElement ();
+  }
+
+  private static void _date (@Nonnull final XMLStreamWriter aWriter,
+                             @Nonnull final String sLocalName,
+                             @Nonnull final LocalDate aDate) throws XMLStreamException
+  {
+    _ramStart (aWriter, sLocalName);
+    aWriter.writeStartElement ("udt", "DateTimeString", NS_UDT);
+    aWriter.writeAttribute ("format", "102");
+    aWriter.writeCharacters (aDate.format (DateTimeFormatter.BASIC_ISO_DATE));
+    aWriter.writeEndElement ();
+    aWriter.writeEndElement ();
+  }
+
+  private static void _address (@Nonnull final XMLStreamWriter aWriter,
+                                @Nonnull final Random aRandom,
+                                @Nonnull final String sName) throws XMLStreamException
+  {
+    _ramStart (aWriter, "PostalTradeAddress");
+    _ram (aWriter, "PostcodeCode", Integer.toString (10000 + aRandom.nextInt (90000)));
+    _ram (aWriter, "LineOne", sName + " street " + (1 + aRandom.nextInt (200)));
+    _ram (aWriter, "CityName", sName + " city");
+    _ram (aWriter, "CountryID", "DE");
+    aWriter.writeEndElement ();
+  }
+
+  @Nonnull
+  private static String _createIBAN (@Nonnull final Random aRandom)
+  {
+    final StringBuilder aSB = new StringBuilder (22).append ("DE");
+    for (int i = 0; i < 20; ++i)
+      aSB.append ((char) ('0' + aRandom.nextInt (10)));
+    return aSB.toString ();
+  }
+
+  private static void _attachment (@Nonnull final XMLStreamWriter aWriter,
+                                   @Nonnull final Random aRandom,
+                                   @Nonnegative final int nIndex,
+                                   @Nonnegative final int nSize) throws XMLStreamException
+  {
+    _ramStart (aWriter, "AttachmentBinaryObject");
+    aWriter.writeAttribute ("mimeCode", "application/pdf");
+    aWriter.writeAttribute ("filename", "attachment-" + nIndex + ".pdf");
+
+    // Write the content in chunks, so that the whole attachment is never in
+    // memory
+    final Base64.Encoder aEncoder = Base64.getEncoder ();
+    final byte [] aChunk = new byte [ATTACHMENT_CHUNK_SIZE];
+    int nRemaining = nSize;
+    while (nRemaining > 0)
+    {
+      final int nLen = Math.min (nRemaining, ATTACHMENT_CHUNK_SIZE);
+      aRandom.nextBytes (aChunk);
+      final byte [] aEncoded = aEncoder.encode (nLen == ATTACHMENT_CHUNK_SIZE ? aChunk : Arrays.copyOf (aChunk, nLen));
+      aWriter.writeCharacters (new String (aEncoded, StandardCharsets.ISO_8859_1));
+      nRemaining -= nLen;
+    }
+    aWriter.writeEndElement ();
+  }
+
+  private void _write (@Nonnull final XMLStreamWriter aWriter) throws XMLStreamException
+  {
+    final Random aRandom = new Random (m_nSeed);
+    final LocalDate aIssueDate = BASE_DATE.plusDays (aRandom.nextInt (365));
+    final String sID = "GEN-" + m_nSeed;
+
+    aWriter.writeStartDocument (StandardCharsets.UTF_8.name (), "1.0");
+    aWriter.setPrefix ("rsm", NS_RSM);
+    aWriter.setPrefix ("ram", NS_RAM);
+    aWriter.setPrefix ("udt", NS_UDT);
+    aWriter.writeStartElement ("rsm", "CrossIndustryInvoice", NS_RSM);
+    aWriter.writeNamespace ("rsm", NS_RSM);
+    aWriter.writeNamespace ("ram", NS_RAM);
+    aWriter.writeNamespace ("udt", NS_UDT);
+
+    aWriter.writeStartElement ("rsm", "ExchangedDocumentContext", NS_RSM);
+    _ramStart (aWriter, "GuidelineSpecifiedDocumentContextParameter");
+    _ram (aWriter, "ID", "urn:cen.eu:en16931:2017");
+    aWriter.writeEndElement ();
+    aWriter.writeEndElement ();
+
+    aWriter.writeStartElement ("rsm", "ExchangedDocument", NS_RSM);
+    _ram (aWriter, "ID", sID);
+    _ram (aWriter, "TypeCode", m_bCreditNote ? "381" : "380");
+    _date (aWriter, "IssueDateTime", aIssueDate);
+    aWriter.writeEndElement ();
+
+    aWriter.writeStartElement ("rsm", "SupplyChainTradeTransaction", NS_RSM);
+
+    // Lines - remember the totals per tax category
+    final BigDecimal [] aTaxBasis = new BigDecimal [m_nTaxCategoryCount];
+    for (int nLine = 1; nLine <= m_nLineCount; ++nLine)
+    {
+      final int nTaxCategory = aRandom.nextInt (m_nTaxCategoryCount);
+      final BigDecimal aPrice = BigDecimal.valueOf (100 + aRandom.nextInt (99_900), 2);
+      final BigDecimal aQuantity = BigDecimal.valueOf (1 + aRandom.nextInt (20));
+      final BigDecimal aLineTotal = aPrice.multiply (aQuantity).setScale (2, RoundingMode.HALF_UP);
+      aTaxBasis[nTaxCategory] = aTaxBasis[nTaxCategory] == null ? aLineTotal : aTaxBasis[nTaxCategory].add (aLineTotal);
+
+      _ramStart (aWriter, "IncludedSupplyChainTradeLineItem");
+      _ramStart (aWriter, "AssociatedDocumentLineDocument");
+      _ram (aWriter, "LineID", Integer.toString (nLine));
+      aWriter.writeEndElement ();
+      _ramStart (aWriter, "SpecifiedTradeProduct");
+      _ram (aWriter, "SellerAssignedID", "ART-" + aRandom.nextInt (100_000));
+      _ram (aWriter, "Name", "Article " + nLine);
+      aWriter.writeEndElement ();
+      _ramStart (aWriter, "SpecifiedLineTradeAgreement");
+      _ramStart (aWriter, "NetPriceProductTradePrice");
+      _ram (aWriter, "ChargeAmount", aPrice.toPlainString ());
+      aWriter.writeEndElement ();
+      aWriter.writeEndElement ();
+      _ramStart (aWriter, "SpecifiedLineTradeDelivery");
+      _ramWithAttr (aWriter,
+                    "BilledQuantity",
+                    "unitCode",
+                    UNIT_CODES[aRandom.nextInt (UNIT_CODES.length)],
+                    aQuantity.toPlainString ());
+      aWriter.writeEndElement ();
+      _ramStart (aWriter, "SpecifiedLineTradeSettlement");
+      _ramStart (aWriter, "ApplicableTradeTax");
+      _ram (aWriter, "TypeCode", "VAT");
+      _ram (aWriter, "CategoryCode", TAX_CATEGORIES[nTaxCategory][0]);
+      _ram (aWriter, "RateApplicablePercent", TAX_CATEGORIES[nTaxCategory][1]);
+      aWriter.writeEndElement ();
+      _ramStart (aWriter, "SpecifiedTradeSettlementLineMonetarySummation");
+      _ram (aWriter, "LineTotalAmount", aLineTotal.toPlainString ());
+      aWriter.writeEndElement ();
+      aWriter.writeEndElement ();
+      aWriter.writeEndElement ();
+    }
+
+    // Header agreement
+    _ramStart (aWriter, "ApplicableHeaderTradeAgreement");
+    _ram (aWriter, "BuyerReference", "REF-" + aRandom.nextInt (1_000_000));
+    _ramStart (aWriter, "SellerTradeParty");
+    final String sSellerName = "Seller " + aRandom.nextInt (1000);
+    _ram (aWriter, "Name", sSellerName);
+    _address (aWriter, aRandom, sSellerName);
+    _ramStart (aWriter, "SpecifiedTaxRegistration");
+    _ramWithAttr (aWriter, "ID", "schemeID", "VA", "DE" + (100_000_000 + aRandom.nextInt (900_000_000)));
+    aWriter.writeEndElement ();
+    aWriter.writeEndElement ();
+    _ramStart (aWriter, "BuyerTradeParty");
+    final String sBuyerName = "Buyer " + aRandom.nextInt (1000);
+    _ram (aWriter, "ID", "B-" + aRandom.nextInt (100_000));
+    _ram (aWriter, "Name", sBuyerName);
+    _address (aWriter, aRandom, sBuyerName);
+    aWriter.writeEndElement ();
+    for (int nDoc = 1; nDoc <= m_nReferencedDocumentCount; ++nDoc)
+    {
+      _ramStart (aWriter, "AdditionalReferencedDocument");
+      _ram (aWriter, "IssuerAssignedID", "DOC-" + nDoc);
+      _ram (aWriter, "TypeCode", "916");
+      _ram (aWriter, "Name", "Supporting document " + nDoc);
+      if (m_nAttachmentSize > 0)
+        _attachment (aWriter, aRandom, nDoc, m_nAttachmentSize);
+      aWriter.writeEndElement ();
+    }
+    aWriter.writeEndElement ();
+
+    // Header delivery
+    _ramStart (aWriter, "ApplicableHeaderTradeDelivery");
+    aWriter.writeEndElement ();
+
+    // Header settlement
+    _ramStart (aWriter, "ApplicableHeaderTradeSettlement");
+    _ram (aWriter, "InvoiceCurrencyCode", "EUR");
+    for (int i = 0; i < m_nPaymentMeansCount; ++i)
+    {
+      _ramStart (aWriter, "SpecifiedTradeSettlementPaymentMeans");
+      _ram (aWriter, "TypeCode", PAYMENT_MEANS_CODES[i % PAYMENT_MEANS_CODES.length]);
+      _ramStart (aWriter, "PayeePartyCreditorFinancialAccount");
+      _ram (aWriter, "IBANID", _createIBAN (aRandom));
+      aWriter.writeEndElement ();
+      aWriter.writeEndElement ();
+    }
+
+    BigDecimal aLineTotal = BigDecimal.ZERO.setScale (2);
+    BigDecimal aTaxTotal = BigDecimal.ZERO.setScale (2);
+    for (int i = 0; i < m_nTaxCategoryCount; ++i)
+      if (aTaxBasis[i] != null)
+      {
+        final BigDecimal aTax = aTaxBasis[i].multiply (new BigDecimal (TAX_CATEGORIES[i][1]))
+                                            .divide (BigDecimal.valueOf (100), 2, RoundingMode.HALF_UP);
+        aLineTotal = aLineTotal.add (aTaxBasis[i]);
+        aTaxTotal = aTaxTotal.add (aTax);
+
+        _ramStart (aWriter, "ApplicableTradeTax");
+        _ram (aWriter, "CalculatedAmount", aTax.toPlainString ());
+        _ram (aWriter, "TypeCode", "VAT");
+        if ("E".equals (TAX_CATEGORIES[i][0]))
+          _ram (aWriter, "ExemptionReason", "Exempt from VAT");
+        _ram (aWriter, "BasisAmount", aTaxBasis[i].toPlainString ());
+        _ram (aWriter, "CategoryCode", TAX_CATEGORIES[i][0]);
+        _ram (aWriter, "RateApplicablePercent", TAX_CATEGORIES[i][1]);
+        aWriter.writeEndElement ();
+      }
+
+    _ramStart (aWriter, "SpecifiedTradePaymentTerms");
+    _date (aWriter, "DueDateDateTime", aIssueDate.plusDays (30));
+    aWriter.writeEndElement ();
+
+    final BigDecimal aGrandTotal = aLineTotal.add (aTaxTotal);
+    _ramStart (aWriter, "SpecifiedTradeSettlementHeaderMonetarySummation");
+    _ram (aWriter, "LineTotalAmount", aLineTotal.toPlainString ());
+    _ram (aWriter, "TaxBasisTotalAmount", aLineTotal.toPlainString ());
+    _ramWithAttr (aWriter, "TaxTotalAmount", "currencyID", "EUR", aTaxTotal.toPlainString ());
+    _ram (aWriter, "GrandTotalAmount", aGrandTotal.toPlainString ());
+    _ram (aWriter, "DuePayableAmount", aGrandTotal.toPlainString ());
+    aWriter.writeEndElement ();
+    aWriter.writeEndElement ();
+
+    // SupplyChainTradeTransaction
+    aWriter.writeEndElement ();
+    // CrossIndustryInvoice
+    aWriter.writeEndElement ();
+    aWriter.writeEndDocument ();
+  }
+
+  /**
+   * Write the generated CII invoice as UTF-8 encoded XML to the provided
+   * output stream.
+   *
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>. It is
+   *        not closed by this method.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public void write (@Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+
+    try
+    {
+      final XMLStreamWriter aWriter = XML_OUTPUT_FACTORY.createXMLStreamWriter (aOS, StandardCharsets.UTF_8.name ());
+      try
+      {
+        _write (aWriter);
+        aWriter.flush ();
+      }
+      finally
+      {
+        // Does not close the underlying stream
+        aWriter.close ();
+      }
+    }
+    catch (final XMLStreamException ex)
+    {
+      throw new IOException ("Failed to write generated CII invoice", ex);
+    }
+  }
+
+  /**
+   * @return The generated CII invoice as UTF-8 encoded XML. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public byte [] getAsBytes ()
+  {
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      write (aBAOS);
+      return aBAOS.toByteArray ();
+    }
+    catch (final IOException ex)
+    {
+      // Cannot happen for an in-memory stream
+      throw new UncheckedIOException (ex);
+    }
+  }
+
+  /**
+   * @return The generated CII invoice as a domain object. Only
+   *         <code>null</code> if the generated document could not be read,
+   *         which indicates a bug in this class.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType getAsCrossIndustryInvoice ()
+  {
+    return CIIUnmarshallerPool.getShared (false).read (getAsBytes (), new ErrorList ());
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("Seed", m_nSeed)
+                                       .append ("LineCount", m_nLineCount)
+                                       .append ("TaxCategoryCount", m_nTaxCategoryCount)
+                                       .append ("PaymentMeansCount", m_nPaymentMeansCount)
+                                       .append ("ReferencedDocumentCount", m_nReferencedDocumentCount)
+                                       .append ("AttachmentSize", m_nAttachmentSize)
+                                       .append ("CreditNote", m_bCreditNote)
+                                       .getToString ();
+  }
+
+  /**
+   * @return A new builder with all default values. Never <code>null</code>.
+   */
+  @Nonnull
+  public static Builder builder ()
+  {
+    return new Builder ();
+  }
+
+  /**
+   * Builder for {@link CIIInvoiceGenerator}.
+   *
+   * @author Philip Helger
+   */
+  @NotThreadSafe
+  public static final class Builder implements IBuilder <CIIInvoiceGenerator>
+  {
+    private long m_nSeed = DEFAULT_SEED;
+    private int m_nLineCount = DEFAULT_LINE_COUNT;
+    private int m_nTaxCategoryCount = DEFAULT_TAX_CATEGORY_COUNT;
+    private int m_nPaymentMeansCount = DEFAULT_PAYMENT_MEANS_COUNT;
+    private int m_nReferencedDocumentCount = DEFAULT_REFERENCED_DOCUMENT_COUNT;
+    private int m_nAttachmentSize = DEFAULT_ATTACHMENT_SIZE;
+    private boolean m_bCreditNote = DEFAULT_CREDIT_NOTE;
+
+    Builder ()
+    {}
+
+    @Nonnull
+    public Builder seed (final long n)
+    {
+      m_nSeed = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder lineCount (final int n)
+    {
+      ValueEnforcer.isGT0 (n, "LineCount");
+      m_nLineCount = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder taxCategoryCount (final int n)
+    {
+      ValueEnforcer.isBetweenInclusive (n, "TaxCategoryCount", 1, MAX_TAX_CATEGORY_COUNT);
+      m_nTaxCategoryCount = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder paymentMeansCount (final int n)
+    {
+      ValueEnforcer.isGE0 (n, "PaymentMeansCount");
+      m_nPaymentMeansCount = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder referencedDocumentCount (final int n)
+    {
+      ValueEnforcer.isGE0 (n, "ReferencedDocumentCount");
+      m_nReferencedDocumentCount = n;
+      return this;
+    }
+
+    /**
+     * @param n
+     *        The number of bytes of the attachment of each referenced
+     *        document. Use 0 to not create attachments.
+     * @return this for chaining
+     */
+    @Nonnull
+    public Builder attachmentSize (final int n)
+    {
+      ValueEnforcer.isGE0 (n, "AttachmentSize");
+      m_nAttachmentSize = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder creditNote (final boolean b)
+    {
+      m_bCreditNote = b;
+      return this;
+    }
+
+    @Nonnull
+    public CIIInvoiceGenerator build ()
+    {
+      return new CIIInvoiceGenerator (m_nSeed,
+                                      m_nLineCount,
+                                      m_nTaxCategoryCount,
+                                      m_nPaymentMeansCount,
+                                      m_nReferencedDocumentCount,
+                                      m_nAttachmentSize,
+                                      m_bCreditNote);
+    }
+  }
+}
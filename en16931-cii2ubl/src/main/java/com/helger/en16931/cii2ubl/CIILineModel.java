@@ -0,0 +1,653 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsImmutableObject;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.IErrorList;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.DocumentLineDocumentType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.LineTradeAgreementType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.LineTradeDeliveryType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.LineTradeSettlementType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.NoteType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ProductCharacteristicType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ProductClassificationType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ReferencedDocumentType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SpecifiedPeriodType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeAllowanceChargeType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeCountryType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradePriceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeProductType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeSettlementLineMonetarySummationType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeTaxType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.AmountType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.CodeType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.QuantityType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
+
+/**
+ * The UBL version independent part of a CII line item (BG-25 Invoice line).
+ * All decisions, date parsing, the sign swapping of quantity and price (see
+ * {@link CIIToUBLSettings#isSwapQuantitySignIfNeeded()} and
+ * {@link CIIToUBLSettings#isSwapPriceSignIfNeeded()}) and the respective error
+ * reporting happen here. The UBL version specific converters and the direct
+ * XML writer only map the model to their respective output.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public final class CIILineModel
+{
+  /**
+   * BG-32 Item attributes.
+   *
+   * @author Philip Helger
+   */
+  public static final class ItemProperty
+  {
+    private final TextType m_aName;
+    private final String m_sValue;
+
+    ItemProperty (@Nonnull final TextType aName, @Nullable final String sValue)
+    {
+      m_aName = aName;
+      m_sValue = sValue;
+    }
+
+    /**
+     * @return BT-160 Item attribute name. Never <code>null</code>.
+     */
+    @Nonnull
+    public TextType getName ()
+    {
+      return m_aName;
+    }
+
+    /**
+     * @return BT-161 Item attribute value. May be <code>null</code> if no value
+     *         is present, or empty.
+     */
+    @Nullable
+    public String getValue ()
+    {
+      return m_sValue;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return new ToStringGenerator (null).append ("Name", m_aName).append ("Value", m_sValue).getToString ();
+    }
+  }
+
+  private final IDType m_aID;
+  private final List <String> m_aNotes;
+  private final AmountType m_aLineExtensionAmount;
+  // Changed by the sign swap
+  private QuantityType m_aQuantity;
+  private final String m_sAccountingCost;
+  private final boolean m_bInvoicePeriod;
+  private final LocalDate m_aInvoicePeriodStartDate;
+  private final LocalDate m_aInvoicePeriodEndDate;
+  private final IDType m_aOrderLineID;
+  private final List <CIIDocumentReferenceModel> m_aDocumentReferences;
+  private final List <CIIAllowanceChargeModel> m_aAllowanceCharges;
+  private final TextType m_aItemDescription;
+  private final TextType m_aItemName;
+  private final IDType m_aBuyersItemID;
+  private final IDType m_aSellersItemID;
+  private final IDType m_aStandardItemID;
+  private final boolean m_bOriginCountry;
+  private final String m_sOriginCountryCode;
+  private final TextType m_aOriginCountryName;
+  private final List <CodeType> m_aItemClassificationCodes;
+  private final List <CIITaxCategoryModel> m_aTaxCategories;
+  private final List <ItemProperty> m_aItemProperties;
+  private final boolean m_bPrice;
+  // Changed by the sign swap
+  private AmountType m_aPriceAmount;
+  private final QuantityType m_aBaseQuantity;
+  private final List <CIIAllowanceChargeModel> m_aPriceAllowanceCharges;
+
+  private CIILineModel (@Nonnull final SupplyChainTradeLineItemType aLineItem,
+                        @Nonnull final CIIToUBLSettings aSettings,
+                        @Nonnull final IErrorList aErrorList)
+  {
+    final DocumentLineDocumentType aDLD = aLineItem.getAssociatedDocumentLineDocument ();
+    final LineTradeAgreementType aLineAgreement = aLineItem.getSpecifiedLineTradeAgreement ();
+    final LineTradeDeliveryType aLineDelivery = aLineItem.getSpecifiedLineTradeDelivery ();
+    final LineTradeSettlementType aLineSettlement = aLineItem.getSpecifiedLineTradeSettlement ();
+    final TradeProductType aLineProduct = aLineItem.getSpecifiedTradeProduct ();
+
+    // BT-126
+    m_aID = aDLD == null ? null : AbstractCIIToUBLConverter._getNonEmpty (aDLD.getLineID ());
+
+    // BT-127
+    final ICommonsList <String> aNotes = new CommonsArrayList <> ();
+    if (aDLD != null)
+      for (final NoteType aLineNote : aDLD.getIncludedNote ())
+        aNotes.add (AbstractCIIToUBLConverter._getNoteText (aLineNote));
+    m_aNotes = Collections.unmodifiableList (aNotes);
+
+    // BT-131
+    final TradeSettlementLineMonetarySummationType aSTSLMS;
+    if (aLineSettlement != null)
+      aSTSLMS = aLineSettlement.getSpecifiedTradeSettlementLineMonetarySummation ();
+    else
+      aSTSLMS = null;
+    m_aLineExtensionAmount = aSTSLMS != null && aSTSLMS.hasLineTotalAmountEntries () ? aSTSLMS.getLineTotalAmountAtIndex (0) : null;
+
+    // BT-129 and BT-130
+    m_aQuantity = aLineDelivery == null ? null : aLineDelivery.getBilledQuantity ();
+
+    // BT-133
+    if (aLineSettlement != null && aLineSettlement.hasReceivableSpecifiedTradeAccountingAccountEntries ())
+      m_sAccountingCost = aLineSettlement.getReceivableSpecifiedTradeAccountingAccountAtIndex (0).getIDValue ();
+    else
+      m_sAccountingCost = null;
+
+    // BG-26
+    final SpecifiedPeriodType aLineBillingPeriod = aLineSettlement == null ? null : aLineSettlement.getBillingSpecifiedPeriod ();
+    m_bInvoicePeriod = aLineBillingPeriod != null;
+    if (m_bInvoicePeriod && aLineBillingPeriod.getStartDateTime () != null)
+      m_aInvoicePeriodStartDate = AbstractCIIToUBLConverter._parseDate (aLineBillingPeriod.getStartDateTime ().getDateTimeString (), aErrorList);
+    else
+      m_aInvoicePeriodStartDate = null;
+    if (m_bInvoicePeriod && aLineBillingPeriod.getEndDateTime () != null)
+      m_aInvoicePeriodEndDate = AbstractCIIToUBLConverter._parseDate (aLineBillingPeriod.getEndDateTime ().getDateTimeString (), aErrorList);
+    else
+      m_aInvoicePeriodEndDate = null;
+
+    // BT-132
+    final ReferencedDocumentType aBuyerOrderReference = aLineAgreement == null ? null : aLineAgreement.getBuyerOrderReferencedDocument ();
+    m_aOrderLineID = aBuyerOrderReference == null ? null : AbstractCIIToUBLConverter._getNonEmpty (aBuyerOrderReference.getLineID ());
+
+    // BT-128
+    final ICommonsList <CIIDocumentReferenceModel> aDocRefs = new CommonsArrayList <> ();
+    if (aLineSettlement != null)
+      for (final ReferencedDocumentType aLineReferencedDocument : aLineSettlement.getAdditionalReferencedDocument ())
+      {
+        final CIIDocumentReferenceModel aDocRef = CIIDocumentReferenceModel.create (aLineReferencedDocument, aErrorList);
+        if (aDocRef != null)
+          aDocRefs.add (aDocRef);
+      }
+    m_aDocumentReferences = Collections.unmodifiableList (aDocRefs);
+
+    // BG-27 and BG-28
+    if (aLineSettlement != null)
+    {
+      final String [] aErrorPath = { "CrossIndustryInvoice",
+                                     "SupplyChainTradeTransaction",
+                                     "IncludedSupplyChainTradeLineItem",
+                                     "SpecifiedLineTradeSettlement",
+                                     "SpecifiedTradeAllowanceCharge" };
+      m_aAllowanceCharges = Collections.unmodifiableList (CIIAllowanceChargeModel.createAll (aLineSettlement.getSpecifiedTradeAllowanceCharge (),
+                                                                                             aErrorPath,
+                                                                                             aErrorList));
+    }
+    else
+      m_aAllowanceCharges = Collections.emptyList ();
+
+    // BG-31
+    final ICommonsList <CodeType> aClassificationCodes = new CommonsArrayList <> ();
+    final ICommonsList <ItemProperty> aItemProperties = new CommonsArrayList <> ();
+    if (aLineProduct != null)
+    {
+      // BT-154
+      m_aItemDescription = AbstractCIIToUBLConverter._getNonEmpty (aLineProduct.getDescription ());
+
+      // BT-153
+      m_aItemName = aLineProduct.hasNameEntries () ? AbstractCIIToUBLConverter._getNonEmpty (aLineProduct.getNameAtIndex (0)) : null;
+
+      // BT-156, BT-155 and BT-157
+      m_aBuyersItemID = AbstractCIIToUBLConverter._getNonEmpty (aLineProduct.getBuyerAssignedID ());
+      m_aSellersItemID = AbstractCIIToUBLConverter._getNonEmpty (aLineProduct.getSellerAssignedID ());
+      m_aStandardItemID = AbstractCIIToUBLConverter._getNonEmpty (aLineProduct.getGlobalID ());
+
+      // BT-159
+      final TradeCountryType aOriginCountry = aLineProduct.getOriginTradeCountry ();
+      m_bOriginCountry = aOriginCountry != null;
+      m_sOriginCountryCode = aOriginCountry == null ? null : aOriginCountry.getIDValue ();
+      if (aOriginCountry != null && aOriginCountry.hasNameEntries ())
+        m_aOriginCountryName = AbstractCIIToUBLConverter._getNonEmpty (aOriginCountry.getNameAtIndex (0));
+      else
+        m_aOriginCountryName = null;
+
+      // BT-158
+      for (final ProductClassificationType aLineProductClassification : aLineProduct.getDesignatedProductClassification ())
+      {
+        final CodeType aClassCode = AbstractCIIToUBLConverter._getNonEmpty (aLineProductClassification.getClassCode ());
+        if (aClassCode != null)
+          aClassificationCodes.add (aClassCode);
+      }
+
+      // BG-32
+      for (final ProductCharacteristicType aAPC : aLineProduct.getApplicableProductCharacteristic ())
+        if (aAPC.hasDescriptionEntries ())
+        {
+          final TextType aName = AbstractCIIToUBLConverter._getNonEmpty (aAPC.getDescriptionAtIndex (0));
+          if (aName != null)
+          {
+            // An empty value is still written
+            final String sValue = aAPC.hasValueEntries () ? StringHelper.getNotNull (aAPC.getValueAtIndex (0).getValue ()) : null;
+            aItemProperties.add (new ItemProperty (aName, sValue));
+          }
+        }
+    }
+    else
+    {
+      m_aItemDescription = null;
+      m_aItemName = null;
+      m_aBuyersItemID = null;
+      m_aSellersItemID = null;
+      m_aStandardItemID = null;
+      m_bOriginCountry = false;
+      m_sOriginCountryCode = null;
+      m_aOriginCountryName = null;
+    }
+    m_aItemClassificationCodes = Collections.unmodifiableList (aClassificationCodes);
+    m_aItemProperties = Collections.unmodifiableList (aItemProperties);
+
+    // BG-30
+    final ICommonsList <CIITaxCategoryModel> aTaxCategories = new CommonsArrayList <> ();
+    if (aLineSettlement != null)
+      for (final TradeTaxType aTradeTax : aLineSettlement.getApplicableTradeTax ())
+        aTaxCategories.add (CIITaxCategoryModel.create (aTradeTax));
+    m_aTaxCategories = Collections.unmodifiableList (aTaxCategories);
+
+    // BG-29
+    final TradePriceType aNPPTP = aLineAgreement == null ? null : aLineAgreement.getNetPriceProductTradePrice ();
+    // BT-146
+    m_aPriceAmount = aNPPTP != null && aNPPTP.hasChargeAmountEntries () ? aNPPTP.getChargeAmountAtIndex (0) : null;
+    // BT-149 and BT-150
+    m_aBaseQuantity = aNPPTP == null ? null : aNPPTP.getBasisQuantity ();
+    m_bPrice = m_aPriceAmount != null || m_aBaseQuantity != null;
+
+    // BT-147 - errors are reported even if the price is not used
+    final TradePriceType aGPPTP = aLineAgreement == null ? null : aLineAgreement.getGrossPriceProductTradePrice ();
+    if (aGPPTP != null)
+    {
+      final String [] aErrorPath = { "CrossIndustryInvoice",
+                                     "SupplyChainTradeTransaction",
+                                     "IncludedSupplyChainTradeLineItem",
+                                     "SpecifiedLineTradeAgreement",
+                                     "GrossPriceProductTradePrice",
+                                     "AppliedTradeAllowanceCharge" };
+      m_aPriceAllowanceCharges = Collections.unmodifiableList (CIIAllowanceChargeModel.createAll (aGPPTP.getAppliedTradeAllowanceCharge (),
+                                                                                                  aErrorPath,
+                                                                                                  aErrorList));
+    }
+    else
+      m_aPriceAllowanceCharges = Collections.emptyList ();
+
+    // Avoid a negative price
+    if (m_aQuantity != null && m_aQuantity.getValue () != null)
+    {
+      final BigDecimal aLineExtensionAmount = m_aLineExtensionAmount == null ? null : m_aLineExtensionAmount.getValue ();
+      final boolean bHasPriceAmount = m_bPrice && m_aPriceAmount != null && m_aPriceAmount.getValue () != null;
+      AbstractCIIToUBLConverter.swapQuantityAndPriceIfNeeded (aSettings,
+                                                              AbstractCIIToUBLConverter.isLT0Strict (aLineExtensionAmount),
+                                                              m_aQuantity.getValue (),
+                                                              x -> m_aQuantity = _getWithValue (m_aQuantity, x),
+                                                              bHasPriceAmount ? m_aPriceAmount.getValue () : null,
+                                                              bHasPriceAmount ? x -> m_aPriceAmount = _getWithValue (m_aPriceAmount, x) : null);
+    }
+  }
+
+  @Nonnull
+  private static QuantityType _getWithValue (@Nonnull final QuantityType aQuantity, @Nonnull final BigDecimal aValue)
+  {
+    final QuantityType ret = new QuantityType ();
+    ret.setValue (aValue);
+    ret.setUnitCode (aQuantity.getUnitCode ());
+    ret.setUnitCodeListID (aQuantity.getUnitCodeListID ());
+    ret.setUnitCodeListAgencyID (aQuantity.getUnitCodeListAgencyID ());
+    ret.setUnitCodeListAgencyName (aQuantity.getUnitCodeListAgencyName ());
+    return ret;
+  }
+
+  @Nonnull
+  private static AmountType _getWithValue (@Nonnull final AmountType aAmount, @Nonnull final BigDecimal aValue)
+  {
+    final AmountType ret = new AmountType ();
+    ret.setValue (aValue);
+    ret.setCurrencyID (aAmount.getCurrencyID ());
+    ret.setCurrencyCodeListVersionID (aAmount.getCurrencyCodeListVersionID ());
+    return ret;
+  }
+
+  /**
+   * @return BT-126 Invoice line identifier. May be <code>null</code>.
+   */
+  @Nullable
+  public IDType getID ()
+  {
+    return m_aID;
+  }
+
+  /**
+   * @return All BT-127 Invoice line notes, with the subject code as a
+   *         <code>#code#</code> prefix. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <String> getAllNotes ()
+  {
+    return m_aNotes;
+  }
+
+  /**
+   * @return BT-131 Invoice line net amount. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getLineExtensionAmount ()
+  {
+    return m_aLineExtensionAmount;
+  }
+
+  /**
+   * @return BT-129 Invoiced quantity and BT-130 unit of measure code, with the
+   *         sign already swapped if needed. May be <code>null</code>.
+   */
+  @Nullable
+  public QuantityType getQuantity ()
+  {
+    return m_aQuantity;
+  }
+
+  /**
+   * @return BT-133 Invoice line Buyer accounting reference. May be
+   *         <code>null</code> or empty.
+   */
+  @Nullable
+  public String getAccountingCost ()
+  {
+    return m_sAccountingCost;
+  }
+
+  /**
+   * @return <code>true</code> if BG-26 Invoice line period is present.
+   */
+  public boolean hasInvoicePeriod ()
+  {
+    return m_bInvoicePeriod;
+  }
+
+  /**
+   * @return BT-134 Invoice line period start date. May be <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getInvoicePeriodStartDate ()
+  {
+    return m_aInvoicePeriodStartDate;
+  }
+
+  /**
+   * @return BT-135 Invoice line period end date. May be <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getInvoicePeriodEndDate ()
+  {
+    return m_aInvoicePeriodEndDate;
+  }
+
+  /**
+   * @return BT-132 Referenced purchase order line reference. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public IDType getOrderLineID ()
+  {
+    return m_aOrderLineID;
+  }
+
+  /**
+   * @return All BT-128 Invoice line object identifiers. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIIDocumentReferenceModel> getAllDocumentReferences ()
+  {
+    return m_aDocumentReferences;
+  }
+
+  /**
+   * @return All BG-27 Invoice line allowances and BG-28 Invoice line charges.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIIAllowanceChargeModel> getAllAllowanceCharges ()
+  {
+    return m_aAllowanceCharges;
+  }
+
+  /**
+   * @return BT-154 Item description. May be <code>null</code>.
+   */
+  @Nullable
+  public TextType getItemDescription ()
+  {
+    return m_aItemDescription;
+  }
+
+  /**
+   * @return BT-153 Item name. May be <code>null</code>.
+   */
+  @Nullable
+  public TextType getItemName ()
+  {
+    return m_aItemName;
+  }
+
+  /**
+   * @return BT-156 Item Buyer's identifier. May be <code>null</code>.
+   */
+  @Nullable
+  public IDType getBuyersItemID ()
+  {
+    return m_aBuyersItemID;
+  }
+
+  /**
+   * @return BT-155 Item Seller's identifier. May be <code>null</code>.
+   */
+  @Nullable
+  public IDType getSellersItemID ()
+  {
+    return m_aSellersItemID;
+  }
+
+  /**
+   * @return BT-157 Item standard identifier. May be <code>null</code>.
+   */
+  @Nullable
+  public IDType getStandardItemID ()
+  {
+    return m_aStandardItemID;
+  }
+
+  /**
+   * @return <code>true</code> if BT-159 Item country of origin is present.
+   */
+  public boolean hasOriginCountry ()
+  {
+    return m_bOriginCountry;
+  }
+
+  /**
+   * @return BT-159 Item country of origin. May be <code>null</code> or empty.
+   */
+  @Nullable
+  public String getOriginCountryCode ()
+  {
+    return m_sOriginCountryCode;
+  }
+
+  /**
+   * @return The name of the country of origin. May be <code>null</code>.
+   */
+  @Nullable
+  public TextType getOriginCountryName ()
+  {
+    return m_aOriginCountryName;
+  }
+
+  /**
+   * @return All BT-158 Item classification identifiers. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CodeType> getAllItemClassificationCodes ()
+  {
+    return m_aItemClassificationCodes;
+  }
+
+  /**
+   * @return All BG-30 Line VAT information entries. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIITaxCategoryModel> getAllTaxCategories ()
+  {
+    return m_aTaxCategories;
+  }
+
+  /**
+   * @return All BG-32 Item attributes. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <ItemProperty> getAllItemProperties ()
+  {
+    return m_aItemProperties;
+  }
+
+  /**
+   * @return <code>true</code> if BG-29 Price details are present.
+   */
+  public boolean hasPrice ()
+  {
+    return m_bPrice;
+  }
+
+  /**
+   * @return BT-146 Item net price, with the sign already swapped if needed.
+   *         May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getPriceAmount ()
+  {
+    return m_aPriceAmount;
+  }
+
+  /**
+   * @return BT-149 Item price base quantity and BT-150 unit of measure code.
+   *         May be <code>null</code>.
+   */
+  @Nullable
+  public QuantityType getBaseQuantity ()
+  {
+    return m_aBaseQuantity;
+  }
+
+  /**
+   * @return All price allowances and charges (e.g. BT-147). They are only
+   *         relevant if {@link #hasPrice()} is <code>true</code>. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <CIIAllowanceChargeModel> getAllPriceAllowanceCharges ()
+  {
+    return m_aPriceAllowanceCharges;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("ID", m_aID)
+                                       .append ("Notes", m_aNotes)
+                                       .append ("LineExtensionAmount", m_aLineExtensionAmount)
+                                       .append ("Quantity", m_aQuantity)
+                                       .append ("AccountingCost", m_sAccountingCost)
+                                       .append ("InvoicePeriod", m_bInvoicePeriod)
+                                       .append ("InvoicePeriodStartDate", m_aInvoicePeriodStartDate)
+                                       .append ("InvoicePeriodEndDate", m_aInvoicePeriodEndDate)
+                                       .append ("OrderLineID", m_aOrderLineID)
+                                       .append ("DocumentReferences", m_aDocumentReferences)
+                                       .append ("AllowanceCharges", m_aAllowanceCharges)
+                                       .append ("ItemDescription", m_aItemDescription)
+                                       .append ("ItemName", m_aItemName)
+                                       .append ("BuyersItemID", m_aBuyersItemID)
+                                       .append ("SellersItemID", m_aSellersItemID)
+                                       .append ("StandardItemID", m_aStandardItemID)
+                                       .append ("OriginCountry", m_bOriginCountry)
+                                       .append ("OriginCountryCode", m_sOriginCountryCode)
+                                       .append ("OriginCountryName", m_aOriginCountryName)
+                                       .append ("ItemClassificationCodes", m_aItemClassificationCodes)
+                                       .append ("TaxCategories", m_aTaxCategories)
+                                       .append ("ItemProperties", m_aItemProperties)
+                                       .append ("Price", m_bPrice)
+                                       .append ("PriceAmount", m_aPriceAmount)
+                                       .append ("BaseQuantity", m_aBaseQuantity)
+                                       .append ("PriceAllowanceCharges", m_aPriceAllowanceCharges)
+                                       .getToString ();
+  }
+
+  /**
+   * Extract the line model from the provided CII line item.
+   *
+   * @param aLineItem
+   *        The CII line item. May not be <code>null</code>.
+   * @param aSettings
+   *        The conversion settings to use. Only the sign swapping settings are
+   *        used. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created model and never <code>null</code>.
+   */
+  @Nonnull
+  public static CIILineModel create (@Nonnull final SupplyChainTradeLineItemType aLineItem,
+                                     @Nonnull final CIIToUBLSettings aSettings,
+                                     @Nonnull final IErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aLineItem, "LineItem");
+    ValueEnforcer.notNull (aSettings, "Settings");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return new CIILineModel (aLineItem, aSettings, aErrorList);
+  }
+}
@@ -0,0 +1,495 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.ReturnsImmutableObject;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.LegalOrganizationType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TaxRegistrationType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeAddressType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeContactType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradePartyType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.UniversalCommunicationType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
+
+/**
+ * The UBL version independent part of a CII trade party, e.g. BG-4 Seller,
+ * BG-7 Buyer, BG-10 Payee, BG-11 Seller tax representative party or BG-13
+ * Delivery information. All values are either <code>null</code> or non-empty,
+ * unless stated otherwise.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public final class CIIPartyModel
+{
+  /**
+   * The UBL version independent part of a CII postal address (e.g. BG-5).
+   *
+   * @author Philip Helger
+   */
+  public static final class Address
+  {
+    private final String m_sStreetName;
+    private final String m_sAdditionalStreetName;
+    private final String m_sAddressLine;
+    private final String m_sCityName;
+    private final String m_sPostalZone;
+    private final String m_sCountrySubentity;
+    private final String m_sCountryCode;
+
+    Address (@Nonnull final TradeAddressType aPostalAddress)
+    {
+      m_sStreetName = _getIfHasText (aPostalAddress.getLineOneValue ());
+      m_sAdditionalStreetName = _getIfHasText (aPostalAddress.getLineTwoValue ());
+      m_sAddressLine = _getIfHasText (aPostalAddress.getLineThreeValue ());
+      m_sCityName = _getIfHasText (aPostalAddress.getCityNameValue ());
+      m_sPostalZone = _getIfHasText (aPostalAddress.getPostcodeCodeValue ());
+      m_sCountrySubentity = aPostalAddress.hasCountrySubDivisionNameEntries () ? aPostalAddress.getCountrySubDivisionNameAtIndex (0)
+                                                                                               .getValue ()
+                                                                               : null;
+      m_sCountryCode = _getIfHasText (aPostalAddress.getCountryIDValue ());
+    }
+
+    /**
+     * @return BT-35 Address line 1. May be <code>null</code>.
+     */
+    @Nullable
+    public String getStreetName ()
+    {
+      return m_sStreetName;
+    }
+
+    /**
+     * @return BT-36 Address line 2. May be <code>null</code>.
+     */
+    @Nullable
+    public String getAdditionalStreetName ()
+    {
+      return m_sAdditionalStreetName;
+    }
+
+    /**
+     * @return BT-162 Address line 3. May be <code>null</code>.
+     */
+    @Nullable
+    public String getAddressLine ()
+    {
+      return m_sAddressLine;
+    }
+
+    /**
+     * @return BT-37 City. May be <code>null</code>.
+     */
+    @Nullable
+    public String getCityName ()
+    {
+      return m_sCityName;
+    }
+
+    /**
+     * @return BT-38 Post code. May be <code>null</code>.
+     */
+    @Nullable
+    public String getPostalZone ()
+    {
+      return m_sPostalZone;
+    }
+
+    /**
+     * @return BT-39 Country subdivision. May be <code>null</code> or empty.
+     */
+    @Nullable
+    public String getCountrySubentity ()
+    {
+      return m_sCountrySubentity;
+    }
+
+    /**
+     * @return BT-40 Country code. May be <code>null</code>.
+     */
+    @Nullable
+    public String getCountryCode ()
+    {
+      return m_sCountryCode;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return new ToStringGenerator (null).append ("StreetName", m_sStreetName)
+                                         .append ("AdditionalStreetName", m_sAdditionalStreetName)
+                                         .append ("AddressLine", m_sAddressLine)
+                                         .append ("CityName", m_sCityName)
+                                         .append ("PostalZone", m_sPostalZone)
+                                         .append ("CountrySubentity", m_sCountrySubentity)
+                                         .append ("CountryCode", m_sCountryCode)
+                                         .getToString ();
+    }
+  }
+
+  /**
+   * The UBL version independent part of a CII tax registration (e.g. BT-31).
+   *
+   * @author Philip Helger
+   */
+  public static final class TaxRegistration
+  {
+    private final String m_sCompanyID;
+    private final String m_sSchemeID;
+
+    TaxRegistration (@Nullable final String sCompanyID, @Nullable final String sSchemeID)
+    {
+      m_sCompanyID = sCompanyID;
+      m_sSchemeID = sSchemeID;
+    }
+
+    /**
+     * @return The tax registration identifier. May be <code>null</code> or
+     *         empty.
+     */
+    @Nullable
+    public String getCompanyID ()
+    {
+      return m_sCompanyID;
+    }
+
+    /**
+     * Get the tax scheme of the registration.
+     *
+     * @param sVATScheme
+     *        The configured VAT scheme. May not be <code>null</code>.
+     * @return The provided VAT scheme if the registration has no scheme or if
+     *         it is a VAT registration, the scheme of the registration
+     *         otherwise.
+     */
+    @Nonnull
+    public String getSchemeID (@Nonnull final String sVATScheme)
+    {
+      return m_sSchemeID != null ? m_sSchemeID : sVATScheme;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return new ToStringGenerator (null).append ("CompanyID", m_sCompanyID).append ("SchemeID", m_sSchemeID).getToString ();
+    }
+  }
+
+  private final IDType m_aEndpointID;
+  private final List <IDType> m_aIDs;
+  private final TextType m_aName;
+  private final boolean m_bNameElement;
+  private final Address m_aPostalAddress;
+  private final List <TaxRegistration> m_aTaxRegistrations;
+  private final String m_sRegistrationName;
+  private final IDType m_aCompanyID;
+  private final List <String> m_aCompanyLegalForms;
+  private final TextType m_aContactName;
+  private final String m_sContactTelephone;
+  private final String m_sContactEmail;
+
+  private CIIPartyModel (@Nonnull final TradePartyType aParty, final boolean bMultiID, @Nullable final IDType aAdditionalID)
+  {
+    if (aParty.hasURIUniversalCommunicationEntries ())
+      m_aEndpointID = AbstractCIIToUBLConverter._getNonEmpty (aParty.getURIUniversalCommunicationAtIndex (0).getURIID ());
+    else
+      m_aEndpointID = null;
+
+    final ICommonsList <IDType> aIDs = new CommonsArrayList <> ();
+    final boolean bUseGlobalID = AbstractCIIToUBLConverter.canUseGlobalID (aParty);
+    if (bMultiID)
+    {
+      for (final IDType aID : bUseGlobalID ? AbstractCIIToUBLConverter.getAllUsableGlobalIDs (aParty) : aParty.getID ())
+        _addID (aIDs, aID);
+    }
+    else
+    {
+      // Use the first matching one
+      if (bUseGlobalID)
+        _addID (aIDs, AbstractCIIToUBLConverter.getAllUsableGlobalIDs (aParty).getFirst ());
+      else
+        if (aParty.hasIDEntries ())
+          _addID (aIDs, aParty.getIDAtIndex (0));
+    }
+    _addID (aIDs, aAdditionalID);
+    m_aIDs = Collections.unmodifiableList (aIDs);
+
+    m_aName = AbstractCIIToUBLConverter._getNonEmpty (aParty.getName ());
+    m_bNameElement = aParty.getName () != null;
+
+    final TradeAddressType aPostalAddress = aParty.getPostalTradeAddress ();
+    m_aPostalAddress = aPostalAddress == null ? null : new Address (aPostalAddress);
+
+    final ICommonsList <TaxRegistration> aTaxRegistrations = new CommonsArrayList <> ();
+    for (final TaxRegistrationType aTaxRegistration : aParty.getSpecifiedTaxRegistration ())
+      if (aTaxRegistration.getID () != null)
+      {
+        String sSchemeID = aTaxRegistration.getID ().getSchemeID ();
+        // Special case CII validation artefacts 1.0.0 and 1.2.0
+        if (StringHelper.hasNoText (sSchemeID) || "VA".equals (sSchemeID))
+          sSchemeID = null;
+        aTaxRegistrations.add (new TaxRegistration (aTaxRegistration.getIDValue (), sSchemeID));
+      }
+    m_aTaxRegistrations = Collections.unmodifiableList (aTaxRegistrations);
+
+    // Legal entity
+    final LegalOrganizationType aSLO = aParty.getSpecifiedLegalOrganization ();
+    final String sTradingName = aSLO == null ? null : aSLO.getTradingBusinessNameValue ();
+    // Mandatory field according to Schematron
+    m_sRegistrationName = StringHelper.hasText (sTradingName) ? sTradingName : aParty.getNameValue ();
+    m_aCompanyID = aSLO == null ? null : AbstractCIIToUBLConverter._getNonEmpty (aSLO.getID ());
+    final ICommonsList <String> aCompanyLegalForms = new CommonsArrayList <> ();
+    for (final TextType aDesc : aParty.getDescription ())
+      if (StringHelper.hasText (aDesc.getValue ()))
+        aCompanyLegalForms.add (aDesc.getValue ());
+    m_aCompanyLegalForms = Collections.unmodifiableList (aCompanyLegalForms);
+
+    // Contact
+    final TradeContactType aDTC = aParty.hasDefinedTradeContactEntries () ? aParty.getDefinedTradeContactAtIndex (0) : null;
+    if (aDTC != null)
+    {
+      m_aContactName = AbstractCIIToUBLConverter._getNonEmpty (aDTC.getPersonName ());
+      final UniversalCommunicationType aTel = aDTC.getTelephoneUniversalCommunication ();
+      m_sContactTelephone = aTel == null ? null : aTel.getCompleteNumberValue ();
+      final UniversalCommunicationType aEmail = aDTC.getEmailURIUniversalCommunication ();
+      m_sContactEmail = aEmail == null ? null : aEmail.getURIIDValue ();
+    }
+    else
+    {
+      m_aContactName = null;
+      m_sContactTelephone = null;
+      m_sContactEmail = null;
+    }
+  }
+
+  @Nullable
+  private static String _getIfHasText (@Nullable final String s)
+  {
+    return StringHelper.hasText (s) ? s : null;
+  }
+
+  private static void _addID (@Nonnull final ICommonsList <IDType> aIDs, @Nullable final IDType aID)
+  {
+    // Avoid empty and duplicate IDs
+    if (AbstractCIIToUBLConverter._getNonEmpty (aID) != null && !aIDs.containsAny (x -> EqualsHelper.equals (x, aID)))
+      aIDs.add (aID);
+  }
+
+  /**
+   * @return The electronic address (e.g. BT-34). May be <code>null</code>.
+   */
+  @Nullable
+  public IDType getEndpointID ()
+  {
+    return m_aEndpointID;
+  }
+
+  /**
+   * @return All party identifiers without duplicates (e.g. BT-29). Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <IDType> getAllIDs ()
+  {
+    return m_aIDs;
+  }
+
+  /**
+   * @return The first party identifier. May be <code>null</code>.
+   */
+  @Nullable
+  public IDType getFirstID ()
+  {
+    return m_aIDs.isEmpty () ? null : m_aIDs.get (0);
+  }
+
+  /**
+   * @return The party name (e.g. BT-27). May be <code>null</code>.
+   */
+  @Nullable
+  public TextType getName ()
+  {
+    return m_aName;
+  }
+
+  /**
+   * @return <code>true</code> if the CII party contains a name element, even if
+   *         it is empty. The delivery party is created for each name element.
+   */
+  public boolean hasNameElement ()
+  {
+    return m_bNameElement;
+  }
+
+  /**
+   * @return The postal address (e.g. BG-5). May be <code>null</code>.
+   */
+  @Nullable
+  public Address getPostalAddress ()
+  {
+    return m_aPostalAddress;
+  }
+
+  /**
+   * @return All tax registrations (e.g. BT-31). Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <TaxRegistration> getAllTaxRegistrations ()
+  {
+    return m_aTaxRegistrations;
+  }
+
+  /**
+   * @return The legal registration name. This is the trading name (e.g.
+   *         BT-28) or the party name as a fallback. May be <code>null</code>
+   *         or empty.
+   */
+  @Nullable
+  public String getRegistrationName ()
+  {
+    return m_sRegistrationName;
+  }
+
+  /**
+   * @return The legal registration identifier (e.g. BT-30). May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public IDType getCompanyID ()
+  {
+    return m_aCompanyID;
+  }
+
+  /**
+   * @return All additional legal information (e.g. BT-33). Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <String> getAllCompanyLegalForms ()
+  {
+    return m_aCompanyLegalForms;
+  }
+
+  /**
+   * @return <code>true</code> if at least one contact detail is present.
+   */
+  public boolean hasContact ()
+  {
+    return m_aContactName != null || m_sContactTelephone != null || m_sContactEmail != null;
+  }
+
+  /**
+   * @return The contact point (e.g. BT-41). May be <code>null</code>.
+   */
+  @Nullable
+  public TextType getContactName ()
+  {
+    return m_aContactName;
+  }
+
+  /**
+   * @return The contact telephone number (e.g. BT-42). May be
+   *         <code>null</code> or empty.
+   */
+  @Nullable
+  public String getContactTelephone ()
+  {
+    return m_sContactTelephone;
+  }
+
+  /**
+   * @return The contact email address (e.g. BT-43). May be <code>null</code>
+   *         or empty.
+   */
+  @Nullable
+  public String getContactEmail ()
+  {
+    return m_sContactEmail;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("EndpointID", m_aEndpointID)
+                                       .append ("IDs", m_aIDs)
+                                       .append ("Name", m_aName)
+                                       .append ("NameElement", m_bNameElement)
+                                       .append ("PostalAddress", m_aPostalAddress)
+                                       .append ("TaxRegistrations", m_aTaxRegistrations)
+                                       .append ("RegistrationName", m_sRegistrationName)
+                                       .append ("CompanyID", m_aCompanyID)
+                                       .append ("CompanyLegalForms", m_aCompanyLegalForms)
+                                       .append ("ContactName", m_aContactName)
+                                       .append ("ContactTelephone", m_sContactTelephone)
+                                       .append ("ContactEmail", m_sContactEmail)
+                                       .getToString ();
+  }
+
+  /**
+   * Extract the party from the provided CII trade party.
+   *
+   * @param aParty
+   *        The CII trade party. May be <code>null</code>.
+   * @param bMultiID
+   *        <code>true</code> to use all party identifiers, <code>false</code>
+   *        to use only the first one.
+   * @param aAdditionalID
+   *        An additional party identifier that is not part of the trade party
+   *        (like BT-90 for the seller). May be <code>null</code>.
+   * @return <code>null</code> if the trade party is <code>null</code>.
+   */
+  @Nullable
+  public static CIIPartyModel create (@Nullable final TradePartyType aParty,
+                                      final boolean bMultiID,
+                                      @Nullable final IDType aAdditionalID)
+  {
+    if (aParty == null)
+      return null;
+    return new CIIPartyModel (aParty, bMultiID, aAdditionalID);
+  }
+
+  /**
+   * Extract the party from the provided CII trade party, using only the first
+   * party identifier.
+   *
+   * @param aParty
+   *        The CII trade party. May be <code>null</code>.
+   * @return <code>null</code> if the trade party is <code>null</code>.
+   */
+  @Nullable
+  public static CIIPartyModel create (@Nullable final TradePartyType aParty)
+  {
+    return create (aParty, false, null);
+  }
+}
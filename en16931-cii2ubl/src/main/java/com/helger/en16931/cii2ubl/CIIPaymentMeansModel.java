@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsImmutableObject;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.IErrorList;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.CreditorFinancialAccountType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.CreditorFinancialInstitutionType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.DebtorFinancialAccountType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.HeaderTradeSettlementType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradePaymentTermsType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeSettlementFinancialCardType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeSettlementPaymentMeansType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
+
+/**
+ * The UBL version independent part of BG-16 Payment instructions, including
+ * BG-17 Credit transfer, BG-18 Payment card information and BG-19 Direct
+ * debit. All identifiers are either <code>null</code> or non-empty.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public final class CIIPaymentMeansModel
+{
+  private final String m_sTypeCode;
+  private final String m_sTypeName;
+  private final List <String> m_aPaymentIDs;
+  // BG-17
+  private final boolean m_bCreditTransfer;
+  private final boolean m_bPayeeAccount;
+  private final IDType m_aPayeeAccountID;
+  private final TextType m_aPayeeAccountName;
+  private final IDType m_aPayeeBIC;
+  // BG-18
+  private final IDType m_aCardPrimaryAccountNumber;
+  private final String m_sCardHolderName;
+  // BG-19
+  private final boolean m_bDirectDebit;
+  private final IDType m_aMandateID;
+  private final IDType m_aPayerAccountID;
+
+  private CIIPaymentMeansModel (@Nonnull final HeaderTradeSettlementType aHeaderSettlement,
+                                @Nonnull final TradeSettlementPaymentMeansType aPaymentMeans,
+                                @Nonnull final String sTypeCode,
+                                @Nonnull final IErrorList aErrorList)
+  {
+    // BT-81 TypeCode is mandatory
+    m_sTypeCode = sTypeCode;
+
+    // BT-82
+    m_sTypeName = aPaymentMeans.hasInformationEntries () ? aPaymentMeans.getInformationAtIndex (0).getValue () : null;
+
+    // BT-83
+    final ICommonsList <String> aPaymentIDs = new CommonsArrayList <> ();
+    for (final TextType aPaymentRef : aHeaderSettlement.getPaymentReference ())
+      aPaymentIDs.add (aPaymentRef.getValue ());
+    m_aPaymentIDs = Collections.unmodifiableList (aPaymentIDs);
+
+    // BG-17 CREDIT TRANSFER
+    m_bCreditTransfer = AbstractCIIToUBLConverter.isPaymentMeansCodeCreditTransfer (sTypeCode);
+    final CreditorFinancialAccountType aPayeeAccount = m_bCreditTransfer ? aPaymentMeans.getPayeePartyCreditorFinancialAccount ()
+                                                                         : null;
+    m_bPayeeAccount = aPayeeAccount != null;
+    if (m_bPayeeAccount)
+    {
+      // BT-84 mandatory
+      // ID/@scheme ID must be empty for the EN16931 Schematrons
+      final IDType aIBAN = AbstractCIIToUBLConverter._getNonEmpty (aPayeeAccount.getIBANID ());
+      m_aPayeeAccountID = aIBAN != null ? aIBAN : AbstractCIIToUBLConverter._getNonEmpty (aPayeeAccount.getProprietaryID ());
+
+      // BT-85
+      m_aPayeeAccountName = AbstractCIIToUBLConverter._getNonEmpty (aPayeeAccount.getAccountName ());
+
+      // BT-86
+      final CreditorFinancialInstitutionType aInstitution = aPaymentMeans.getPayeeSpecifiedCreditorFinancialInstitution ();
+      m_aPayeeBIC = aInstitution == null ? null : AbstractCIIToUBLConverter._getNonEmpty (aInstitution.getBICID ());
+    }
+    else
+    {
+      if (m_bCreditTransfer)
+        aErrorList.add (AbstractCIIToUBLConverter._buildError (null,
+                                                               "The element 'PayeePartyCreditorFinancialAccount' is missing for Credit Transfer"));
+      m_aPayeeAccountID = null;
+      m_aPayeeAccountName = null;
+      m_aPayeeBIC = null;
+    }
+
+    // BG-18 PAYMENT CARD INFORMATION
+    IDType aCardPrimaryAccountNumber = null;
+    String sCardHolderName = null;
+    if (AbstractCIIToUBLConverter.isPaymentMeansCodePaymentCard (sTypeCode))
+    {
+      final TradeSettlementFinancialCardType aCard = aPaymentMeans.getApplicableTradeSettlementFinancialCard ();
+      if (aCard == null)
+        aErrorList.add (AbstractCIIToUBLConverter._buildError (null,
+                                                               "The element 'ApplicableTradeSettlementFinancialCard' is missing for " +
+                                                                     "Payment Card Information"));
+      else
+      {
+        // BT-87 mandatory
+        aCardPrimaryAccountNumber = AbstractCIIToUBLConverter._getNonEmpty (aCard.getID ());
+        if (aCardPrimaryAccountNumber == null)
+          aErrorList.add (AbstractCIIToUBLConverter._buildError (null, "The Payment card primary account number is missing"));
+
+        // BT-88
+        if (StringHelper.hasText (aCard.getCardholderNameValue ()))
+          sCardHolderName = aCard.getCardholderNameValue ();
+      }
+    }
+    m_aCardPrimaryAccountNumber = aCardPrimaryAccountNumber;
+    m_sCardHolderName = sCardHolderName;
+
+    // BG-19 DIRECT DEBIT
+    m_bDirectDebit = AbstractCIIToUBLConverter.isPaymentMeansCodeDirectDebit (sTypeCode);
+    IDType aMandateID = null;
+    IDType aPayerAccountID = null;
+    if (m_bDirectDebit)
+    {
+      // BT-89
+      for (final TradePaymentTermsType aPaymentTerms : aHeaderSettlement.getSpecifiedTradePaymentTerms ())
+        if (aPaymentTerms.hasDirectDebitMandateIDEntries ())
+        {
+          aMandateID = AbstractCIIToUBLConverter._getNonEmpty (aPaymentTerms.getDirectDebitMandateIDAtIndex (0));
+          if (aMandateID != null)
+            break;
+        }
+
+      // BT-90 is part of the seller
+
+      // BT-91
+      final DebtorFinancialAccountType aPayerAccount = aPaymentMeans.getPayerPartyDebtorFinancialAccount ();
+      if (aPayerAccount != null)
+        aPayerAccountID = AbstractCIIToUBLConverter._getNonEmpty (aPayerAccount.getIBANID ());
+    }
+    m_aMandateID = aMandateID;
+    m_aPayerAccountID = aPayerAccountID;
+  }
+
+  /**
+   * @return BT-81 Payment means type code. Never <code>null</code>.
+   */
+  @Nonnull
+  public String getTypeCode ()
+  {
+    return m_sTypeCode;
+  }
+
+  /**
+   * @return BT-82 Payment means text. May be <code>null</code>.
+   */
+  @Nullable
+  public String getTypeName ()
+  {
+    return m_sTypeName;
+  }
+
+  /**
+   * @return All BT-83 Remittance information entries. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public List <String> getAllPaymentIDs ()
+  {
+    return m_aPaymentIDs;
+  }
+
+  /**
+   * @return <code>true</code> if this is a BG-17 Credit transfer that has a
+   *         payee account.
+   */
+  public boolean hasPayeeAccount ()
+  {
+    return m_bPayeeAccount;
+  }
+
+  /**
+   * @return BT-84 Payment account identifier. May be <code>null</code>.
+   */
+  @Nullable
+  public IDType getPayeeAccountID ()
+  {
+    return m_aPayeeAccountID;
+  }
+
+  /**
+   * @return BT-85 Payment account name. May be <code>null</code>.
+   */
+  @Nullable
+  public TextType getPayeeAccountName ()
+  {
+    return m_aPayeeAccountName;
+  }
+
+  /**
+   * @return BT-86 Payment service provider identifier. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public IDType getPayeeBIC ()
+  {
+    return m_aPayeeBIC;
+  }
+
+  /**
+   * @return <code>true</code> if this is a BG-18 Payment card information with
+   *         a primary account number.
+   */
+  public boolean hasCardAccount ()
+  {
+    return m_aCardPrimaryAccountNumber != null;
+  }
+
+  /**
+   * @return BT-87 Payment card primary account number. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public IDType getCardPrimaryAccountNumber ()
+  {
+    return m_aCardPrimaryAccountNumber;
+  }
+
+  /**
+   * @return BT-88 Payment card holder name. May be <code>null</code>.
+   */
+  @Nullable
+  public String getCardHolderName ()
+  {
+    return m_sCardHolderName;
+  }
+
+  /**
+   * @return <code>true</code> if this is a BG-19 Direct debit.
+   */
+  public boolean isDirectDebit ()
+  {
+    return m_bDirectDebit;
+  }
+
+  /**
+   * @return BT-89 Mandate reference identifier. May be <code>null</code>.
+   */
+  @Nullable
+  public IDType getMandateID ()
+  {
+    return m_aMandateID;
+  }
+
+  /**
+   * @return BT-91 Debited account identifier. May be <code>null</code>.
+   */
+  @Nullable
+  public IDType getPayerAccountID ()
+  {
+    return m_aPayerAccountID;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("TypeCode", m_sTypeCode)
+                                       .append ("TypeName", m_sTypeName)
+                                       .append ("PaymentIDs", m_aPaymentIDs)
+                                       .append ("CreditTransfer", m_bCreditTransfer)
+                                       .append ("PayeeAccount", m_bPayeeAccount)
+                                       .append ("PayeeAccountID", m_aPayeeAccountID)
+                                       .append ("PayeeAccountName", m_aPayeeAccountName)
+                                       .append ("PayeeBIC", m_aPayeeBIC)
+                                       .append ("CardPrimaryAccountNumber", m_aCardPrimaryAccountNumber)
+                                       .append ("CardHolderName", m_sCardHolderName)
+                                       .append ("DirectDebit", m_bDirectDebit)
+                                       .append ("MandateID", m_aMandateID)
+                                       .append ("PayerAccountID", m_aPayerAccountID)
+                                       .getToString ();
+  }
+
+  /**
+   * Extract the payment instructions from the provided CII payment means.
+   *
+   * @param aHeaderSettlement
+   *        The CII header settlement containing the payment means. May not be
+   *        <code>null</code>.
+   * @param aPaymentMeans
+   *        The CII payment means. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if the payment means type code is not supported.
+   *         In that case an error was added.
+   */
+  @Nullable
+  public static CIIPaymentMeansModel create (@Nonnull final HeaderTradeSettlementType aHeaderSettlement,
+                                             @Nonnull final TradeSettlementPaymentMeansType aPaymentMeans,
+                                             @Nonnull final IErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aHeaderSettlement, "HeaderSettlement");
+    ValueEnforcer.notNull (aPaymentMeans, "PaymentMeans");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final String sTypeCode = aPaymentMeans.getTypeCodeValue ();
+    if (!AbstractCIIToUBLConverter.isPaymentMeansCodeCreditTransfer (sTypeCode) &&
+        !AbstractCIIToUBLConverter.isPaymentMeansCodePaymentCard (sTypeCode) &&
+        !AbstractCIIToUBLConverter.isPaymentMeansCodeDirectDebit (sTypeCode) &&
+        !AbstractCIIToUBLConverter.isPaymentMeansCodeOtherKnown (sTypeCode))
+    {
+      aErrorList.add (AbstractCIIToUBLConverter._buildError (null,
+                                                             "Failed to determine a supported Payment Means Type from code '" +
+                                                                   sTypeCode +
+                                                                   "'"));
+      return null;
+    }
+    return new CIIPaymentMeansModel (aHeaderSettlement, aPaymentMeans, sTypeCode, aErrorList);
+  }
+}
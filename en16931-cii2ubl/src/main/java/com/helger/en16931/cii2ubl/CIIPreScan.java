@@ -0,0 +1,569 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.state.ETriState;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The result of a lightweight pre-flight scan of a CII document. Only the
+ * information needed to classify and route a document is extracted with StAX
+ * in a single forward pass, without unmarshalling it. The line items are only
+ * counted and all elements that are not needed are skipped. The scan stops
+ * right after the header monetary summation, so the rest of the document is
+ * never read.<br>
+ * The CII document is neither validated against the XML Schema nor checked
+ * for completeness. Use {@link #getInvoiceType()} to decide between a UBL
+ * Invoice and Credit Note in the same way as
+ * {@link EUBLCreationMode#AUTOMATIC}.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Immutable
+public final class CIIPreScan
+{
+  private static final String NS_RSM = "urn:un:unece:uncefact:data:standard:CrossIndustryInvoice:100";
+  private static final String ELEMENT_ROOT = "CrossIndustryInvoice";
+
+  // The paths of the relevant elements, based on the local names
+  private static final String P_ROOT = "/" + ELEMENT_ROOT;
+  private static final String P_DOCUMENT = P_ROOT + "/ExchangedDocument";
+  private static final String P_DOCUMENT_ID = P_DOCUMENT + "/ID";
+  private static final String P_DOCUMENT_TYPE_CODE = P_DOCUMENT + "/TypeCode";
+  private static final String P_TRANSACTION = P_ROOT + "/SupplyChainTradeTransaction";
+  private static final String P_AGREEMENT = P_TRANSACTION + "/ApplicableHeaderTradeAgreement";
+  private static final String P_SELLER = P_AGREEMENT + "/SellerTradeParty";
+  private static final String P_SELLER_TAX_REGISTRATION = P_SELLER + "/SpecifiedTaxRegistration";
+  private static final String P_SELLER_TAX_REGISTRATION_ID = P_SELLER_TAX_REGISTRATION + "/ID";
+  private static final String P_BUYER = P_AGREEMENT + "/BuyerTradeParty";
+  private static final String P_SETTLEMENT = P_TRANSACTION + "/ApplicableHeaderTradeSettlement";
+  private static final String P_CURRENCY_CODE = P_SETTLEMENT + "/InvoiceCurrencyCode";
+  private static final String P_TOTAL = P_SETTLEMENT + "/SpecifiedTradeSettlementHeaderMonetarySummation";
+  private static final String P_DUE_PAYABLE_AMOUNT = P_TOTAL + "/DuePayableAmount";
+
+  private final String m_sDocumentID;
+  private final String m_sTypeCode;
+  private final String m_sCurrencyCode;
+  private final BigDecimal m_aDuePayableAmount;
+  private final String m_sSellerID;
+  private final String m_sSellerIDSchemeID;
+  private final String m_sSellerVATID;
+  private final String m_sBuyerID;
+  private final String m_sBuyerIDSchemeID;
+  private final int m_nLineCount;
+  private final ETriState m_eInvoiceType;
+
+  private CIIPreScan (@Nonnull final Scanner aScanner)
+  {
+    m_sDocumentID = aScanner.m_sDocumentID;
+    m_sTypeCode = aScanner.m_sTypeCode;
+    m_sCurrencyCode = aScanner.m_sCurrencyCode;
+    m_aDuePayableAmount = aScanner.m_aDuePayableAmount;
+    m_sSellerID = aScanner.m_aSeller.getID ();
+    m_sSellerIDSchemeID = aScanner.m_aSeller.getSchemeID ();
+    m_sSellerVATID = aScanner.m_sSellerVATID;
+    m_sBuyerID = aScanner.m_aBuyer.getID ();
+    m_sBuyerIDSchemeID = aScanner.m_aBuyer.getSchemeID ();
+    m_nLineCount = aScanner.m_nLineCount;
+    m_eInvoiceType = AbstractCIIToUBLConverter.isInvoiceType (m_sTypeCode, m_aDuePayableAmount);
+  }
+
+  /**
+   * @return The document ID (BT-1). May be <code>null</code>.
+   */
+  @Nullable
+  public String getDocumentID ()
+  {
+    return m_sDocumentID;
+  }
+
+  /**
+   * @return The document type code (BT-3). May be <code>null</code>.
+   */
+  @Nullable
+  public String getTypeCode ()
+  {
+    return m_sTypeCode;
+  }
+
+  /**
+   * @return The invoice currency code (BT-5). May be <code>null</code>.
+   */
+  @Nullable
+  public String getCurrencyCode ()
+  {
+    return m_sCurrencyCode;
+  }
+
+  /**
+   * @return The first due payable amount (BT-115). May be <code>null</code>.
+   */
+  @Nullable
+  public BigDecimal getDuePayableAmount ()
+  {
+    return m_aDuePayableAmount;
+  }
+
+  /**
+   * @return The seller ID (BT-29). The first global ID with a scheme is used,
+   *         and if there is none, the first ID. This is the same ID as in the
+   *         UBL party identification. May be <code>null</code>.
+   */
+  @Nullable
+  public String getSellerID ()
+  {
+    return m_sSellerID;
+  }
+
+  /**
+   * @return The scheme of the seller ID. May be <code>null</code>.
+   */
+  @Nullable
+  public String getSellerIDSchemeID ()
+  {
+    return m_sSellerIDSchemeID;
+  }
+
+  /**
+   * @return The seller VAT identifier (BT-31), the first tax registration ID
+   *         with the scheme "VA". May be <code>null</code>.
+   */
+  @Nullable
+  public String getSellerVATID ()
+  {
+    return m_sSellerVATID;
+  }
+
+  /**
+   * @return The buyer ID (BT-46). The first global ID with a scheme is used,
+   *         and if there is none, the first ID. May be <code>null</code>.
+   */
+  @Nullable
+  public String getBuyerID ()
+  {
+    return m_sBuyerID;
+  }
+
+  /**
+   * @return The scheme of the buyer ID. May be <code>null</code>.
+   */
+  @Nullable
+  public String getBuyerIDSchemeID ()
+  {
+    return m_sBuyerIDSchemeID;
+  }
+
+  /**
+   * @return The number of line items. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getLineCount ()
+  {
+    return m_nLineCount;
+  }
+
+  /**
+   * @return {@link ETriState#TRUE} for an invoice, {@link ETriState#FALSE} for
+   *         a credit note and {@link ETriState#UNDEFINED} if it cannot be
+   *         determined. Never <code>null</code>.
+   */
+  @Nonnull
+  public ETriState getInvoiceType ()
+  {
+    return m_eInvoiceType;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("DocumentID", m_sDocumentID)
+                                       .append ("TypeCode", m_sTypeCode)
+                                       .append ("CurrencyCode", m_sCurrencyCode)
+                                       .append ("DuePayableAmount", m_aDuePayableAmount)
+                                       .append ("SellerID", m_sSellerID)
+                                       .append ("SellerIDSchemeID", m_sSellerIDSchemeID)
+                                       .append ("SellerVATID", m_sSellerVATID)
+                                       .append ("BuyerID", m_sBuyerID)
+                                       .append ("BuyerIDSchemeID", m_sBuyerIDSchemeID)
+                                       .append ("LineCount", m_nLineCount)
+                                       .append ("InvoiceType", m_eInvoiceType)
+                                       .getToString ();
+  }
+
+  /**
+   * Collects the IDs of a trade party with the same precedence as the
+   * conversion: the first global ID with a scheme, else the first ID.
+   */
+  @NotThreadSafe
+  private static final class PartyIDs
+  {
+    private String m_sGlobalID;
+    private String m_sGlobalIDSchemeID;
+    private String m_sID;
+    private String m_sIDSchemeID;
+
+    void onGlobalID (@Nullable final String sValue, @Nullable final String sSchemeID)
+    {
+      if (m_sGlobalID == null && StringHelper.hasText (sValue) && StringHelper.hasText (sSchemeID))
+      {
+        m_sGlobalID = sValue;
+        m_sGlobalIDSchemeID = sSchemeID;
+      }
+    }
+
+    void onID (@Nullable final String sValue, @Nullable final String sSchemeID)
+    {
+      if (m_sID == null && sValue != null)
+      {
+        m_sID = sValue;
+        m_sIDSchemeID = sSchemeID;
+      }
+    }
+
+    @Nullable
+    String getID ()
+    {
+      return m_sGlobalID != null ? m_sGlobalID : m_sID;
+    }
+
+    @Nullable
+    String getSchemeID ()
+    {
+      return m_sGlobalID != null ? m_sGlobalIDSchemeID : m_sIDSchemeID;
+    }
+  }
+
+  /**
+   * The state of a single scan.
+   */
+  @NotThreadSafe
+  private static final class Scanner
+  {
+    private final XMLStreamReader m_aReader;
+    private final ErrorList m_aErrorList;
+    private String m_sDocumentID;
+    private String m_sTypeCode;
+    private String m_sCurrencyCode;
+    private BigDecimal m_aDuePayableAmount;
+    private final PartyIDs m_aSeller = new PartyIDs ();
+    private String m_sSellerVATID;
+    private final PartyIDs m_aBuyer = new PartyIDs ();
+    private int m_nLineCount;
+
+    Scanner (@Nonnull final XMLStreamReader aReader, @Nonnull final ErrorList aErrorList)
+    {
+      m_aReader = aReader;
+      m_aErrorList = aErrorList;
+    }
+
+    private void _skipElement () throws XMLStreamException
+    {
+      int nDepth = 1;
+      while (nDepth > 0)
+      {
+        final int nEvent = m_aReader.next ();
+        if (nEvent == XMLStreamConstants.START_ELEMENT)
+          nDepth++;
+        else
+          if (nEvent == XMLStreamConstants.END_ELEMENT)
+            nDepth--;
+      }
+    }
+
+    @Nullable
+    private String _getSchemeID ()
+    {
+      return m_aReader.getAttributeValue (null, "schemeID");
+    }
+
+    @Nonnull
+    private String _getText () throws XMLStreamException
+    {
+      // Reads up to and including the end element
+      return m_aReader.getElementText ().trim ();
+    }
+
+    /**
+     * Handle the start element with the provided path.
+     *
+     * @return <code>true</code> if the children of the element should be
+     *         scanned, <code>false</code> if the element was completely
+     *         consumed.
+     */
+    private boolean _onStartElement (@Nonnull final String sParentPath, @Nonnull final String sLocalName) throws XMLStreamException
+    {
+      if (sParentPath.equals (P_TRANSACTION) && CIIToUBLStreamingConverter.isLineItemStart (m_aReader))
+      {
+        m_nLineCount++;
+        _skipElement ();
+        return false;
+      }
+
+      final String sPath = sParentPath + "/" + sLocalName;
+      switch (sPath)
+      {
+        case P_DOCUMENT:
+        case P_TRANSACTION:
+        case P_AGREEMENT:
+        case P_SELLER:
+        case P_SELLER_TAX_REGISTRATION:
+        case P_BUYER:
+        case P_SETTLEMENT:
+        case P_TOTAL:
+          return true;
+        case P_DOCUMENT_ID:
+          m_sDocumentID = _getText ();
+          return false;
+        case P_DOCUMENT_TYPE_CODE:
+          m_sTypeCode = _getText ();
+          return false;
+        case P_SELLER_TAX_REGISTRATION_ID:
+        {
+          final boolean bVAT = "VA".equals (_getSchemeID ());
+          final String sID = _getText ();
+          if (bVAT && m_sSellerVATID == null)
+            m_sSellerVATID = sID;
+          return false;
+        }
+        case P_CURRENCY_CODE:
+          m_sCurrencyCode = _getText ();
+          return false;
+        case P_DUE_PAYABLE_AMOUNT:
+          if (m_aDuePayableAmount == null)
+          {
+            final String sAmount = _getText ();
+            m_aDuePayableAmount = StringHelper.hasText (sAmount) ? _parseAmount (sAmount) : null;
+          }
+          else
+            _skipElement ();
+          return false;
+      }
+
+      if (sParentPath.equals (P_SELLER) || sParentPath.equals (P_BUYER))
+      {
+        final PartyIDs aParty = sParentPath.equals (P_SELLER) ? m_aSeller : m_aBuyer;
+        if ("GlobalID".equals (sLocalName))
+        {
+          final String sSchemeID = _getSchemeID ();
+          aParty.onGlobalID (_getText (), sSchemeID);
+          return false;
+        }
+        if ("ID".equals (sLocalName))
+        {
+          final String sSchemeID = _getSchemeID ();
+          aParty.onID (_getText (), sSchemeID);
+          return false;
+        }
+      }
+
+      // Not relevant
+      _skipElement ();
+      return false;
+    }
+
+    @Nullable
+    private BigDecimal _parseAmount (@Nonnull final String sAmount)
+    {
+      try
+      {
+        return new BigDecimal (sAmount);
+      }
+      catch (final NumberFormatException ex)
+      {
+        m_aErrorList.add (SingleError.builderWarn ()
+                                     .errorFieldName (P_DUE_PAYABLE_AMOUNT)
+                                     .errorText ("Failed to parse the due payable amount '" + sAmount + "'")
+                                     .build ());
+        return null;
+      }
+    }
+
+    /**
+     * Scan the whole document.
+     *
+     * @return <code>true</code> if the document is a CII invoice.
+     */
+    boolean scan () throws XMLStreamException
+    {
+      // Find the root element
+      while (m_aReader.getEventType () != XMLStreamConstants.START_ELEMENT && m_aReader.hasNext ())
+        m_aReader.next ();
+      if (m_aReader.getEventType () != XMLStreamConstants.START_ELEMENT)
+      {
+        m_aErrorList.add (SingleError.builderError ().errorText ("The document has no root element").build ());
+        return false;
+      }
+      if (!ELEMENT_ROOT.equals (m_aReader.getLocalName ()) || !NS_RSM.equals (m_aReader.getNamespaceURI ()))
+      {
+        m_aErrorList.add (SingleError.builderError ()
+                                     .errorText ("The document is not a CII invoice but has the root element " + m_aReader.getName ())
+                                     .build ());
+        return false;
+      }
+
+      // The paths of all open elements - only the containers above are entered
+      final String [] aPaths = new String [8];
+      int nDepth = 0;
+      aPaths[nDepth] = P_ROOT;
+      while (nDepth >= 0)
+      {
+        final int nEvent = m_aReader.next ();
+        if (nEvent == XMLStreamConstants.START_ELEMENT)
+        {
+          final String sParentPath = aPaths[nDepth];
+          if (_onStartElement (sParentPath, m_aReader.getLocalName ()))
+          {
+            nDepth++;
+            aPaths[nDepth] = sParentPath + "/" + m_aReader.getLocalName ();
+          }
+        }
+        else
+          if (nEvent == XMLStreamConstants.END_ELEMENT)
+          {
+            if (P_TOTAL.equals (aPaths[nDepth]) || P_SETTLEMENT.equals (aPaths[nDepth]))
+            {
+              // Everything relevant was read
+              break;
+            }
+            nDepth--;
+          }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Scan a CII document from the provided input stream.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>. It is
+   *        not closed by this method. Reading stops after the relevant parts,
+   *        so it may not be at the end afterwards.
+   * @param sSystemID
+   *        The optional system ID for error messages. May be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The scan result or <code>null</code> if the document is not well
+   *         formed or no CII invoice.
+   */
+  @Nullable
+  public static CIIPreScan scan (@Nonnull @WillNotClose final InputStream aIS,
+                                 @Nullable final String sSystemID,
+                                 @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    try
+    {
+      final XMLStreamReader aReader = CIIUnmarshallerPool.createXMLStreamReader (aIS, sSystemID);
+      try
+      {
+        final Scanner aScanner = new Scanner (aReader, aErrorList);
+        return aScanner.scan () ? new CIIPreScan (aScanner) : null;
+      }
+      finally
+      {
+        aReader.close ();
+      }
+    }
+    catch (final XMLStreamException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to scan CII invoice" +
+                                             (sSystemID == null ? "" : " '" + sSystemID + "'") +
+                                             ": " +
+                                             ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+  }
+
+  /**
+   * Scan a CII document from the provided bytes.
+   *
+   * @param aBytes
+   *        The bytes to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The scan result or <code>null</code> if the document is not well
+   *         formed or no CII invoice.
+   */
+  @Nullable
+  public static CIIPreScan scan (@Nonnull final byte [] aBytes, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    return scan (new NonBlockingByteArrayInputStream (aBytes), null, aErrorList);
+  }
+
+  /**
+   * Scan a CII document from the provided file.
+   *
+   * @param aPath
+   *        The file to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The scan result or <code>null</code> if the file cannot be read,
+   *         is not well formed or is no CII invoice.
+   */
+  @Nullable
+  public static CIIPreScan scan (@Nonnull final Path aPath, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aPath, "Path");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final String sSystemID = aPath.toUri ().toString ();
+    try (final InputStream aIS = new BufferedInputStream (Files.newInputStream (aPath)))
+    {
+      return scan (aIS, sSystemID, aErrorList);
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to read CII file '" + aPath.toAbsolutePath () + "': " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+  }
+}
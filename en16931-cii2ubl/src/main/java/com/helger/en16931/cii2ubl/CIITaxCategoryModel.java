@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.math.BigDecimal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.math.MathHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeTaxType;
+
+/**
+ * The UBL version independent part of a CII tax category, as used by the
+ * allowances and charges (BT-95, BT-96, BT-102, BT-103) and the lines (BT-151,
+ * BT-152). The tax scheme is always the configured VAT scheme.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public final class CIITaxCategoryModel
+{
+  private final String m_sID;
+  private final BigDecimal m_aPercent;
+
+  private CIITaxCategoryModel (@Nonnull final TradeTaxType aTradeTax)
+  {
+    m_sID = aTradeTax.getCategoryCodeValue ();
+    final BigDecimal aPercent = aTradeTax.getRateApplicablePercentValue ();
+    m_aPercent = aPercent == null ? null : MathHelper.getWithoutTrailingZeroes (aPercent);
+  }
+
+  /**
+   * @return The tax category code. May be <code>null</code>.
+   */
+  @Nullable
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  /**
+   * @return The tax rate in percent without trailing zeroes. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public BigDecimal getPercent ()
+  {
+    return m_aPercent;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("ID", m_sID).append ("Percent", m_aPercent).getToString ();
+  }
+
+  /**
+   * Extract the tax category from the provided CII trade tax.
+   *
+   * @param aTradeTax
+   *        The CII trade tax. May not be <code>null</code>.
+   * @return The created model and never <code>null</code>.
+   */
+  @Nonnull
+  public static CIITaxCategoryModel create (@Nonnull final TradeTaxType aTradeTax)
+  {
+    ValueEnforcer.notNull (aTradeTax, "TradeTax");
+    return new CIITaxCategoryModel (aTradeTax);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeTaxType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.AmountType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
+
+/**
+ * The UBL version independent part of BG-23 VAT breakdown.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public final class CIITaxSubtotalModel
+{
+  private final AmountType m_aTaxableAmount;
+  private final AmountType m_aTaxAmount;
+  private final CIITaxCategoryModel m_aTaxCategory;
+  private final String m_sExemptionReasonCode;
+  private final TextType m_aExemptionReason;
+
+  private CIITaxSubtotalModel (@Nonnull final TradeTaxType aTradeTax)
+  {
+    m_aTaxableAmount = aTradeTax.hasBasisAmountEntries () ? aTradeTax.getBasisAmountAtIndex (0) : null;
+    m_aTaxAmount = aTradeTax.hasCalculatedAmountEntries () ? aTradeTax.getCalculatedAmountAtIndex (0) : null;
+    m_aTaxCategory = CIITaxCategoryModel.create (aTradeTax);
+    final String sExemptionReasonCode = aTradeTax.getExemptionReasonCodeValue ();
+    m_sExemptionReasonCode = StringHelper.hasText (sExemptionReasonCode) ? sExemptionReasonCode : null;
+    m_aExemptionReason = aTradeTax.getExemptionReason ();
+  }
+
+  /**
+   * @return BT-116 VAT category taxable amount. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getTaxableAmount ()
+  {
+    return m_aTaxableAmount;
+  }
+
+  /**
+   * @return BT-117 VAT category tax amount. May be <code>null</code>.
+   */
+  @Nullable
+  public AmountType getTaxAmount ()
+  {
+    return m_aTaxAmount;
+  }
+
+  /**
+   * @return BT-118 VAT category code and BT-119 VAT category rate. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public CIITaxCategoryModel getTaxCategory ()
+  {
+    return m_aTaxCategory;
+  }
+
+  /**
+   * @return BT-121 VAT exemption reason code. May be <code>null</code> but
+   *         never empty.
+   */
+  @Nullable
+  public String getExemptionReasonCode ()
+  {
+    return m_sExemptionReasonCode;
+  }
+
+  /**
+   * @return BT-120 VAT exemption reason text. May be <code>null</code>.
+   */
+  @Nullable
+  public TextType getExemptionReason ()
+  {
+    return m_aExemptionReason;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("TaxableAmount", m_aTaxableAmount)
+                                       .append ("TaxAmount", m_aTaxAmount)
+                                       .append ("TaxCategory", m_aTaxCategory)
+                                       .append ("ExemptionReasonCode", m_sExemptionReasonCode)
+                                       .append ("ExemptionReason", m_aExemptionReason)
+                                       .getToString ();
+  }
+
+  /**
+   * Extract the VAT breakdown from the provided CII trade tax.
+   *
+   * @param aTradeTax
+   *        The CII header trade tax. May not be <code>null</code>.
+   * @return The created model and never <code>null</code>.
+   */
+  @Nonnull
+  public static CIITaxSubtotalModel create (@Nonnull final TradeTaxType aTradeTax)
+  {
+    ValueEnforcer.notNull (aTradeTax, "TradeTax");
+    return new CIITaxSubtotalModel (aTradeTax);
+  }
+}
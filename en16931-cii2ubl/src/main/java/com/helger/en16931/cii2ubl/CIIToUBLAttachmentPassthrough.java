@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsMap;
+
+/**
+ * Base64 passthrough of large attachments for the streaming conversion.
+ * JAXB decodes the base64 text of each <code>AttachmentBinaryObject</code>
+ * into a byte array on reading and encodes it again when writing the
+ * <code>EmbeddedDocumentBinaryObject</code>, so that each attachment is in
+ * memory twice. Instead the reader created by
+ * {@link #wrap(XMLStreamReader)} spools the base64 text of all attachments
+ * with at least the threshold number of characters to a temporary file and
+ * hands a short unique marker to JAXB. The writer created by
+ * {@link #wrap(XMLStreamWriter)} replaces the marker with the spooled text.
+ * The spooled text is neither decoded nor validated. All temporary files are
+ * deleted in {@link #close()}.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@NotThreadSafe
+final class CIIToUBLAttachmentPassthrough implements AutoCloseable
+{
+  static final String ELEMENT_ATTACHMENT = "AttachmentBinaryObject";
+  static final String ELEMENT_EMBEDDED_DOCUMENT = "EmbeddedDocumentBinaryObject";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (CIIToUBLAttachmentPassthrough.class);
+  private static final SecureRandom RANDOM = new SecureRandom ();
+  // 24 bytes result in 32 base64 characters without padding
+  private static final int MARKER_BYTES = 24;
+  private static final int MARKER_CHARS = MARKER_BYTES / 3 * 4;
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private final int m_nThreshold;
+  private final byte [] m_aMarkerPrefix = new byte [MARKER_BYTES - 8];
+  // Marker to spooled file
+  private final ICommonsMap <String, Path> m_aSpooled = new CommonsHashMap <> ();
+  private long m_nSpooledChars = 0;
+
+  /**
+   * @param nThreshold
+   *        The minimum number of base64 characters of an attachment to be
+   *        passed through. Must be &gt; 0.
+   */
+  CIIToUBLAttachmentPassthrough (@Nonnegative final int nThreshold)
+  {
+    m_nThreshold = nThreshold;
+    // Unique per conversion, so that real content cannot collide with it
+    RANDOM.nextBytes (m_aMarkerPrefix);
+  }
+
+  /**
+   * @return The number of attachments spooled so far.
+   */
+  @Nonnegative
+  int getSpooledCount ()
+  {
+    return m_aSpooled.size ();
+  }
+
+  /**
+   * @return The total number of base64 characters spooled so far.
+   */
+  @Nonnegative
+  long getSpooledChars ()
+  {
+    return m_nSpooledChars;
+  }
+
+  @Nonnull
+  private String _createMarker ()
+  {
+    final ByteBuffer aBuffer = ByteBuffer.allocate (MARKER_BYTES);
+    aBuffer.put (m_aMarkerPrefix);
+    aBuffer.putLong (m_aSpooled.size ());
+    return Base64.getEncoder ().encodeToString (aBuffer.array ());
+  }
+
+  /**
+   * Wrap a CII reader so that large attachments are spooled.
+   *
+   * @param aReader
+   *        The reader to wrap. May not be <code>null</code>.
+   * @return The wrapping reader. Never <code>null</code>.
+   */
+  @Nonnull
+  XMLStreamReader wrap (@Nonnull final XMLStreamReader aReader)
+  {
+    return new SpoolingReader (aReader);
+  }
+
+  /**
+   * Wrap a UBL writer so that the markers are replaced with the spooled
+   * attachments.
+   *
+   * @param aWriter
+   *        The writer to wrap. May not be <code>null</code>.
+   * @return The wrapping writer. Never <code>null</code>.
+   */
+  @Nonnull
+  XMLStreamWriter wrap (@Nonnull final XMLStreamWriter aWriter)
+  {
+    return new CopyingWriter (aWriter);
+  }
+
+  /**
+   * Delete all spooled files.
+   */
+  public void close ()
+  {
+    for (final Path aPath : m_aSpooled.values ())
+      try
+      {
+        Files.deleteIfExists (aPath);
+      }
+      catch (final IOException ex)
+      {
+        LOGGER.warn ("Failed to delete spooled attachment " + aPath + ": " + ex.getMessage ());
+      }
+    m_aSpooled.clear ();
+  }
+
+  /**
+   * A StAX reader that replaces the text of large attachments with a marker.
+   * The whole text of an attachment is read when the reader moves past its
+   * start element, and is presented as a single character event.
+   */
+  private final class SpoolingReader extends StreamReaderDelegate
+  {
+    private boolean m_bAtAttachmentStart = false;
+    // The text to present instead of the original text, if not null
+    private char [] m_aText;
+
+    SpoolingReader (@Nonnull final XMLStreamReader aReader)
+    {
+      super (aReader);
+    }
+
+    private void _appendText (@Nonnull final StringBuilder aSB) throws XMLStreamException
+    {
+      aSB.append (super.getTextCharacters (), super.getTextStart (), super.getTextLength ());
+    }
+
+    @Nonnull
+    private String _spool (@Nonnull final StringBuilder aPrefix) throws XMLStreamException
+    {
+      Path aPath = null;
+      try
+      {
+        aPath = Files.createTempFile ("cii2ubl-attachment", ".b64");
+        final String sMarker = _createMarker ();
+        m_aSpooled.put (sMarker, aPath);
+        long nChars = aPrefix.length ();
+        try (final Writer aWriter = Files.newBufferedWriter (aPath, StandardCharsets.UTF_8))
+        {
+          aWriter.append (aPrefix);
+          int nEvent = super.next ();
+          while (nEvent != END_ELEMENT)
+          {
+            if (nEvent == CHARACTERS || nEvent == CDATA || nEvent == SPACE)
+            {
+              final int nLength = super.getTextLength ();
+              aWriter.write (super.getTextCharacters (), super.getTextStart (), nLength);
+              nChars += nLength;
+            }
+            nEvent = super.next ();
+          }
+        }
+        m_nSpooledChars += nChars;
+        if (LOGGER.isDebugEnabled ())
+          LOGGER.debug ("Spooled attachment with " + nChars + " base64 characters to " + aPath);
+        return sMarker;
+      }
+      catch (final IOException ex)
+      {
+        throw new XMLStreamException ("Failed to spool attachment to '" + aPath + "'", ex);
+      }
+    }
+
+    /**
+     * Read the complete text of the attachment. Afterwards the underlying
+     * reader is positioned at the end element.
+     */
+    private void _readAttachment () throws XMLStreamException
+    {
+      final StringBuilder aSB = new StringBuilder ();
+      int nEvent = super.next ();
+      while (nEvent != END_ELEMENT)
+      {
+        if (nEvent == CHARACTERS || nEvent == CDATA || nEvent == SPACE)
+        {
+          _appendText (aSB);
+          if (aSB.length () >= m_nThreshold)
+          {
+            m_aText = _spool (aSB).toCharArray ();
+            return;
+          }
+        }
+        nEvent = super.next ();
+      }
+      m_aText = aSB.length () > 0 ? aSB.toString ().toCharArray () : null;
+    }
+
+    @Override
+    public int next () throws XMLStreamException
+    {
+      if (m_aText != null)
+      {
+        // The underlying reader is already at the end element
+        m_aText = null;
+        return super.getEventType ();
+      }
+
+      if (m_bAtAttachmentStart)
+      {
+        m_bAtAttachmentStart = false;
+        _readAttachment ();
+        return getEventType ();
+      }
+
+      final int nEvent = super.next ();
+      m_bAtAttachmentStart = nEvent == START_ELEMENT &&
+                             ELEMENT_ATTACHMENT.equals (super.getLocalName ()) &&
+                             CIIToUBLStreamingConverter.NS_RAM.equals (super.getNamespaceURI ());
+      return nEvent;
+    }
+
+    @Override
+    public String getElementText () throws XMLStreamException
+    {
+      // Reads the text without spooling it
+      m_bAtAttachmentStart = false;
+      return super.getElementText ();
+    }
+
+    @Override
+    public int nextTag () throws XMLStreamException
+    {
+      // Must use the spooling next() from above
+      int nEvent = next ();
+      while ((nEvent == CHARACTERS || nEvent == CDATA) && isWhiteSpace () ||
+             nEvent == SPACE ||
+             nEvent == PROCESSING_INSTRUCTION ||
+             nEvent == COMMENT)
+        nEvent = next ();
+      if (nEvent != START_ELEMENT && nEvent != END_ELEMENT)
+        throw new XMLStreamException ("Expected start or end tag", getLocation ());
+      return nEvent;
+    }
+
+    @Override
+    public boolean hasNext () throws XMLStreamException
+    {
+      return m_aText != null || super.hasNext ();
+    }
+
+    @Override
+    public int getEventType ()
+    {
+      return m_aText != null ? CHARACTERS : super.getEventType ();
+    }
+
+    @Override
+    public boolean isStartElement ()
+    {
+      return m_aText == null && super.isStartElement ();
+    }
+
+    @Override
+    public boolean isEndElement ()
+    {
+      return m_aText == null && super.isEndElement ();
+    }
+
+    @Override
+    public boolean isCharacters ()
+    {
+      return m_aText != null || super.isCharacters ();
+    }
+
+    @Override
+    public boolean isWhiteSpace ()
+    {
+      // Neither base64 text nor markers are white space only
+      return m_aText == null && super.isWhiteSpace ();
+    }
+
+    @Override
+    public boolean hasText ()
+    {
+      return m_aText != null || super.hasText ();
+    }
+
+    @Override
+    public String getText ()
+    {
+      return m_aText != null ? new String (m_aText) : super.getText ();
+    }
+
+    @Override
+    public char [] getTextCharacters ()
+    {
+      return m_aText != null ? m_aText : super.getTextCharacters ();
+    }
+
+    @Override
+    public int getTextCharacters (final int nSourceStart,
+                                  final char [] aTarget,
+                                  final int nTargetStart,
+                                  final int nLength) throws XMLStreamException
+    {
+      if (m_aText == null)
+        return super.getTextCharacters (nSourceStart, aTarget, nTargetStart, nLength);
+      final int nCopy = Math.max (0, Math.min (nLength, m_aText.length - nSourceStart));
+      System.arraycopy (m_aText, nSourceStart, aTarget, nTargetStart, nCopy);
+      return nCopy;
+    }
+
+    @Override
+    public int getTextStart ()
+    {
+      return m_aText != null ? 0 : super.getTextStart ();
+    }
+
+    @Override
+    public int getTextLength ()
+    {
+      return m_aText != null ? m_aText.length : super.getTextLength ();
+    }
+  }
+
+  /**
+   * A StAX writer that replaces the markers in embedded document binary
+   * objects with the spooled text.
+   */
+  private final class CopyingWriter extends CIIToUBLStreamingConverter.DelegatingWriter
+  {
+    // The text of the current binary object, as long as it may be a marker
+    private StringBuilder m_aText;
+
+    CopyingWriter (@Nonnull final XMLStreamWriter aDelegate)
+    {
+      super (aDelegate);
+    }
+
+    private void _startElement (@Nullable final String sNamespaceURI, @Nonnull final String sLocalName) throws XMLStreamException
+    {
+      _flushText ();
+      if (ELEMENT_EMBEDDED_DOCUMENT.equals (sLocalName) && CIIToUBLDirectConverter.NS_CBC.equals (sNamespaceURI))
+        m_aText = new StringBuilder (MARKER_CHARS);
+    }
+
+    private void _flushText () throws XMLStreamException
+    {
+      if (m_aText != null)
+      {
+        if (m_aText.length () > 0)
+          m_aDelegate.writeCharacters (m_aText.toString ());
+        m_aText = null;
+      }
+    }
+
+    private void _copy (@Nonnull final Path aPath) throws XMLStreamException
+    {
+      final char [] aBuffer = new char [BUFFER_SIZE];
+      try (final Reader aReader = Files.newBufferedReader (aPath, StandardCharsets.UTF_8))
+      {
+        int nRead;
+        while ((nRead = aReader.read (aBuffer)) > 0)
+          m_aDelegate.writeCharacters (aBuffer, 0, nRead);
+      }
+      catch (final IOException ex)
+      {
+        throw new XMLStreamException ("Failed to copy spooled attachment from '" + aPath + "'", ex);
+      }
+    }
+
+    @Override
+    public void writeStartElement (final String sLocalName) throws XMLStreamException
+    {
+      _startElement (null, sLocalName);
+      super.writeStartElement (sLocalName);
+    }
+
+    @Override
+    public void writeStartElement (final String sNamespaceURI, final String sLocalName) throws XMLStreamException
+    {
+      _startElement (sNamespaceURI, sLocalName);
+      super.writeStartElement (sNamespaceURI, sLocalName);
+    }
+
+    @Override
+    public void writeStartElement (final String sPrefix, final String sLocalName, final String sNamespaceURI) throws XMLStreamException
+    {
+      _startElement (sNamespaceURI, sLocalName);
+      super.writeStartElement (sPrefix, sLocalName, sNamespaceURI);
+    }
+
+    @Override
+    public void writeCharacters (final String sText) throws XMLStreamException
+    {
+      if (m_aText == null)
+        super.writeCharacters (sText);
+      else
+      {
+        m_aText.append (sText);
+        if (m_aText.length () > MARKER_CHARS)
+          _flushText ();
+      }
+    }
+
+    @Override
+    public void writeCharacters (final char [] aText, final int nStart, final int nLen) throws XMLStreamException
+    {
+      if (m_aText == null)
+        super.writeCharacters (aText, nStart, nLen);
+      else
+      {
+        m_aText.append (aText, nStart, nLen);
+        if (m_aText.length () > MARKER_CHARS)
+          _flushText ();
+      }
+    }
+
+    @Override
+    public void writeEndElement () throws XMLStreamException
+    {
+      if (m_aText != null)
+      {
+        final Path aPath = m_aText.length () == MARKER_CHARS ? m_aSpooled.get (m_aText.toString ()) : null;
+        if (aPath != null)
+        {
+          m_aText = null;
+          _copy (aPath);
+        }
+        else
+          _flushText ();
+      }
+      super.writeEndElement ();
+    }
+  }
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.IErrorList;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * Content addressed handling of the attachments (binary objects of referenced
+ * documents) of CII documents, for bulk conversions where the same attachments
+ * (e.g. terms and conditions or price lists) are contained in many documents.
+ * The attachments are identified by the SHA-256 hash of their content.
+ * <ul>
+ * <li>Deduplication: all converted UBL documents share a single byte array per
+ * attachment content, as long as it is contained in the heap cache. The heap
+ * cache is bounded by the total attachment size, with least recently used
+ * eviction.</li>
+ * <li>Externalization (optional): attachments are written once to a local
+ * content addressed store and referenced via
+ * <code>ExternalReference/URI</code> instead of being embedded. This reduces
+ * the size of the created UBL documents. Attachments that already have an
+ * external URI in CII are always embedded, because UBL only allows a single
+ * external reference.</li>
+ * </ul>
+ * Use it via {@link CIIToUBLSettings.Builder#attachmentStore(CIIToUBLAttachmentStore)}.
+ * A single instance may be shared by all conversions. The store directory is
+ * not bounded - it needs to be cleaned up externally if needed.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@ThreadSafe
+public final class CIIToUBLAttachmentStore
+{
+  /** The default maximum size of all attachments cached on heap */
+  public static final long DEFAULT_MAX_HEAP_BYTES = 64L * 1024 * 1024;
+  /** By default all attachments are externalized if a store is used */
+  public static final long DEFAULT_MIN_EXTERNAL_BYTES = 0;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (CIIToUBLAttachmentStore.class);
+  private static final String HASH_ALGORITHM = "SHA-256";
+
+  private final long m_nMaxHeapBytes;
+  private final Path m_aStoreDirectory;
+  private final String m_sBaseURI;
+  private final long m_nMinExternalBytes;
+
+  @GuardedBy ("m_aHeap")
+  private final LinkedHashMap <String, byte []> m_aHeap = new LinkedHashMap <> (16, 0.75f, true);
+  @GuardedBy ("m_aHeap")
+  private long m_nHeapBytes = 0;
+
+  private final AtomicLong m_aHeapHits = new AtomicLong (0);
+  private final AtomicLong m_aHeapMisses = new AtomicLong (0);
+  private final AtomicLong m_aStoredCount = new AtomicLong (0);
+  private final AtomicLong m_aStoredBytes = new AtomicLong (0);
+  private final AtomicLong m_aExternalizedCount = new AtomicLong (0);
+
+  /**
+   * An attachment that was written to the store.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  public static final class StoredAttachment
+  {
+    private final String m_sHash;
+    private final String m_sURI;
+
+    StoredAttachment (@Nonnull final String sHash, @Nonnull final String sURI)
+    {
+      m_sHash = sHash;
+      m_sURI = sURI;
+    }
+
+    /**
+     * @return The hex encoded SHA-256 hash of the attachment content. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    public String getHash ()
+    {
+      return m_sHash;
+    }
+
+    /**
+     * @return The URI of the attachment in the store. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    public String getURI ()
+    {
+      return m_sURI;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return new ToStringGenerator (null).append ("Hash", m_sHash).append ("URI", m_sURI).getToString ();
+    }
+  }
+
+  /**
+   * Constructor that only deduplicates attachments and always embeds them.
+   *
+   * @param nMaxHeapBytes
+   *        The maximum total size in bytes of the attachments kept on heap.
+   *        Must be &ge; 0.
+   */
+  public CIIToUBLAttachmentStore (@Nonnegative final long nMaxHeapBytes)
+  {
+    ValueEnforcer.isGE0 (nMaxHeapBytes, "MaxHeapBytes");
+    m_nMaxHeapBytes = nMaxHeapBytes;
+    m_aStoreDirectory = null;
+    m_sBaseURI = null;
+    m_nMinExternalBytes = DEFAULT_MIN_EXTERNAL_BYTES;
+  }
+
+  /**
+   * Constructor that writes attachments to a local store and references them
+   * instead of embedding them.
+   *
+   * @param nMaxHeapBytes
+   *        The maximum total size in bytes of the attachments kept on heap.
+   *        Must be &ge; 0. Only embedded attachments are kept on heap.
+   * @param aStoreDirectory
+   *        The directory of the content addressed store. May not be
+   *        <code>null</code>. It is created if it does not exist.
+   * @param sBaseURI
+   *        The base URI under which the store directory is published, e.g.
+   *        <code>https://example.org/attachments/</code>. The relative path
+   *        of the attachment in the store is appended. May be
+   *        <code>null</code> to use the <code>file:</code> URI of the
+   *        attachment.
+   * @param nMinExternalBytes
+   *        The minimum size in bytes of attachments that are externalized.
+   *        Smaller attachments are embedded. Must be &ge; 0.
+   * @throws IOException
+   *         If the store directory cannot be created
+   */
+  public CIIToUBLAttachmentStore (@Nonnegative final long nMaxHeapBytes,
+                                  @Nonnull final Path aStoreDirectory,
+                                  @Nullable final String sBaseURI,
+                                  @Nonnegative final long nMinExternalBytes) throws IOException
+  {
+    ValueEnforcer.isGE0 (nMaxHeapBytes, "MaxHeapBytes");
+    ValueEnforcer.notNull (aStoreDirectory, "StoreDirectory");
+    ValueEnforcer.isGE0 (nMinExternalBytes, "MinExternalBytes");
+    m_nMaxHeapBytes = nMaxHeapBytes;
+    m_aStoreDirectory = aStoreDirectory.toAbsolutePath ().normalize ();
+    m_sBaseURI = StringHelper.hasNoText (sBaseURI) || sBaseURI.endsWith ("/") ? sBaseURI : sBaseURI + "/";
+    m_nMinExternalBytes = nMinExternalBytes;
+    Files.createDirectories (m_aStoreDirectory);
+  }
+
+  /**
+   * @return The maximum total size in bytes of the attachments kept on heap.
+   */
+  @Nonnegative
+  public long getMaxHeapBytes ()
+  {
+    return m_nMaxHeapBytes;
+  }
+
+  /**
+   * @return The directory of the content addressed store or <code>null</code>
+   *         if attachments are only deduplicated.
+   */
+  @Nullable
+  public Path getStoreDirectory ()
+  {
+    return m_aStoreDirectory;
+  }
+
+  /**
+   * @return <code>true</code> if attachments are written to the store.
+   */
+  public boolean isExternalizing ()
+  {
+    return m_aStoreDirectory != null;
+  }
+
+  /**
+   * @return The base URI of the store. May be <code>null</code>.
+   */
+  @Nullable
+  public String getBaseURI ()
+  {
+    return m_sBaseURI;
+  }
+
+  /**
+   * @return The minimum size in bytes of attachments that are externalized.
+   */
+  @Nonnegative
+  public long getMinExternalBytes ()
+  {
+    return m_nMinExternalBytes;
+  }
+
+  /**
+   * Get the hash that identifies the provided content.
+   *
+   * @param aContent
+   *        The content to hash. May not be <code>null</code>.
+   * @return The hex encoded SHA-256 hash. Never <code>null</code>.
+   */
+  @Nonnull
+  public static String getContentHash (@Nonnull final byte [] aContent)
+  {
+    ValueEnforcer.notNull (aContent, "Content");
+    try
+    {
+      return StringHelper.getHexEncoded (MessageDigest.getInstance (HASH_ALGORITHM).digest (aContent));
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("Hash algorithm " + HASH_ALGORITHM + " is not supported", ex);
+    }
+  }
+
+  /**
+   * Get the shared instance of an attachment content that is embedded. If
+   * the same content was seen before and is still in the heap cache, the
+   * previous array is returned and the provided one can be garbage collected.
+   * The returned array must not be modified.
+   *
+   * @param aContent
+   *        The attachment content. May be <code>null</code>.
+   * @return The shared content. Only <code>null</code> if the provided
+   *         content is <code>null</code>.
+   */
+  @Nullable
+  public byte [] getShared (@Nullable final byte [] aContent)
+  {
+    if (aContent == null || aContent.length > m_nMaxHeapBytes)
+      return aContent;
+
+    final String sHash = getContentHash (aContent);
+    synchronized (m_aHeap)
+    {
+      final byte [] aShared = m_aHeap.get (sHash);
+      if (aShared != null)
+      {
+        m_aHeapHits.incrementAndGet ();
+        return aShared;
+      }
+
+      m_aHeapMisses.incrementAndGet ();
+      m_aHeap.put (sHash, aContent);
+      m_nHeapBytes += aContent.length;
+
+      // Evict the least recently used entries
+      final Iterator <byte []> it = m_aHeap.values ().iterator ();
+      while (m_nHeapBytes > m_nMaxHeapBytes && it.hasNext ())
+      {
+        m_nHeapBytes -= it.next ().length;
+        it.remove ();
+      }
+    }
+    return aContent;
+  }
+
+  @Nonnull
+  private Path _getStorePath (@Nonnull final String sHash)
+  {
+    // Use the first two characters as a sub directory, to avoid huge
+    // directories
+    return m_aStoreDirectory.resolve (sHash.substring (0, 2)).resolve (sHash);
+  }
+
+  @Nonnull
+  private String _getURI (@Nonnull final String sHash, @Nonnull final Path aPath)
+  {
+    if (m_sBaseURI == null)
+      return aPath.toUri ().toString ();
+    return m_sBaseURI + sHash.substring (0, 2) + "/" + sHash;
+  }
+
+  private void _write (@Nonnull final Path aPath, @Nonnull final byte [] aContent) throws IOException
+  {
+    final Path aDir = aPath.getParent ();
+    Files.createDirectories (aDir);
+
+    // Write to a temporary file first, so that concurrent readers never see
+    // an incomplete file
+    final Path aTempFile = Files.createTempFile (aDir, aPath.getFileName ().toString (), ".tmp");
+    try
+    {
+      Files.write (aTempFile, aContent);
+      try
+      {
+        Files.move (aTempFile, aPath, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (final AtomicMoveNotSupportedException ex)
+      {
+        Files.move (aTempFile, aPath);
+      }
+      m_aStoredCount.incrementAndGet ();
+      m_aStoredBytes.addAndGet (aContent.length);
+    }
+    catch (final FileAlreadyExistsException ex)
+    {
+      // Written concurrently - the content is identical
+    }
+    finally
+    {
+      Files.deleteIfExists (aTempFile);
+    }
+  }
+
+  /**
+   * Write the provided attachment content to the store, if it is not yet
+   * contained.
+   *
+   * @param aContent
+   *        The attachment content. May be <code>null</code>.
+   * @param aErrorList
+   *        The error list to add a warning to, if the attachment cannot be
+   *        stored. May not be <code>null</code>.
+   * @return The stored attachment or <code>null</code> if this store does not
+   *         externalize, the content is <code>null</code> or smaller than the
+   *         minimum size, or if it could not be written. In that case the
+   *         attachment should be embedded.
+   */
+  @Nullable
+  public StoredAttachment externalize (@Nullable final byte [] aContent, @Nonnull final IErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+    if (m_aStoreDirectory == null || aContent == null || aContent.length < m_nMinExternalBytes)
+      return null;
+
+    final String sHash = getContentHash (aContent);
+    final Path aPath = _getStorePath (sHash);
+    try
+    {
+      // The file name is the hash, so an existing file has the same content
+      if (!Files.isRegularFile (aPath))
+        _write (aPath, aContent);
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderWarn ()
+                                 .errorText ("Failed to store attachment in '" + aPath + "' - embedding it instead: " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Failed to store attachment in " + aPath, ex);
+      return null;
+    }
+    m_aExternalizedCount.incrementAndGet ();
+    return new StoredAttachment (sHash, _getURI (sHash, aPath));
+  }
+
+  /**
+   * Remove all entries from the heap cache. The store is not touched.
+   */
+  public void clearHeap ()
+  {
+    synchronized (m_aHeap)
+    {
+      m_aHeap.clear ();
+      m_nHeapBytes = 0;
+    }
+  }
+
+  /**
+   * @return The number of distinct attachments currently cached on heap.
+   */
+  @Nonnegative
+  public int getHeapEntryCount ()
+  {
+    synchronized (m_aHeap)
+    {
+      return m_aHeap.size ();
+    }
+  }
+
+  /**
+   * @return The total size in bytes of the attachments currently cached on
+   *         heap.
+   */
+  @Nonnegative
+  public long getHeapBytes ()
+  {
+    synchronized (m_aHeap)
+    {
+      return m_nHeapBytes;
+    }
+  }
+
+  /**
+   * @return The number of embedded attachments that were already contained in
+   *         the heap cache.
+   */
+  @Nonnegative
+  public long getHeapHitCount ()
+  {
+    return m_aHeapHits.get ();
+  }
+
+  /**
+   * @return The number of embedded attachments that were not yet contained in
+   *         the heap cache.
+   */
+  @Nonnegative
+  public long getHeapMissCount ()
+  {
+    return m_aHeapMisses.get ();
+  }
+
+  /**
+   * @return The number of attachments that were referenced instead of being
+   *         embedded.
+   */
+  @Nonnegative
+  public long getExternalizedCount ()
+  {
+    return m_aExternalizedCount.get ();
+  }
+
+  /**
+   * @return The number of attachment files this object wrote to the store.
+   */
+  @Nonnegative
+  public long getStoredCount ()
+  {
+    return m_aStoredCount.get ();
+  }
+
+  /**
+   * @return The total size in bytes of the attachment files this object wrote
+   *         to the store.
+   */
+  @Nonnegative
+  public long getStoredBytes ()
+  {
+    return m_aStoredBytes.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    // Only the configuration, as it is part of the settings
+    return new ToStringGenerator (null).append ("MaxHeapBytes", m_nMaxHeapBytes)
+                                       .append ("StoreDirectory", m_aStoreDirectory)
+                                       .append ("BaseURI", m_sBaseURI)
+                                       .append ("MinExternalBytes", m_nMinExternalBytes)
+                                       .getToString ();
+  }
+}
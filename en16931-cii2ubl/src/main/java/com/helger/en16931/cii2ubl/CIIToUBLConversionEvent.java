@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The metrics of a single document conversion, as passed to
+ * {@link ICIIToUBLConversionListener}. All durations are in nanoseconds. A
+ * phase that was not executed, e.g. writing when only the UBL object is
+ * created, has a duration of 0.<br>
+ * If reading, converting and writing are interleaved, as in the streaming
+ * conversion, only the total duration is known (see {@link #isInterleaved()}).
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Immutable
+public final class CIIToUBLConversionEvent
+{
+  /** The value for an unknown document size or line count */
+  public static final int UNKNOWN = -1;
+
+  private final long m_nReadNanos;
+  private final long m_nConvertNanos;
+  private final long m_nWriteNanos;
+  private final long m_nTotalNanos;
+  private final boolean m_bInterleaved;
+  private final long m_nDocumentBytes;
+  private final int m_nLineCount;
+  private final int m_nErrorCount;
+  private final boolean m_bSuccess;
+
+  /**
+   * Constructor
+   *
+   * @param nReadNanos
+   *        Duration of reading and validating the CII. Must be &ge; 0.
+   * @param nConvertNanos
+   *        Duration of the conversion to UBL. Must be &ge; 0.
+   * @param nWriteNanos
+   *        Duration of writing the UBL. Must be &ge; 0.
+   * @param nDocumentBytes
+   *        Size of the CII document in bytes or {@link #UNKNOWN}.
+   * @param nLineCount
+   *        Number of CII line items or {@link #UNKNOWN}.
+   * @param nErrorCount
+   *        Number of errors of the conversion. Must be &ge; 0.
+   * @param bSuccess
+   *        <code>true</code> if the conversion was successful.
+   */
+  public CIIToUBLConversionEvent (@Nonnegative final long nReadNanos,
+                                  @Nonnegative final long nConvertNanos,
+                                  @Nonnegative final long nWriteNanos,
+                                  final long nDocumentBytes,
+                                  final int nLineCount,
+                                  @Nonnegative final int nErrorCount,
+                                  final boolean bSuccess)
+  {
+    this (nReadNanos,
+          nConvertNanos,
+          nWriteNanos,
+          nReadNanos + nConvertNanos + nWriteNanos,
+          false,
+          nDocumentBytes,
+          nLineCount,
+          nErrorCount,
+          bSuccess);
+  }
+
+  private CIIToUBLConversionEvent (@Nonnegative final long nReadNanos,
+                                   @Nonnegative final long nConvertNanos,
+                                   @Nonnegative final long nWriteNanos,
+                                   @Nonnegative final long nTotalNanos,
+                                   final boolean bInterleaved,
+                                   final long nDocumentBytes,
+                                   final int nLineCount,
+                                   @Nonnegative final int nErrorCount,
+                                   final boolean bSuccess)
+  {
+    ValueEnforcer.isGE0 (nReadNanos, "ReadNanos");
+    ValueEnforcer.isGE0 (nConvertNanos, "ConvertNanos");
+    ValueEnforcer.isGE0 (nWriteNanos, "WriteNanos");
+    ValueEnforcer.isGE0 (nTotalNanos, "TotalNanos");
+    ValueEnforcer.isGE0 (nErrorCount, "ErrorCount");
+    m_nReadNanos = nReadNanos;
+    m_nConvertNanos = nConvertNanos;
+    m_nWriteNanos = nWriteNanos;
+    m_nTotalNanos = nTotalNanos;
+    m_bInterleaved = bInterleaved;
+    m_nDocumentBytes = nDocumentBytes < 0 ? UNKNOWN : nDocumentBytes;
+    m_nLineCount = nLineCount < 0 ? UNKNOWN : nLineCount;
+    m_nErrorCount = nErrorCount;
+    m_bSuccess = bSuccess;
+  }
+
+  @Nonnegative
+  public long getReadNanos ()
+  {
+    return m_nReadNanos;
+  }
+
+  @Nonnegative
+  public long getConvertNanos ()
+  {
+    return m_nConvertNanos;
+  }
+
+  @Nonnegative
+  public long getWriteNanos ()
+  {
+    return m_nWriteNanos;
+  }
+
+  /**
+   * @return The sum of all phase durations or the measured total duration if
+   *         the phases are interleaved.
+   */
+  @Nonnegative
+  public long getTotalNanos ()
+  {
+    return m_nTotalNanos;
+  }
+
+  /**
+   * @return <code>true</code> if reading, converting and writing were
+   *         interleaved, so that only the total duration is known and all
+   *         phase durations are 0.
+   */
+  public boolean isInterleaved ()
+  {
+    return m_bInterleaved;
+  }
+
+  /**
+   * @return The size of the CII document in bytes or {@link #UNKNOWN}.
+   */
+  public long getDocumentBytes ()
+  {
+    return m_nDocumentBytes;
+  }
+
+  /**
+   * @return The number of CII line items or {@link #UNKNOWN}, e.g. if the
+   *         document could not be read.
+   */
+  public int getLineCount ()
+  {
+    return m_nLineCount;
+  }
+
+  @Nonnegative
+  public int getErrorCount ()
+  {
+    return m_nErrorCount;
+  }
+
+  public boolean isSuccess ()
+  {
+    return m_bSuccess;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("ReadNanos", m_nReadNanos)
+                                       .append ("ConvertNanos", m_nConvertNanos)
+                                       .append ("WriteNanos", m_nWriteNanos)
+                                       .append ("TotalNanos", m_nTotalNanos)
+                                       .append ("Interleaved", m_bInterleaved)
+                                       .append ("DocumentBytes", m_nDocumentBytes)
+                                       .append ("LineCount", m_nLineCount)
+                                       .append ("ErrorCount", m_nErrorCount)
+                                       .append ("Success", m_bSuccess)
+                                       .getToString ();
+  }
+
+  /**
+   * Create an event for a conversion with interleaved phases, e.g. the
+   * streaming conversion.
+   *
+   * @param nTotalNanos
+   *        Duration of reading, converting and writing. Must be &ge; 0.
+   * @param nDocumentBytes
+   *        Size of the CII document in bytes or {@link #UNKNOWN}.
+   * @param nLineCount
+   *        Number of CII line items or {@link #UNKNOWN}.
+   * @param nErrorCount
+   *        Number of errors of the conversion. Must be &ge; 0.
+   * @param bSuccess
+   *        <code>true</code> if the conversion was successful.
+   * @return The new event and never <code>null</code>.
+   */
+  @Nonnull
+  public static CIIToUBLConversionEvent createInterleaved (@Nonnegative final long nTotalNanos,
+                                                           final long nDocumentBytes,
+                                                           final int nLineCount,
+                                                           @Nonnegative final int nErrorCount,
+                                                           final boolean bSuccess)
+  {
+    return new CIIToUBLConversionEvent (0, 0, 0, nTotalNanos, true, nDocumentBytes, nLineCount, nErrorCount, bSuccess);
+  }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A thread-safe {@link ICIIToUBLConversionListener} that keeps in-memory
+ * histograms of the phase durations and counts documents, bytes, lines and
+ * errors. Conversions with interleaved phases (see
+ * {@link CIIToUBLConversionEvent#isInterleaved()}) are only part of the
+ * histogram of the interleaved and the total durations. Recording is lock free and uses a constant amount of memory, so it
+ * can stay enabled for long running conversions. The percentiles have a
+ * relative error of at most about 6%.<br>
+ * The throughput is calculated for the time between the creation of this
+ * object and the last recorded conversion.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@ThreadSafe
+public class CIIToUBLConversionStatistics implements ICIIToUBLConversionListener
+{
+  /**
+   * A log-linear histogram of durations in nanoseconds, with 8 buckets per
+   * power of two.
+   *
+   * @author Philip Helger
+   */
+  @ThreadSafe
+  public static final class Histogram
+  {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray m_aBuckets = new AtomicLongArray (BUCKETS);
+    private final AtomicLong m_aCount = new AtomicLong (0);
+    private final AtomicLong m_aTotal = new AtomicLong (0);
+    private final AtomicLong m_aMax = new AtomicLong (0);
+
+    Histogram ()
+    {}
+
+    static int getBucketIndex (@Nonnegative final long nValue)
+    {
+      // Small values are exact
+      if (nValue < SUB_BUCKETS)
+        return (int) nValue;
+      final int nExp = 63 - Long.numberOfLeadingZeros (nValue);
+      final int nSub = (int) ((nValue >>> (nExp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+      return (nExp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + nSub;
+    }
+
+    static long getBucketMidValue (@Nonnegative final int nIndex)
+    {
+      if (nIndex < SUB_BUCKETS)
+        return nIndex;
+      final int nShift = nIndex / SUB_BUCKETS - 1;
+      final long nLower = (long) (SUB_BUCKETS + nIndex % SUB_BUCKETS) << nShift;
+      return nLower + ((1L << nShift) >>> 1);
+    }
+
+    void record (@Nonnegative final long nValue)
+    {
+      m_aBuckets.incrementAndGet (getBucketIndex (nValue));
+      m_aCount.incrementAndGet ();
+      m_aTotal.addAndGet (nValue);
+      m_aMax.accumulateAndGet (nValue, Math::max);
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    @Nonnegative
+    public long getCount ()
+    {
+      return m_aCount.get ();
+    }
+
+    /**
+     * @return The sum of all recorded values.
+     */
+    @Nonnegative
+    public long getTotalNanos ()
+    {
+      return m_aTotal.get ();
+    }
+
+    /**
+     * @return The largest recorded value or 0 if nothing was recorded.
+     */
+    @Nonnegative
+    public long getMaxNanos ()
+    {
+      return m_aMax.get ();
+    }
+
+    /**
+     * Get the approximated value below or at which the provided percentage of
+     * all values are.
+     *
+     * @param dPercentile
+     *        The percentile in the range 0 to 100, e.g. 99 for p99.
+     * @return The value in nanoseconds or 0 if nothing was recorded.
+     */
+    @Nonnegative
+    public long getPercentileNanos (final double dPercentile)
+    {
+      ValueEnforcer.isBetweenInclusive (dPercentile, "Percentile", 0, 100);
+
+      // Take a snapshot of the counts to get a consistent result
+      final long [] aCounts = new long [BUCKETS];
+      long nCount = 0;
+      for (int i = 0; i < BUCKETS; ++i)
+      {
+        aCounts[i] = m_aBuckets.get (i);
+        nCount += aCounts[i];
+      }
+      if (nCount == 0)
+        return 0;
+
+      final long nRank = Math.max (1, (long) Math.ceil (dPercentile / 100d * nCount));
+      long nSeen = 0;
+      for (int i = 0; i < BUCKETS; ++i)
+      {
+        nSeen += aCounts[i];
+        if (nSeen >= nRank)
+          return Math.min (getBucketMidValue (i), getMaxNanos ());
+      }
+      return getMaxNanos ();
+    }
+  }
+
+  private final long m_nStartNanos = System.nanoTime ();
+  private final AtomicLong m_aLastNanos = new AtomicLong (m_nStartNanos);
+  private final Histogram m_aRead = new Histogram ();
+  private final Histogram m_aConvert = new Histogram ();
+  private final Histogram m_aWrite = new Histogram ();
+  private final Histogram m_aInterleaved = new Histogram ();
+  private final Histogram m_aTotal = new Histogram ();
+  private final AtomicLong m_aDocuments = new AtomicLong (0);
+  private final AtomicLong m_aFailedDocuments = new AtomicLong (0);
+  private final AtomicLong m_aErrors = new AtomicLong (0);
+  private final AtomicLong m_aBytes = new AtomicLong (0);
+  private final AtomicLong m_aLines = new AtomicLong (0);
+
+  public CIIToUBLConversionStatistics ()
+  {}
+
+  public void onConversion (@Nonnull final CIIToUBLConversionEvent aEvent)
+  {
+    if (aEvent.isInterleaved ())
+      m_aInterleaved.record (aEvent.getTotalNanos ());
+    else
+    {
+      m_aRead.record (aEvent.getReadNanos ());
+      m_aConvert.record (aEvent.getConvertNanos ());
+      m_aWrite.record (aEvent.getWriteNanos ());
+    }
+    m_aTotal.record (aEvent.getTotalNanos ());
+    m_aDocuments.incrementAndGet ();
+    if (!aEvent.isSuccess ())
+      m_aFailedDocuments.incrementAndGet ();
+    m_aErrors.addAndGet (aEvent.getErrorCount ());
+    if (aEvent.getDocumentBytes () > 0)
+      m_aBytes.addAndGet (aEvent.getDocumentBytes ());
+    if (aEvent.getLineCount () > 0)
+      m_aLines.addAndGet (aEvent.getLineCount ());
+    m_aLastNanos.accumulateAndGet (System.nanoTime (), Math::max);
+  }
+
+  /**
+   * @return The histogram of reading and validating the CII. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public Histogram getReadHistogram ()
+  {
+    return m_aRead;
+  }
+
+  /**
+   * @return The histogram of the conversion to UBL. Never <code>null</code>.
+   */
+  @Nonnull
+  public Histogram getConvertHistogram ()
+  {
+    return m_aConvert;
+  }
+
+  /**
+   * @return The histogram of writing the UBL. Never <code>null</code>.
+   */
+  @Nonnull
+  public Histogram getWriteHistogram ()
+  {
+    return m_aWrite;
+  }
+
+  /**
+   * @return The histogram of the conversions with interleaved phases, e.g.
+   *         the streaming conversion. Never <code>null</code>.
+   */
+  @Nonnull
+  public Histogram getInterleavedHistogram ()
+  {
+    return m_aInterleaved;
+  }
+
+  /**
+   * @return The histogram of the sum of all phases. Never <code>null</code>.
+   */
+  @Nonnull
+  public Histogram getTotalHistogram ()
+  {
+    return m_aTotal;
+  }
+
+  @Nonnegative
+  public long getDocumentCount ()
+  {
+    return m_aDocuments.get ();
+  }
+
+  @Nonnegative
+  public long getFailedDocumentCount ()
+  {
+    return m_aFailedDocuments.get ();
+  }
+
+  @Nonnegative
+  public long getErrorCount ()
+  {
+    return m_aErrors.get ();
+  }
+
+  /**
+   * @return The total size of all CII documents with a known size.
+   */
+  @Nonnegative
+  public long getDocumentBytes ()
+  {
+    return m_aBytes.get ();
+  }
+
+  /**
+   * @return The total number of line items of all CII documents that could be
+   *         read.
+   */
+  @Nonnegative
+  public long getLineCount ()
+  {
+    return m_aLines.get ();
+  }
+
+  /**
+   * @return The time between the creation of this object and the last
+   *         recorded conversion.
+   */
+  @Nonnegative
+  public long getElapsedNanos ()
+  {
+    return m_aLastNanos.get () - m_nStartNanos;
+  }
+
+  private double _getPerSecond (final double dValue)
+  {
+    final long nElapsed = getElapsedNanos ();
+    return nElapsed == 0 ? 0 : dValue * 1_000_000_000d / nElapsed;
+  }
+
+  /**
+   * @return The number of converted documents per second.
+   */
+  public double getDocumentsPerSecond ()
+  {
+    return _getPerSecond (getDocumentCount ());
+  }
+
+  /**
+   * @return The number of read CII megabytes (2^20 bytes) per second.
+   */
+  public double getMegabytesPerSecond ()
+  {
+    return _getPerSecond (getDocumentBytes () / (1024d * 1024d));
+  }
+
+  @Nonnull
+  private static String _getMillis (final long nNanos)
+  {
+    return String.format (Locale.US, "%.3fms", Double.valueOf (nNanos / 1_000_000d));
+  }
+
+  @Nonnull
+  private static String _getHistogramSummary (@Nonnull final String sName, @Nonnull final Histogram aHistogram)
+  {
+    return sName +
+           ": p50=" +
+           _getMillis (aHistogram.getPercentileNanos (50)) +
+           ", p95=" +
+           _getMillis (aHistogram.getPercentileNanos (95)) +
+           ", p99=" +
+           _getMillis (aHistogram.getPercentileNanos (99)) +
+           ", max=" +
+           _getMillis (aHistogram.getMaxNanos ());
+  }
+
+  /**
+   * @return A human readable multi line summary of the statistics. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public String getSummary ()
+  {
+    return String.format (Locale.US,
+                          "%d document(s) with %d line(s) converted, %d failed with %d error(s), %.1f docs/sec, %.2f MB/sec",
+                          Long.valueOf (getDocumentCount ()),
+                          Long.valueOf (getLineCount ()),
+                          Long.valueOf (getFailedDocumentCount ()),
+                          Long.valueOf (getErrorCount ()),
+                          Double.valueOf (getDocumentsPerSecond ()),
+                          Double.valueOf (getMegabytesPerSecond ())) +
+           "\n" +
+           _getHistogramSummary ("read", m_aRead) +
+           "\n" +
+           _getHistogramSummary ("convert", m_aConvert) +
+           "\n" +
+           _getHistogramSummary ("write", m_aWrite) +
+           (m_aInterleaved.getCount () > 0 ? "\n" + _getHistogramSummary ("interleaved", m_aInterleaved) : "") +
+           "\n" +
+           _getHistogramSummary ("total", m_aTotal);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("Documents", m_aDocuments.get ())
+                                       .append ("FailedDocuments", m_aFailedDocuments.get ())
+                                       .append ("Errors", m_aErrors.get ())
+                                       .append ("Bytes", m_aBytes.get ())
+                                       .append ("Lines", m_aLines.get ())
+                                       .getToString ();
+  }
+}
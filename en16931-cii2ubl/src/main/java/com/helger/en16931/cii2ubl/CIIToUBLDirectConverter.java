@@ -0,0 +1,569 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.math.MathHelper;
+import com.helger.commons.state.ESuccess;
+import com.helger.commons.string.StringHelper;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeTransactionType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.AmountType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.BinaryObjectType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.CodeType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.QuantityType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
+
+/**
+ * Direct conversion from CII to UBL XML. Only the header is converted to a
+ * JAXB UBL document. The lines are written with a {@link XMLStreamWriter}
+ * directly from the {@link CIILineModel} of each CII line item, so that no UBL
+ * line objects are created. The line mapping is identical for UBL 2.1, 2.2 and
+ * 2.3, and the namespace URIs of the common components are the same in all
+ * these versions. The result is equivalent to marshalling the document created by
+ * {@link AbstractCIIToUBLConverter#convertCIItoUBL(CrossIndustryInvoiceType, CIIToUBLSettings, ErrorList)},
+ * except that it is not indented.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Immutable
+final class CIIToUBLDirectConverter
+{
+  static final String NS_CBC = "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2";
+  static final String DEFAULT_PREFIX_CAC = "cac";
+  static final String DEFAULT_PREFIX_CBC = "cbc";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (CIIToUBLDirectConverter.class);
+  private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance ();
+
+  private CIIToUBLDirectConverter ()
+  {}
+
+  /**
+   * Writes UBL Invoice or Credit Note lines from the version independent
+   * {@link CIILineModel}. This is the StAX equivalent of
+   * {@link UBL23Emitter#createInvoiceLine(CIILineModel, String, CIIToUBLSettings, ErrorList)},
+   * that maps the same model to JAXB objects. The element order follows the
+   * UBL XML Schema.
+   */
+  private static final class LineEmitter
+  {
+    private final XMLStreamWriter m_aWriter;
+    private final boolean m_bInvoice;
+    private final String m_sDefaultCurrencyCode;
+    private final CIIToUBLSettings m_aSettings;
+    private final ErrorList m_aErrorList;
+    private final String m_sPrefixCAC;
+    private final String m_sPrefixCBC;
+    private final boolean m_bDeclareNamespaces;
+
+    LineEmitter (@Nonnull final XMLStreamWriter aWriter,
+                 final boolean bInvoice,
+                 @Nullable final String sDefaultCurrencyCode,
+                 @Nonnull final CIIToUBLSettings aSettings,
+                 @Nonnull final ErrorList aErrorList) throws XMLStreamException
+    {
+      m_aWriter = aWriter;
+      m_bInvoice = bInvoice;
+      m_sDefaultCurrencyCode = sDefaultCurrencyCode;
+      m_aSettings = aSettings;
+      m_aErrorList = aErrorList;
+
+      // Reuse the prefixes declared on the root element
+      final String sPrefixCAC = aWriter.getPrefix (CIIToUBLStreamingConverter.NS_CAC);
+      final String sPrefixCBC = aWriter.getPrefix (NS_CBC);
+      m_bDeclareNamespaces = StringHelper.hasNoText (sPrefixCAC) || StringHelper.hasNoText (sPrefixCBC);
+      m_sPrefixCAC = m_bDeclareNamespaces ? DEFAULT_PREFIX_CAC : sPrefixCAC;
+      m_sPrefixCBC = m_bDeclareNamespaces ? DEFAULT_PREFIX_CBC : sPrefixCBC;
+    }
+
+    private void _startCAC (@Nonnull final String sLocalName) throws XMLStreamException
+    {
+      m_aWriter.writeStartElement (m_sPrefixCAC, sLocalName, CIIToUBLStreamingConverter.NS_CAC);
+    }
+
+    private void _startCBC (@Nonnull final String sLocalName) throws XMLStreamException
+    {
+      m_aWriter.writeStartElement (m_sPrefixCBC, sLocalName, NS_CBC);
+    }
+
+    private void _end () throws XMLStreamException
+    {
+      m_aWriter.writeEndElement ();
+    }
+
+    private void _attr (@Nonnull final String sName, @Nullable final String sValue) throws XMLStreamException
+    {
+      if (sValue != null)
+        m_aWriter.writeAttribute (sName, sValue);
+    }
+
+    private void _text (@Nullable final String sValue) throws XMLStreamException
+    {
+      if (sValue != null)
+        m_aWriter.writeCharacters (sValue);
+    }
+
+    /**
+     * Write a simple basic component. Like the JAXB value setters, an empty
+     * element is written if the value is <code>null</code>.
+     */
+    private void _writeCBC (@Nonnull final String sLocalName, @Nullable final String sValue) throws XMLStreamException
+    {
+      _startCBC (sLocalName);
+      _text (sValue);
+      _end ();
+    }
+
+    private void _writeCBC (@Nonnull final String sLocalName, @Nullable final BigDecimal aValue) throws XMLStreamException
+    {
+      _writeCBC (sLocalName, aValue == null ? null : aValue.toPlainString ());
+    }
+
+    private void _writeCBC (@Nonnull final String sLocalName, @Nullable final LocalDate aValue) throws XMLStreamException
+    {
+      _writeCBC (sLocalName, aValue == null ? null : aValue.toString ());
+    }
+
+    /**
+     * Equivalent to <code>_copyID</code>
+     */
+    private void _writeID (@Nonnull final String sLocalName, @Nullable final IDType aCIIID) throws XMLStreamException
+    {
+      if (aCIIID == null || StringHelper.hasNoText (aCIIID.getValue ()))
+        return;
+
+      _startCBC (sLocalName);
+      _attr ("schemeID", aCIIID.getSchemeID ());
+      _attr ("schemeName", aCIIID.getSchemeName ());
+      _attr ("schemeAgencyID", aCIIID.getSchemeAgencyID ());
+      _attr ("schemeAgencyName", aCIIID.getSchemeAgencyName ());
+      _attr ("schemeVersionID", aCIIID.getSchemeVersionID ());
+      _attr ("schemeDataURI", aCIIID.getSchemeDataURI ());
+      _attr ("schemeURI", aCIIID.getSchemeURI ());
+      _text (aCIIID.getValue ());
+      _end ();
+    }
+
+    /**
+     * Equivalent to <code>_copyName</code>
+     */
+    private void _writeName (@Nonnull final String sLocalName, @Nullable final TextType aName) throws XMLStreamException
+    {
+      if (aName == null || StringHelper.hasNoText (aName.getValue ()))
+        return;
+
+      _startCBC (sLocalName);
+      _attr ("languageID", aName.getLanguageID ());
+      _attr ("languageLocaleID", aName.getLanguageLocaleID ());
+      _text (aName.getValue ());
+      _end ();
+    }
+
+    /**
+     * Equivalent to <code>_copyCode</code>
+     */
+    private void _writeCode (@Nonnull final String sLocalName, @Nullable final CodeType aCode) throws XMLStreamException
+    {
+      if (aCode == null || StringHelper.hasNoText (aCode.getValue ()))
+        return;
+
+      _startCBC (sLocalName);
+      _attr ("listID", aCode.getListID ());
+      _attr ("listAgencyID", aCode.getListAgencyID ());
+      _attr ("listAgencyName", aCode.getListAgencyName ());
+      _attr ("listName", aCode.getListName ());
+      _attr ("listVersionID", aCode.getListVersionID ());
+      _attr ("name", aCode.getName ());
+      _attr ("languageID", aCode.getLanguageID ());
+      _attr ("listURI", aCode.getListURI ());
+      _attr ("listSchemeURI", aCode.getListSchemeURI ());
+      _text (aCode.getValue ());
+      _end ();
+    }
+
+    /**
+     * Equivalent to <code>_copyQuantity</code>
+     */
+    private void _writeQuantity (@Nonnull final String sLocalName, @Nullable final QuantityType aQuantity) throws XMLStreamException
+    {
+      if (aQuantity == null || aQuantity.getValue () == null)
+        return;
+
+      _startCBC (sLocalName);
+      _attr ("unitCode", aQuantity.getUnitCode ());
+      _attr ("unitCodeListID", aQuantity.getUnitCodeListID ());
+      _attr ("unitCodeListAgencyID", aQuantity.getUnitCodeListAgencyID ());
+      _attr ("unitCodeListAgencyName", aQuantity.getUnitCodeListAgencyName ());
+      _text (MathHelper.getWithoutTrailingZeroes (aQuantity.getValue ()).toPlainString ());
+      _end ();
+    }
+
+    /**
+     * Equivalent to <code>_copyAmount</code>
+     */
+    private void _writeAmount (@Nonnull final String sLocalName, @Nullable final AmountType aAmount) throws XMLStreamException
+    {
+      if (aAmount == null || aAmount.getValue () == null)
+        return;
+
+      _startCBC (sLocalName);
+      _attr ("currencyID", StringHelper.hasText (aAmount.getCurrencyID ()) ? aAmount.getCurrencyID () : m_sDefaultCurrencyCode);
+      _attr ("currencyCodeListVersionID", aAmount.getCurrencyCodeListVersionID ());
+      _text (MathHelper.getWithoutTrailingZeroes (aAmount.getValue ()).toPlainString ());
+      _end ();
+    }
+
+    /**
+     * Equivalent to <code>_convertTaxCategory</code>
+     */
+    private void _writeTaxCategory (@Nonnull final String sLocalName, @Nonnull final CIITaxCategoryModel aTaxCategory) throws XMLStreamException
+    {
+      _startCAC (sLocalName);
+      _writeCBC ("ID", aTaxCategory.getID ());
+      if (aTaxCategory.getPercent () != null)
+        _writeCBC ("Percent", aTaxCategory.getPercent ());
+      _startCAC ("TaxScheme");
+      _writeCBC ("ID", m_aSettings.getVATScheme ());
+      _end ();
+      _end ();
+    }
+
+    /**
+     * Equivalent to <code>_convertDocumentReference</code>
+     */
+    private void _writeDocumentReference (@Nonnull final CIIDocumentReferenceModel aDocRef) throws XMLStreamException
+    {
+      _startCAC ("DocumentReference");
+
+      // ID value is a mandatory field
+      _startCBC ("ID");
+      _attr ("schemeID", aDocRef.getSchemeID ());
+      _text (aDocRef.getID ());
+      _end ();
+
+      // IssueDate is optional
+      if (aDocRef.getIssueDate () != null)
+        _writeCBC ("IssueDate", aDocRef.getIssueDate ());
+
+      // Name is optional
+      for (final TextType aItem : aDocRef.getAllDescriptions ())
+      {
+        _startCBC ("DocumentDescription");
+        _attr ("languageID", aItem.getLanguageID ());
+        _attr ("languageLocaleID", aItem.getLanguageLocaleID ());
+        _text (aItem.getValue ());
+        _end ();
+      }
+
+      // Attachment (0..1 for CII)
+      final BinaryObjectType aBinObj = aDocRef.getAttachment ();
+      if (aBinObj != null)
+      {
+        _startCAC ("Attachment");
+        final CIIToUBLAttachmentStore.StoredAttachment aStored = aDocRef.externalizeAttachment (m_aSettings, m_aErrorList);
+        if (aStored != null)
+        {
+          _startCAC ("ExternalReference");
+          _writeCBC ("URI", aStored.getURI ());
+          _writeCBC ("DocumentHash", aStored.getHash ());
+          if (aBinObj.getMimeCode () != null)
+            _writeCBC ("MimeCode", aBinObj.getMimeCode ());
+          if (aBinObj.getFilename () != null)
+            _writeCBC ("FileName", aBinObj.getFilename ());
+          _end ();
+        }
+        else
+        {
+          _startCBC ("EmbeddedDocumentBinaryObject");
+          _attr ("mimeCode", aBinObj.getMimeCode ());
+          _attr ("filename", aBinObj.getFilename ());
+          final byte [] aValue = aDocRef.getEmbeddedAttachmentValue (m_aSettings);
+          if (aValue != null)
+            m_aWriter.writeCharacters (Base64.getEncoder ().encodeToString (aValue));
+          _end ();
+
+          if (StringHelper.hasText (aDocRef.getURI ()))
+          {
+            _startCAC ("ExternalReference");
+            _writeCBC ("URI", aDocRef.getURI ());
+            _end ();
+          }
+        }
+        _end ();
+      }
+      _end ();
+    }
+
+    /**
+     * Equivalent to <code>_convertAllowanceCharge</code>
+     */
+    private void _writeAllowanceCharge (@Nonnull final CIIAllowanceChargeModel aAllowanceCharge) throws XMLStreamException
+    {
+      _startCAC ("AllowanceCharge");
+      _writeCBC ("ChargeIndicator", Boolean.toString (aAllowanceCharge.isCharge ()));
+      if (aAllowanceCharge.getReasonCode () != null)
+        _writeCBC ("AllowanceChargeReasonCode", aAllowanceCharge.getReasonCode ());
+      if (aAllowanceCharge.getReason () != null)
+        _writeCBC ("AllowanceChargeReason", aAllowanceCharge.getReason ().getValue ());
+      if (aAllowanceCharge.getMultiplierFactor () != null)
+        _writeCBC ("MultiplierFactorNumeric", aAllowanceCharge.getMultiplierFactor ());
+      _writeAmount ("Amount", aAllowanceCharge.getAmount ());
+      _writeAmount ("BaseAmount", aAllowanceCharge.getBaseAmount ());
+      for (final CIITaxCategoryModel aTaxCategory : aAllowanceCharge.getAllTaxCategories ())
+        _writeTaxCategory ("TaxCategory", aTaxCategory);
+      _end ();
+    }
+
+    private void _writeItemIdentification (@Nonnull final String sLocalName, @Nullable final IDType aID) throws XMLStreamException
+    {
+      if (aID != null)
+      {
+        _startCAC (sLocalName);
+        _writeID ("ID", aID);
+        _end ();
+      }
+    }
+
+    /**
+     * Equivalent to <code>_convertItem</code>
+     */
+    private void _writeItem (@Nonnull final CIILineModel aLine) throws XMLStreamException
+    {
+      _startCAC ("Item");
+      _writeName ("Description", aLine.getItemDescription ());
+      _writeName ("Name", aLine.getItemName ());
+      _writeItemIdentification ("BuyersItemIdentification", aLine.getBuyersItemID ());
+      _writeItemIdentification ("SellersItemIdentification", aLine.getSellersItemID ());
+      _writeItemIdentification ("StandardItemIdentification", aLine.getStandardItemID ());
+
+      if (aLine.hasOriginCountry ())
+      {
+        _startCAC ("OriginCountry");
+        _writeCBC ("IdentificationCode", aLine.getOriginCountryCode ());
+        _writeName ("Name", aLine.getOriginCountryName ());
+        _end ();
+      }
+
+      // Commodity Classification
+      for (final CodeType aClassCode : aLine.getAllItemClassificationCodes ())
+      {
+        _startCAC ("CommodityClassification");
+        _writeCode ("ItemClassificationCode", aClassCode);
+        _end ();
+      }
+
+      for (final CIITaxCategoryModel aTaxCategory : aLine.getAllTaxCategories ())
+        _writeTaxCategory ("ClassifiedTaxCategory", aTaxCategory);
+
+      for (final CIILineModel.ItemProperty aItemProperty : aLine.getAllItemProperties ())
+      {
+        _startCAC ("AdditionalItemProperty");
+        _writeName ("Name", aItemProperty.getName ());
+        if (aItemProperty.getValue () != null)
+          _writeCBC ("Value", aItemProperty.getValue ());
+        _end ();
+      }
+      _end ();
+    }
+
+    /**
+     * Equivalent to <code>_convertPrice</code>
+     */
+    private void _writePrice (@Nonnull final CIILineModel aLine) throws XMLStreamException
+    {
+      if (!aLine.hasPrice ())
+        return;
+
+      _startCAC ("Price");
+      _writeAmount ("PriceAmount", aLine.getPriceAmount ());
+      _writeQuantity ("BaseQuantity", aLine.getBaseQuantity ());
+      for (final CIIAllowanceChargeModel aPriceAllowanceCharge : aLine.getAllPriceAllowanceCharges ())
+        _writeAllowanceCharge (aPriceAllowanceCharge);
+      _end ();
+    }
+
+    void writeLine (@Nonnull final CIILineModel aLine) throws XMLStreamException
+    {
+      _startCAC (m_bInvoice ? "InvoiceLine" : "CreditNoteLine");
+      if (m_bDeclareNamespaces)
+      {
+        m_aWriter.writeNamespace (m_sPrefixCAC, CIIToUBLStreamingConverter.NS_CAC);
+        m_aWriter.writeNamespace (m_sPrefixCBC, NS_CBC);
+      }
+
+      _writeID ("ID", aLine.getID ());
+      for (final String sNote : aLine.getAllNotes ())
+        _writeCBC ("Note", sNote);
+      _writeQuantity (m_bInvoice ? "InvoicedQuantity" : "CreditedQuantity", aLine.getQuantity ());
+      _writeAmount ("LineExtensionAmount", aLine.getLineExtensionAmount ());
+      if (aLine.getAccountingCost () != null)
+        _writeCBC ("AccountingCost", aLine.getAccountingCost ());
+
+      if (aLine.hasInvoicePeriod ())
+      {
+        _startCAC ("InvoicePeriod");
+        if (aLine.getInvoicePeriodStartDate () != null)
+          _writeCBC ("StartDate", aLine.getInvoicePeriodStartDate ());
+        if (aLine.getInvoicePeriodEndDate () != null)
+          _writeCBC ("EndDate", aLine.getInvoicePeriodEndDate ());
+        _end ();
+      }
+
+      if (aLine.getOrderLineID () != null)
+      {
+        _startCAC ("OrderLineReference");
+        _writeID ("LineID", aLine.getOrderLineID ());
+        _end ();
+      }
+
+      for (final CIIDocumentReferenceModel aDocRef : aLine.getAllDocumentReferences ())
+        _writeDocumentReference (aDocRef);
+      for (final CIIAllowanceChargeModel aAllowanceCharge : aLine.getAllAllowanceCharges ())
+        _writeAllowanceCharge (aAllowanceCharge);
+      _writeItem (aLine);
+      _writePrice (aLine);
+      _end ();
+    }
+  }
+
+  @Nonnull
+  private static CrossIndustryInvoiceType _createCopyWithoutLines (@Nonnull final CrossIndustryInvoiceType aCIIInvoice)
+  {
+    final CrossIndustryInvoiceType ret = new CrossIndustryInvoiceType ();
+    ret.setExchangedDocumentContext (aCIIInvoice.getExchangedDocumentContext ());
+    ret.setExchangedDocument (aCIIInvoice.getExchangedDocument ());
+
+    final SupplyChainTradeTransactionType aSCTT = aCIIInvoice.getSupplyChainTradeTransaction ();
+    if (aSCTT != null)
+    {
+      final SupplyChainTradeTransactionType aHeaderSCTT = new SupplyChainTradeTransactionType ();
+      aHeaderSCTT.setApplicableHeaderTradeAgreement (aSCTT.getApplicableHeaderTradeAgreement ());
+      aHeaderSCTT.setApplicableHeaderTradeDelivery (aSCTT.getApplicableHeaderTradeDelivery ());
+      aHeaderSCTT.setApplicableHeaderTradeSettlement (aSCTT.getApplicableHeaderTradeSettlement ());
+      ret.setSupplyChainTradeTransaction (aHeaderSCTT);
+    }
+    return ret;
+  }
+
+  /**
+   * Convert the provided CII document to UBL and write it directly to the
+   * provided output stream.
+   *
+   * @param aConverter
+   *        The converter for the target UBL version. May not be
+   *        <code>null</code>.
+   * @param aCIIInvoice
+   *        The CII document to convert. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>.
+   * @param aSettings
+   *        The conversion settings. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if everything was written and no error
+   *         occurred. Errors that were contained in the error list before are
+   *         ignored.
+   */
+  @Nonnull
+  static ESuccess convert (@Nonnull final AbstractCIIToUBLConverter <?> aConverter,
+                           @Nonnull final CrossIndustryInvoiceType aCIIInvoice,
+                           @Nonnull @WillNotClose final OutputStream aOS,
+                           @Nonnull final CIIToUBLSettings aSettings,
+                           @Nonnull final ErrorList aErrorList)
+  {
+    // Errors that existed before don't count
+    final int nErrorIndex = aErrorList.size ();
+
+    // The header is converted with JAXB
+    final CrossIndustryInvoiceType aHeaderCII = _createCopyWithoutLines (aCIIInvoice);
+    final Serializable aHeaderUBL = aConverter.convertCIItoUBL (aHeaderCII, aSettings, aErrorList);
+    if (aHeaderUBL == null || AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorIndex))
+      return ESuccess.FAILURE;
+
+    final Class <?> aDocClass = aHeaderUBL.getClass ();
+    final boolean bInvoice = "Invoice".equals (UBLMarshallerPool.getRootElementLocalName (aDocClass));
+    final SupplyChainTradeTransactionType aSCTT = aCIIInvoice.getSupplyChainTradeTransaction ();
+    final String sDefaultCurrencyCode = aSCTT.getApplicableHeaderTradeSettlement ().getInvoiceCurrencyCodeValue ();
+
+    // The lines are written directly
+    final CIIToUBLStreamingConverter.ILineWriter aLineWriter = aWriter -> {
+      final LineEmitter aEmitter = new LineEmitter (aWriter, bInvoice, sDefaultCurrencyCode, aSettings, aErrorList);
+      final CIIToUBLFlightRecorder.LineBatchEvent aEvent = CIIToUBLFlightRecorder.beginLineBatch ();
+      for (final SupplyChainTradeLineItemType aLineItem : aSCTT.getIncludedSupplyChainTradeLineItem ())
+        aEmitter.writeLine (CIILineModel.create (aLineItem, aSettings, aErrorList));
+      if (aEvent != null)
+        aEvent.finish (CIIToUBLFlightRecorder.getInvoiceID (aCIIInvoice), 0, aSCTT.getIncludedSupplyChainTradeLineItemCount ());
+    };
+
+    try
+    {
+      final XMLStreamWriter aWriter = XML_OUTPUT_FACTORY.createXMLStreamWriter (aOS, StandardCharsets.UTF_8.name ());
+      try
+      {
+        if (CIIToUBLStreamingConverter.MARSHALLER_POOL.write (aHeaderUBL,
+                                                              new CIIToUBLStreamingConverter.LineInjectingWriter (aWriter, aLineWriter),
+                                                              aErrorList)
+                                                       .isFailure ())
+          return ESuccess.FAILURE;
+        aWriter.flush ();
+      }
+      finally
+      {
+        // Does not close the underlying stream
+        aWriter.close ();
+      }
+    }
+    catch (final XMLStreamException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to write UBL: " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return ESuccess.FAILURE;
+    }
+
+    if (LOGGER.isDebugEnabled ())
+      LOGGER.debug ("Directly wrote " + aSCTT.getIncludedSupplyChainTradeLineItemCount () + " UBL line(s)");
+
+    return ESuccess.valueOf (!AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorIndex));
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.Nonempty;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * JDK Flight Recorder events of the conversion phases, so that standard JFR
+ * tooling can be used to find the documents that cause e.g. allocation
+ * spikes. All events are in the category "EN 16931 / CII to UBL" and carry the
+ * invoice ID.<br>
+ * The JFR classes are only touched if they are present in the runtime, so the
+ * library still works on Java 8 runtimes without JFR. The factory methods
+ * return <code>null</code> if the respective event is not recorded, so that
+ * nothing needs to be calculated in that case.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+final class CIIToUBLFlightRecorder
+{
+  private static final String CATEGORY = "EN 16931";
+  private static final String SUB_CATEGORY = "CII to UBL";
+  private static final boolean AVAILABLE = _isAvailable ();
+
+  @Name ("com.helger.en16931.cii2ubl.CIIRead")
+  @Label ("CII Read")
+  @Description ("Reading and validating a CII document")
+  @Category ({ CATEGORY, SUB_CATEGORY })
+  @StackTrace (false)
+  static final class CIIReadEvent extends Event
+  {
+    @Name ("invoiceID")
+    @Label ("Invoice ID")
+    private String m_sInvoiceID;
+
+    @Name ("lineCount")
+    @Label ("Line Count")
+    private int m_nLineCount;
+
+    @Name ("size")
+    @Label ("Size")
+    @DataAmount
+    private long m_nBytes;
+
+    @Name ("systemID")
+    @Label ("System ID")
+    private String m_sSystemID;
+
+    @Name ("success")
+    @Label ("Success")
+    private boolean m_bSuccess;
+
+    void finish (@Nullable final CrossIndustryInvoiceType aCIIInvoice, final long nBytes, @Nullable final String sSystemID)
+    {
+      if (aCIIInvoice != null)
+      {
+        m_sInvoiceID = getInvoiceID (aCIIInvoice);
+        m_nLineCount = CIIHeaderModel.getLineCount (aCIIInvoice);
+      }
+      m_nBytes = nBytes;
+      m_sSystemID = sSystemID;
+      m_bSuccess = aCIIInvoice != null;
+      commit ();
+    }
+  }
+
+  @Name ("com.helger.en16931.cii2ubl.Convert")
+  @Label ("CII to UBL Conversion")
+  @Description ("Converting a CII document to a UBL Invoice or Credit Note object")
+  @Category ({ CATEGORY, SUB_CATEGORY })
+  @StackTrace (false)
+  static final class ConvertEvent extends Event
+  {
+    @Name ("invoiceID")
+    @Label ("Invoice ID")
+    private String m_sInvoiceID;
+
+    @Name ("lineCount")
+    @Label ("Line Count")
+    private int m_nLineCount;
+
+    @Name ("documentType")
+    @Label ("Document Type")
+    @Description ("The local name of the created UBL root element")
+    private String m_sDocumentType;
+
+    @Name ("converter")
+    @Label ("Converter")
+    private Class <?> m_aConverterClass;
+
+    @Name ("success")
+    @Label ("Success")
+    private boolean m_bSuccess;
+
+    void finish (@Nonnull final CIIHeaderModel aModel,
+                 @Nonnull final Class <?> aConverterClass,
+                 @Nullable final Object aUBLDocument,
+                 final boolean bSuccess)
+    {
+      m_sInvoiceID = aModel.getID ();
+      m_nLineCount = aModel.getLineCount ();
+      m_sDocumentType = aUBLDocument == null ? null : UBLMarshallerPool.getRootElementLocalName (aUBLDocument.getClass ());
+      m_aConverterClass = aConverterClass;
+      m_bSuccess = bSuccess;
+      commit ();
+    }
+  }
+
+  @Name ("com.helger.en16931.cii2ubl.LineBatch")
+  @Label ("CII to UBL Line Batch")
+  @Description ("Converting a consecutive range of CII line items to UBL lines")
+  @Category ({ CATEGORY, SUB_CATEGORY })
+  @StackTrace (false)
+  static final class LineBatchEvent extends Event
+  {
+    @Name ("invoiceID")
+    @Label ("Invoice ID")
+    private String m_sInvoiceID;
+
+    @Name ("firstLine")
+    @Label ("First Line")
+    @Description ("The 0-based index of the first line item of the batch")
+    private int m_nFirstLine;
+
+    @Name ("lineCount")
+    @Label ("Line Count")
+    private int m_nLineCount;
+
+    void finish (@Nullable final String sInvoiceID, final int nFirstLine, final int nLineCount)
+    {
+      m_sInvoiceID = sInvoiceID;
+      m_nFirstLine = nFirstLine;
+      m_nLineCount = nLineCount;
+      commit ();
+    }
+  }
+
+  @Name ("com.helger.en16931.cii2ubl.UBLWrite")
+  @Label ("UBL Write")
+  @Description ("Writing a UBL document")
+  @Category ({ CATEGORY, SUB_CATEGORY })
+  @StackTrace (false)
+  static final class UBLWriteEvent extends Event
+  {
+    @Name ("invoiceID")
+    @Label ("Invoice ID")
+    private String m_sInvoiceID;
+
+    @Name ("documentType")
+    @Label ("Document Type")
+    private String m_sDocumentType;
+
+    @Name ("size")
+    @Label ("Size")
+    @Description ("The number of bytes written or -1 if unknown")
+    @DataAmount
+    private long m_nBytes;
+
+    @Name ("success")
+    @Label ("Success")
+    private boolean m_bSuccess;
+
+    void finish (@Nullable final String sInvoiceID,
+                 @Nonnull @Nonempty final String sDocumentType,
+                 final long nBytes,
+                 final boolean bSuccess)
+    {
+      m_sInvoiceID = sInvoiceID;
+      m_sDocumentType = sDocumentType;
+      m_nBytes = nBytes;
+      m_bSuccess = bSuccess;
+      commit ();
+    }
+  }
+
+  private CIIToUBLFlightRecorder ()
+  {}
+
+  private static boolean _isAvailable ()
+  {
+    try
+    {
+      Class.forName ("jdk.jfr.Event");
+      return true;
+    }
+    catch (final ClassNotFoundException | LinkageError ex)
+    {
+      return false;
+    }
+  }
+
+  @Nullable
+  static String getInvoiceID (@Nonnull final CrossIndustryInvoiceType aCIIInvoice)
+  {
+    return aCIIInvoice.getExchangedDocument () == null ? null : aCIIInvoice.getExchangedDocument ().getIDValue ();
+  }
+
+  // Note: the event classes must only be used with their own type in this
+  // class, so that the verifier does not need to load them if JFR is missing
+
+  /**
+   * @return A started event or <code>null</code> if it is not recorded.
+   */
+  @Nullable
+  static CIIReadEvent beginCIIRead ()
+  {
+    if (!AVAILABLE)
+      return null;
+    final CIIReadEvent ret = new CIIReadEvent ();
+    if (!ret.isEnabled ())
+      return null;
+    ret.begin ();
+    return ret;
+  }
+
+  /**
+   * @return A started event or <code>null</code> if it is not recorded.
+   */
+  @Nullable
+  static ConvertEvent beginConvert ()
+  {
+    if (!AVAILABLE)
+      return null;
+    final ConvertEvent ret = new ConvertEvent ();
+    if (!ret.isEnabled ())
+      return null;
+    ret.begin ();
+    return ret;
+  }
+
+  /**
+   * @return A started event or <code>null</code> if it is not recorded.
+   */
+  @Nullable
+  static LineBatchEvent beginLineBatch ()
+  {
+    if (!AVAILABLE)
+      return null;
+    final LineBatchEvent ret = new LineBatchEvent ();
+    if (!ret.isEnabled ())
+      return null;
+    ret.begin ();
+    return ret;
+  }
+
+  /**
+   * @return <code>true</code> if the UBL write event is currently recorded.
+   *         Used to avoid counting the written bytes otherwise.
+   */
+  static boolean isUBLWriteEnabled ()
+  {
+    return AVAILABLE && EventType.getEventType (UBLWriteEvent.class).isEnabled ();
+  }
+
+  /**
+   * @return A started event or <code>null</code> if it is not recorded.
+   */
+  @Nullable
+  static UBLWriteEvent beginUBLWrite ()
+  {
+    if (!AVAILABLE)
+      return null;
+    final UBLWriteEvent ret = new UBLWriteEvent ();
+    if (!ret.isEnabled ())
+      return null;
+    ret.begin ();
+    return ret;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsLinkedHashMap;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
+import com.helger.commons.collection.impl.ICommonsOrderedSet;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.string.ToStringGenerator;
+
+import oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Converts a single CII invoice into multiple UBL versions at once. The CII
+ * document is only read and mapped once, and the created UBL document is
+ * mapped to each version. Instances of this class are immutable and can be shared between
+ * threads.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@ThreadSafe
+public final class CIIToUBLMultiVersionConverter
+{
+  private final ICommonsOrderedMap <EUBLVersion, AbstractCIIToUBLConverter <?>> m_aConverters = new CommonsLinkedHashMap <> ();
+  private final CIIToUBLSettings m_aSettings;
+
+  /**
+   * Constructor
+   *
+   * @param aVersions
+   *        The UBL versions to create, in the order they should be created.
+   *        Duplicates are ignored. May neither be <code>null</code> nor empty.
+   * @param aSettings
+   *        The conversion settings to use for all versions. May not be
+   *        <code>null</code>.
+   */
+  public CIIToUBLMultiVersionConverter (@Nonnull @Nonempty final Iterable <EUBLVersion> aVersions,
+                                        @Nonnull final CIIToUBLSettings aSettings)
+  {
+    ValueEnforcer.notNull (aVersions, "Versions");
+    ValueEnforcer.notNull (aSettings, "Settings");
+    for (final EUBLVersion eVersion : aVersions)
+    {
+      ValueEnforcer.notNull (eVersion, "Version");
+      if (!m_aConverters.containsKey (eVersion))
+      {
+        final AbstractCIIToUBLConverter <?> aConverter = eVersion.createConverter ();
+        aConverter.setSettings (aSettings);
+        m_aConverters.put (eVersion, aConverter);
+      }
+    }
+    ValueEnforcer.isTrue (m_aConverters.isNotEmpty (), "At least one UBL version must be provided");
+    m_aSettings = aSettings;
+  }
+
+  /**
+   * @return The UBL versions created by this converter in creation order.
+   *         Never <code>null</code> nor empty.
+   */
+  @Nonnull
+  @Nonempty
+  @ReturnsMutableCopy
+  public ICommonsOrderedSet <EUBLVersion> getAllVersions ()
+  {
+    return m_aConverters.copyOfKeySet ();
+  }
+
+  /**
+   * Get the converter of a single UBL version. The returned converter must not
+   * be modified.
+   *
+   * @param eVersion
+   *        The version to query. May not be <code>null</code>.
+   * @return The converter or <code>null</code> if the version is not handled
+   *         by this object.
+   */
+  @Nullable
+  public AbstractCIIToUBLConverter <?> getConverter (@Nonnull final EUBLVersion eVersion)
+  {
+    return m_aConverters.get (eVersion);
+  }
+
+  /**
+   * @return The settings used for all versions. Never <code>null</code>.
+   */
+  @Nonnull
+  public CIIToUBLSettings getSettings ()
+  {
+    return m_aSettings;
+  }
+
+  /**
+   * Convert the provided CII invoice to all configured UBL versions.
+   *
+   * @param aCIIInvoice
+   *        The CII invoice to be converted. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. As the mapping is done only once, each
+   *        error is contained only once. May not be <code>null</code>.
+   * @return A map from the UBL version to the created UBL document in the
+   *         configured order. Empty if mandatory elements are missing or, in
+   *         fail-fast mode, if an error occurred. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsOrderedMap <EUBLVersion, Serializable> convertCIItoUBL (@Nonnull final CrossIndustryInvoiceType aCIIInvoice,
+                                                                         @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCIIInvoice, "CIIInvoice");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final ICommonsOrderedMap <EUBLVersion, Serializable> ret = new CommonsLinkedHashMap <> ();
+
+    // Extract the version independent model only once
+    final CIIDocumentModel aModel = CIIDocumentModel.create (aCIIInvoice, m_aSettings, aErrorList);
+    if (aModel == null)
+    {
+      // Mandatory elements are missing or fail-fast stopped the mapping
+      return ret;
+    }
+
+    // Errors that existed before don't count
+    final int nErrorIndex = aErrorList.size ();
+
+    // Create the UBL document only once
+    final boolean bInvoice = AbstractCIIToUBLConverter.isCreateInvoice (aModel.getHeader (), m_aSettings.getUBLCreationMode ());
+    final InvoiceType aUBLInvoice = UBL23Emitter.createInvoice (aModel, bInvoice, m_aSettings, aErrorList);
+    if (m_aSettings.isFailFast () && AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorIndex))
+      return ret;
+
+    for (final Map.Entry <EUBLVersion, AbstractCIIToUBLConverter <?>> aEntry : m_aConverters.entrySet ())
+      ret.put (aEntry.getKey (), aEntry.getValue ().mapDocument (aUBLInvoice, bInvoice));
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("Versions", m_aConverters.keySet ()).append ("Settings", m_aSettings).getToString ();
+  }
+}
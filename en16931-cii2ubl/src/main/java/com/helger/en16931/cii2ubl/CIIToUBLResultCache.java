@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * A cache for conversion results, for environments where the same CII
+ * document is converted many times, e.g. because of retries or duplicate
+ * submissions. The cache key is a SHA-256 hash of the CII bytes, the target
+ * UBL version, all conversion settings and the version of this library. If
+ * the library has no release version (e.g. a snapshot build or if the version
+ * properties are missing), a hash of the class files of this library is used
+ * instead, so that a changed conversion never returns results of older code
+ * from the disk tier. The cached value is the serialized UBL, so a cache hit
+ * neither parses the CII nor marshals the UBL.<br>
+ * The cache has a heap tier that is bounded by the total size of the cached
+ * UBL documents, with least recently used eviction, and an optional disk tier.
+ * Entries evicted from the heap stay on disk and are loaded again on demand.
+ * The disk tier is not bounded - its directory needs to be cleaned up
+ * externally if needed.<br>
+ * Only successful conversions without errors are cached. Warnings of the
+ * original conversion are not reported on a cache hit.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@ThreadSafe
+public final class CIIToUBLResultCache
+{
+  /** The default maximum size of all UBL documents cached on heap */
+  public static final long DEFAULT_MAX_HEAP_BYTES = 64L * 1024 * 1024;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (CIIToUBLResultCache.class);
+  private static final String HASH_ALGORITHM = "SHA-256";
+  private static final String DISK_FILE_EXT = ".xml";
+  private static final String UNDEFINED_VERSION = "undefined";
+  private static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
+  // Identifies the conversion code in the cache key
+  static final String CODE_VERSION = _getCodeVersion ();
+
+  private final long m_nMaxHeapBytes;
+  private final Path m_aDiskDirectory;
+  private final UBLMarshallerPool m_aMarshallerPool;
+  private final Map <EUBLVersion, AbstractCIIToUBLConverter <?>> m_aConverters;
+
+  @GuardedBy ("m_aHeap")
+  private final LinkedHashMap <String, byte []> m_aHeap = new LinkedHashMap <> (16, 0.75f, true);
+  @GuardedBy ("m_aHeap")
+  private long m_nHeapBytes = 0;
+
+  private final AtomicLong m_aHeapHits = new AtomicLong (0);
+  private final AtomicLong m_aDiskHits = new AtomicLong (0);
+  private final AtomicLong m_aMisses = new AtomicLong (0);
+
+  /**
+   * Constructor using the shared {@link UBLMarshallerPool}.
+   *
+   * @param nMaxHeapBytes
+   *        The maximum total size in bytes of the UBL documents kept on heap.
+   *        Must be &ge; 0. Use 0 to only use the disk tier.
+   * @param aDiskDirectory
+   *        The directory of the disk tier. May be <code>null</code> to only
+   *        use the heap tier. It is created if it does not exist.
+   * @throws IOException
+   *         If the disk directory cannot be created
+   */
+  public CIIToUBLResultCache (@Nonnegative final long nMaxHeapBytes, @Nullable final Path aDiskDirectory) throws IOException
+  {
+    this (nMaxHeapBytes, aDiskDirectory, UBLMarshallerPool.getShared ());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nMaxHeapBytes
+   *        The maximum total size in bytes of the UBL documents kept on heap.
+   *        Must be &ge; 0. Use 0 to only use the disk tier.
+   * @param aDiskDirectory
+   *        The directory of the disk tier. May be <code>null</code> to only
+   *        use the heap tier. It is created if it does not exist.
+   * @param aMarshallerPool
+   *        The marshaller pool used to serialize the UBL documents. May not be
+   *        <code>null</code>.
+   * @throws IOException
+   *         If the disk directory cannot be created
+   */
+  public CIIToUBLResultCache (@Nonnegative final long nMaxHeapBytes,
+                              @Nullable final Path aDiskDirectory,
+                              @Nonnull final UBLMarshallerPool aMarshallerPool) throws IOException
+  {
+    ValueEnforcer.isGE0 (nMaxHeapBytes, "MaxHeapBytes");
+    ValueEnforcer.notNull (aMarshallerPool, "MarshallerPool");
+    m_nMaxHeapBytes = nMaxHeapBytes;
+    m_aDiskDirectory = aDiskDirectory == null ? null : aDiskDirectory.toAbsolutePath ().normalize ();
+    m_aMarshallerPool = aMarshallerPool;
+    if (m_aDiskDirectory != null)
+      Files.createDirectories (m_aDiskDirectory);
+
+    // The converters are only used with explicit settings, so they can be
+    // shared between threads
+    m_aConverters = new EnumMap <> (EUBLVersion.class);
+    for (final EUBLVersion eVersion : EUBLVersion.values ())
+      m_aConverters.put (eVersion, eVersion.createConverter ());
+  }
+
+  /**
+   * @return The maximum total size in bytes of the UBL documents kept on
+   *         heap.
+   */
+  @Nonnegative
+  public long getMaxHeapBytes ()
+  {
+    return m_nMaxHeapBytes;
+  }
+
+  /**
+   * @return The directory of the disk tier or <code>null</code> if there is
+   *         no disk tier.
+   */
+  @Nullable
+  public Path getDiskDirectory ()
+  {
+    return m_aDiskDirectory;
+  }
+
+  @Nonnull
+  private static MessageDigest _createDigest ()
+  {
+    try
+    {
+      return MessageDigest.getInstance (HASH_ALGORITHM);
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("Hash algorithm " + HASH_ALGORITHM + " is not supported", ex);
+    }
+  }
+
+  @Nonnull
+  private static String _getCodeVersion ()
+  {
+    final String sVersion = CIIToUBLVersion.BUILD_VERSION;
+    if (!UNDEFINED_VERSION.equals (sVersion) && !sVersion.endsWith (SNAPSHOT_SUFFIX))
+      return sVersion;
+
+    // The version does not identify the code, so hash the class files of this
+    // package - either the JAR file or the class directory
+    try
+    {
+      final CodeSource aCodeSource = CIIToUBLResultCache.class.getProtectionDomain ().getCodeSource ();
+      if (aCodeSource != null && aCodeSource.getLocation () != null)
+      {
+        final Path aLocation = Paths.get (aCodeSource.getLocation ().toURI ());
+        final MessageDigest aDigest = _createDigest ();
+        if (Files.isRegularFile (aLocation))
+          aDigest.update (Files.readAllBytes (aLocation));
+        else
+        {
+          final Path aPackageDir = aLocation.resolve (CIIToUBLResultCache.class.getPackage ().getName ().replace ('.', '/'));
+          try (final Stream <Path> aFiles = Files.list (aPackageDir))
+          {
+            for (final Path aFile : aFiles.filter (x -> x.getFileName ().toString ().endsWith (".class"))
+                                          .sorted ()
+                                          .collect (Collectors.toList ()))
+            {
+              aDigest.update (aFile.getFileName ().toString ().getBytes (StandardCharsets.UTF_8));
+              aDigest.update (Files.readAllBytes (aFile));
+            }
+          }
+        }
+        return sVersion + "-" + StringHelper.getHexEncoded (aDigest.digest ());
+      }
+    }
+    catch (final IOException | URISyntaxException | RuntimeException ex)
+    {
+      LOGGER.warn ("Failed to hash the class files of the converter: " + ex.getMessage ());
+    }
+    LOGGER.warn ("The cache key only contains the converter version '" + sVersion + "' - clean the cache directory after code changes");
+    return sVersion;
+  }
+
+  @Nonnull
+  private static String _getKey (@Nonnull final byte [] aCIIBytes,
+                                 @Nonnull final EUBLVersion eVersion,
+                                 @Nonnull final CIIToUBLSettings aSettings)
+  {
+    final MessageDigest aDigest = _createDigest ();
+
+    // The converter version invalidates results of older code on disk.
+    // The string representation of the settings covers all settings, including
+    // the configuration of an attachment store, as externalized attachments
+    // are referenced with a store specific URI
+    final StringBuilder aSB = new StringBuilder ();
+    aSB.append (CODE_VERSION)
+       .append ('\0')
+       .append (eVersion.getID ())
+       .append ('\0')
+       .append (aSettings.toString ())
+       .append ('\0');
+    aDigest.update (aSB.toString ().getBytes (StandardCharsets.UTF_8));
+    aDigest.update (aCIIBytes);
+    return StringHelper.getHexEncoded (aDigest.digest ());
+  }
+
+  @Nullable
+  private byte [] _getFromHeap (@Nonnull final String sKey)
+  {
+    synchronized (m_aHeap)
+    {
+      return m_aHeap.get (sKey);
+    }
+  }
+
+  private void _putToHeap (@Nonnull final String sKey, @Nonnull final byte [] aUBLBytes)
+  {
+    if (aUBLBytes.length > m_nMaxHeapBytes)
+      return;
+
+    synchronized (m_aHeap)
+    {
+      final byte [] aOld = m_aHeap.put (sKey, aUBLBytes);
+      if (aOld != null)
+        m_nHeapBytes -= aOld.length;
+      m_nHeapBytes += aUBLBytes.length;
+
+      // Evict the least recently used entries
+      final Iterator <byte []> it = m_aHeap.values ().iterator ();
+      while (m_nHeapBytes > m_nMaxHeapBytes && it.hasNext ())
+      {
+        m_nHeapBytes -= it.next ().length;
+        it.remove ();
+      }
+    }
+  }
+
+  @Nonnull
+  private Path _getDiskPath (@Nonnull final String sKey)
+  {
+    return m_aDiskDirectory.resolve (sKey + DISK_FILE_EXT);
+  }
+
+  @Nullable
+  private byte [] _getFromDisk (@Nonnull final String sKey)
+  {
+    if (m_aDiskDirectory == null)
+      return null;
+
+    final Path aPath = _getDiskPath (sKey);
+    if (!Files.isRegularFile (aPath))
+      return null;
+    try
+    {
+      return Files.readAllBytes (aPath);
+    }
+    catch (final IOException ex)
+    {
+      // E.g. deleted concurrently - just convert again
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Failed to read cached UBL from " + aPath, ex);
+      return null;
+    }
+  }
+
+  private void _putToDisk (@Nonnull final String sKey, @Nonnull final byte [] aUBLBytes)
+  {
+    if (m_aDiskDirectory == null)
+      return;
+
+    final Path aPath = _getDiskPath (sKey);
+    try
+    {
+      // Write to a temporary file first, so that concurrent readers never see
+      // an incomplete file
+      final Path aTempFile = Files.createTempFile (m_aDiskDirectory, sKey, ".tmp");
+      Files.write (aTempFile, aUBLBytes);
+      try
+      {
+        Files.move (aTempFile, aPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (final AtomicMoveNotSupportedException ex)
+      {
+        Files.move (aTempFile, aPath, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (final IOException ex)
+    {
+      // The disk tier is only an optimization
+      LOGGER.warn ("Failed to write cached UBL to " + aPath + ": " + ex.getMessage ());
+    }
+  }
+
+  /**
+   * Get the serialized UBL for the provided CII document from the cache, or
+   * convert it, if it is not yet contained. The CII is read with the shared
+   * validating {@link CIIUnmarshallerPool}.
+   *
+   * @param aCIIBytes
+   *        The bytes of the CII document. May not be <code>null</code>. The
+   *        array must not be modified while this method is running.
+   * @param eVersion
+   *        The UBL version to create. May not be <code>null</code>.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>. It stays
+   *        empty on a cache hit.
+   * @return A copy of the serialized UBL or <code>null</code> if the
+   *         conversion failed.
+   */
+  @Nullable
+  public byte [] getOrConvert (@Nonnull final byte [] aCIIBytes,
+                               @Nonnull final EUBLVersion eVersion,
+                               @Nonnull final CIIToUBLSettings aSettings,
+                               @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCIIBytes, "CIIBytes");
+    ValueEnforcer.notNull (eVersion, "Version");
+    ValueEnforcer.notNull (aSettings, "Settings");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final String sKey = _getKey (aCIIBytes, eVersion, aSettings);
+
+    byte [] aUBLBytes = _getFromHeap (sKey);
+    if (aUBLBytes != null)
+    {
+      m_aHeapHits.incrementAndGet ();
+      return aUBLBytes.clone ();
+    }
+
+    aUBLBytes = _getFromDisk (sKey);
+    if (aUBLBytes != null)
+    {
+      m_aDiskHits.incrementAndGet ();
+      _putToHeap (sKey, aUBLBytes);
+      return aUBLBytes.clone ();
+    }
+
+    m_aMisses.incrementAndGet ();
+
+    // Use a separate error list, so that only error free results are cached
+    final ErrorList aLocalErrorList = new ErrorList ();
+    aUBLBytes = _convert (aCIIBytes, eVersion, aSettings, aLocalErrorList);
+    aErrorList.addAll (aLocalErrorList);
+    if (aUBLBytes == null || aLocalErrorList.containsAtLeastOneError ())
+      return null;
+
+    _putToHeap (sKey, aUBLBytes);
+    _putToDisk (sKey, aUBLBytes);
+    return aUBLBytes.clone ();
+  }
+
+  @Nullable
+  private byte [] _convert (@Nonnull final byte [] aCIIBytes,
+                            @Nonnull final EUBLVersion eVersion,
+                            @Nonnull final CIIToUBLSettings aSettings,
+                            @Nonnull final ErrorList aErrorList)
+  {
+    final CrossIndustryInvoiceType aCIIInvoice = CIIUnmarshallerPool.getShared (true).read (aCIIBytes, aErrorList);
+    if (aCIIInvoice == null || aErrorList.containsAtLeastOneError ())
+      return null;
+
+    final Serializable aUBL = m_aConverters.get (eVersion).convertCIItoUBL (aCIIInvoice, aSettings, aErrorList);
+    if (aUBL == null || aErrorList.containsAtLeastOneError ())
+      return null;
+
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      if (m_aMarshallerPool.write (aUBL, aBAOS, aErrorList).isFailure ())
+        return null;
+      return aBAOS.toByteArray ();
+    }
+  }
+
+  /**
+   * Remove all entries from the heap tier. The disk tier is not touched.
+   */
+  public void clearHeap ()
+  {
+    synchronized (m_aHeap)
+    {
+      m_aHeap.clear ();
+      m_nHeapBytes = 0;
+    }
+  }
+
+  /**
+   * @return The number of UBL documents currently cached on heap.
+   */
+  @Nonnegative
+  public int getHeapEntryCount ()
+  {
+    synchronized (m_aHeap)
+    {
+      return m_aHeap.size ();
+    }
+  }
+
+  /**
+   * @return The total size in bytes of the UBL documents currently cached on
+   *         heap.
+   */
+  @Nonnegative
+  public long getHeapBytes ()
+  {
+    synchronized (m_aHeap)
+    {
+      return m_nHeapBytes;
+    }
+  }
+
+  /**
+   * @return The number of requests that were served from the heap tier.
+   */
+  @Nonnegative
+  public long getHeapHitCount ()
+  {
+    return m_aHeapHits.get ();
+  }
+
+  /**
+   * @return The number of requests that were served from the disk tier.
+   */
+  @Nonnegative
+  public long getDiskHitCount ()
+  {
+    return m_aDiskHits.get ();
+  }
+
+  /**
+   * @return The number of requests that needed a conversion.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aMisses.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("MaxHeapBytes", m_nMaxHeapBytes)
+                                       .append ("DiskDirectory", m_aDiskDirectory)
+                                       .append ("HeapHits", m_aHeapHits.get ())
+                                       .append ("DiskHits", m_aDiskHits.get ())
+                                       .append ("Misses", m_aMisses.get ())
+                                       .getToString ();
+  }
+}
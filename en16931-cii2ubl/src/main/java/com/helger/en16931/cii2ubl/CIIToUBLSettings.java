@@ -0,0 +1,484 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.builder.IBuilder;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.hashcode.IHashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * Immutable conversion settings. Instances of this class are created via
+ * {@link #builder()} and can safely be shared between threads. Use
+ * {@link AbstractCIIToUBLConverter#convertCIItoUBL(un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType, CIIToUBLSettings, com.helger.commons.error.list.ErrorList)}
+ * to convert with explicit settings, so that a single converter instance can
+ * be used concurrently.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Immutable
+public final class CIIToUBLSettings
+{
+  /** The default settings */
+  public static final CIIToUBLSettings DEFAULT = builder ().build ();
+
+  private final EUBLCreationMode m_eCreationMode;
+  private final String m_sVATScheme;
+  private final String m_sCustomizationID;
+  private final String m_sProfileID;
+  private final String m_sCardAccountNetworkID;
+  private final boolean m_bSwapQuantitySignIfNeeded;
+  private final boolean m_bSwapPriceSignIfNeeded;
+  private final int m_nParallelLineThreshold;
+  private final int m_nParallelLineChunkSize;
+  private final boolean m_bFailFast;
+  private final CIIToUBLAttachmentStore m_aAttachmentStore;
+  private final int m_nAttachmentPassthroughThreshold;
+
+  // Status vars
+  private int m_nHashCode = IHashCodeGenerator.ILLEGAL_HASHCODE;
+
+  CIIToUBLSettings (@Nonnull final EUBLCreationMode eCreationMode,
+                    @Nonnull final String sVATScheme,
+                    @Nonnull final String sCustomizationID,
+                    @Nonnull final String sProfileID,
+                    @Nonnull final String sCardAccountNetworkID,
+                    final boolean bSwapQuantitySignIfNeeded,
+                    final boolean bSwapPriceSignIfNeeded,
+                    @Nonnegative final int nParallelLineThreshold,
+                    @Nonnegative final int nParallelLineChunkSize,
+                    final boolean bFailFast,
+                    @Nullable final CIIToUBLAttachmentStore aAttachmentStore,
+                    @Nonnegative final int nAttachmentPassthroughThreshold)
+  {
+    m_eCreationMode = eCreationMode;
+    m_sVATScheme = sVATScheme;
+    m_sCustomizationID = sCustomizationID;
+    m_sProfileID = sProfileID;
+    m_sCardAccountNetworkID = sCardAccountNetworkID;
+    m_bSwapQuantitySignIfNeeded = bSwapQuantitySignIfNeeded;
+    m_bSwapPriceSignIfNeeded = bSwapPriceSignIfNeeded;
+    m_nParallelLineThreshold = nParallelLineThreshold;
+    m_nParallelLineChunkSize = nParallelLineChunkSize;
+    m_bFailFast = bFailFast;
+    m_aAttachmentStore = aAttachmentStore;
+    m_nAttachmentPassthroughThreshold = nAttachmentPassthroughThreshold;
+  }
+
+  @Nonnull
+  public EUBLCreationMode getUBLCreationMode ()
+  {
+    return m_eCreationMode;
+  }
+
+  @Nonnull
+  public String getVATScheme ()
+  {
+    return m_sVATScheme;
+  }
+
+  @Nonnull
+  public String getCustomizationID ()
+  {
+    return m_sCustomizationID;
+  }
+
+  @Nonnull
+  public String getProfileID ()
+  {
+    return m_sProfileID;
+  }
+
+  @Nonnull
+  public String getCardAccountNetworkID ()
+  {
+    return m_sCardAccountNetworkID;
+  }
+
+  public boolean isSwapQuantitySignIfNeeded ()
+  {
+    return m_bSwapQuantitySignIfNeeded;
+  }
+
+  public boolean isSwapPriceSignIfNeeded ()
+  {
+    return m_bSwapPriceSignIfNeeded;
+  }
+
+  /**
+   * @return The minimum number of line items of a document, from which on the
+   *         lines are converted in parallel. 0 means that the lines are always
+   *         converted sequentially.
+   * @see #getParallelLineChunkSize()
+   */
+  @Nonnegative
+  public int getParallelLineThreshold ()
+  {
+    return m_nParallelLineThreshold;
+  }
+
+  /**
+   * @param nLineCount
+   *        The number of line items of a document.
+   * @return <code>true</code> if the provided number of line items should be
+   *         converted in parallel.
+   */
+  public boolean isParallelLineConversion (final int nLineCount)
+  {
+    return m_nParallelLineThreshold > 0 && nLineCount >= m_nParallelLineThreshold;
+  }
+
+  /**
+   * @return The number of consecutive line items that are converted as a
+   *         single task in the parallel line conversion. Always &gt; 0.
+   * @see #getParallelLineThreshold()
+   */
+  @Nonnegative
+  public int getParallelLineChunkSize ()
+  {
+    return m_nParallelLineChunkSize;
+  }
+
+  /**
+   * @return <code>true</code> if reading and converting stops on the first
+   *         error, <code>false</code> if all errors are collected.
+   */
+  public boolean isFailFast ()
+  {
+    return m_bFailFast;
+  }
+
+  /**
+   * @return The store to deduplicate and optionally externalize attachments.
+   *         May be <code>null</code> to embed all attachments as they are.
+   */
+  @Nullable
+  public CIIToUBLAttachmentStore getAttachmentStore ()
+  {
+    return m_aAttachmentStore;
+  }
+
+  /**
+   * @return The minimum number of base64 characters of an attachment, from
+   *         which on it is copied from the source to the UBL output without
+   *         decoding it in the streaming conversion. 0 means that attachments
+   *         are always decoded.
+   */
+  @Nonnegative
+  public int getAttachmentPassthroughThreshold ()
+  {
+    return m_nAttachmentPassthroughThreshold;
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final CIIToUBLSettings rhs = (CIIToUBLSettings) o;
+    return m_eCreationMode.equals (rhs.m_eCreationMode) &&
+           m_sVATScheme.equals (rhs.m_sVATScheme) &&
+           m_sCustomizationID.equals (rhs.m_sCustomizationID) &&
+           m_sProfileID.equals (rhs.m_sProfileID) &&
+           m_sCardAccountNetworkID.equals (rhs.m_sCardAccountNetworkID) &&
+           m_bSwapQuantitySignIfNeeded == rhs.m_bSwapQuantitySignIfNeeded &&
+           m_bSwapPriceSignIfNeeded == rhs.m_bSwapPriceSignIfNeeded &&
+           m_nParallelLineThreshold == rhs.m_nParallelLineThreshold &&
+           m_nParallelLineChunkSize == rhs.m_nParallelLineChunkSize &&
+           m_bFailFast == rhs.m_bFailFast &&
+           EqualsHelper.equals (m_aAttachmentStore, rhs.m_aAttachmentStore) &&
+           m_nAttachmentPassthroughThreshold == rhs.m_nAttachmentPassthroughThreshold;
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    int ret = m_nHashCode;
+    if (ret == IHashCodeGenerator.ILLEGAL_HASHCODE)
+      ret = m_nHashCode = new HashCodeGenerator (this).append (m_eCreationMode)
+                                                      .append (m_sVATScheme)
+                                                      .append (m_sCustomizationID)
+                                                      .append (m_sProfileID)
+                                                      .append (m_sCardAccountNetworkID)
+                                                      .append (m_bSwapQuantitySignIfNeeded)
+                                                      .append (m_bSwapPriceSignIfNeeded)
+                                                      .append (m_nParallelLineThreshold)
+                                                      .append (m_nParallelLineChunkSize)
+                                                      .append (m_bFailFast)
+                                                      .append (m_aAttachmentStore)
+                                                      .append (m_nAttachmentPassthroughThreshold)
+                                                      .getHashCode ();
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    // Also used for cache keys, so all fields must be contained
+    return new ToStringGenerator (null).append ("CreationMode", m_eCreationMode)
+                                       .append ("VATScheme", m_sVATScheme)
+                                       .append ("CustomizationID", m_sCustomizationID)
+                                       .append ("ProfileID", m_sProfileID)
+                                       .append ("CardAccountNetworkID", m_sCardAccountNetworkID)
+                                       .append ("SwapQuantitySignIfNeeded", m_bSwapQuantitySignIfNeeded)
+                                       .append ("SwapPriceSignIfNeeded", m_bSwapPriceSignIfNeeded)
+                                       .append ("ParallelLineThreshold", m_nParallelLineThreshold)
+                                       .append ("ParallelLineChunkSize", m_nParallelLineChunkSize)
+                                       .append ("FailFast", m_bFailFast)
+                                       .appendIfNotNull ("AttachmentStore", m_aAttachmentStore)
+                                       .append ("AttachmentPassthroughThreshold", m_nAttachmentPassthroughThreshold)
+                                       .getToString ();
+  }
+
+  /**
+   * @return A new builder with all default values. Never <code>null</code>.
+   */
+  @Nonnull
+  public static Builder builder ()
+  {
+    return new Builder ();
+  }
+
+  /**
+   * @param aSettings
+   *        The settings to copy from. May not be <code>null</code>.
+   * @return A new builder initialized with the provided settings. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public static Builder builder (@Nonnull final CIIToUBLSettings aSettings)
+  {
+    ValueEnforcer.notNull (aSettings, "Settings");
+    return new Builder ().ublCreationMode (aSettings.m_eCreationMode)
+                         .vatScheme (aSettings.m_sVATScheme)
+                         .customizationID (aSettings.m_sCustomizationID)
+                         .profileID (aSettings.m_sProfileID)
+                         .cardAccountNetworkID (aSettings.m_sCardAccountNetworkID)
+                         .swapQuantitySignIfNeeded (aSettings.m_bSwapQuantitySignIfNeeded)
+                         .swapPriceSignIfNeeded (aSettings.m_bSwapPriceSignIfNeeded)
+                         .parallelLineThreshold (aSettings.m_nParallelLineThreshold)
+                         .parallelLineChunkSize (aSettings.m_nParallelLineChunkSize)
+                         .failFast (aSettings.m_bFailFast)
+                         .attachmentStore (aSettings.m_aAttachmentStore)
+                         .attachmentPassthroughThreshold (aSettings.m_nAttachmentPassthroughThreshold);
+  }
+
+  /**
+   * Builder for {@link CIIToUBLSettings}.
+   *
+   * @author Philip Helger
+   */
+  @NotThreadSafe
+  public static final class Builder implements IBuilder <CIIToUBLSettings>
+  {
+    private EUBLCreationMode m_eCreationMode = AbstractCIIToUBLConverter.DEFAULT_UBL_CREATION_MODE;
+    private String m_sVATScheme = AbstractCIIToUBLConverter.DEFAULT_VAT_SCHEME;
+    private String m_sCustomizationID = AbstractCIIToUBLConverter.DEFAULT_CUSTOMIZATION_ID;
+    private String m_sProfileID = AbstractCIIToUBLConverter.DEFAULT_PROFILE_ID;
+    private String m_sCardAccountNetworkID = AbstractCIIToUBLConverter.DEFAULT_CARD_ACCOUNT_NETWORK_ID;
+    private boolean m_bSwapQuantitySignIfNeeded = AbstractCIIToUBLConverter.DEFAULT_SWAP_QUANTITY_SIGN_IF_NEEDED;
+    private boolean m_bSwapPriceSignIfNeeded = AbstractCIIToUBLConverter.DEFAULT_SWAP_PRICE_SIGN_IF_NEEDED;
+    private int m_nParallelLineThreshold = AbstractCIIToUBLConverter.DEFAULT_PARALLEL_LINE_THRESHOLD;
+    private int m_nParallelLineChunkSize = AbstractCIIToUBLConverter.DEFAULT_PARALLEL_LINE_CHUNK_SIZE;
+    private boolean m_bFailFast = AbstractCIIToUBLConverter.DEFAULT_FAIL_FAST;
+    private CIIToUBLAttachmentStore m_aAttachmentStore;
+    private int m_nAttachmentPassthroughThreshold = AbstractCIIToUBLConverter.DEFAULT_ATTACHMENT_PASSTHROUGH_THRESHOLD;
+
+    Builder ()
+    {}
+
+    @Nonnull
+    public Builder ublCreationMode (@Nonnull final EUBLCreationMode e)
+    {
+      ValueEnforcer.notNull (e, "CreationMode");
+      m_eCreationMode = e;
+      return this;
+    }
+
+    @Nonnull
+    public Builder vatScheme (@Nonnull final String s)
+    {
+      ValueEnforcer.notNull (s, "VATScheme");
+      m_sVATScheme = s;
+      return this;
+    }
+
+    @Nonnull
+    public Builder customizationID (@Nonnull final String s)
+    {
+      ValueEnforcer.notNull (s, "CustomizationID");
+      m_sCustomizationID = s;
+      return this;
+    }
+
+    @Nonnull
+    public Builder profileID (@Nonnull final String s)
+    {
+      ValueEnforcer.notNull (s, "ProfileID");
+      m_sProfileID = s;
+      return this;
+    }
+
+    @Nonnull
+    public Builder cardAccountNetworkID (@Nonnull final String s)
+    {
+      ValueEnforcer.notNull (s, "CardAccountNetworkID");
+      m_sCardAccountNetworkID = s;
+      return this;
+    }
+
+    @Nonnull
+    public Builder swapQuantitySignIfNeeded (final boolean b)
+    {
+      m_bSwapQuantitySignIfNeeded = b;
+      return this;
+    }
+
+    @Nonnull
+    public Builder swapPriceSignIfNeeded (final boolean b)
+    {
+      m_bSwapPriceSignIfNeeded = b;
+      return this;
+    }
+
+    /**
+     * Enable the parallel conversion of the line items of documents with
+     * many lines. The lines are split into chunks of
+     * {@link #parallelLineChunkSize(int)} lines that are converted on the
+     * common fork-join pool, and the results are merged in the original
+     * order. This only applies to the creation of UBL objects and not to the
+     * streaming and direct conversion.
+     *
+     * @param n
+     *        The minimum number of line items from which on the lines are
+     *        converted in parallel. Must be &ge; 0. Use 0 to disable it.
+     * @return this for chaining
+     */
+    @Nonnull
+    public Builder parallelLineThreshold (@Nonnegative final int n)
+    {
+      ValueEnforcer.isGE0 (n, "ParallelLineThreshold");
+      m_nParallelLineThreshold = n;
+      return this;
+    }
+
+    /**
+     * @param n
+     *        The number of consecutive line items converted as a single task
+     *        in the parallel line conversion. Must be &gt; 0.
+     * @return this for chaining
+     * @see #parallelLineThreshold(int)
+     */
+    @Nonnull
+    public Builder parallelLineChunkSize (@Nonnegative final int n)
+    {
+      ValueEnforcer.isGT0 (n, "ParallelLineChunkSize");
+      m_nParallelLineChunkSize = n;
+      return this;
+    }
+
+    /**
+     * Stop on the first error instead of collecting all errors. Reading the
+     * CII is aborted on the first read or validation error, the line items
+     * are not converted if the header already contains an error, and the
+     * line conversion stops on the first erroneous line. In case of an error
+     * no UBL document is returned. This is meant for the cheap triage of
+     * documents, where only "convertible or not" is relevant.
+     *
+     * @param b
+     *        <code>true</code> to stop on the first error, <code>false</code>
+     *        to collect all errors.
+     * @return this for chaining
+     */
+    @Nonnull
+    public Builder failFast (final boolean b)
+    {
+      m_bFailFast = b;
+      return this;
+    }
+
+    /**
+     * Set the store to deduplicate and optionally externalize the attachments
+     * of referenced documents. The store is shared by all settings objects
+     * created from this builder.
+     *
+     * @param a
+     *        The attachment store to use. May be <code>null</code> to embed all
+     *        attachments as they are.
+     * @return this for chaining
+     */
+    @Nonnull
+    public Builder attachmentStore (@Nullable final CIIToUBLAttachmentStore a)
+    {
+      m_aAttachmentStore = a;
+      return this;
+    }
+
+    /**
+     * Enable the base64 passthrough of large attachments in the streaming
+     * conversion. The base64 text of each attachment with at least the
+     * provided number of characters is spooled to a temporary file while
+     * reading the CII and copied as is to the UBL output, instead of decoding
+     * it to a byte array and encoding it again. This only applies to the
+     * streaming conversion and is not used for attachments that are
+     * externalized by the {@link #attachmentStore(CIIToUBLAttachmentStore)
+     * attachment store}, as that requires the decoded content.
+     *
+     * @param n
+     *        The minimum number of base64 characters from which on an
+     *        attachment is passed through. Must be &ge; 0. Use 0 to disable
+     *        it.
+     * @return this for chaining
+     */
+    @Nonnull
+    public Builder attachmentPassthroughThreshold (@Nonnegative final int n)
+    {
+      ValueEnforcer.isGE0 (n, "AttachmentPassthroughThreshold");
+      m_nAttachmentPassthroughThreshold = n;
+      return this;
+    }
+
+    @Nonnull
+    public CIIToUBLSettings build ()
+    {
+      return new CIIToUBLSettings (m_eCreationMode,
+                                   m_sVATScheme,
+                                   m_sCustomizationID,
+                                   m_sProfileID,
+                                   m_sCardAccountNetworkID,
+                                   m_bSwapQuantitySignIfNeeded,
+                                   m_bSwapPriceSignIfNeeded,
+                                   m_nParallelLineThreshold,
+                                   m_nParallelLineChunkSize,
+                                   m_bFailFast,
+                                   m_aAttachmentStore,
+                                   m_nAttachmentPassthroughThreshold);
+    }
+  }
+}
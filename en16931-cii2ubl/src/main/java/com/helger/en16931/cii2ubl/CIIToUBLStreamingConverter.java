@@ -0,0 +1,618 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntConsumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.bind.JAXBElement;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.state.ESuccess;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
+
+/**
+ * Streaming conversion from CII to UBL for very large invoices. The source is
+ * read twice:
+ * <ol>
+ * <li>All elements except the line items are read with JAXB and converted to
+ * a UBL document without lines. That document is written to the output until
+ * right before the closing root element.</li>
+ * <li>The line items are read one by one with StAX, converted to UBL lines and
+ * written to the output immediately.</li>
+ * </ol>
+ * That way only the header and a single line are in memory at any time. Two
+ * passes are needed, because in CII the line items precede the header
+ * settlement (e.g. the currency) that the line conversion depends on.<br>
+ * <b>Note:</b> unlike the default conversion, the CII input is <b>not</b>
+ * validated against the XML Schema in this mode. The header pass hides the
+ * line items, so the document that JAXB sees can never be schema valid. Only
+ * the well-formedness and the JAXB binding are checked. Use the default
+ * conversion if XML Schema validation is needed.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@Immutable
+final class CIIToUBLStreamingConverter
+{
+  static final String NS_RAM = "urn:un:unece:uncefact:data:standard:ReusableAggregateBusinessInformationEntity:100";
+  static final String ELEMENT_LINE_ITEM = "IncludedSupplyChainTradeLineItem";
+  static final String NS_CAC = "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (CIIToUBLStreamingConverter.class);
+  private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance ();
+  // The header documents have no lines and can therefore not be valid
+  static final UBLMarshallerPool MARSHALLER_POOL = new UBLMarshallerPool (false, false, UBLMarshallerPool.DEFAULT_MAX_IDLE);
+
+  private CIIToUBLStreamingConverter ()
+  {}
+
+  static boolean isLineItemStart (@Nonnull final XMLStreamReader aReader)
+  {
+    return aReader.getEventType () == XMLStreamConstants.START_ELEMENT &&
+           ELEMENT_LINE_ITEM.equals (aReader.getLocalName ()) &&
+           NS_RAM.equals (aReader.getNamespaceURI ());
+  }
+
+  /**
+   * A StAX reader that hides all line items.
+   */
+  private static final class LineItemSkippingReader extends StreamReaderDelegate
+  {
+    LineItemSkippingReader (@Nonnull final XMLStreamReader aReader)
+    {
+      super (aReader);
+    }
+
+    @Override
+    public int next () throws XMLStreamException
+    {
+      int nEvent = super.next ();
+      while (isLineItemStart (this))
+      {
+        // Skip the whole sub tree
+        int nDepth = 1;
+        while (nDepth > 0)
+        {
+          nEvent = super.next ();
+          if (nEvent == START_ELEMENT)
+            nDepth++;
+          else
+            if (nEvent == END_ELEMENT)
+              nDepth--;
+        }
+        nEvent = super.next ();
+      }
+      return nEvent;
+    }
+
+    @Override
+    public int nextTag () throws XMLStreamException
+    {
+      // Must use the skipping next() from above
+      int nEvent = next ();
+      while ((nEvent == CHARACTERS || nEvent == CDATA) && isWhiteSpace () ||
+             nEvent == SPACE ||
+             nEvent == PROCESSING_INSTRUCTION ||
+             nEvent == COMMENT)
+        nEvent = next ();
+      if (nEvent != START_ELEMENT && nEvent != END_ELEMENT)
+        throw new XMLStreamException ("Expected start or end tag", getLocation ());
+      return nEvent;
+    }
+  }
+
+  @FunctionalInterface
+  interface ILineWriter
+  {
+    void writeLines (@Nonnull XMLStreamWriter aWriter) throws XMLStreamException;
+  }
+
+  /**
+   * A StAX writer that forwards everything to another writer. Base class for
+   * writers that only intercept a few events.
+   */
+  static class DelegatingWriter implements XMLStreamWriter
+  {
+    protected final XMLStreamWriter m_aDelegate;
+
+    DelegatingWriter (@Nonnull final XMLStreamWriter aDelegate)
+    {
+      m_aDelegate = aDelegate;
+    }
+
+    @Override
+    public void writeStartElement (final String sLocalName) throws XMLStreamException
+    {
+      m_aDelegate.writeStartElement (sLocalName);
+    }
+
+    @Override
+    public void writeStartElement (final String sNamespaceURI, final String sLocalName) throws XMLStreamException
+    {
+      m_aDelegate.writeStartElement (sNamespaceURI, sLocalName);
+    }
+
+    @Override
+    public void writeStartElement (final String sPrefix, final String sLocalName, final String sNamespaceURI) throws XMLStreamException
+    {
+      m_aDelegate.writeStartElement (sPrefix, sLocalName, sNamespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement (final String sNamespaceURI, final String sLocalName) throws XMLStreamException
+    {
+      m_aDelegate.writeEmptyElement (sNamespaceURI, sLocalName);
+    }
+
+    @Override
+    public void writeEmptyElement (final String sPrefix, final String sLocalName, final String sNamespaceURI) throws XMLStreamException
+    {
+      m_aDelegate.writeEmptyElement (sPrefix, sLocalName, sNamespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement (final String sLocalName) throws XMLStreamException
+    {
+      m_aDelegate.writeEmptyElement (sLocalName);
+    }
+
+    @Override
+    public void writeEndElement () throws XMLStreamException
+    {
+      m_aDelegate.writeEndElement ();
+    }
+
+    @Override
+    public void writeEndDocument () throws XMLStreamException
+    {
+      m_aDelegate.writeEndDocument ();
+    }
+
+    @Override
+    public void close () throws XMLStreamException
+    {
+      m_aDelegate.close ();
+    }
+
+    @Override
+    public void flush () throws XMLStreamException
+    {
+      m_aDelegate.flush ();
+    }
+
+    @Override
+    public void writeAttribute (final String sLocalName, final String sValue) throws XMLStreamException
+    {
+      m_aDelegate.writeAttribute (sLocalName, sValue);
+    }
+
+    @Override
+    public void writeAttribute (final String sPrefix,
+                                final String sNamespaceURI,
+                                final String sLocalName,
+                                final String sValue) throws XMLStreamException
+    {
+      m_aDelegate.writeAttribute (sPrefix, sNamespaceURI, sLocalName, sValue);
+    }
+
+    @Override
+    public void writeAttribute (final String sNamespaceURI, final String sLocalName, final String sValue) throws XMLStreamException
+    {
+      m_aDelegate.writeAttribute (sNamespaceURI, sLocalName, sValue);
+    }
+
+    @Override
+    public void writeNamespace (final String sPrefix, final String sNamespaceURI) throws XMLStreamException
+    {
+      m_aDelegate.writeNamespace (sPrefix, sNamespaceURI);
+    }
+
+    @Override
+    public void writeDefaultNamespace (final String sNamespaceURI) throws XMLStreamException
+    {
+      m_aDelegate.writeDefaultNamespace (sNamespaceURI);
+    }
+
+    @Override
+    public void writeComment (final String sData) throws XMLStreamException
+    {
+      m_aDelegate.writeComment (sData);
+    }
+
+    @Override
+    public void writeProcessingInstruction (final String sTarget) throws XMLStreamException
+    {
+      m_aDelegate.writeProcessingInstruction (sTarget);
+    }
+
+    @Override
+    public void writeProcessingInstruction (final String sTarget, final String sData) throws XMLStreamException
+    {
+      m_aDelegate.writeProcessingInstruction (sTarget, sData);
+    }
+
+    @Override
+    public void writeCData (final String sData) throws XMLStreamException
+    {
+      m_aDelegate.writeCData (sData);
+    }
+
+    @Override
+    public void writeDTD (final String sDTD) throws XMLStreamException
+    {
+      m_aDelegate.writeDTD (sDTD);
+    }
+
+    @Override
+    public void writeEntityRef (final String sName) throws XMLStreamException
+    {
+      m_aDelegate.writeEntityRef (sName);
+    }
+
+    @Override
+    public void writeStartDocument () throws XMLStreamException
+    {
+      m_aDelegate.writeStartDocument ();
+    }
+
+    @Override
+    public void writeStartDocument (final String sVersion) throws XMLStreamException
+    {
+      m_aDelegate.writeStartDocument (sVersion);
+    }
+
+    @Override
+    public void writeStartDocument (final String sEncoding, final String sVersion) throws XMLStreamException
+    {
+      m_aDelegate.writeStartDocument (sEncoding, sVersion);
+    }
+
+    @Override
+    public void writeCharacters (final String sText) throws XMLStreamException
+    {
+      m_aDelegate.writeCharacters (sText);
+    }
+
+    @Override
+    public void writeCharacters (final char [] aText, final int nStart, final int nLen) throws XMLStreamException
+    {
+      m_aDelegate.writeCharacters (aText, nStart, nLen);
+    }
+
+    @Override
+    public String getPrefix (final String sURI) throws XMLStreamException
+    {
+      return m_aDelegate.getPrefix (sURI);
+    }
+
+    @Override
+    public void setPrefix (final String sPrefix, final String sURI) throws XMLStreamException
+    {
+      m_aDelegate.setPrefix (sPrefix, sURI);
+    }
+
+    @Override
+    public void setDefaultNamespace (final String sURI) throws XMLStreamException
+    {
+      m_aDelegate.setDefaultNamespace (sURI);
+    }
+
+    @Override
+    public void setNamespaceContext (final NamespaceContext aContext) throws XMLStreamException
+    {
+      m_aDelegate.setNamespaceContext (aContext);
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext ()
+    {
+      return m_aDelegate.getNamespaceContext ();
+    }
+
+    @Override
+    public Object getProperty (final String sName)
+    {
+      return m_aDelegate.getProperty (sName);
+    }
+  }
+
+  /**
+   * A StAX writer that calls back right before the root element is closed.
+   */
+  static final class LineInjectingWriter extends DelegatingWriter
+  {
+    private final ILineWriter m_aLineWriter;
+    private int m_nDepth = 0;
+
+    LineInjectingWriter (@Nonnull final XMLStreamWriter aDelegate, @Nonnull final ILineWriter aLineWriter)
+    {
+      super (aDelegate);
+      m_aLineWriter = aLineWriter;
+    }
+
+    @Override
+    public void writeStartElement (final String sLocalName) throws XMLStreamException
+    {
+      m_nDepth++;
+      super.writeStartElement (sLocalName);
+    }
+
+    @Override
+    public void writeStartElement (final String sNamespaceURI, final String sLocalName) throws XMLStreamException
+    {
+      m_nDepth++;
+      super.writeStartElement (sNamespaceURI, sLocalName);
+    }
+
+    @Override
+    public void writeStartElement (final String sPrefix, final String sLocalName, final String sNamespaceURI) throws XMLStreamException
+    {
+      m_nDepth++;
+      super.writeStartElement (sPrefix, sLocalName, sNamespaceURI);
+    }
+
+    @Override
+    public void writeEndElement () throws XMLStreamException
+    {
+      if (m_nDepth == 1)
+      {
+        // The lines are the last elements of Invoice and CreditNote
+        m_aLineWriter.writeLines (m_aDelegate);
+      }
+      m_nDepth--;
+      super.writeEndElement ();
+    }
+  }
+
+  @Nonnull
+  private static <T> JAXBElement <T> _wrap (@Nonnull final QName aName, @Nonnull final Class <T> aClass, @Nonnull final Object aValue)
+  {
+    return new JAXBElement <> (aName, aClass, aClass.cast (aValue));
+  }
+
+  @Nonnull
+  private static InputStream _open (@Nonnull final Path aPath) throws IOException
+  {
+    return new BufferedInputStream (Files.newInputStream (aPath));
+  }
+
+  @Nullable
+  private static CrossIndustryInvoiceType _readHeader (@Nonnull final Path aPath,
+                                                       @Nonnull final String sSystemID,
+                                                       @Nullable final CIIToUBLAttachmentPassthrough aPassthrough,
+                                                       @Nonnull final ErrorList aErrorList)
+  {
+    try (final InputStream aIS = _open (aPath))
+    {
+      XMLStreamReader aReader = new LineItemSkippingReader (CIIUnmarshallerPool.createXMLStreamReader (aIS, sSystemID));
+      if (aPassthrough != null)
+        aReader = aPassthrough.wrap (aReader);
+      try
+      {
+        return CIIUnmarshallerPool.getShared (false).read (aReader, aErrorList);
+      }
+      finally
+      {
+        aReader.close ();
+      }
+    }
+    catch (final IOException | XMLStreamException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to read CII file '" + aPath.toAbsolutePath () + "': " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+  }
+
+  @Nullable
+  private static CIIToUBLAttachmentPassthrough _createPassthrough (@Nonnull final CIIToUBLSettings aSettings)
+  {
+    if (aSettings.getAttachmentPassthroughThreshold () == 0)
+      return null;
+
+    // Externalizing requires the decoded content
+    final CIIToUBLAttachmentStore aStore = aSettings.getAttachmentStore ();
+    if (aStore != null && aStore.isExternalizing ())
+      return null;
+
+    return new CIIToUBLAttachmentPassthrough (aSettings.getAttachmentPassthroughThreshold ());
+  }
+
+  /**
+   * Convert the provided CII file to UBL in a streaming way. If
+   * {@link CIIToUBLSettings#getAttachmentPassthroughThreshold()} is set, large
+   * attachments are copied as base64 text from the source to the output.
+   *
+   * @param aConverter
+   *        The converter for the target UBL version. May not be
+   *        <code>null</code>.
+   * @param aPath
+   *        The CII source file. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>.
+   * @param aSettings
+   *        The conversion settings. May not be <code>null</code>.
+   * @param aLineCountConsumer
+   *        Is invoked with the number of written UBL lines, if the UBL
+   *        document was written completely. May be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if everything was written and no error
+   *         occurred. Errors that were contained in the error list before are
+   *         ignored.
+   */
+  @Nonnull
+  static ESuccess convert (@Nonnull final AbstractCIIToUBLConverter <?> aConverter,
+                           @Nonnull final Path aPath,
+                           @Nonnull @WillNotClose final OutputStream aOS,
+                           @Nonnull final CIIToUBLSettings aSettings,
+                           @Nullable final IntConsumer aLineCountConsumer,
+                           @Nonnull final ErrorList aErrorList)
+  {
+    try (final CIIToUBLAttachmentPassthrough aPassthrough = _createPassthrough (aSettings))
+    {
+      return _convert (aConverter, aPath, aOS, aSettings, aPassthrough, aLineCountConsumer, aErrorList);
+    }
+  }
+
+  @Nonnull
+  private static ESuccess _convert (@Nonnull final AbstractCIIToUBLConverter <?> aConverter,
+                                    @Nonnull final Path aPath,
+                                    @Nonnull @WillNotClose final OutputStream aOS,
+                                    @Nonnull final CIIToUBLSettings aSettings,
+                                    @Nullable final CIIToUBLAttachmentPassthrough aPassthrough,
+                                    @Nullable final IntConsumer aLineCountConsumer,
+                                    @Nonnull final ErrorList aErrorList)
+  {
+    final String sSystemID = aPath.toUri ().toString ();
+    // Errors that existed before don't count
+    final int nErrorIndex = aErrorList.size ();
+
+    // Pass 1: everything but the lines
+    final CrossIndustryInvoiceType aHeaderCII = _readHeader (aPath, sSystemID, aPassthrough, aErrorList);
+    if (aHeaderCII == null)
+      return ESuccess.FAILURE;
+
+    final Serializable aHeaderUBL = aConverter.convertCIItoUBL (aHeaderCII, aSettings, aErrorList);
+    if (aHeaderUBL == null || AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorIndex))
+      return ESuccess.FAILURE;
+
+    final Class <?> aDocClass = aHeaderUBL.getClass ();
+    final boolean bInvoice = "Invoice".equals (UBLMarshallerPool.getRootElementLocalName (aDocClass));
+    final QName aLineName = new QName (NS_CAC, bInvoice ? "InvoiceLine" : "CreditNoteLine");
+    final String sDefaultCurrencyCode = aHeaderCII.getSupplyChainTradeTransaction ()
+                                                  .getApplicableHeaderTradeSettlement ()
+                                                  .getInvoiceCurrencyCodeValue ();
+
+    // Pass 2: the lines, written right before the root element is closed
+    final int [] aLineCount = { 0 };
+    final ILineWriter aLineWriter = aWriter -> {
+      try (final InputStream aIS = _open (aPath))
+      {
+        final XMLStreamReader aReader = CIIUnmarshallerPool.createXMLStreamReader (aIS, sSystemID);
+        // Only the line items are read via the passthrough reader, so that
+        // the header attachments are not spooled again
+        final XMLStreamReader aLineReader = aPassthrough != null ? aPassthrough.wrap (aReader) : aReader;
+        try
+        {
+          while (true)
+          {
+            if (isLineItemStart (aReader))
+            {
+              // Afterwards the reader points to the event after the line item
+              final SupplyChainTradeLineItemType aLineItem = CIIUnmarshallerPool.getShared (false)
+                                                                                .readFragment (aLineReader,
+                                                                                               SupplyChainTradeLineItemType.class,
+                                                                                               aErrorList);
+              if (aLineItem == null)
+                throw new XMLStreamException ("Failed to read CII line item", aReader.getLocation ());
+
+              final Serializable aLine = aConverter.convertToLine (aLineItem, bInvoice, sDefaultCurrencyCode, aSettings, aErrorList);
+              if (MARSHALLER_POOL.writeFragment (aDocClass, _wrap (aLineName, aLine.getClass (), aLine), aWriter, aErrorList)
+                                 .isFailure ())
+                throw new XMLStreamException ("Failed to write UBL line");
+              aLineCount[0]++;
+              continue;
+            }
+            if (!aReader.hasNext ())
+              break;
+            aReader.next ();
+          }
+        }
+        finally
+        {
+          aReader.close ();
+        }
+      }
+      catch (final IOException ex)
+      {
+        throw new XMLStreamException ("Failed to re-read CII file '" + aPath.toAbsolutePath () + "'", ex);
+      }
+    };
+
+    try
+    {
+      final XMLStreamWriter aWriter = XML_OUTPUT_FACTORY.createXMLStreamWriter (aOS, StandardCharsets.UTF_8.name ());
+      try
+      {
+        // The lines are written to the passthrough writer as well
+        final XMLStreamWriter aContentWriter = aPassthrough != null ? aPassthrough.wrap (aWriter) : aWriter;
+        if (MARSHALLER_POOL.write (aHeaderUBL, new LineInjectingWriter (aContentWriter, aLineWriter), aErrorList).isFailure ())
+          return ESuccess.FAILURE;
+        aWriter.flush ();
+      }
+      finally
+      {
+        // Does not close the underlying stream
+        aWriter.close ();
+      }
+    }
+    catch (final XMLStreamException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to write UBL: " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return ESuccess.FAILURE;
+    }
+
+    if (LOGGER.isDebugEnabled ())
+    {
+      LOGGER.debug ("Streamed " + aLineCount[0] + " UBL line(s) from '" + aPath.toAbsolutePath () + "'");
+      if (aPassthrough != null)
+        LOGGER.debug ("Passed through " +
+                      aPassthrough.getSpooledCount () +
+                      " attachment(s) with " +
+                      aPassthrough.getSpooledChars () +
+                      " base64 character(s)");
+    }
+    if (aLineCountConsumer != null)
+      aLineCountConsumer.accept (aLineCount[0]);
+
+    return ESuccess.valueOf (!AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorIndex));
+  }
+}
@@ -0,0 +1,678 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.validation.Schema;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.cii.d16b.ECIID16BDocumentType;
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.ByteBufferInputStream;
+import com.helger.commons.io.stream.CountingInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.jaxb.JAXBContextCache;
+import com.helger.jaxb.validation.WrappedCollectingValidationEventHandler;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * A thread-safe pool of JAXB unmarshallers to read CII D16B invoices. The
+ * JAXB context and the optional XML Schema are resolved once when the pool is
+ * created and the unmarshallers are reused across calls and threads, so that
+ * high volume callers don't pay the unmarshaller creation and schema setup for
+ * every document.<br>
+ * Use {@link #getShared(boolean)} or {@link #getShared(boolean, boolean)} to
+ * access the default instances that are keyed by the validation and fail-fast
+ * settings. Call {@link #warmUp(int)} at startup to
+ * avoid the creation cost on the first documents.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@ThreadSafe
+public final class CIIUnmarshallerPool
+{
+  /** The default maximum number of idle unmarshallers kept in a pool */
+  public static final int DEFAULT_MAX_IDLE = 64;
+  /**
+   * The default minimum file size in bytes from which on files are memory
+   * mapped when reading from a {@link Path}: 16 MB
+   */
+  public static final long DEFAULT_MEMORY_MAP_THRESHOLD = 16L * 1024 * 1024;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (CIIUnmarshallerPool.class);
+
+  private static final XMLInputFactory XML_INPUT_FACTORY;
+  static
+  {
+    final XMLInputFactory aFactory = XMLInputFactory.newInstance ();
+    // No DTDs and no external entities (XXE)
+    aFactory.setProperty (XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    aFactory.setProperty (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    aFactory.setProperty (XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    XML_INPUT_FACTORY = aFactory;
+  }
+
+  // Created lazily to avoid the initialization cost for unused pools
+  private static final class SingletonHolder
+  {
+    static final CIIUnmarshallerPool VALIDATING = new CIIUnmarshallerPool (true, DEFAULT_MAX_IDLE);
+    static final CIIUnmarshallerPool NON_VALIDATING = new CIIUnmarshallerPool (false, DEFAULT_MAX_IDLE);
+  }
+
+  private static final class FailFastSingletonHolder
+  {
+    static final CIIUnmarshallerPool VALIDATING = new CIIUnmarshallerPool (true, DEFAULT_MAX_IDLE, DEFAULT_MEMORY_MAP_THRESHOLD, true);
+    static final CIIUnmarshallerPool NON_VALIDATING = new CIIUnmarshallerPool (false, DEFAULT_MAX_IDLE, DEFAULT_MEMORY_MAP_THRESHOLD, true);
+  }
+
+  /**
+   * Create a new StAX reader with the secure settings of this class.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param sSystemID
+   *        The optional system ID. May be <code>null</code>.
+   * @return The new reader and never <code>null</code>.
+   * @throws XMLStreamException
+   *         If the reader cannot be created
+   */
+  @Nonnull
+  static XMLStreamReader createXMLStreamReader (@Nonnull final InputStream aIS, @Nullable final String sSystemID) throws XMLStreamException
+  {
+    return XML_INPUT_FACTORY.createXMLStreamReader (sSystemID, aIS);
+  }
+
+  private final boolean m_bValidateSchema;
+  private final int m_nMaxIdle;
+  private final long m_nMemoryMapThreshold;
+  private final boolean m_bFailFast;
+  private final JAXBContext m_aJAXBContext;
+  private final Schema m_aSchema;
+  private final Queue <Unmarshaller> m_aIdle = new ConcurrentLinkedQueue <> ();
+  private final AtomicInteger m_aIdleCount = new AtomicInteger (0);
+  private final AtomicLong m_aHits = new AtomicLong (0);
+  private final AtomicLong m_aMisses = new AtomicLong (0);
+
+  /**
+   * Constructor
+   *
+   * @param bValidateSchema
+   *        <code>true</code> to validate all read documents against the CII
+   *        D16B XML Schema, <code>false</code> to skip the validation.
+   * @param nMaxIdle
+   *        The maximum number of idle unmarshallers to keep. Must be &gt; 0.
+   */
+  public CIIUnmarshallerPool (final boolean bValidateSchema, @Nonnegative final int nMaxIdle)
+  {
+    this (bValidateSchema, nMaxIdle, DEFAULT_MEMORY_MAP_THRESHOLD);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param bValidateSchema
+   *        <code>true</code> to validate all read documents against the CII
+   *        D16B XML Schema, <code>false</code> to skip the validation.
+   * @param nMaxIdle
+   *        The maximum number of idle unmarshallers to keep. Must be &gt; 0.
+   * @param nMemoryMapThreshold
+   *        The minimum file size in bytes from which on files read via
+   *        {@link #read(Path, ErrorList)} are memory mapped instead of being
+   *        read via an input stream. Use {@link Long#MAX_VALUE} to disable
+   *        memory mapping. Must be &ge; 0.
+   */
+  public CIIUnmarshallerPool (final boolean bValidateSchema, @Nonnegative final int nMaxIdle, @Nonnegative final long nMemoryMapThreshold)
+  {
+    this (bValidateSchema, nMaxIdle, nMemoryMapThreshold, false);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param bValidateSchema
+   *        <code>true</code> to validate all read documents against the CII
+   *        D16B XML Schema, <code>false</code> to skip the validation.
+   * @param nMaxIdle
+   *        The maximum number of idle unmarshallers to keep. Must be &gt; 0.
+   * @param nMemoryMapThreshold
+   *        The minimum file size in bytes from which on files read via
+   *        {@link #read(Path, ErrorList)} are memory mapped instead of being
+   *        read via an input stream. Use {@link Long#MAX_VALUE} to disable
+   *        memory mapping. Must be &ge; 0.
+   * @param bFailFast
+   *        <code>true</code> to abort reading on the first read or validation
+   *        error, <code>false</code> to continue and collect all errors.
+   */
+  public CIIUnmarshallerPool (final boolean bValidateSchema,
+                              @Nonnegative final int nMaxIdle,
+                              @Nonnegative final long nMemoryMapThreshold,
+                              final boolean bFailFast)
+  {
+    ValueEnforcer.isGT0 (nMaxIdle, "MaxIdle");
+    ValueEnforcer.isGE0 (nMemoryMapThreshold, "MemoryMapThreshold");
+    m_bValidateSchema = bValidateSchema;
+    m_nMaxIdle = nMaxIdle;
+    m_nMemoryMapThreshold = nMemoryMapThreshold;
+    m_bFailFast = bFailFast;
+    m_aJAXBContext = JAXBContextCache.getInstance ().getFromCache (CrossIndustryInvoiceType.class);
+    if (m_aJAXBContext == null)
+      throw new IllegalStateException ("Failed to create JAXB context for " + CrossIndustryInvoiceType.class.getName ());
+    m_aSchema = bValidateSchema ? ECIID16BDocumentType.CROSS_INDUSTRY_INVOICE.getSchema () : null;
+    if (bValidateSchema && m_aSchema == null)
+      throw new IllegalStateException ("Failed to resolve the CII D16B XML Schema");
+  }
+
+  /**
+   * Get the shared pool for the provided validation setting.
+   *
+   * @param bValidateSchema
+   *        <code>true</code> to get the pool that validates against the XML
+   *        Schema, <code>false</code> to get the one that does not.
+   * @return The shared pool and never <code>null</code>.
+   */
+  @Nonnull
+  public static CIIUnmarshallerPool getShared (final boolean bValidateSchema)
+  {
+    return bValidateSchema ? SingletonHolder.VALIDATING : SingletonHolder.NON_VALIDATING;
+  }
+
+  /**
+   * Get the shared pool for the provided validation and fail-fast settings.
+   *
+   * @param bValidateSchema
+   *        <code>true</code> to get the pool that validates against the XML
+   *        Schema, <code>false</code> to get the one that does not.
+   * @param bFailFast
+   *        <code>true</code> to get the pool that aborts reading on the first
+   *        error, <code>false</code> to get the one that collects all errors.
+   * @return The shared pool and never <code>null</code>.
+   */
+  @Nonnull
+  public static CIIUnmarshallerPool getShared (final boolean bValidateSchema, final boolean bFailFast)
+  {
+    if (!bFailFast)
+      return getShared (bValidateSchema);
+    return bValidateSchema ? FailFastSingletonHolder.VALIDATING : FailFastSingletonHolder.NON_VALIDATING;
+  }
+
+  /**
+   * @return <code>true</code> if this pool validates against the XML Schema.
+   */
+  public boolean isValidateSchema ()
+  {
+    return m_bValidateSchema;
+  }
+
+  /**
+   * @return The maximum number of idle unmarshallers kept in this pool.
+   */
+  @Nonnegative
+  public int getMaxIdle ()
+  {
+    return m_nMaxIdle;
+  }
+
+  /**
+   * @return The minimum file size in bytes from which on files are memory
+   *         mapped when reading from a {@link Path}.
+   */
+  @Nonnegative
+  public long getMemoryMapThreshold ()
+  {
+    return m_nMemoryMapThreshold;
+  }
+
+  /**
+   * @return <code>true</code> if reading is aborted on the first read or
+   *         validation error, <code>false</code> if all errors are collected.
+   */
+  public boolean isFailFast ()
+  {
+    return m_bFailFast;
+  }
+
+  @Nonnull
+  private Unmarshaller _createUnmarshaller () throws JAXBException
+  {
+    final Unmarshaller ret = m_aJAXBContext.createUnmarshaller ();
+    if (m_aSchema != null)
+      ret.setSchema (m_aSchema);
+    return ret;
+  }
+
+  @Nonnull
+  private Unmarshaller _borrow () throws JAXBException
+  {
+    final Unmarshaller ret = m_aIdle.poll ();
+    if (ret != null)
+    {
+      m_aIdleCount.decrementAndGet ();
+      m_aHits.incrementAndGet ();
+      return ret;
+    }
+    m_aMisses.incrementAndGet ();
+    return _createUnmarshaller ();
+  }
+
+  private void _return (@Nonnull final Unmarshaller aUnmarshaller)
+  {
+    // Don't hold a reference to the error list of the last call
+    try
+    {
+      aUnmarshaller.setEventHandler (null);
+    }
+    catch (final JAXBException ex)
+    {
+      // Don't reuse it
+      return;
+    }
+
+    if (m_aIdleCount.incrementAndGet () <= m_nMaxIdle)
+      m_aIdle.offer (aUnmarshaller);
+    else
+      m_aIdleCount.decrementAndGet ();
+  }
+
+  /**
+   * Make sure that at least the provided number of idle unmarshallers is
+   * available, so that the first documents don't need to pay the creation
+   * costs.
+   *
+   * @param nCount
+   *        The number of unmarshallers to create. Values larger than
+   *        {@link #getMaxIdle()} are capped.
+   */
+  public void warmUp (@Nonnegative final int nCount)
+  {
+    ValueEnforcer.isGE0 (nCount, "Count");
+    final int nRealCount = Math.min (nCount, m_nMaxIdle);
+    while (m_aIdleCount.get () < nRealCount)
+    {
+      try
+      {
+        _return (_createUnmarshaller ());
+      }
+      catch (final JAXBException ex)
+      {
+        throw new IllegalStateException ("Failed to create JAXB Unmarshaller", ex);
+      }
+    }
+  }
+
+  /**
+   * Read a CII invoice from the provided StAX reader.
+   *
+   * @param aReader
+   *        The reader to read from. May not be <code>null</code>. It is not
+   *        closed by this method.
+   * @param aErrorList
+   *        The error list to be filled with all read and validation errors.
+   *        May not be <code>null</code>.
+   * @return The read invoice or <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType read (@Nonnull @WillNotClose final XMLStreamReader aReader, @Nonnull final ErrorList aErrorList)
+  {
+    return readFragment (aReader, CrossIndustryInvoiceType.class, aErrorList);
+  }
+
+  /**
+   * Read the element the provided StAX reader is positioned at as the
+   * provided type. Afterwards the reader is positioned at the event right
+   * after the end element. This is e.g. used to read single line items.
+   *
+   * @param <T>
+   *        The type to read
+   * @param aReader
+   *        The reader to read from. Must be positioned at a start element. May
+   *        not be <code>null</code>.
+   * @param aClass
+   *        The class to read. Must be part of the CII D16B JAXB context. May
+   *        not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all read and validation errors.
+   *        May not be <code>null</code>.
+   * @return The read object or <code>null</code> in case of an error.
+   */
+  @Nullable
+  <T> T readFragment (@Nonnull @WillNotClose final XMLStreamReader aReader,
+                      @Nonnull final Class <T> aClass,
+                      @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aClass, "Class");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final int nErrorsBefore = aErrorList.size ();
+    Unmarshaller aUnmarshaller = null;
+    try
+    {
+      aUnmarshaller = _borrow ();
+      final ValidationEventHandler aHandler = new WrappedCollectingValidationEventHandler (aErrorList);
+      if (m_bFailFast)
+      {
+        // Returning false makes JAXB abort with an exception
+        aUnmarshaller.setEventHandler (aEvent -> aHandler.handleEvent (aEvent) && aEvent.getSeverity () == ValidationEvent.WARNING);
+      }
+      else
+        aUnmarshaller.setEventHandler (aHandler);
+      final T ret = aUnmarshaller.unmarshal (aReader, aClass).getValue ();
+      _return (aUnmarshaller);
+      return ret;
+    }
+    catch (final JAXBException | RuntimeException ex)
+    {
+      // Don't reuse an unmarshaller that may be in an undefined state
+      // Errors that existed before the call don't count - only skip it, if
+      // the validation handler already reported the cause
+      if (!AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorsBefore))
+        aErrorList.add (SingleError.builderError ()
+                                   .errorText ("Failed to read CII invoice: " + ex.getMessage ())
+                                   .linkedException (ex)
+                                   .build ());
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Failed to read CII invoice", ex);
+      return null;
+    }
+  }
+
+  /**
+   * Read a CII invoice from the provided input stream.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>. It is
+   *        not closed by this method.
+   * @param sSystemID
+   *        The optional system ID to be used in error messages. May be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all read and validation errors.
+   *        May not be <code>null</code>.
+   * @return The read invoice or <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType read (@Nonnull @WillNotClose final InputStream aIS,
+                                        @Nullable final String sSystemID,
+                                        @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final CIIToUBLFlightRecorder.CIIReadEvent aEvent = CIIToUBLFlightRecorder.beginCIIRead ();
+    if (aEvent == null)
+      return _read (aIS, sSystemID, aErrorList);
+
+    // Count the bytes only while recording
+    final CountingInputStream aCIS = new CountingInputStream (aIS);
+    final CrossIndustryInvoiceType ret = _read (aCIS, sSystemID, aErrorList);
+    aEvent.finish (ret, aCIS.getBytesRead (), sSystemID);
+    return ret;
+  }
+
+  @Nullable
+  private CrossIndustryInvoiceType _read (@Nonnull @WillNotClose final InputStream aIS,
+                                          @Nullable final String sSystemID,
+                                          @Nonnull final ErrorList aErrorList)
+  {
+    XMLStreamReader aReader = null;
+    try
+    {
+      aReader = createXMLStreamReader (aIS, sSystemID);
+      return read (aReader, aErrorList);
+    }
+    catch (final XMLStreamException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to parse CII invoice: " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+    finally
+    {
+      if (aReader != null)
+        try
+        {
+          aReader.close ();
+        }
+        catch (final XMLStreamException ex)
+        {
+          // ignore
+        }
+    }
+  }
+
+  /**
+   * Read a CII invoice from the provided byte array.
+   *
+   * @param aBytes
+   *        The bytes to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all read and validation errors.
+   *        May not be <code>null</code>.
+   * @return The read invoice or <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType read (@Nonnull final byte [] aBytes, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    return read (new NonBlockingByteArrayInputStream (aBytes), null, aErrorList);
+  }
+
+  /**
+   * Read a CII invoice from the provided byte buffer. The content between the
+   * position and the limit of the buffer is read, and the position of the
+   * buffer is not modified.
+   *
+   * @param aBuffer
+   *        The buffer to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all read and validation errors.
+   *        May not be <code>null</code>.
+   * @return The read invoice or <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType read (@Nonnull final ByteBuffer aBuffer, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aBuffer, "Buffer");
+    // Read from a view, so that the caller's buffer position is untouched
+    return read (new ByteBufferInputStream (aBuffer.duplicate ()), null, aErrorList);
+  }
+
+  /**
+   * Read a CII invoice from the provided path. Files that are at least
+   * {@link #getMemoryMapThreshold()} bytes large are memory mapped, so that the
+   * parser reads directly from the page cache instead of copying the content
+   * to the heap first.
+   *
+   * @param aPath
+   *        The path to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all read and validation errors.
+   *        May not be <code>null</code>.
+   * @return The read invoice or <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType read (@Nonnull final Path aPath, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aPath, "Path");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    try
+    {
+      final long nSize = Files.size (aPath);
+      if (nSize >= m_nMemoryMapThreshold && nSize <= Integer.MAX_VALUE)
+        return readMapped (aPath, aErrorList);
+    }
+    catch (final IOException ex)
+    {
+      // Handled below when opening the stream
+    }
+
+    try (final InputStream aIS = new BufferedInputStream (Files.newInputStream (aPath)))
+    {
+      return read (aIS, aPath.toUri ().toString (), aErrorList);
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to read CII file '" + aPath.toAbsolutePath () + "': " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+  }
+
+  /**
+   * Read a CII invoice from the provided path by memory mapping it
+   * independent of its size. The mapping is released when the buffer is
+   * garbage collected. Files larger than 2 GB cannot be mapped into a single
+   * buffer and are reported as an error.
+   *
+   * @param aPath
+   *        The path to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all read and validation errors.
+   *        May not be <code>null</code>.
+   * @return The read invoice or <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType readMapped (@Nonnull final Path aPath, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aPath, "Path");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final MappedByteBuffer aBuffer;
+    try (final FileChannel aChannel = FileChannel.open (aPath, StandardOpenOption.READ))
+    {
+      final long nSize = aChannel.size ();
+      if (nSize > Integer.MAX_VALUE)
+      {
+        aErrorList.add (SingleError.builderError ()
+                                   .errorText ("The CII file '" + aPath.toAbsolutePath () + "' is too large to be memory mapped (" + nSize + " bytes)")
+                                   .build ());
+        return null;
+      }
+      // The mapping stays valid after the channel is closed
+      aBuffer = aChannel.map (FileChannel.MapMode.READ_ONLY, 0, nSize);
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to map CII file '" + aPath.toAbsolutePath () + "': " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+
+    if (LOGGER.isDebugEnabled ())
+      LOGGER.debug ("Reading memory mapped CII file '" + aPath.toAbsolutePath () + "' with " + aBuffer.capacity () + " bytes");
+
+    return read (new ByteBufferInputStream (aBuffer), aPath.toUri ().toString (), aErrorList);
+  }
+
+  /**
+   * Read a CII invoice from the provided file.
+   *
+   * @param aFile
+   *        The file to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all read and validation errors.
+   *        May not be <code>null</code>.
+   * @return The read invoice or <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType read (@Nonnull final File aFile, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aFile, "File");
+    return read (aFile.toPath (), aErrorList);
+  }
+
+  /**
+   * @return The number of reads that could reuse a pooled unmarshaller.
+   */
+  @Nonnegative
+  public long getHitCount ()
+  {
+    return m_aHits.get ();
+  }
+
+  /**
+   * @return The number of reads that needed to create a new unmarshaller.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aMisses.get ();
+  }
+
+  /**
+   * @return The number of currently idle unmarshallers in the pool.
+   */
+  @Nonnegative
+  public int getIdleCount ()
+  {
+    return m_aIdleCount.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("ValidateSchema", m_bValidateSchema)
+                                       .append ("MaxIdle", m_nMaxIdle)
+                                       .append ("MemoryMapThreshold", m_nMemoryMapThreshold)
+                                       .append ("FailFast", m_bFailFast)
+                                       .append ("Hits", m_aHits.get ())
+                                       .append ("Misses", m_aMisses.get ())
+                                       .getToString ();
+  }
+}
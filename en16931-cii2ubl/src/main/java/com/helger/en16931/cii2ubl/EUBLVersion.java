@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.id.IHasID;
+import com.helger.commons.lang.EnumHelper;
+
+/**
+ * The supported target UBL versions.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+public enum EUBLVersion implements IHasID <String>
+{
+  /** UBL 2.1 */
+  UBL_21 ("2.1", CIIToUBL21Converter::new),
+  /** UBL 2.2 */
+  UBL_22 ("2.2", CIIToUBL22Converter::new),
+  /** UBL 2.3 */
+  UBL_23 ("2.3", CIIToUBL23Converter::new);
+
+  private final String m_sID;
+  private final Supplier <? extends AbstractCIIToUBLConverter <?>> m_aConverterFactory;
+
+  EUBLVersion (@Nonnull @Nonempty final String sID, @Nonnull final Supplier <? extends AbstractCIIToUBLConverter <?>> aConverterFactory)
+  {
+    m_sID = sID;
+    m_aConverterFactory = aConverterFactory;
+  }
+
+  /**
+   * @return The version number like "2.1". Never <code>null</code>.
+   */
+  @Nonnull
+  @Nonempty
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  /**
+   * @return A new converter for this UBL version with the default settings.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  public AbstractCIIToUBLConverter <?> createConverter ()
+  {
+    return m_aConverterFactory.get ();
+  }
+
+  @Nullable
+  public static EUBLVersion getFromIDOrNull (@Nullable final String sID)
+  {
+    return EnumHelper.getFromIDOrNull (EUBLVersion.class, sID);
+  }
+}
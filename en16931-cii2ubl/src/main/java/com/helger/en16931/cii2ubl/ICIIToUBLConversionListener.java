@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Callback interface that is invoked after each document conversion, e.g. to
+ * collect timing metrics. Implementations must be thread-safe if the converter
+ * is used by multiple threads, must be fast and must not throw exceptions.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ * @see AbstractCIIToUBLConverter#setConversionListener(ICIIToUBLConversionListener)
+ * @see CIIToUBLConversionStatistics
+ */
+@FunctionalInterface
+public interface ICIIToUBLConversionListener
+{
+  /**
+   * Invoked after a document was converted, no matter whether it was
+   * successful or not.
+   *
+   * @param aEvent
+   *        The metrics of the conversion. Never <code>null</code>.
+   */
+  void onConversion (@Nonnull CIIToUBLConversionEvent aEvent);
+}
@@ -0,0 +1,811 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.error.list.IErrorList;
+import com.helger.commons.string.StringHelper;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.*;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.*;
+import oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.AmountType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.BinaryObjectType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.CodeType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
+
+/**
+ * Creates the UBL document from the UBL version independent
+ * {@link CIIDocumentModel}. This is the only place where the UBL elements are
+ * created. UBL 2.3 is used as the common domain model, because it is a
+ * superset of UBL 2.1 and 2.2 for all mapped elements. Credit Notes are
+ * created as Invoices, because they only differ in a few element names. The
+ * converters use {@link UBLVersionMapper} to map the result to the UBL
+ * version and document type they create.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+final class UBL23Emitter
+{
+  private UBL23Emitter ()
+  {}
+
+  @Nullable
+  private static oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.IDType _copyID (@Nullable final IDType aCIIID)
+  {
+    return AbstractCIIToUBLConverter._copyID (aCIIID, new oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.IDType ());
+  }
+
+  @Nonnull
+  private static oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.NoteType _createNote (@Nonnull final String sNote)
+  {
+    final oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.NoteType ret = new oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.NoteType ();
+    ret.setValue (sNote);
+    return ret;
+  }
+
+  @Nullable
+  private static oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.NoteType _copyNote (@Nullable final TextType aText)
+  {
+    return AbstractCIIToUBLConverter._copyName (aText, new oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.NoteType ());
+  }
+
+  @Nullable
+  private static oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.AmountType _copyAmount (@Nullable final AmountType aAmount,
+                                                                                                           @Nullable final String sDefaultCurrencyCode)
+  {
+    return AbstractCIIToUBLConverter._copyAmount (aAmount,
+                                                  new oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.AmountType (),
+                                                  sDefaultCurrencyCode);
+  }
+
+  @Nonnull
+  private static DocumentReferenceType _convertDocumentReference (@Nonnull final CIIDocumentReferenceModel aDocRef,
+                                                                  @Nonnull final CIIToUBLSettings aSettings,
+                                                                  @Nonnull final IErrorList aErrorList)
+  {
+    final DocumentReferenceType ret = new DocumentReferenceType ();
+    // ID value is a mandatory field
+    ret.setID (aDocRef.getID ()).setSchemeID (aDocRef.getSchemeID ());
+
+    // IssueDate is optional
+    if (aDocRef.getIssueDate () != null)
+      ret.setIssueDate (aDocRef.getIssueDate ());
+
+    // Name is optional
+    for (final TextType aItem : aDocRef.getAllDescriptions ())
+    {
+      final DocumentDescriptionType aUBLDocDesc = new DocumentDescriptionType ();
+      aUBLDocDesc.setValue (aItem.getValue ());
+      aUBLDocDesc.setLanguageID (aItem.getLanguageID ());
+      aUBLDocDesc.setLanguageLocaleID (aItem.getLanguageLocaleID ());
+      ret.addDocumentDescription (aUBLDocDesc);
+    }
+
+    // Attachment (0..1 for CII)
+    final BinaryObjectType aBinObj = aDocRef.getAttachment ();
+    if (aBinObj != null)
+    {
+      final AttachmentType aUBLAttachment = new AttachmentType ();
+      final CIIToUBLAttachmentStore.StoredAttachment aStored = aDocRef.externalizeAttachment (aSettings, aErrorList);
+      if (aStored != null)
+      {
+        // Reference the attachment in the store instead of embedding it
+        final ExternalReferenceType aUBLExtRef = new ExternalReferenceType ();
+        aUBLExtRef.setURI (aStored.getURI ());
+        aUBLExtRef.setDocumentHash (aStored.getHash ());
+        AbstractCIIToUBLConverter.ifNotEmpty (aUBLExtRef::setMimeCode, aBinObj.getMimeCode ());
+        AbstractCIIToUBLConverter.ifNotEmpty (aUBLExtRef::setFileName, aBinObj.getFilename ());
+        aUBLAttachment.setExternalReference (aUBLExtRef);
+      }
+      else
+      {
+        final EmbeddedDocumentBinaryObjectType aEmbeddedDoc = new EmbeddedDocumentBinaryObjectType ();
+        aEmbeddedDoc.setMimeCode (aBinObj.getMimeCode ());
+        aEmbeddedDoc.setFilename (aBinObj.getFilename ());
+        aEmbeddedDoc.setValue (aDocRef.getEmbeddedAttachmentValue (aSettings));
+        aUBLAttachment.setEmbeddedDocumentBinaryObject (aEmbeddedDoc);
+
+        if (StringHelper.hasText (aDocRef.getURI ()))
+        {
+          final ExternalReferenceType aUBLExtRef = new ExternalReferenceType ();
+          aUBLExtRef.setURI (aDocRef.getURI ());
+          aUBLAttachment.setExternalReference (aUBLExtRef);
+        }
+      }
+      ret.setAttachment (aUBLAttachment);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static AddressType _convertPostalAddress (@Nonnull final CIIPartyModel.Address aAddress)
+  {
+    final AddressType ret = new AddressType ();
+    AbstractCIIToUBLConverter.ifNotEmpty (ret::setStreetName, aAddress.getStreetName ());
+    AbstractCIIToUBLConverter.ifNotEmpty (ret::setAdditionalStreetName, aAddress.getAdditionalStreetName ());
+    if (aAddress.getAddressLine () != null)
+    {
+      final AddressLineType aUBLAddressLine = new AddressLineType ();
+      aUBLAddressLine.setLine (aAddress.getAddressLine ());
+      ret.addAddressLine (aUBLAddressLine);
+    }
+    AbstractCIIToUBLConverter.ifNotEmpty (ret::setCityName, aAddress.getCityName ());
+    AbstractCIIToUBLConverter.ifNotEmpty (ret::setPostalZone, aAddress.getPostalZone ());
+    AbstractCIIToUBLConverter.ifNotEmpty (ret::setCountrySubentity, aAddress.getCountrySubentity ());
+    if (aAddress.getCountryCode () != null)
+    {
+      final CountryType aUBLCountry = new CountryType ();
+      aUBLCountry.setIdentificationCode (aAddress.getCountryCode ());
+      ret.setCountry (aUBLCountry);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static PartyType _convertParty (@Nonnull final CIIPartyModel aParty,
+                                          @Nonnull final CIIToUBLSettings aSettings,
+                                          final boolean bLegalEntity)
+  {
+    final PartyType ret = new PartyType ();
+    ret.setEndpointID (AbstractCIIToUBLConverter._copyID (aParty.getEndpointID (), new EndpointIDType ()));
+
+    for (final IDType aID : aParty.getAllIDs ())
+    {
+      final PartyIdentificationType aUBLPartyIdentification = new PartyIdentificationType ();
+      aUBLPartyIdentification.setID (_copyID (aID));
+      ret.addPartyIdentification (aUBLPartyIdentification);
+    }
+
+    if (aParty.getName () != null)
+    {
+      final PartyNameType aUBLPartyName = new PartyNameType ();
+      aUBLPartyName.setName (AbstractCIIToUBLConverter._copyName (aParty.getName (), new NameType ()));
+      ret.addPartyName (aUBLPartyName);
+    }
+
+    if (aParty.getPostalAddress () != null)
+      ret.setPostalAddress (_convertPostalAddress (aParty.getPostalAddress ()));
+
+    for (final CIIPartyModel.TaxRegistration aTaxRegistration : aParty.getAllTaxRegistrations ())
+    {
+      final PartyTaxSchemeType aUBLPartyTaxScheme = new PartyTaxSchemeType ();
+      aUBLPartyTaxScheme.setCompanyID (aTaxRegistration.getCompanyID ());
+      final TaxSchemeType aUBLTaxScheme = new TaxSchemeType ();
+      aUBLTaxScheme.setID (aTaxRegistration.getSchemeID (aSettings.getVATScheme ()));
+      aUBLPartyTaxScheme.setTaxScheme (aUBLTaxScheme);
+      ret.addPartyTaxScheme (aUBLPartyTaxScheme);
+    }
+
+    if (bLegalEntity)
+    {
+      final PartyLegalEntityType aUBLPartyLegalEntity = new PartyLegalEntityType ();
+      // Mandatory field according to Schematron
+      aUBLPartyLegalEntity.setRegistrationName (aParty.getRegistrationName ());
+      aUBLPartyLegalEntity.setCompanyID (AbstractCIIToUBLConverter._copyID (aParty.getCompanyID (), new CompanyIDType ()));
+      // UBL 2.3 supports multiple of them
+      for (final String sLegalForm : aParty.getAllCompanyLegalForms ())
+        aUBLPartyLegalEntity.addCompanyLegalForm (new CompanyLegalFormType (sLegalForm));
+      ret.addPartyLegalEntity (aUBLPartyLegalEntity);
+    }
+
+    if (aParty.hasContact ())
+    {
+      final ContactType aUBLContact = new ContactType ();
+      aUBLContact.setName (AbstractCIIToUBLConverter._copyName (aParty.getContactName (), new NameType ()));
+      AbstractCIIToUBLConverter.ifNotEmpty (aUBLContact::setTelephone, aParty.getContactTelephone ());
+      AbstractCIIToUBLConverter.ifNotEmpty (aUBLContact::setElectronicMail, aParty.getContactEmail ());
+      ret.setContact (aUBLContact);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static TaxCategoryType _convertTaxCategory (@Nonnull final CIITaxCategoryModel aTaxCategory,
+                                                      @Nonnull final CIIToUBLSettings aSettings)
+  {
+    final TaxCategoryType ret = new TaxCategoryType ();
+    ret.setID (aTaxCategory.getID ());
+    if (aTaxCategory.getPercent () != null)
+      ret.setPercent (aTaxCategory.getPercent ());
+    final TaxSchemeType aUBLTaxScheme = new TaxSchemeType ();
+    aUBLTaxScheme.setID (aSettings.getVATScheme ());
+    ret.setTaxScheme (aUBLTaxScheme);
+    return ret;
+  }
+
+  @Nonnull
+  private static AllowanceChargeType _convertAllowanceCharge (@Nonnull final CIIAllowanceChargeModel aAllowanceCharge,
+                                                              @Nullable final String sDefaultCurrencyCode,
+                                                              @Nonnull final CIIToUBLSettings aSettings)
+  {
+    final AllowanceChargeType ret = new AllowanceChargeType ();
+    ret.setChargeIndicator (aAllowanceCharge.isCharge ());
+    AbstractCIIToUBLConverter.ifNotEmpty (ret::setAllowanceChargeReasonCode, aAllowanceCharge.getReasonCode ());
+    if (aAllowanceCharge.getReason () != null)
+    {
+      final AllowanceChargeReasonType aUBLReason = new AllowanceChargeReasonType ();
+      aUBLReason.setValue (aAllowanceCharge.getReason ().getValue ());
+      ret.addAllowanceChargeReason (aUBLReason);
+    }
+    if (aAllowanceCharge.getMultiplierFactor () != null)
+      ret.setMultiplierFactorNumeric (aAllowanceCharge.getMultiplierFactor ());
+    ret.setAmount (_copyAmount (aAllowanceCharge.getAmount (), sDefaultCurrencyCode));
+    ret.setBaseAmount (AbstractCIIToUBLConverter._copyAmount (aAllowanceCharge.getBaseAmount (), new BaseAmountType (), sDefaultCurrencyCode));
+    for (final CIITaxCategoryModel aTaxCategory : aAllowanceCharge.getAllTaxCategories ())
+      ret.addTaxCategory (_convertTaxCategory (aTaxCategory, aSettings));
+    return ret;
+  }
+
+  @Nonnull
+  private static PaymentMeansType _convertPaymentMeans (@Nonnull final CIIPaymentMeansModel aPaymentMeans,
+                                                        @Nonnull final CIIToUBLSettings aSettings,
+                                                        @Nonnull final IErrorList aErrorList)
+  {
+    final PaymentMeansType ret = new PaymentMeansType ();
+
+    // BG-16 PAYMENT INSTRUCTIONS
+    final PaymentMeansCodeType aUBLPaymentMeansCode = new PaymentMeansCodeType ();
+    // BT-81
+    aUBLPaymentMeansCode.setValue (aPaymentMeans.getTypeCode ());
+    // BT-82
+    AbstractCIIToUBLConverter.ifNotEmpty (aUBLPaymentMeansCode::setName, aPaymentMeans.getTypeName ());
+    ret.setPaymentMeansCode (aUBLPaymentMeansCode);
+
+    // BT-83
+    for (final String sPaymentID : aPaymentMeans.getAllPaymentIDs ())
+    {
+      final PaymentIDType aUBLPaymentID = new PaymentIDType ();
+      aUBLPaymentID.setValue (sPaymentID);
+      ret.addPaymentID (aUBLPaymentID);
+    }
+
+    // BG-17 CREDIT TRANSFER
+    if (aPaymentMeans.hasPayeeAccount ())
+    {
+      final FinancialAccountType aUBLFinancialAccount = new FinancialAccountType ();
+      // BT-84 mandatory
+      aUBLFinancialAccount.setID (_copyID (aPaymentMeans.getPayeeAccountID ()));
+      // BT-85
+      aUBLFinancialAccount.setName (AbstractCIIToUBLConverter._copyName (aPaymentMeans.getPayeeAccountName (), new NameType ()));
+      // BT-86
+      if (aPaymentMeans.getPayeeBIC () != null)
+      {
+        final BranchType aUBLBranch = new BranchType ();
+        aUBLBranch.setID (_copyID (aPaymentMeans.getPayeeBIC ()));
+        aUBLFinancialAccount.setFinancialInstitutionBranch (aUBLBranch);
+      }
+      ret.setPayeeFinancialAccount (aUBLFinancialAccount);
+    }
+
+    // BG-18 PAYMENT CARD INFORMATION
+    if (aPaymentMeans.hasCardAccount ())
+    {
+      // No CII field present
+      final String sNetworkID = aSettings.getCardAccountNetworkID ();
+      if (StringHelper.hasNoText (sNetworkID))
+        aErrorList.add (AbstractCIIToUBLConverter._buildError (null, "The Payment card network ID is missing"));
+      else
+      {
+        final CardAccountType aUBLCardAccount = new CardAccountType ();
+        // BT-87 mandatory
+        aUBLCardAccount.setPrimaryAccountNumberID (AbstractCIIToUBLConverter._copyID (aPaymentMeans.getCardPrimaryAccountNumber (),
+                                                                                      new PrimaryAccountNumberIDType ()));
+        aUBLCardAccount.setNetworkID (sNetworkID);
+        // BT-88
+        AbstractCIIToUBLConverter.ifNotEmpty (aUBLCardAccount::setHolderName, aPaymentMeans.getCardHolderName ());
+        // UBL 2.3 supports multiple
+        ret.addCardAccount (aUBLCardAccount);
+      }
+    }
+
+    // BG-19 DIRECT DEBIT
+    if (aPaymentMeans.isDirectDebit ())
+    {
+      final PaymentMandateType aUBLPaymentMandate = new PaymentMandateType ();
+      // BT-89
+      aUBLPaymentMandate.setID (_copyID (aPaymentMeans.getMandateID ()));
+
+      // BT-90 is part of the seller
+
+      // BT-91
+      if (aPaymentMeans.getPayerAccountID () != null)
+      {
+        final FinancialAccountType aUBLFinancialAccount = new FinancialAccountType ();
+        aUBLFinancialAccount.setID (_copyID (aPaymentMeans.getPayerAccountID ()));
+        aUBLPaymentMandate.setPayerFinancialAccount (aUBLFinancialAccount);
+      }
+      ret.setPaymentMandate (aUBLPaymentMandate);
+    }
+    return ret;
+  }
+
+  @Nullable
+  private static OrderReferenceType _convertOrderReference (@Nonnull final CIIHeaderModel aModel)
+  {
+    if (!aModel.hasOrderReference ())
+      return null;
+
+    final OrderReferenceType ret = new OrderReferenceType ();
+    ret.setID (aModel.getOrderID ());
+    if (aModel.getSalesOrderID () != null)
+      ret.setSalesOrderID (aModel.getSalesOrderID ());
+    return ret;
+  }
+
+  @Nullable
+  private static PeriodType _convertInvoicePeriod (@Nonnull final CIIHeaderModel aModel)
+  {
+    if (!aModel.hasInvoicePeriod ())
+      return null;
+
+    final PeriodType ret = new PeriodType ();
+    ret.setStartDate (aModel.getInvoicePeriodStartDate ());
+    ret.setEndDate (aModel.getInvoicePeriodEndDate ());
+    return ret;
+  }
+
+  @Nullable
+  private static ProjectReferenceType _convertProjectReference (@Nonnull final CIIHeaderModel aModel)
+  {
+    if (aModel.getProjectReference () == null)
+      return null;
+
+    final ProjectReferenceType ret = new ProjectReferenceType ();
+    ret.setID (aModel.getProjectReference ());
+    return ret;
+  }
+
+  /**
+   * @param bInvoice
+   *        <code>true</code> for an invoice, where the delivery is only
+   *        created if there is something to deliver. For a credit note the
+   *        delivery is only created if there is a ship to party.
+   */
+  @Nullable
+  private static DeliveryType _convertDelivery (@Nonnull final CIIHeaderModel aModel, final boolean bInvoice)
+  {
+    final CIIPartyModel aShipTo = aModel.getShipTo ();
+    if (!bInvoice && aShipTo == null)
+      return null;
+
+    final DeliveryType ret = new DeliveryType ();
+    boolean bUseDelivery = !bInvoice;
+
+    if (aModel.hasActualDeliveryEvent ())
+    {
+      ret.setActualDeliveryDate (aModel.getActualDeliveryDate ());
+      bUseDelivery = true;
+    }
+
+    if (aShipTo != null)
+    {
+      if (aShipTo.getFirstID () != null || aShipTo.getPostalAddress () != null)
+      {
+        final oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.LocationType aUBLDeliveryLocation = new oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.LocationType ();
+        aUBLDeliveryLocation.setID (_copyID (aShipTo.getFirstID ()));
+        if (aShipTo.getPostalAddress () != null)
+          aUBLDeliveryLocation.setAddress (_convertPostalAddress (aShipTo.getPostalAddress ()));
+        ret.setDeliveryLocation (aUBLDeliveryLocation);
+        bUseDelivery = true;
+      }
+
+      // Also for an empty name
+      if (aShipTo.hasNameElement ())
+      {
+        final PartyType aUBLDeliveryParty = new PartyType ();
+        final PartyNameType aUBLPartyName = new PartyNameType ();
+        aUBLPartyName.setName (AbstractCIIToUBLConverter._copyName (aShipTo.getName (), new NameType ()));
+        aUBLDeliveryParty.addPartyName (aUBLPartyName);
+        ret.setDeliveryParty (aUBLDeliveryParty);
+        bUseDelivery = true;
+      }
+    }
+    return bUseDelivery ? ret : null;
+  }
+
+  @Nonnull
+  private static PaymentTermsType _convertPaymentTerms (@Nonnull final List <TextType> aDescriptions)
+  {
+    final PaymentTermsType ret = new PaymentTermsType ();
+    for (final TextType aDesc : aDescriptions)
+      ret.addNote (_copyNote (aDesc));
+    return ret;
+  }
+
+  private static void _convertTaxTotals (@Nonnull final CIIHeaderModel aModel,
+                                         @Nullable final String sDefaultCurrencyCode,
+                                         @Nonnull final CIIToUBLSettings aSettings,
+                                         @Nonnull final Consumer <TaxTotalType> aTaxTotalHandler)
+  {
+    TaxTotalType aUBLTaxTotal = null;
+    if (aModel.getAllTaxTotalAmounts ().isEmpty ())
+    {
+      // Mandatory in UBL
+      final TaxAmountType aUBLTaxAmount = new TaxAmountType ();
+      aUBLTaxAmount.setValue (BigDecimal.ZERO);
+      aUBLTaxAmount.setCurrencyID (sDefaultCurrencyCode);
+
+      aUBLTaxTotal = new TaxTotalType ();
+      aUBLTaxTotal.setTaxAmount (aUBLTaxAmount);
+      aTaxTotalHandler.accept (aUBLTaxTotal);
+    }
+    else
+    {
+      // For all currencies
+      for (final AmountType aTaxTotalAmount : aModel.getAllTaxTotalAmounts ())
+      {
+        final TaxTotalType aUBLCurTaxTotal = new TaxTotalType ();
+        aUBLCurTaxTotal.setTaxAmount (AbstractCIIToUBLConverter._copyAmount (aTaxTotalAmount, new TaxAmountType (), sDefaultCurrencyCode));
+        aTaxTotalHandler.accept (aUBLCurTaxTotal);
+
+        if (aUBLTaxTotal == null)
+        {
+          // Use the first one
+          aUBLTaxTotal = aUBLCurTaxTotal;
+        }
+      }
+    }
+
+    for (final CIITaxSubtotalModel aTaxSubtotal : aModel.getAllTaxSubtotals ())
+    {
+      final TaxSubtotalType aUBLTaxSubtotal = new TaxSubtotalType ();
+      aUBLTaxSubtotal.setTaxableAmount (AbstractCIIToUBLConverter._copyAmount (aTaxSubtotal.getTaxableAmount (),
+                                                                               new TaxableAmountType (),
+                                                                               sDefaultCurrencyCode));
+      aUBLTaxSubtotal.setTaxAmount (AbstractCIIToUBLConverter._copyAmount (aTaxSubtotal.getTaxAmount (), new TaxAmountType (), sDefaultCurrencyCode));
+
+      final TaxCategoryType aUBLTaxCategory = _convertTaxCategory (aTaxSubtotal.getTaxCategory (), aSettings);
+      AbstractCIIToUBLConverter.ifNotEmpty (aUBLTaxCategory::setTaxExemptionReasonCode, aTaxSubtotal.getExemptionReasonCode ());
+      final TextType aExemptionReason = aTaxSubtotal.getExemptionReason ();
+      if (aExemptionReason != null)
+      {
+        final TaxExemptionReasonType aUBLTaxExemptionReason = new TaxExemptionReasonType ();
+        aUBLTaxExemptionReason.setValue (aExemptionReason.getValue ());
+        aUBLTaxExemptionReason.setLanguageID (aExemptionReason.getLanguageID ());
+        aUBLTaxExemptionReason.setLanguageLocaleID (aExemptionReason.getLanguageLocaleID ());
+        aUBLTaxCategory.addTaxExemptionReason (aUBLTaxExemptionReason);
+      }
+      aUBLTaxSubtotal.setTaxCategory (aUBLTaxCategory);
+
+      aUBLTaxTotal.addTaxSubtotal (aUBLTaxSubtotal);
+    }
+  }
+
+  @Nonnull
+  private static MonetaryTotalType _convertMonetaryTotal (@Nonnull final CIIHeaderModel aModel, @Nullable final String sDefaultCurrencyCode)
+  {
+    final MonetaryTotalType ret = new MonetaryTotalType ();
+    ret.setLineExtensionAmount (AbstractCIIToUBLConverter._copyAmount (aModel.getLineTotalAmount (),
+                                                                       new LineExtensionAmountType (),
+                                                                       sDefaultCurrencyCode));
+    ret.setTaxExclusiveAmount (AbstractCIIToUBLConverter._copyAmount (aModel.getTaxBasisTotalAmount (),
+                                                                      new TaxExclusiveAmountType (),
+                                                                      sDefaultCurrencyCode));
+    ret.setTaxInclusiveAmount (AbstractCIIToUBLConverter._copyAmount (aModel.getGrandTotalAmount (),
+                                                                      new TaxInclusiveAmountType (),
+                                                                      sDefaultCurrencyCode));
+    ret.setAllowanceTotalAmount (AbstractCIIToUBLConverter._copyAmount (aModel.getAllowanceTotalAmount (),
+                                                                        new AllowanceTotalAmountType (),
+                                                                        sDefaultCurrencyCode));
+    ret.setChargeTotalAmount (AbstractCIIToUBLConverter._copyAmount (aModel.getChargeTotalAmount (),
+                                                                     new ChargeTotalAmountType (),
+                                                                     sDefaultCurrencyCode));
+    ret.setPrepaidAmount (AbstractCIIToUBLConverter._copyAmount (aModel.getPrepaidAmount (), new PrepaidAmountType (), sDefaultCurrencyCode));
+    ret.setPayableRoundingAmount (AbstractCIIToUBLConverter._copyAmount (aModel.getRoundingAmount (),
+                                                                         new PayableRoundingAmountType (),
+                                                                         sDefaultCurrencyCode));
+    ret.setPayableAmount (AbstractCIIToUBLConverter._copyAmount (aModel.getDuePayableAmount (), new PayableAmountType (), sDefaultCurrencyCode));
+    return ret;
+  }
+
+  @Nullable
+  private static PeriodType _convertLinePeriod (@Nonnull final CIILineModel aLine)
+  {
+    if (!aLine.hasInvoicePeriod ())
+      return null;
+
+    final PeriodType ret = new PeriodType ();
+    if (aLine.getInvoicePeriodStartDate () != null)
+      ret.setStartDate (aLine.getInvoicePeriodStartDate ());
+    if (aLine.getInvoicePeriodEndDate () != null)
+      ret.setEndDate (aLine.getInvoicePeriodEndDate ());
+    return ret;
+  }
+
+  @Nullable
+  private static OrderLineReferenceType _convertOrderLineReference (@Nonnull final CIILineModel aLine)
+  {
+    if (aLine.getOrderLineID () == null)
+      return null;
+
+    final OrderLineReferenceType ret = new OrderLineReferenceType ();
+    ret.setLineID (AbstractCIIToUBLConverter._copyID (aLine.getOrderLineID (), new LineIDType ()));
+    return ret;
+  }
+
+  @Nullable
+  private static ItemIdentificationType _convertItemIdentification (@Nullable final IDType aID)
+  {
+    if (aID == null)
+      return null;
+
+    final ItemIdentificationType ret = new ItemIdentificationType ();
+    ret.setID (_copyID (aID));
+    return ret;
+  }
+
+  @Nonnull
+  private static ItemType _convertItem (@Nonnull final CIILineModel aLine, @Nonnull final CIIToUBLSettings aSettings)
+  {
+    final ItemType ret = new ItemType ();
+    AbstractCIIToUBLConverter.ifNotNull (ret::addDescription,
+                                         AbstractCIIToUBLConverter._copyName (aLine.getItemDescription (), new DescriptionType ()));
+    ret.setName (AbstractCIIToUBLConverter._copyName (aLine.getItemName (), new NameType ()));
+    ret.setBuyersItemIdentification (_convertItemIdentification (aLine.getBuyersItemID ()));
+    ret.setSellersItemIdentification (_convertItemIdentification (aLine.getSellersItemID ()));
+    ret.setStandardItemIdentification (_convertItemIdentification (aLine.getStandardItemID ()));
+
+    if (aLine.hasOriginCountry ())
+    {
+      final CountryType aUBLCountry = new CountryType ();
+      aUBLCountry.setIdentificationCode (aLine.getOriginCountryCode ());
+      aUBLCountry.setName (AbstractCIIToUBLConverter._copyName (aLine.getOriginCountryName (), new NameType ()));
+      ret.setOriginCountry (aUBLCountry);
+    }
+
+    // Commodity Classification
+    for (final CodeType aClassCode : aLine.getAllItemClassificationCodes ())
+    {
+      final CommodityClassificationType aUBLCommodityClassification = new CommodityClassificationType ();
+      aUBLCommodityClassification.setItemClassificationCode (AbstractCIIToUBLConverter._copyCode (aClassCode, new ItemClassificationCodeType ()));
+      ret.addCommodityClassification (aUBLCommodityClassification);
+    }
+
+    for (final CIITaxCategoryModel aTaxCategory : aLine.getAllTaxCategories ())
+      ret.addClassifiedTaxCategory (_convertTaxCategory (aTaxCategory, aSettings));
+
+    for (final CIILineModel.ItemProperty aItemProperty : aLine.getAllItemProperties ())
+    {
+      final ItemPropertyType aUBLAdditionalItem = new ItemPropertyType ();
+      aUBLAdditionalItem.setName (AbstractCIIToUBLConverter._copyName (aItemProperty.getName (), new NameType ()));
+      AbstractCIIToUBLConverter.ifNotEmpty (aUBLAdditionalItem::setValue, aItemProperty.getValue ());
+      ret.addAdditionalItemProperty (aUBLAdditionalItem);
+    }
+    return ret;
+  }
+
+  @Nullable
+  private static PriceType _convertPrice (@Nonnull final CIILineModel aLine,
+                                          @Nullable final String sDefaultCurrencyCode,
+                                          @Nonnull final CIIToUBLSettings aSettings)
+  {
+    if (!aLine.hasPrice ())
+      return null;
+
+    final PriceType ret = new PriceType ();
+    ret.setPriceAmount (AbstractCIIToUBLConverter._copyAmount (aLine.getPriceAmount (), new PriceAmountType (), sDefaultCurrencyCode));
+    ret.setBaseQuantity (AbstractCIIToUBLConverter._copyQuantity (aLine.getBaseQuantity (), new BaseQuantityType ()));
+    for (final CIIAllowanceChargeModel aPriceAllowanceCharge : aLine.getAllPriceAllowanceCharges ())
+      ret.addAllowanceCharge (_convertAllowanceCharge (aPriceAllowanceCharge, sDefaultCurrencyCode, aSettings));
+    return ret;
+  }
+
+  /**
+   * Create a UBL Invoice from the provided document model. For a Credit Note
+   * the Invoice elements with the same semantics are filled.
+   *
+   * @param aModel
+   *        The document model. May not be <code>null</code>.
+   * @param bInvoice
+   *        <code>true</code> if an Invoice should be created,
+   *        <code>false</code> if a Credit Note should be created. This only
+   *        changes the creation of the Delivery.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The created Invoice and never <code>null</code>.
+   */
+  @Nonnull
+  static InvoiceType createInvoice (@Nonnull final CIIDocumentModel aModel,
+                                    final boolean bInvoice,
+                                    @Nonnull final CIIToUBLSettings aSettings,
+                                    @Nonnull final ErrorList aErrorList)
+  {
+    final CIIHeaderModel aHeader = aModel.getHeader ();
+    final String sDefaultCurrencyCode = aHeader.getDocumentCurrencyCode ();
+
+    final InvoiceType ret = new InvoiceType ();
+    if (StringHelper.hasText (aSettings.getCustomizationID ()))
+      ret.setCustomizationID (aSettings.getCustomizationID ());
+    if (StringHelper.hasText (aSettings.getProfileID ()))
+      ret.setProfileID (aSettings.getProfileID ());
+    if (aHeader.getID () != null)
+      ret.setID (aHeader.getID ());
+
+    // IssueDate
+    if (aHeader.getIssueDate () != null)
+      ret.setIssueDate (aHeader.getIssueDate ());
+
+    // DueDate
+    if (aHeader.getDueDate () != null)
+      ret.setDueDate (aHeader.getDueDate ());
+
+    // InvoiceTypeCode or CreditNoteTypeCode
+    if (aHeader.getTypeCode () != null)
+      ret.setInvoiceTypeCode (aHeader.getTypeCode ());
+
+    // Note
+    for (final String sNote : aHeader.getAllNotes ())
+      ret.addNote (_createNote (sNote));
+
+    // TaxPointDate
+    if (aHeader.getTaxPointDate () != null)
+      ret.setTaxPointDate (aHeader.getTaxPointDate ());
+
+    // DocumentCurrencyCode
+    ret.setDocumentCurrencyCode (sDefaultCurrencyCode);
+
+    // TaxCurrencyCode
+    if (aHeader.getTaxCurrencyCode () != null)
+      ret.setTaxCurrencyCode (aHeader.getTaxCurrencyCode ());
+
+    // AccountingCost
+    if (aHeader.getAccountingCost () != null)
+      ret.setAccountingCost (aHeader.getAccountingCost ());
+
+    // BuyerReferences
+    if (aHeader.getBuyerReference () != null)
+      ret.setBuyerReference (aHeader.getBuyerReference ());
+
+    // InvoicePeriod
+    AbstractCIIToUBLConverter.ifNotNull (ret::addInvoicePeriod, _convertInvoicePeriod (aHeader));
+
+    // OrderReference
+    ret.setOrderReference (_convertOrderReference (aHeader));
+
+    // BillingReference
+    if (aHeader.getBillingReference () != null)
+    {
+      final BillingReferenceType aUBLBillingRef = new BillingReferenceType ();
+      // Is the CreditNoteDocumentReference of a Credit Note
+      aUBLBillingRef.setInvoiceDocumentReference (_convertDocumentReference (aHeader.getBillingReference (), aSettings, aErrorList));
+      ret.addBillingReference (aUBLBillingRef);
+    }
+
+    // DespatchDocumentReference
+    if (aHeader.getDespatchDocumentReference () != null)
+      ret.addDespatchDocumentReference (_convertDocumentReference (aHeader.getDespatchDocumentReference (), aSettings, aErrorList));
+
+    // ReceiptDocumentReference
+    if (aHeader.getReceiptDocumentReference () != null)
+      ret.addReceiptDocumentReference (_convertDocumentReference (aHeader.getReceiptDocumentReference (), aSettings, aErrorList));
+
+    // OriginatorDocumentReference
+    for (final CIIDocumentReferenceModel aDocRef : aHeader.getAllOriginatorDocumentReferences ())
+      ret.addOriginatorDocumentReference (_convertDocumentReference (aDocRef, aSettings, aErrorList));
+
+    // ContractDocumentReference
+    if (aHeader.getContractDocumentReference () != null)
+      ret.addContractDocumentReference (_convertDocumentReference (aHeader.getContractDocumentReference (), aSettings, aErrorList));
+
+    // AdditionalDocumentReference
+    for (final CIIDocumentReferenceModel aDocRef : aHeader.getAllAdditionalDocumentReferences ())
+      ret.addAdditionalDocumentReference (_convertDocumentReference (aDocRef, aSettings, aErrorList));
+
+    // ProjectReference
+    AbstractCIIToUBLConverter.ifNotNull (ret::addProjectReference, _convertProjectReference (aHeader));
+
+    // Mandatory supplier
+    final SupplierPartyType aUBLSupplier = new SupplierPartyType ();
+    if (aHeader.getSeller () != null)
+      aUBLSupplier.setParty (_convertParty (aHeader.getSeller (), aSettings, true));
+    ret.setAccountingSupplierParty (aUBLSupplier);
+
+    // Mandatory customer
+    final CustomerPartyType aUBLCustomer = new CustomerPartyType ();
+    if (aHeader.getBuyer () != null)
+      aUBLCustomer.setParty (_convertParty (aHeader.getBuyer (), aSettings, true));
+    ret.setAccountingCustomerParty (aUBLCustomer);
+
+    // The legal entity of payee and tax representative creates validation
+    // rules warnings
+    if (aHeader.getPayee () != null)
+      ret.setPayeeParty (_convertParty (aHeader.getPayee (), aSettings, false));
+    if (aHeader.getTaxRepresentative () != null)
+      ret.setTaxRepresentativeParty (_convertParty (aHeader.getTaxRepresentative (), aSettings, false));
+
+    // Delivery
+    AbstractCIIToUBLConverter.ifNotNull (ret::addDelivery, _convertDelivery (aHeader, bInvoice));
+
+    // PaymentMeans
+    for (final CIIPaymentMeansModel aPaymentMeans : aHeader.getAllPaymentMeans ())
+      ret.addPaymentMeans (_convertPaymentMeans (aPaymentMeans, aSettings, aErrorList));
+
+    // PaymentTerms
+    for (final List <TextType> aPaymentTerms : aHeader.getAllPaymentTerms ())
+      ret.addPaymentTerms (_convertPaymentTerms (aPaymentTerms));
+
+    // Allowance Charge
+    for (final CIIAllowanceChargeModel aAllowanceCharge : aHeader.getAllAllowanceCharges ())
+      ret.addAllowanceCharge (_convertAllowanceCharge (aAllowanceCharge, sDefaultCurrencyCode, aSettings));
+
+    // TaxTotal
+    _convertTaxTotals (aHeader, sDefaultCurrencyCode, aSettings, ret::addTaxTotal);
+
+    // LegalMonetaryTotal
+    ret.setLegalMonetaryTotal (_convertMonetaryTotal (aHeader, sDefaultCurrencyCode));
+
+    // All lines
+    for (final CIILineModel aLine : aModel.getAllLines ())
+      ret.addInvoiceLine (createInvoiceLine (aLine, sDefaultCurrencyCode, aSettings, aErrorList));
+
+    return ret;
+  }
+
+  /**
+   * Create a UBL Invoice line from the provided line model. For a Credit Note
+   * line the Invoice line elements with the same semantics are filled.
+   *
+   * @param aLine
+   *        The line model. May not be <code>null</code>.
+   * @param sDefaultCurrencyCode
+   *        The document currency code. May be <code>null</code>.
+   * @param aSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        Error list to be filled. May not be <code>null</code>.
+   * @return The created Invoice line and never <code>null</code>.
+   */
+  @Nonnull
+  static InvoiceLineType createInvoiceLine (@Nonnull final CIILineModel aLine,
+                                            @Nullable final String sDefaultCurrencyCode,
+                                            @Nonnull final CIIToUBLSettings aSettings,
+                                            @Nonnull final ErrorList aErrorList)
+  {
+    final InvoiceLineType ret = new InvoiceLineType ();
+    ret.setID (_copyID (aLine.getID ()));
+    for (final String sNote : aLine.getAllNotes ())
+      ret.addNote (_createNote (sNote));
+    // InvoicedQuantity or CreditedQuantity
+    ret.setInvoicedQuantity (AbstractCIIToUBLConverter._copyQuantity (aLine.getQuantity (), new InvoicedQuantityType ()));
+    ret.setLineExtensionAmount (AbstractCIIToUBLConverter._copyAmount (aLine.getLineExtensionAmount (),
+                                                                       new LineExtensionAmountType (),
+                                                                       sDefaultCurrencyCode));
+    AbstractCIIToUBLConverter.ifNotEmpty (ret::setAccountingCost, aLine.getAccountingCost ());
+    AbstractCIIToUBLConverter.ifNotNull (ret::addInvoicePeriod, _convertLinePeriod (aLine));
+    AbstractCIIToUBLConverter.ifNotNull (ret::addOrderLineReference, _convertOrderLineReference (aLine));
+    for (final CIIDocumentReferenceModel aDocRef : aLine.getAllDocumentReferences ())
+      ret.addDocumentReference (_convertDocumentReference (aDocRef, aSettings, aErrorList));
+    for (final CIIAllowanceChargeModel aAllowanceCharge : aLine.getAllAllowanceCharges ())
+      ret.addAllowanceCharge (_convertAllowanceCharge (aAllowanceCharge, sDefaultCurrencyCode, aSettings));
+    ret.setItem (_convertItem (aLine, aSettings));
+    ret.setPrice (_convertPrice (aLine, sDefaultCurrencyCode, aSettings));
+    return ret;
+  }
+}
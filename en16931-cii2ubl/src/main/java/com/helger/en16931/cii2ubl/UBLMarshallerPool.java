@@ -0,0 +1,579 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Result;
+import javax.xml.transform.stream.StreamResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.CountingOutputStream;
+import com.helger.commons.state.ESuccess;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.jaxb.IJAXBDocumentType;
+import com.helger.jaxb.JAXBContextCache;
+import com.helger.jaxb.JAXBMarshallerHelper;
+import com.helger.jaxb.validation.WrappedCollectingValidationEventHandler;
+import com.helger.ubl21.EUBL21DocumentType;
+import com.helger.ubl21.UBL21NamespaceContext;
+import com.helger.ubl22.EUBL22DocumentType;
+import com.helger.ubl22.UBL22NamespaceContext;
+import com.helger.ubl23.EUBL23DocumentType;
+import com.helger.ubl23.UBL23NamespaceContext;
+import com.helger.xml.namespace.INamespaceContext;
+
+/**
+ * A thread-safe facade to write the UBL 2.1, 2.2 and 2.3 Invoices and Credit
+ * Notes created by the converters. For each document type the JAXB context,
+ * the namespace prefixes and the optional XML Schema are resolved once and the
+ * created marshallers are pooled and reused across calls and threads.<br>
+ * Use {@link #getShared()} to access the default instance that validates
+ * against the XML Schema and creates formatted output, just like the UBL
+ * writers from ph-ubl do.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@ThreadSafe
+public final class UBLMarshallerPool
+{
+  /** The default maximum number of idle marshallers kept per document type */
+  public static final int DEFAULT_MAX_IDLE = 64;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (UBLMarshallerPool.class);
+
+  private static final class DocTypeInfo
+  {
+    private final IJAXBDocumentType m_aDocType;
+    private final INamespaceContext m_aNSContext;
+    private final Function <Object, String> m_aIDExtractor;
+
+    DocTypeInfo (@Nonnull final IJAXBDocumentType aDocType,
+                 @Nonnull final INamespaceContext aNSContext,
+                 @Nonnull final Function <Object, String> aIDExtractor)
+    {
+      m_aDocType = aDocType;
+      m_aNSContext = aNSContext;
+      m_aIDExtractor = aIDExtractor;
+    }
+  }
+
+  private static final ICommonsMap <Class <?>, DocTypeInfo> DOC_TYPES = new CommonsHashMap <> ();
+
+  private static void _register (@Nonnull final IJAXBDocumentType aDocType,
+                                 @Nonnull final INamespaceContext aNSContext,
+                                 @Nonnull final Function <Object, String> aIDExtractor)
+  {
+    DOC_TYPES.put (aDocType.getImplementationClass (), new DocTypeInfo (aDocType, aNSContext, aIDExtractor));
+  }
+
+  static
+  {
+    // The ID is only needed for monitoring
+    _register (EUBL21DocumentType.INVOICE,
+               UBL21NamespaceContext.getInstance (),
+               x -> ((oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType) x).getIDValue ());
+    _register (EUBL21DocumentType.CREDIT_NOTE,
+               UBL21NamespaceContext.getInstance (),
+               x -> ((oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType) x).getIDValue ());
+    _register (EUBL22DocumentType.INVOICE,
+               UBL22NamespaceContext.getInstance (),
+               x -> ((oasis.names.specification.ubl.schema.xsd.invoice_22.InvoiceType) x).getIDValue ());
+    _register (EUBL22DocumentType.CREDIT_NOTE,
+               UBL22NamespaceContext.getInstance (),
+               x -> ((oasis.names.specification.ubl.schema.xsd.creditnote_22.CreditNoteType) x).getIDValue ());
+    _register (EUBL23DocumentType.INVOICE,
+               UBL23NamespaceContext.getInstance (),
+               x -> ((oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType) x).getIDValue ());
+    _register (EUBL23DocumentType.CREDIT_NOTE,
+               UBL23NamespaceContext.getInstance (),
+               x -> ((oasis.names.specification.ubl.schema.xsd.creditnote_23.CreditNoteType) x).getIDValue ());
+  }
+
+  // Created lazily to avoid the initialization cost if it is not used
+  private static final class SingletonHolder
+  {
+    static final UBLMarshallerPool INSTANCE = new UBLMarshallerPool (true, true, DEFAULT_MAX_IDLE);
+  }
+
+  /**
+   * The pooled marshallers of a single document type.
+   */
+  private final class TypePool
+  {
+    private final DocTypeInfo m_aInfo;
+    private final JAXBContext m_aJAXBContext;
+    private final QName m_aRootElementName;
+    private final Queue <Marshaller> m_aIdle = new ConcurrentLinkedQueue <> ();
+    private final AtomicInteger m_aIdleCount = new AtomicInteger (0);
+
+    TypePool (@Nonnull final DocTypeInfo aInfo)
+    {
+      m_aInfo = aInfo;
+      m_aJAXBContext = JAXBContextCache.getInstance ().getFromCache (aInfo.m_aDocType.getImplementationClass ());
+      if (m_aJAXBContext == null)
+        throw new IllegalStateException ("Failed to create JAXB context for " + aInfo.m_aDocType.getImplementationClass ().getName ());
+      m_aRootElementName = new QName (aInfo.m_aDocType.getNamespaceURI (), aInfo.m_aDocType.getLocalName ());
+    }
+
+    @Nonnull
+    Marshaller createMarshaller () throws JAXBException
+    {
+      final Marshaller ret = m_aJAXBContext.createMarshaller ();
+      ret.setProperty (Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name ());
+      ret.setProperty (Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.valueOf (m_bFormattedOutput));
+      if (m_bValidateSchema)
+        ret.setSchema (m_aInfo.m_aDocType.getSchema ());
+      // Use the well-known prefixes "cac", "cbc" etc.
+      if (JAXBMarshallerHelper.isSunJAXB2Marshaller (ret))
+        JAXBMarshallerHelper.setSunNamespacePrefixMapper (ret, m_aInfo.m_aNSContext);
+      return ret;
+    }
+
+    @Nonnull
+    Marshaller borrow () throws JAXBException
+    {
+      final Marshaller ret = m_aIdle.poll ();
+      if (ret != null)
+      {
+        m_aIdleCount.decrementAndGet ();
+        m_aHits.incrementAndGet ();
+        return ret;
+      }
+      m_aMisses.incrementAndGet ();
+      return createMarshaller ();
+    }
+
+    void giveBack (@Nonnull final Marshaller aMarshaller)
+    {
+      // Don't hold a reference to the error list of the last call
+      try
+      {
+        aMarshaller.setEventHandler (null);
+      }
+      catch (final JAXBException ex)
+      {
+        // Don't reuse it
+        return;
+      }
+
+      if (m_aIdleCount.incrementAndGet () <= m_nMaxIdle)
+        m_aIdle.offer (aMarshaller);
+      else
+        m_aIdleCount.decrementAndGet ();
+    }
+
+    @Nonnull
+    <T> JAXBElement <T> wrap (@Nonnull final Class <T> aClass, @Nonnull final Object aUBLDocument)
+    {
+      return new JAXBElement <> (m_aRootElementName, aClass, aClass.cast (aUBLDocument));
+    }
+  }
+
+  private final boolean m_bValidateSchema;
+  private final boolean m_bFormattedOutput;
+  private final int m_nMaxIdle;
+  private final Map <Class <?>, TypePool> m_aPools = new ConcurrentHashMap <> ();
+  private final AtomicLong m_aHits = new AtomicLong (0);
+  private final AtomicLong m_aMisses = new AtomicLong (0);
+
+  /**
+   * Constructor
+   *
+   * @param bValidateSchema
+   *        <code>true</code> to validate all written documents against the
+   *        UBL XML Schema, <code>false</code> to skip the validation.
+   * @param bFormattedOutput
+   *        <code>true</code> to create indented output.
+   * @param nMaxIdle
+   *        The maximum number of idle marshallers to keep per document type.
+   *        Must be &gt; 0.
+   */
+  public UBLMarshallerPool (final boolean bValidateSchema, final boolean bFormattedOutput, @Nonnegative final int nMaxIdle)
+  {
+    ValueEnforcer.isGT0 (nMaxIdle, "MaxIdle");
+    m_bValidateSchema = bValidateSchema;
+    m_bFormattedOutput = bFormattedOutput;
+    m_nMaxIdle = nMaxIdle;
+  }
+
+  /**
+   * @return The shared instance that validates against the XML Schema and
+   *         creates formatted output. Never <code>null</code>.
+   */
+  @Nonnull
+  public static UBLMarshallerPool getShared ()
+  {
+    return SingletonHolder.INSTANCE;
+  }
+
+  /**
+   * @return <code>true</code> if this pool validates against the XML Schema.
+   */
+  public boolean isValidateSchema ()
+  {
+    return m_bValidateSchema;
+  }
+
+  /**
+   * @return <code>true</code> if this pool creates indented output.
+   */
+  public boolean isFormattedOutput ()
+  {
+    return m_bFormattedOutput;
+  }
+
+  /**
+   * @return The maximum number of idle marshallers kept per document type.
+   */
+  @Nonnegative
+  public int getMaxIdle ()
+  {
+    return m_nMaxIdle;
+  }
+
+  /**
+   * Check if the provided class can be written with this class.
+   *
+   * @param aClass
+   *        The class to check. May be <code>null</code>.
+   * @return <code>true</code> if it is one of the UBL 2.1, 2.2 or 2.3 Invoice
+   *         or Credit Note classes.
+   */
+  public static boolean isSupportedClass (@Nullable final Class <?> aClass)
+  {
+    return aClass != null && DOC_TYPES.containsKey (aClass);
+  }
+
+  @Nonnull
+  private TypePool _getTypePool (@Nonnull final Class <?> aClass)
+  {
+    final DocTypeInfo aInfo = DOC_TYPES.get (aClass);
+    if (aInfo == null)
+      throw new IllegalArgumentException ("Unsupported UBL document type " + aClass.getName ());
+    return m_aPools.computeIfAbsent (aClass, k -> new TypePool (aInfo));
+  }
+
+  /**
+   * Make sure that at least the provided number of idle marshallers is
+   * available for the provided document type.
+   *
+   * @param aClass
+   *        The UBL document class to warm up. May not be <code>null</code>.
+   * @param nCount
+   *        The number of marshallers to create. Values larger than
+   *        {@link #getMaxIdle()} are capped.
+   * @see #isSupportedClass(Class)
+   */
+  public void warmUp (@Nonnull final Class <?> aClass, @Nonnegative final int nCount)
+  {
+    ValueEnforcer.notNull (aClass, "Class");
+    ValueEnforcer.isGE0 (nCount, "Count");
+
+    final TypePool aTypePool = _getTypePool (aClass);
+    final int nRealCount = Math.min (nCount, m_nMaxIdle);
+    while (aTypePool.m_aIdleCount.get () < nRealCount)
+    {
+      try
+      {
+        aTypePool.giveBack (aTypePool.createMarshaller ());
+      }
+      catch (final JAXBException ex)
+      {
+        throw new IllegalStateException ("Failed to create JAXB Marshaller", ex);
+      }
+    }
+  }
+
+  /**
+   * Abstraction over the different marshal targets.
+   */
+  @FunctionalInterface
+  private interface IMarshalAction
+  {
+    void marshal (@Nonnull Marshaller aMarshaller, @Nonnull Object aJAXBElement) throws JAXBException;
+  }
+
+  @Nonnull
+  private ESuccess _write (@Nonnull final TypePool aTypePool,
+                           @Nonnull final Object aJAXBElement,
+                           final boolean bFragment,
+                           @Nonnull final IMarshalAction aAction,
+                           @Nonnull final ErrorList aErrorList)
+  {
+    final int nErrorsBefore = aErrorList.size ();
+    try
+    {
+      final Marshaller aMarshaller = aTypePool.borrow ();
+      aMarshaller.setEventHandler (new WrappedCollectingValidationEventHandler (aErrorList));
+      if (bFragment)
+        aMarshaller.setProperty (Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+      aAction.marshal (aMarshaller, aJAXBElement);
+      if (bFragment)
+        aMarshaller.setProperty (Marshaller.JAXB_FRAGMENT, Boolean.FALSE);
+      aTypePool.giveBack (aMarshaller);
+      return ESuccess.SUCCESS;
+    }
+    catch (final JAXBException | RuntimeException ex)
+    {
+      // Don't reuse a marshaller that may be in an undefined state
+      // Errors that existed before the call don't count - only skip it, if
+      // the validation handler already reported the cause
+      if (!AbstractCIIToUBLConverter.containsErrorSince (aErrorList, nErrorsBefore))
+        aErrorList.add (SingleError.builderError ()
+                                   .errorText ("Failed to write UBL document: " + ex.getMessage ())
+                                   .linkedException (ex)
+                                   .build ());
+      if (LOGGER.isDebugEnabled ())
+        LOGGER.debug ("Failed to write UBL document", ex);
+      return ESuccess.FAILURE;
+    }
+  }
+
+  @Nonnull
+  private ESuccess _write (@Nonnull final Serializable aUBLDocument,
+                           @Nonnull final IMarshalAction aAction,
+                           @Nonnull final LongSupplier aBytesWritten,
+                           @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aUBLDocument, "UBLDocument");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final TypePool aTypePool = _getTypePool (aUBLDocument.getClass ());
+    final JAXBElement <?> aElement = aTypePool.wrap (aTypePool.m_aInfo.m_aDocType.getImplementationClass (), aUBLDocument);
+
+    final CIIToUBLFlightRecorder.UBLWriteEvent aEvent = CIIToUBLFlightRecorder.beginUBLWrite ();
+    final ESuccess ret = _write (aTypePool, aElement, false, aAction, aErrorList);
+    if (aEvent != null)
+      aEvent.finish (aTypePool.m_aInfo.m_aIDExtractor.apply (aUBLDocument),
+                     aTypePool.m_aInfo.m_aDocType.getLocalName (),
+                     aBytesWritten.getAsLong (),
+                     ret.isSuccess ());
+    return ret;
+  }
+
+  /**
+   * Write the provided UBL document to the provided result.
+   *
+   * @param aUBLDocument
+   *        The UBL Invoice or Credit Note as created by the converters. May
+   *        not be <code>null</code>.
+   * @param aResult
+   *        The result to write to. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all validation and write errors.
+   *        May not be <code>null</code>.
+   * @return {@link ESuccess} and never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         If the document type is not supported.
+   */
+  @Nonnull
+  public ESuccess write (@Nonnull final Serializable aUBLDocument, @Nonnull final Result aResult, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aResult, "Result");
+    return _write (aUBLDocument, (m, e) -> m.marshal (e, aResult), () -> -1, aErrorList);
+  }
+
+  /**
+   * Write the provided UBL document to the provided StAX writer. Note: the
+   * formatted output setting is ignored by JAXB for StAX writers.
+   *
+   * @param aUBLDocument
+   *        The UBL Invoice or Credit Note as created by the converters. May
+   *        not be <code>null</code>.
+   * @param aWriter
+   *        The writer to write to. May not be <code>null</code>. It is neither
+   *        flushed nor closed by this method.
+   * @param aErrorList
+   *        The error list to be filled with all validation and write errors.
+   *        May not be <code>null</code>.
+   * @return {@link ESuccess} and never <code>null</code>.
+   * @throws IllegalArgumentException
+   *         If the document type is not supported.
+   */
+  @Nonnull
+  public ESuccess write (@Nonnull final Serializable aUBLDocument,
+                         @Nonnull @WillNotClose final XMLStreamWriter aWriter,
+                         @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aWriter, "Writer");
+    return _write (aUBLDocument, (m, e) -> m.marshal (e, aWriter), () -> -1, aErrorList);
+  }
+
+  /**
+   * Write a part of a UBL document (like a single invoice line) as an XML
+   * fragment to the provided StAX writer, using the marshaller configuration
+   * of the provided document type.
+   *
+   * @param aDocClass
+   *        The UBL document class the fragment belongs to. May not be
+   *        <code>null</code>.
+   * @param aElement
+   *        The element to write. May not be <code>null</code>.
+   * @param aWriter
+   *        The writer to write to. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess} and never <code>null</code>.
+   */
+  @Nonnull
+  ESuccess writeFragment (@Nonnull final Class <?> aDocClass,
+                          @Nonnull final JAXBElement <?> aElement,
+                          @Nonnull @WillNotClose final XMLStreamWriter aWriter,
+                          @Nonnull final ErrorList aErrorList)
+  {
+    return _write (_getTypePool (aDocClass), aElement, true, (m, e) -> m.marshal (e, aWriter), aErrorList);
+  }
+
+  /**
+   * Get the local name of the root element of the provided UBL document class.
+   *
+   * @param aDocClass
+   *        The UBL document class. May be <code>null</code>.
+   * @return <code>null</code> if the class is not supported.
+   */
+  @Nullable
+  static String getRootElementLocalName (@Nullable final Class <?> aDocClass)
+  {
+    final DocTypeInfo aInfo = aDocClass == null ? null : DOC_TYPES.get (aDocClass);
+    return aInfo == null ? null : aInfo.m_aDocType.getLocalName ();
+  }
+
+  /**
+   * Write the provided UBL document to the provided output stream.
+   *
+   * @param aUBLDocument
+   *        The UBL Invoice or Credit Note as created by the converters. May
+   *        not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>. It is
+   *        not closed by this method.
+   * @param aErrorList
+   *        The error list to be filled with all validation and write errors.
+   *        May not be <code>null</code>.
+   * @return {@link ESuccess} and never <code>null</code>.
+   */
+  @Nonnull
+  public ESuccess write (@Nonnull final Serializable aUBLDocument,
+                         @Nonnull @WillNotClose final OutputStream aOS,
+                         @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+    if (!CIIToUBLFlightRecorder.isUBLWriteEnabled ())
+      return write (aUBLDocument, new StreamResult (aOS), aErrorList);
+
+    // Count the bytes only while recording
+    final CountingOutputStream aCOS = new CountingOutputStream (aOS);
+    return _write (aUBLDocument, (m, e) -> m.marshal (e, new StreamResult (aCOS)), aCOS::getBytesWritten, aErrorList);
+  }
+
+  /**
+   * Write the provided UBL document to the provided file.
+   *
+   * @param aUBLDocument
+   *        The UBL Invoice or Credit Note as created by the converters. May
+   *        not be <code>null</code>.
+   * @param aFile
+   *        The file to write to. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with all validation and write errors.
+   *        May not be <code>null</code>.
+   * @return {@link ESuccess} and never <code>null</code>.
+   */
+  @Nonnull
+  public ESuccess write (@Nonnull final Serializable aUBLDocument, @Nonnull final File aFile, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aFile, "File");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    try (final OutputStream aOS = new BufferedOutputStream (Files.newOutputStream (aFile.toPath ())))
+    {
+      return write (aUBLDocument, aOS, aErrorList);
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to write UBL file '" + aFile.getAbsolutePath () + "': " + ex.getMessage ())
+                                 .linkedException (ex)
+                                 .build ());
+      return ESuccess.FAILURE;
+    }
+  }
+
+  /**
+   * @return The number of writes that could reuse a pooled marshaller.
+   */
+  @Nonnegative
+  public long getHitCount ()
+  {
+    return m_aHits.get ();
+  }
+
+  /**
+   * @return The number of writes that needed to create a new marshaller.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aMisses.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("ValidateSchema", m_bValidateSchema)
+                                       .append ("FormattedOutput", m_bFormattedOutput)
+                                       .append ("MaxIdle", m_nMaxIdle)
+                                       .append ("Hits", m_aHits.get ())
+                                       .append ("Misses", m_aMisses.get ())
+                                       .getToString ();
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.Nonempty;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.CommonsHashSet;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.collection.impl.ICommonsSet;
+import com.helger.commons.string.ToStringGenerator;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.BillingReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType;
+
+/**
+ * Maps the UBL 2.3 Invoice created by {@link UBL23Emitter} to the UBL domain
+ * model of a converter. The UBL 2.1, 2.2 and 2.3 domain models only differ in
+ * the package names and in a few elements, and the Invoice and the Credit Note
+ * only differ in a few element names. So all fields are copied by name, and
+ * each object is mapped to the declared type of the target field. Objects that
+ * are already of the target type (e.g. strings, amounts and dates, or all
+ * objects if source and target version are identical) are taken as they are,
+ * so the source must not be modified after mapping.<br>
+ * Each difference must be declared explicitly, either as a renamed field, as a
+ * repeatable field of which only the first value is used, or as an ignored
+ * field. A non-empty value without a counterpart in the target type is a
+ * programming error and results in an {@link IllegalStateException}. Objects
+ * of a type with declared differences are always mapped, even if they are
+ * already of the target type.<br>
+ * The configuration must be complete before the mapper is shared between
+ * threads. The reflection data is resolved once per type.
+ *
+ * @author Philip Helger
+ * @since 1.4.9
+ */
+@ThreadSafe
+final class UBLVersionMapper
+{
+  private static final class FieldMapping
+  {
+    private final Field m_aSrcField;
+    // null if there is no counterpart
+    private final Field m_aDstField;
+    // The type of the target field or of the target list elements
+    private final Class <?> m_aDstType;
+    private final boolean m_bDstList;
+    private final boolean m_bFirstOnly;
+    private final boolean m_bIgnored;
+
+    FieldMapping (@Nonnull final Field aSrcField,
+                  @Nullable final Field aDstField,
+                  final boolean bFirstOnly,
+                  final boolean bIgnored)
+    {
+      m_aSrcField = aSrcField;
+      m_aDstField = aDstField;
+      m_bDstList = aDstField != null && List.class.isAssignableFrom (aDstField.getType ());
+      m_aDstType = aDstField == null ? null : m_bDstList ? _getListElementType (aDstField) : aDstField.getType ();
+      m_bFirstOnly = bFirstOnly;
+      m_bIgnored = bIgnored;
+    }
+  }
+
+  private static final class ClassMapping
+  {
+    private final Constructor <?> m_aDstCtor;
+    private final FieldMapping [] m_aFields;
+
+    ClassMapping (@Nonnull final Constructor <?> aDstCtor, @Nonnull final FieldMapping [] aFields)
+    {
+      m_aDstCtor = aDstCtor;
+      m_aFields = aFields;
+    }
+  }
+
+  private final ICommonsMap <String, String> m_aRenamedFields = new CommonsHashMap <> ();
+  private final ICommonsSet <String> m_aFirstOnlyFields = new CommonsHashSet <> ();
+  private final ICommonsSet <String> m_aIgnoredFields = new CommonsHashSet <> ();
+  // All source classes with declared differences
+  private final ICommonsSet <Class <?>> m_aClassesWithRules = new CommonsHashSet <> ();
+  // Source class to target class to mapping
+  private final Map <Class <?>, Map <Class <?>, ClassMapping>> m_aMappings = new ConcurrentHashMap <> ();
+
+  UBLVersionMapper ()
+  {}
+
+  @Nonnull
+  private static String _getKey (@Nonnull final Class <?> aSrcClass, @Nonnull final String sFieldName)
+  {
+    return aSrcClass.getName () + '#' + sFieldName;
+  }
+
+  /**
+   * Map a field to a field with another name.
+   *
+   * @param aSrcClass
+   *        The source class declaring the field. May not be <code>null</code>.
+   * @param sSrcFieldName
+   *        The source field name. May neither be <code>null</code> nor empty.
+   * @param sDstFieldName
+   *        The target field name. May neither be <code>null</code> nor empty.
+   * @return this for chaining
+   */
+  @Nonnull
+  UBLVersionMapper renameField (@Nonnull final Class <?> aSrcClass,
+                                @Nonnull @Nonempty final String sSrcFieldName,
+                                @Nonnull @Nonempty final String sDstFieldName)
+  {
+    ValueEnforcer.notNull (aSrcClass, "SrcClass");
+    ValueEnforcer.notEmpty (sSrcFieldName, "SrcFieldName");
+    ValueEnforcer.notEmpty (sDstFieldName, "DstFieldName");
+    m_aRenamedFields.put (_getKey (aSrcClass, sSrcFieldName), sDstFieldName);
+    m_aClassesWithRules.add (aSrcClass);
+    return this;
+  }
+
+  /**
+   * Map a repeatable field to a field that can only hold a single value. Only
+   * the first value is used.
+   *
+   * @param aSrcClass
+   *        The source class declaring the field. May not be <code>null</code>.
+   * @param sFieldName
+   *        The field name. May neither be <code>null</code> nor empty.
+   * @return this for chaining
+   */
+  @Nonnull
+  UBLVersionMapper useFirstOnly (@Nonnull final Class <?> aSrcClass, @Nonnull @Nonempty final String sFieldName)
+  {
+    ValueEnforcer.notNull (aSrcClass, "SrcClass");
+    ValueEnforcer.notEmpty (sFieldName, "FieldName");
+    m_aFirstOnlyFields.add (_getKey (aSrcClass, sFieldName));
+    m_aClassesWithRules.add (aSrcClass);
+    return this;
+  }
+
+  /**
+   * Ignore a field that is not supported by the target type.
+   *
+   * @param aSrcClass
+   *        The source class declaring the field. May not be <code>null</code>.
+   * @param sFieldName
+   *        The field name. May neither be <code>null</code> nor empty.
+   * @return this for chaining
+   */
+  @Nonnull
+  UBLVersionMapper ignoreField (@Nonnull final Class <?> aSrcClass, @Nonnull @Nonempty final String sFieldName)
+  {
+    ValueEnforcer.notNull (aSrcClass, "SrcClass");
+    ValueEnforcer.notEmpty (sFieldName, "FieldName");
+    m_aIgnoredFields.add (_getKey (aSrcClass, sFieldName));
+    m_aClassesWithRules.add (aSrcClass);
+    return this;
+  }
+
+  /**
+   * Declare the differences between an Invoice and a Credit Note, so that the
+   * Invoice created by {@link UBL23Emitter} can be mapped to a Credit Note.
+   *
+   * @return this for chaining
+   */
+  @Nonnull
+  UBLVersionMapper forCreditNote ()
+  {
+    renameField (InvoiceType.class, "invoiceTypeCode", "creditNoteTypeCode");
+    renameField (InvoiceType.class, "invoiceLine", "creditNoteLine");
+    renameField (InvoiceLineType.class, "invoicedQuantity", "creditedQuantity");
+    renameField (BillingReferenceType.class, "invoiceDocumentReference", "creditNoteDocumentReference");
+    return this;
+  }
+
+  @Nonnull
+  private static Class <?> _getListElementType (@Nonnull final Field aField)
+  {
+    final Type aType = aField.getGenericType ();
+    if (aType instanceof ParameterizedType)
+    {
+      final Type aElementType = ((ParameterizedType) aType).getActualTypeArguments ()[0];
+      if (aElementType instanceof Class <?>)
+        return (Class <?>) aElementType;
+    }
+    // Never the case for JAXB generated classes
+    return Object.class;
+  }
+
+  @Nonnull
+  private static ICommonsMap <String, Field> _getAllFields (@Nonnull final Class <?> aClass)
+  {
+    final ICommonsMap <String, Field> ret = new CommonsHashMap <> ();
+    Class <?> aCurClass = aClass;
+    while (aCurClass != null && aCurClass != Object.class)
+    {
+      for (final Field aField : aCurClass.getDeclaredFields ())
+        if (!Modifier.isStatic (aField.getModifiers ()) && !ret.containsKey (aField.getName ()))
+        {
+          aField.setAccessible (true);
+          ret.put (aField.getName (), aField);
+        }
+      aCurClass = aCurClass.getSuperclass ();
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private ClassMapping _createClassMapping (@Nonnull final Class <?> aSrcClass, @Nonnull final Class <?> aDstClass)
+  {
+    final ICommonsMap <String, Field> aDstFields = _getAllFields (aDstClass);
+    final List <FieldMapping> aFields = new ArrayList <> ();
+    for (final Field aSrcField : _getAllFields (aSrcClass).values ())
+    {
+      final String sKey = _getKey (aSrcClass, aSrcField.getName ());
+      final String sDstFieldName = m_aRenamedFields.getOrDefault (sKey, aSrcField.getName ());
+      aFields.add (new FieldMapping (aSrcField,
+                                     aDstFields.get (sDstFieldName),
+                                     m_aFirstOnlyFields.contains (sKey),
+                                     m_aIgnoredFields.contains (sKey)));
+    }
+    try
+    {
+      final Constructor <?> aDstCtor = aDstClass.getDeclaredConstructor ();
+      aDstCtor.setAccessible (true);
+      return new ClassMapping (aDstCtor, aFields.toArray (new FieldMapping [aFields.size ()]));
+    }
+    catch (final NoSuchMethodException ex)
+    {
+      throw new IllegalStateException ("The UBL class " + aDstClass.getName () + " has no default constructor", ex);
+    }
+  }
+
+  @Nonnull
+  private ClassMapping _getClassMapping (@Nonnull final Class <?> aSrcClass, @Nonnull final Class <?> aDstClass)
+  {
+    return m_aMappings.computeIfAbsent (aSrcClass, k -> new ConcurrentHashMap <> ())
+                      .computeIfAbsent (aDstClass, k -> _createClassMapping (aSrcClass, aDstClass));
+  }
+
+  @Nonnull
+  private static IllegalStateException _createMissingFieldEx (@Nonnull final FieldMapping aField, @Nonnull final Class <?> aDstClass)
+  {
+    return new IllegalStateException ("The field '" +
+                                      aField.m_aSrcField.getName () +
+                                      "' of " +
+                                      aField.m_aSrcField.getDeclaringClass ().getName () +
+                                      " has a value but no counterpart in " +
+                                      aDstClass.getName ());
+  }
+
+  @Nullable
+  private Object _map (@Nullable final Object aSrc, @Nonnull final Class <?> aDstClass) throws ReflectiveOperationException
+  {
+    // Primitive values are boxed
+    if (aSrc == null || aDstClass.isPrimitive ())
+      return aSrc;
+    if (aDstClass.isInstance (aSrc) && !m_aClassesWithRules.contains (aSrc.getClass ()))
+      return aSrc;
+
+    final ClassMapping aMapping = _getClassMapping (aSrc.getClass (), aDstClass);
+    final Object ret = aMapping.m_aDstCtor.newInstance ();
+    for (final FieldMapping aField : aMapping.m_aFields)
+    {
+      final Object aValue = aField.m_aSrcField.get (aSrc);
+      if (aValue == null || (aValue instanceof List <?> && ((List <?>) aValue).isEmpty ()) || aField.m_bIgnored)
+        continue;
+      if (aField.m_aDstField == null)
+        throw _createMissingFieldEx (aField, aDstClass);
+
+      if (aValue instanceof List <?>)
+      {
+        final List <?> aSrcList = (List <?>) aValue;
+        if (aField.m_bDstList)
+        {
+          final List <Object> aDstList = new ArrayList <> (aSrcList.size ());
+          for (final Object aElement : aSrcList)
+            aDstList.add (_map (aElement, aField.m_aDstType));
+          aField.m_aDstField.set (ret, aDstList);
+        }
+        else
+        {
+          if (!aField.m_bFirstOnly)
+            throw _createMissingFieldEx (aField, aDstClass);
+          aField.m_aDstField.set (ret, _map (aSrcList.get (0), aField.m_aDstType));
+        }
+      }
+      else
+      {
+        final Object aDstValue = _map (aValue, aField.m_aDstType);
+        if (aField.m_bDstList)
+        {
+          final List <Object> aDstList = new ArrayList <> (1);
+          aDstList.add (aDstValue);
+          aField.m_aDstField.set (ret, aDstList);
+        }
+        else
+          aField.m_aDstField.set (ret, aDstValue);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Map the provided UBL object to the provided target type.
+   *
+   * @param <T>
+   *        The target type
+   * @param aSrc
+   *        The UBL object to map. May not be <code>null</code>.
+   * @param aDstClass
+   *        The target type. May not be <code>null</code>.
+   * @return The source object itself, if it is already of the target type
+   *         and has no declared differences, or the mapped object. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  <T> T map (@Nonnull final Object aSrc, @Nonnull final Class <T> aDstClass)
+  {
+    ValueEnforcer.notNull (aSrc, "Src");
+    ValueEnforcer.notNull (aDstClass, "DstClass");
+
+    try
+    {
+      return aDstClass.cast (_map (aSrc, aDstClass));
+    }
+    catch (final ReflectiveOperationException ex)
+    {
+      throw new IllegalStateException ("Failed to map " + aSrc.getClass ().getName () + " to " + aDstClass.getName (), ex);
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (null).append ("RenamedFields", m_aRenamedFields)
+                                       .append ("FirstOnlyFields", m_aFirstOnlyFields)
+                                       .append ("IgnoredFields", m_aIgnoredFields)
+                                       .getToString ();
+  }
+}
@@ -19,16 +19,33 @@ package com.helger.en16931.cii2ubl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 import org.junit.Test;
 
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.datetime.PDTFactory;
+import com.helger.commons.error.SingleError;
 import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
 
 /**
  * Test class for class {@link AbstractCIIToUBLConverter}.
@@ -69,4 +86,134 @@ public final class AbstractCIIToUBLConverterTest
     assertNull (AbstractCIIToUBLConverter.parseDate ("050101", "999", aList));
     assertFalse (aList.isEmpty ());
   }
+
+  @Test
+  public void testInputVariants () throws IOException
+  {
+    final File aFile = MockSettings.getAllTestFiles ().getFirst ();
+    final byte [] aBytes = Files.readAllBytes (aFile.toPath ());
+    final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ();
+
+    final ErrorList aList = new ErrorList ();
+    assertNotNull (aConverter.convertCIItoUBL (aFile.toPath (), aList));
+    assertNotNull (aConverter.convertCIItoUBL (aBytes, aList));
+    assertNotNull (aConverter.convertCIItoUBL (ByteBuffer.wrap (aBytes), aList));
+    assertNotNull (aConverter.convertCIItoUBL (new NonBlockingByteArrayInputStream (aBytes), aList));
+    assertTrue (aList.toString (), aList.isEmpty ());
+
+    // The buffer position is not modified
+    final ByteBuffer aBuffer = ByteBuffer.wrap (aBytes);
+    assertNotNull (aConverter.convertCIItoUBL (aBuffer, aList));
+    assertEquals (0, aBuffer.position ());
+
+    // One-shot conversion
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      assertTrue (aConverter.convert (new NonBlockingByteArrayInputStream (aBytes), aBAOS, aList).isSuccess ());
+      assertTrue (aList.toString (), aList.isEmpty ());
+      assertTrue (aBAOS.size () > 0);
+    }
+
+    // Invalid input
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      assertTrue (aConverter.convert (new NonBlockingByteArrayInputStream (new byte [] { '<' }), aBAOS, aList).isFailure ());
+      assertFalse (aList.isEmpty ());
+      assertEquals (0, aBAOS.size ());
+    }
+  }
+
+  @Test
+  public void testParallelLines ()
+  {
+    final CIIToUBLSettings aSequential = CIIToUBLSettings.DEFAULT;
+    // Use an uneven chunk size to have a smaller last chunk
+    final CIIToUBLSettings aParallel = CIIToUBLSettings.builder ().parallelLineThreshold (100).parallelLineChunkSize (7).build ();
+    assertTrue (aParallel.isParallelLineConversion (250));
+    assertFalse (aParallel.isParallelLineConversion (99));
+
+    for (final boolean bCreditNote : new boolean [] { false, true })
+    {
+      final CrossIndustryInvoiceType aCII = CIIInvoiceGenerator.builder ()
+                                                               .seed (4711)
+                                                               .lineCount (250)
+                                                               .taxCategoryCount (3)
+                                                               .creditNote (bCreditNote)
+                                                               .build ()
+                                                               .getAsCrossIndustryInvoice ();
+      for (final EUBLVersion eVersion : EUBLVersion.values ())
+      {
+        final AbstractCIIToUBLConverter <?> aConverter = eVersion.createConverter ();
+
+        final ErrorList aSequentialErrors = new ErrorList ();
+        final NonBlockingByteArrayOutputStream aExpected = new NonBlockingByteArrayOutputStream ();
+        assertTrue (UBLMarshallerPool.getShared ()
+                                     .write (aConverter.convertCIItoUBL (aCII, aSequential, aSequentialErrors),
+                                             aExpected,
+                                             aSequentialErrors)
+                                     .isSuccess ());
+
+        final ErrorList aParallelErrors = new ErrorList ();
+        final NonBlockingByteArrayOutputStream aActual = new NonBlockingByteArrayOutputStream ();
+        assertTrue (UBLMarshallerPool.getShared ()
+                                     .write (aConverter.convertCIItoUBL (aCII, aParallel, aParallelErrors), aActual, aParallelErrors)
+                                     .isSuccess ());
+
+        // Same lines in the same order and the same errors
+        assertEquals (aSequentialErrors, aParallelErrors);
+        assertEquals (aExpected.getAsString (StandardCharsets.UTF_8), aActual.getAsString (StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  @Test
+  public void testFailFastLines ()
+  {
+    final ICommonsList <SupplyChainTradeLineItemType> aLineItems = new CommonsArrayList <> ();
+    // The line items are equal by content
+    final Map <SupplyChainTradeLineItemType, Integer> aIndexes = new IdentityHashMap <> ();
+    for (int i = 0; i < 100; ++i)
+    {
+      final SupplyChainTradeLineItemType aLineItem = new SupplyChainTradeLineItemType ();
+      aLineItems.add (aLineItem);
+      aIndexes.put (aLineItem, Integer.valueOf (i));
+    }
+    // Line 42 creates an error
+    final BiFunction <SupplyChainTradeLineItemType, ErrorList, Integer> aLineConverter = (x, e) -> {
+      final int nIndex = aIndexes.get (x).intValue ();
+      if (nIndex == 42)
+        e.add (SingleError.builderError ().errorText ("Line " + nIndex).build ());
+      return Integer.valueOf (nIndex);
+    };
+
+    for (final CIIToUBLSettings aBaseSettings : new CIIToUBLSettings [] { CIIToUBLSettings.DEFAULT,
+                                                                         CIIToUBLSettings.builder ()
+                                                                                         .parallelLineThreshold (1)
+                                                                                         .parallelLineChunkSize (10)
+                                                                                         .build () })
+    {
+      // Collect all errors
+      ICommonsList <Integer> aLines = new CommonsArrayList <> ();
+      ErrorList aErrorList = new ErrorList ();
+      AbstractCIIToUBLConverter.convertLines ("id", aLineItems, aLineConverter, aLines::add, aBaseSettings, aErrorList);
+      assertEquals (100, aLines.size ());
+      assertEquals (1, aErrorList.size ());
+
+      // Stop on the first error - the lines before are kept in order
+      final CIIToUBLSettings aSettings = CIIToUBLSettings.builder (aBaseSettings).failFast (true).build ();
+      aLines = new CommonsArrayList <> ();
+      aErrorList = new ErrorList ();
+      AbstractCIIToUBLConverter.convertLines ("id", aLineItems, aLineConverter, aLines::add, aSettings, aErrorList);
+      assertEquals (1, aErrorList.size ());
+      assertEquals (43, aLines.size ());
+      for (int i = 0; i < 43; ++i)
+        assertEquals (i, aLines.get (i).intValue ());
+
+      // Errors that were contained before don't stop the conversion
+      aLines = new CommonsArrayList <> ();
+      AbstractCIIToUBLConverter.convertLines ("id", aLineItems, aLineConverter, aLines::add, aSettings, aErrorList);
+      assertEquals (2, aErrorList.size ());
+      assertEquals (43, aLines.size ());
+    }
+  }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Month;
+
+import org.junit.Test;
+
+import com.helger.commons.datetime.PDTFactory;
+import com.helger.commons.datetime.PDTFromString;
+import com.helger.commons.error.list.ErrorList;
+
+/**
+ * Test class for class {@link CIIDateParser}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIDateParserTest
+{
+  @Test
+  public void testFormatters ()
+  {
+    assertEquals (7, CIIDateParser.getAllSupportedFormats ().size ());
+    for (final String sFormat : CIIDateParser.getAllSupportedFormats ())
+      assertNotNull (CIIDateParser.getFormatter (sFormat));
+    assertNull (CIIDateParser.getFormatter ("999"));
+    assertNull (CIIDateParser.getFormatter (null));
+  }
+
+  @Test
+  public void testFastPath ()
+  {
+    assertEquals (PDTFactory.createLocalDate (2005, Month.JULY, 6), CIIDateParser.parse102 ("20050706"));
+    assertEquals (PDTFactory.createLocalDate (2024, Month.FEBRUARY, 29), CIIDateParser.parse102 ("20240229"));
+    assertNull (CIIDateParser.parse102 ("20230229"));
+    assertNull (CIIDateParser.parse102 ("20051306"));
+    assertNull (CIIDateParser.parse102 ("2005-7-6"));
+    assertNull (CIIDateParser.parse102 ("2005070x"));
+
+    // Must be identical to the formatter based parsing
+    for (final String s : new String [] { "20050706", "19991231", "20000101", "20230229", "20050700", "00010101" })
+      assertEquals (s, PDTFromString.getLocalDateFromString (s, CIIDateParser.getFormatter ("102")), CIIDateParser.parse102 (s));
+  }
+
+  @Test
+  public void testCounters ()
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    final long nFastPath = CIIDateParser.getFastPathCount ();
+    final long nFormatter = CIIDateParser.getFormatterCount ();
+    final long nFailure = CIIDateParser.getFailureCount ();
+
+    assertNotNull (CIIDateParser.parseDate ("20050706", null, aErrorList));
+    assertNotNull (CIIDateParser.parseDate ("20050706", "102", aErrorList));
+    assertNotNull (CIIDateParser.parseDate ("060705", "2", aErrorList));
+    assertTrue (aErrorList.isEmpty ());
+    assertNull (CIIDateParser.parseDate ("20050230", "102", aErrorList));
+    assertNull (CIIDateParser.parseDate ("060705", "999", aErrorList));
+    assertFalse (aErrorList.isEmpty ());
+
+    // Other tests may run in parallel
+    assertTrue (CIIDateParser.getFastPathCount () >= nFastPath + 3);
+    assertTrue (CIIDateParser.getFormatterCount () >= nFormatter + 1);
+    assertTrue (CIIDateParser.getFailureCount () >= nFailure + 2);
+  }
+}
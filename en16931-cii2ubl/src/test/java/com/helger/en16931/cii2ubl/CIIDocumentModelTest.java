@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link CIIDocumentModel}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIDocumentModelTest
+{
+  @Test
+  public void testMissingMandatoryElements ()
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (CIIDocumentModel.create (new CrossIndustryInvoiceType (), CIIToUBLSettings.DEFAULT, aErrorList));
+    assertTrue (aErrorList.isEmpty ());
+  }
+
+  @Test
+  public void testAllTestFiles ()
+  {
+    // Always convert the lines in parallel, using small chunks
+    final CIIToUBLSettings aParallelSettings = CIIToUBLSettings.builder ().parallelLineThreshold (1).parallelLineChunkSize (2).build ();
+
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, aErrorList);
+      assertNotNull (aCII);
+
+      final CIIDocumentModel aModel = CIIDocumentModel.create (aCII, CIIToUBLSettings.DEFAULT, aErrorList);
+      assertNotNull (aFile.getName (), aModel);
+      assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+      assertSame (aCII, aModel.getHeader ().getCIIInvoice ());
+      assertEquals (aModel.getHeader ().getLineCount (), aModel.getAllLines ().size ());
+      assertNotNull (aModel.toString ());
+
+      final CIIDocumentModel aParallelModel = CIIDocumentModel.create (aCII, aParallelSettings, aErrorList);
+      assertNotNull (aParallelModel);
+      assertEquals (aModel.getAllLines ().size (), aParallelModel.getAllLines ().size ());
+      for (int i = 0; i < aModel.getAllLines ().size (); ++i)
+        assertEquals (aModel.getAllLines ().get (i).getID (), aParallelModel.getAllLines ().get (i).getID ());
+
+      // Converting from the model creates the same result as converting from
+      // the CII document
+      for (final EUBLVersion eVersion : EUBLVersion.values ())
+      {
+        final AbstractCIIToUBLConverter <?> aConverter = eVersion.createConverter ();
+        assertEquals (aConverter.convertCIItoUBL (aCII, new ErrorList ()),
+                      aConverter.convertCIItoUBL (aModel, CIIToUBLSettings.DEFAULT, new ErrorList ()));
+      }
+    }
+  }
+
+  @Test
+  public void testFailFast ()
+  {
+    final CIIToUBLSettings aFailFastSettings = CIIToUBLSettings.builder ().failFast (true).build ();
+    final File aFile = MockSettings.getAllTestFiles ().getFirst ();
+
+    // Errors that were contained before don't stop the mapping
+    final ErrorList aErrorList = new ErrorList ();
+    aErrorList.add (SingleError.builderError ().errorText ("Previous error").build ());
+    final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, aErrorList);
+    assertNotNull (aCII);
+    final CIIDocumentModel aModel = CIIDocumentModel.create (aCII, aFailFastSettings, aErrorList);
+    assertNotNull (aModel);
+    assertEquals (aModel.getHeader ().getLineCount (), aModel.getAllLines ().size ());
+    assertFalse (AbstractCIIToUBLConverter.containsErrorSince (aErrorList, 1));
+    assertNotNull (EUBLVersion.UBL_23.createConverter ().convertCIItoUBL (aModel, aFailFastSettings, aErrorList));
+    assertFalse (AbstractCIIToUBLConverter.containsErrorSince (aErrorList, 1));
+
+    // An invalid issue date stops the mapping after the dates
+    aCII.getExchangedDocument ().getIssueDateTime ().getDateTimeString ().setFormat ("999");
+    ErrorList aNewErrorList = new ErrorList ();
+    assertNotNull (CIIDocumentModel.create (aCII, CIIToUBLSettings.DEFAULT, aNewErrorList));
+    assertTrue (aNewErrorList.containsAtLeastOneError ());
+
+    aNewErrorList = new ErrorList ();
+    assertNull (CIIHeaderModel.create (aCII, true, aNewErrorList));
+    assertEquals (1, aNewErrorList.size ());
+
+    aNewErrorList = new ErrorList ();
+    assertNull (CIIDocumentModel.create (aCII, aFailFastSettings, aNewErrorList));
+    assertEquals (1, aNewErrorList.size ());
+  }
+}
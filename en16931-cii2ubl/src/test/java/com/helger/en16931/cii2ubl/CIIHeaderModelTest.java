@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.HeaderTradeAgreementType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeTransactionType;
+
+/**
+ * Test class for class {@link CIIHeaderModel}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIHeaderModelTest
+{
+  @Test
+  public void testMissingMandatoryElements ()
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    final CrossIndustryInvoiceType aCII = new CrossIndustryInvoiceType ();
+    assertNull (CIIHeaderModel.create (aCII, aErrorList));
+
+    final SupplyChainTradeTransactionType aSCTT = new SupplyChainTradeTransactionType ();
+    aSCTT.setApplicableHeaderTradeAgreement (new HeaderTradeAgreementType ());
+    aCII.setSupplyChainTradeTransaction (aSCTT);
+    assertNull (CIIHeaderModel.create (aCII, aErrorList));
+    assertTrue (aErrorList.isEmpty ());
+  }
+
+  @Test
+  public void testAllTestFiles ()
+  {
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, aErrorList);
+      assertNotNull (aCII);
+
+      final CIIHeaderModel aModel = CIIHeaderModel.create (aCII, aErrorList);
+      assertNotNull (aFile.getName (), aModel);
+      assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+      assertSame (aCII, aModel.getCIIInvoice ());
+      assertSame (aCII.getSupplyChainTradeTransaction (), aModel.getSupplyChainTradeTransaction ());
+      assertEquals (aCII.getSupplyChainTradeTransaction ().getIncludedSupplyChainTradeLineItemCount (), aModel.getLineCount ());
+      assertNotNull (aModel.getIssueDate ());
+      assertNotNull (aModel.getDocumentCurrencyCode ());
+      if (aModel.hasInvoicePeriod ())
+        assertNotNull (aModel.getInvoicePeriodStartDate ());
+      assertNotNull (aModel.toString ());
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.resource.inmemory.ReadableResourceByteArray;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.phive.api.execute.ValidationExecutionManager;
+import com.helger.phive.api.result.ValidationResult;
+import com.helger.phive.api.result.ValidationResultList;
+import com.helger.phive.en16931.EN16931Validation;
+import com.helger.phive.engine.source.ValidationSourceXML;
+
+import oasis.names.specification.ubl.schema.xsd.creditnote_23.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link CIIInvoiceGenerator}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIInvoiceGeneratorTest
+{
+  @Test
+  public void testDeterministic ()
+  {
+    final CIIInvoiceGenerator.Builder aBuilder = CIIInvoiceGenerator.builder ()
+                                                                    .lineCount (25)
+                                                                    .taxCategoryCount (3)
+                                                                    .referencedDocumentCount (1)
+                                                                    .attachmentSize (10_000);
+    final byte [] aBytes = aBuilder.seed (4711).build ().getAsBytes ();
+    assertArrayEquals (aBytes, aBuilder.seed (4711).build ().getAsBytes ());
+    assertFalse (Arrays.equals (aBytes, aBuilder.seed (4712).build ().getAsBytes ()));
+  }
+
+  @Test
+  public void testConvertAndValidate ()
+  {
+    final CIIInvoiceGenerator [] aGenerators = new CIIInvoiceGenerator [] { CIIInvoiceGenerator.builder ().build (),
+                                                                            CIIInvoiceGenerator.builder ()
+                                                                                               .seed (1)
+                                                                                               .lineCount (1)
+                                                                                               .paymentMeansCount (0)
+                                                                                               .build (),
+                                                                            CIIInvoiceGenerator.builder ()
+                                                                                               .seed (2)
+                                                                                               .lineCount (200)
+                                                                                               .taxCategoryCount (CIIInvoiceGenerator.MAX_TAX_CATEGORY_COUNT)
+                                                                                               .paymentMeansCount (3)
+                                                                                               .referencedDocumentCount (2)
+                                                                                               .attachmentSize (5_000)
+                                                                                               .build (),
+                                                                            CIIInvoiceGenerator.builder ()
+                                                                                               .seed (3)
+                                                                                               .lineCount (17)
+                                                                                               .taxCategoryCount (2)
+                                                                                               .creditNote (true)
+                                                                                               .build () };
+    final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ().setUBLCreationMode (EUBLCreationMode.AUTOMATIC);
+    for (final CIIInvoiceGenerator aGenerator : aGenerators)
+    {
+      // Read with XML Schema validation
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aGenerator.getAsBytes (), aErrorList);
+      assertNotNull (aGenerator.toString (), aCII);
+      assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+      assertEquals (aGenerator.getLineCount (), aCII.getSupplyChainTradeTransaction ().getIncludedSupplyChainTradeLineItemCount ());
+
+      final Serializable aUBL = aConverter.convertCIItoUBL (aCII, aErrorList);
+      assertNotNull (aUBL);
+      assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+      assertEquals (aGenerator.isCreditNote (), aUBL instanceof CreditNoteType);
+
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      assertTrue (UBLMarshallerPool.getShared ().write (aUBL, aBAOS, aErrorList).isSuccess ());
+
+      // Validate against EN16931 validation rules
+      final ValidationResultList aResultList = ValidationExecutionManager.executeValidation (MockSettings.VES_REGISTRY.getOfID (aUBL instanceof InvoiceType ? EN16931Validation.VID_UBL_INVOICE_137
+                                                                                                                                                          : EN16931Validation.VID_UBL_CREDIT_NOTE_137),
+                                                                                            ValidationSourceXML.create (new ReadableResourceByteArray (aBAOS.toByteArray ())));
+      for (final ValidationResult aResult : aResultList)
+        assertTrue (aGenerator.toString () + ": " + aResult.getErrorList ().toString (), aResult.getErrorList ().isEmpty ());
+    }
+  }
+}
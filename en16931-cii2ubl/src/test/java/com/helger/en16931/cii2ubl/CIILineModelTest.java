@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
+
+/**
+ * Test class for class {@link CIILineModel}.
+ *
+ * @author Philip Helger
+ */
+public final class CIILineModelTest
+{
+  @Test
+  public void testEmptyLineItem ()
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    final CIILineModel aLine = CIILineModel.create (new SupplyChainTradeLineItemType (), CIIToUBLSettings.DEFAULT, aErrorList);
+    assertNotNull (aLine);
+    assertNull (aLine.getID ());
+    assertNull (aLine.getQuantity ());
+    assertFalse (aLine.hasInvoicePeriod ());
+    assertFalse (aLine.hasOriginCountry ());
+    assertFalse (aLine.hasPrice ());
+    assertTrue (aLine.getAllAllowanceCharges ().isEmpty ());
+    assertTrue (aLine.getAllTaxCategories ().isEmpty ());
+    assertNotNull (aLine.toString ());
+  }
+
+  @Test
+  public void testAllTestFiles ()
+  {
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, aErrorList);
+      assertNotNull (aCII);
+
+      for (final SupplyChainTradeLineItemType aLineItem : aCII.getSupplyChainTradeTransaction ().getIncludedSupplyChainTradeLineItem ())
+      {
+        final CIILineModel aLine = CIILineModel.create (aLineItem, CIIToUBLSettings.DEFAULT, aErrorList);
+        assertNotNull (aFile.getName (), aLine.getID ());
+        assertNotNull (aLine.toString ());
+      }
+      assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.state.ETriState;
+import com.helger.commons.string.StringHelper;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TaxRegistrationType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradePartyType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeSettlementHeaderMonetarySummationType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
+
+/**
+ * Test class for class {@link CIIPreScan}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIPreScanTest
+{
+  @Nullable
+  private static IDType _getPartyID (@Nullable final TradePartyType aParty)
+  {
+    if (aParty == null)
+      return null;
+    if (AbstractCIIToUBLConverter.canUseGlobalID (aParty))
+      return AbstractCIIToUBLConverter.getAllUsableGlobalIDs (aParty).getFirst ();
+    return aParty.hasIDEntries () ? aParty.getIDAtIndex (0) : null;
+  }
+
+  private static void _assertPartyID (@Nonnull final String sMsg,
+                                      @Nullable final TradePartyType aParty,
+                                      @Nullable final String sID,
+                                      @Nullable final String sSchemeID)
+  {
+    final IDType aID = _getPartyID (aParty);
+    assertEquals (sMsg, aID == null ? null : StringHelper.trim (aID.getValue ()), sID);
+    assertEquals (sMsg, aID == null ? null : aID.getSchemeID (), sSchemeID);
+  }
+
+  @Nullable
+  private static String _getVATID (@Nonnull final TradePartyType aParty)
+  {
+    for (final TaxRegistrationType aTaxReg : aParty.getSpecifiedTaxRegistration ())
+      if (aTaxReg.getID () != null && "VA".equals (aTaxReg.getID ().getSchemeID ()))
+        return StringHelper.trim (aTaxReg.getIDValue ());
+    return null;
+  }
+
+  @Test
+  public void testAllTestFiles ()
+  {
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final String sName = aFile.getName ();
+      final ErrorList aErrorList = new ErrorList ();
+      final CIIPreScan aScan = CIIPreScan.scan (aFile.toPath (), aErrorList);
+      assertNotNull (sName + ": " + aErrorList, aScan);
+      assertTrue (sName + ": " + aErrorList, aErrorList.containsNoError ());
+
+      // Compare with the full unmarshalling
+      final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, aErrorList);
+      assertNotNull (sName, aCII);
+
+      assertEquals (sName, StringHelper.trim (aCII.getExchangedDocument ().getIDValue ()), aScan.getDocumentID ());
+      assertEquals (sName, StringHelper.trim (aCII.getExchangedDocument ().getTypeCodeValue ()), aScan.getTypeCode ());
+      assertEquals (sName,
+                    StringHelper.trim (aCII.getSupplyChainTradeTransaction ().getApplicableHeaderTradeSettlement ().getInvoiceCurrencyCodeValue ()),
+                    aScan.getCurrencyCode ());
+
+      final TradeSettlementHeaderMonetarySummationType aTotal = aCII.getSupplyChainTradeTransaction ()
+                                                                    .getApplicableHeaderTradeSettlement ()
+                                                                    .getSpecifiedTradeSettlementHeaderMonetarySummation ();
+      if (aTotal == null || aTotal.hasNoDuePayableAmountEntries ())
+        assertNull (sName, aScan.getDuePayableAmount ());
+      else
+        assertEquals (sName, 0, aTotal.getDuePayableAmountAtIndex (0).getValue ().compareTo (aScan.getDuePayableAmount ()));
+
+      _assertPartyID (sName,
+                      aCII.getSupplyChainTradeTransaction ().getApplicableHeaderTradeAgreement ().getSellerTradeParty (),
+                      aScan.getSellerID (),
+                      aScan.getSellerIDSchemeID ());
+      assertEquals (sName,
+                    _getVATID (aCII.getSupplyChainTradeTransaction ().getApplicableHeaderTradeAgreement ().getSellerTradeParty ()),
+                    aScan.getSellerVATID ());
+      _assertPartyID (sName,
+                      aCII.getSupplyChainTradeTransaction ().getApplicableHeaderTradeAgreement ().getBuyerTradeParty (),
+                      aScan.getBuyerID (),
+                      aScan.getBuyerIDSchemeID ());
+
+      assertEquals (sName, CIIHeaderModel.getLineCount (aCII), aScan.getLineCount ());
+      assertSame (sName, AbstractCIIToUBLConverter.isInvoiceType (aCII), aScan.getInvoiceType ());
+    }
+  }
+
+  @Test
+  public void testGenerated ()
+  {
+    for (final boolean bCreditNote : new boolean [] { false, true })
+    {
+      final byte [] aBytes = CIIInvoiceGenerator.builder ().seed (4711).lineCount (500).creditNote (bCreditNote).build ().getAsBytes ();
+      final ErrorList aErrorList = new ErrorList ();
+      final CIIPreScan aScan = CIIPreScan.scan (aBytes, aErrorList);
+      assertNotNull (aErrorList.toString (), aScan);
+      assertEquals (500, aScan.getLineCount ());
+      assertSame (ETriState.valueOf (!bCreditNote), aScan.getInvoiceType ());
+      assertNotNull (aScan.getDocumentID ());
+      assertNotNull (aScan.getCurrencyCode ());
+      assertTrue (aScan.getSellerVATID ().startsWith ("DE"));
+    }
+  }
+
+  @Test
+  public void testInvalid ()
+  {
+    // Not CII
+    ErrorList aErrorList = new ErrorList ();
+    assertNull (CIIPreScan.scan ("<Invoice xmlns='urn:oasis:names:specification:ubl:schema:xsd:Invoice-2' />".getBytes (StandardCharsets.UTF_8),
+                                 aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+
+    // Not well-formed
+    aErrorList = new ErrorList ();
+    assertNull (CIIPreScan.scan ("<a>".getBytes (StandardCharsets.UTF_8), aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+
+    // Unparsable amount
+    aErrorList = new ErrorList ();
+    final CIIPreScan aScan = CIIPreScan.scan (("<rsm:CrossIndustryInvoice xmlns:rsm='urn:un:unece:uncefact:data:standard:CrossIndustryInvoice:100'" +
+                                               " xmlns:ram='urn:un:unece:uncefact:data:standard:ReusableAggregateBusinessInformationEntity:100'>" +
+                                               "<rsm:SupplyChainTradeTransaction><ram:ApplicableHeaderTradeSettlement>" +
+                                               "<ram:SpecifiedTradeSettlementHeaderMonetarySummation>" +
+                                               "<ram:DuePayableAmount>abc</ram:DuePayableAmount>" +
+                                               "</ram:SpecifiedTradeSettlementHeaderMonetarySummation>" +
+                                               "</ram:ApplicableHeaderTradeSettlement></rsm:SupplyChainTradeTransaction>" +
+                                               "</rsm:CrossIndustryInvoice>").getBytes (StandardCharsets.UTF_8),
+                                              aErrorList);
+    assertNotNull (aScan);
+    assertNull (aScan.getDuePayableAmount ());
+    assertEquals (0, aScan.getLineCount ());
+    assertSame (ETriState.UNDEFINED, aScan.getInvoiceType ());
+    assertTrue (aErrorList.containsNoError ());
+    assertEquals (1, aErrorList.size ());
+  }
+}
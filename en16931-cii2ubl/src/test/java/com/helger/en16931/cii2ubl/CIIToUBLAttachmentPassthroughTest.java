@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.ubl23.UBL23Reader;
+
+import oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ReferencedDocumentType;
+
+/**
+ * Test class for class {@link CIIToUBLAttachmentPassthrough}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLAttachmentPassthroughTest
+{
+  private static final CIIInvoiceGenerator GENERATOR = CIIInvoiceGenerator.builder ()
+                                                                          .lineCount (20)
+                                                                          .referencedDocumentCount (2)
+                                                                          .attachmentSize (50_000)
+                                                                          .build ();
+
+  @Test
+  public void testReadMarkers () throws Exception
+  {
+    try (final CIIToUBLAttachmentPassthrough aPassthrough = new CIIToUBLAttachmentPassthrough (1000);
+         final InputStream aIS = new NonBlockingByteArrayInputStream (GENERATOR.getAsBytes ()))
+    {
+      final XMLStreamReader aReader = aPassthrough.wrap (CIIUnmarshallerPool.createXMLStreamReader (aIS, null));
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (false).read (aReader, aErrorList);
+      assertNotNull (aErrorList.toString (), aCII);
+
+      int nAttachments = 0;
+      for (final ReferencedDocumentType aRD : aCII.getSupplyChainTradeTransaction ()
+                                                  .getApplicableHeaderTradeAgreement ()
+                                                  .getAdditionalReferencedDocument ())
+        if (aRD.getAttachmentBinaryObjectCount () > 0)
+        {
+          // Only the marker was decoded
+          assertEquals (24, aRD.getAttachmentBinaryObjectAtIndex (0).getValue ().length);
+          assertEquals ("application/pdf", aRD.getAttachmentBinaryObjectAtIndex (0).getMimeCode ());
+          nAttachments++;
+        }
+      assertTrue (nAttachments > 0);
+      assertEquals (nAttachments, aPassthrough.getSpooledCount ());
+      // 50000 bytes are 66668 base64 characters
+      assertEquals (nAttachments * 66_668L, aPassthrough.getSpooledChars ());
+    }
+  }
+
+  @Test
+  public void testSameResultAsDecoding () throws Exception
+  {
+    final Path aFile = Files.createTempFile ("cii2ubl-passthrough", ".xml");
+    try
+    {
+      Files.write (aFile, GENERATOR.getAsBytes ());
+      final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ();
+
+      final ErrorList aErrorList = new ErrorList ();
+      final NonBlockingByteArrayOutputStream aExpected = new NonBlockingByteArrayOutputStream ();
+      assertTrue (aConverter.convertStreaming (aFile, aExpected, aConverter.getSettings (), aErrorList).isSuccess ());
+
+      for (final int nThreshold : new int [] { 1, 1000, 66_668, 1_000_000 })
+      {
+        final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+        assertTrue (aConverter.convertStreaming (aFile,
+                                                 aBAOS,
+                                                 CIIToUBLSettings.builder ().attachmentPassthroughThreshold (nThreshold).build (),
+                                                 aErrorList)
+                              .isSuccess ());
+        assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+
+        // Read it again with XML Schema validation
+        final InvoiceType aRead = UBL23Reader.invoice ().read (aBAOS.toByteArray ());
+        assertNotNull (aRead);
+        assertEquals (UBL23Reader.invoice ().read (aExpected.toByteArray ()), aRead);
+      }
+    }
+    finally
+    {
+      Files.deleteIfExists (aFile);
+    }
+  }
+}
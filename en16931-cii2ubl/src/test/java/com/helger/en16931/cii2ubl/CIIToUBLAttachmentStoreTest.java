@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.FileOperations;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.DocumentReferenceType;
+import oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link CIIToUBLAttachmentStore}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLAttachmentStoreTest
+{
+  @Test
+  public void testContentHash ()
+  {
+    assertEquals ("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                  CIIToUBLAttachmentStore.getContentHash (new byte [0]));
+    assertEquals ("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                  CIIToUBLAttachmentStore.getContentHash ("abc".getBytes (StandardCharsets.US_ASCII)));
+  }
+
+  @Test
+  public void testHeapDeduplication ()
+  {
+    final CIIToUBLAttachmentStore aStore = new CIIToUBLAttachmentStore (10);
+    assertFalse (aStore.isExternalizing ());
+    assertNull (aStore.getShared (null));
+
+    final byte [] aContent1 = "abcd".getBytes (StandardCharsets.US_ASCII);
+    assertSame (aContent1, aStore.getShared (aContent1));
+    assertSame (aContent1, aStore.getShared (aContent1.clone ()));
+    assertEquals (1, aStore.getHeapEntryCount ());
+    assertEquals (4, aStore.getHeapBytes ());
+    assertEquals (1, aStore.getHeapHitCount ());
+    assertEquals (1, aStore.getHeapMissCount ());
+
+    // Exceeds the limit - the first one is evicted
+    final byte [] aContent2 = "efghijkl".getBytes (StandardCharsets.US_ASCII);
+    assertSame (aContent2, aStore.getShared (aContent2));
+    assertEquals (1, aStore.getHeapEntryCount ());
+    assertEquals (8, aStore.getHeapBytes ());
+    final byte [] aContent1Copy = aContent1.clone ();
+    assertSame (aContent1Copy, aStore.getShared (aContent1Copy));
+
+    // Larger than the heap - never cached
+    final byte [] aLarge = new byte [11];
+    assertSame (aLarge, aStore.getShared (aLarge));
+    assertSame (aLarge, aStore.getShared (aLarge));
+    assertTrue (aStore.getHeapBytes () <= 10);
+
+    aStore.clearHeap ();
+    assertEquals (0, aStore.getHeapEntryCount ());
+    assertEquals (0, aStore.getHeapBytes ());
+
+    // Not externalizing
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (aStore.externalize (aContent1, aErrorList));
+    assertTrue (aErrorList.isEmpty ());
+  }
+
+  @Test
+  public void testExternalize () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-attachments");
+    try
+    {
+      final CIIToUBLAttachmentStore aStore = new CIIToUBLAttachmentStore (0, aDir, "https://example.org/att", 4);
+      assertTrue (aStore.isExternalizing ());
+      assertEquals ("https://example.org/att/", aStore.getBaseURI ());
+
+      final ErrorList aErrorList = new ErrorList ();
+      final byte [] aContent = "abcd".getBytes (StandardCharsets.US_ASCII);
+      final CIIToUBLAttachmentStore.StoredAttachment aStored = aStore.externalize (aContent, aErrorList);
+      assertNotNull (aStored);
+      final String sHash = CIIToUBLAttachmentStore.getContentHash (aContent);
+      assertEquals (sHash, aStored.getHash ());
+      assertEquals ("https://example.org/att/" + sHash.substring (0, 2) + "/" + sHash, aStored.getURI ());
+      assertArrayEquals (aContent, Files.readAllBytes (aDir.resolve (sHash.substring (0, 2)).resolve (sHash)));
+      assertEquals (1, aStore.getStoredCount ());
+      assertEquals (4, aStore.getStoredBytes ());
+
+      // Same content again - not written again
+      assertEquals (aStored.getURI (), aStore.externalize (aContent.clone (), aErrorList).getURI ());
+      assertEquals (2, aStore.getExternalizedCount ());
+      assertEquals (1, aStore.getStoredCount ());
+
+      // Too small
+      assertNull (aStore.externalize (new byte [3], aErrorList));
+      assertNull (aStore.externalize (null, aErrorList));
+      assertEquals (2, aStore.getExternalizedCount ());
+      assertTrue (aErrorList.toString (), aErrorList.isEmpty ());
+
+      // Without base URI the file URI is used
+      final CIIToUBLAttachmentStore aFileStore = new CIIToUBLAttachmentStore (0, aDir, null, 0);
+      final CIIToUBLAttachmentStore.StoredAttachment aFileStored = aFileStore.externalize (aContent, aErrorList);
+      assertNotNull (aFileStored);
+      assertTrue (aFileStored.getURI (), aFileStored.getURI ().startsWith ("file:"));
+      assertTrue (aFileStored.getURI (), aFileStored.getURI ().endsWith ("/" + sHash));
+      // Already contained
+      assertEquals (0, aFileStore.getStoredCount ());
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testConvertExternalized () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-attachments");
+    try
+    {
+      final CIIToUBLAttachmentStore aStore = new CIIToUBLAttachmentStore (0, aDir, "https://example.org/att/", 0);
+      final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ().setUBLCreationMode (EUBLCreationMode.INVOICE)
+                                                                       .setAttachmentStore (aStore);
+      assertSame (aStore, aConverter.getAttachmentStore ());
+
+      final byte [] aCIIBytes = CIIInvoiceGenerator.builder ().referencedDocumentCount (2).attachmentSize (1_000).build ().getAsBytes ();
+      for (int i = 0; i < 2; ++i)
+      {
+        final ErrorList aErrorList = new ErrorList ();
+        final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aCIIBytes, aErrorList);
+        assertNotNull (aCII);
+
+        final InvoiceType aUBL = (InvoiceType) aConverter.convertCIItoUBL (aCII, aErrorList);
+        assertNotNull (aUBL);
+        assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+
+        int nExternalized = 0;
+        for (final DocumentReferenceType aDocRef : aUBL.getAdditionalDocumentReference ())
+          if (aDocRef.getAttachment () != null)
+          {
+            assertNull (aDocRef.getAttachment ().getEmbeddedDocumentBinaryObject ());
+            assertNotNull (aDocRef.getAttachment ().getExternalReference ());
+            assertTrue (aDocRef.getAttachment ().getExternalReference ().getURIValue ().startsWith ("https://example.org/att/"));
+            nExternalized++;
+          }
+        assertTrue (nExternalized > 0);
+      }
+
+      // The second conversion did not store anything new
+      assertTrue (aStore.getStoredCount () > 0);
+      assertTrue (aStore.getStoredCount () * 2 <= aStore.getExternalizedCount ());
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Compares the output of the current converters with the output of the
+ * unchanged converters of version 1.4.8 (see package
+ * <code>com.helger.en16931.cii2ubl.baseline</code>) for all test files, UBL
+ * versions, creation modes and all settings known to the old converters.
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLBaselineTest
+{
+  @Nonnull
+  private static ICommonsList <CIIToUBLSettings> _getAllSettings ()
+  {
+    final ICommonsList <CIIToUBLSettings> ret = new CommonsArrayList <> ();
+    for (final EUBLCreationMode eMode : EUBLCreationMode.values ())
+    {
+      final CIIToUBLSettings aBase = CIIToUBLSettings.builder ().ublCreationMode (eMode).build ();
+      ret.add (aBase);
+      for (final boolean bSwapQuantity : new boolean [] { true, false })
+        for (final boolean bSwapPrice : new boolean [] { true, false })
+          ret.add (CIIToUBLSettings.builder (aBase).swapQuantitySignIfNeeded (bSwapQuantity).swapPriceSignIfNeeded (bSwapPrice).build ());
+      ret.add (CIIToUBLSettings.builder (aBase)
+                               .vatScheme ("VAT2")
+                               .customizationID ("customization")
+                               .profileID ("profile")
+                               .cardAccountNetworkID ("mastercard")
+                               .build ());
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static com.helger.en16931.cii2ubl.baseline.AbstractCIIToUBLConverter <?> _createBaselineConverter (@Nonnull final EUBLVersion eVersion,
+                                                                                                            @Nonnull final CIIToUBLSettings aSettings)
+  {
+    final com.helger.en16931.cii2ubl.baseline.AbstractCIIToUBLConverter <?> ret;
+    switch (eVersion)
+    {
+      case UBL_21:
+        ret = new com.helger.en16931.cii2ubl.baseline.CIIToUBL21Converter ();
+        break;
+      case UBL_22:
+        ret = new com.helger.en16931.cii2ubl.baseline.CIIToUBL22Converter ();
+        break;
+      case UBL_23:
+        ret = new com.helger.en16931.cii2ubl.baseline.CIIToUBL23Converter ();
+        break;
+      default:
+        throw new IllegalStateException ("Unsupported version " + eVersion);
+    }
+    ret.setUBLCreationMode (aSettings.getUBLCreationMode ())
+       .setVATScheme (aSettings.getVATScheme ())
+       .setCustomizationID (aSettings.getCustomizationID ())
+       .setProfileID (aSettings.getProfileID ())
+       .setCardAccountNetworkID (aSettings.getCardAccountNetworkID ())
+       .setSwapQuantitySignIfNeeded (aSettings.isSwapQuantitySignIfNeeded ())
+       .setSwapPriceSignIfNeeded (aSettings.isSwapPriceSignIfNeeded ());
+    return ret;
+  }
+
+  @Nullable
+  private static String _getAsString (@Nullable final Serializable aUBL)
+  {
+    if (aUBL == null)
+      return null;
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      assertTrue (aErrorList.toString (), UBLMarshallerPool.getShared ().write (aUBL, aBAOS, aErrorList).isSuccess ());
+      return aBAOS.getAsString (StandardCharsets.UTF_8);
+    }
+  }
+
+  @Test
+  public void testAllTestFiles ()
+  {
+    final ICommonsList <CIIToUBLSettings> aAllSettings = _getAllSettings ();
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, new ErrorList ());
+      assertNotNull (aFile.getName (), aCII);
+
+      for (final EUBLVersion eVersion : EUBLVersion.values ())
+        for (final CIIToUBLSettings aSettings : aAllSettings)
+        {
+          final String sMsg = aFile.getName () + " " + eVersion.getID () + " " + aSettings;
+
+          final ErrorList aBaselineErrorList = new ErrorList ();
+          final Serializable aBaselineUBL = _createBaselineConverter (eVersion, aSettings).convertCIItoUBL (aCII, aBaselineErrorList);
+
+          final ErrorList aErrorList = new ErrorList ();
+          final Serializable aUBL = eVersion.createConverter ().convertCIItoUBL (aCII, aSettings, aErrorList);
+
+          assertEquals (sMsg, aBaselineErrorList.containsAtLeastOneError (), aErrorList.containsAtLeastOneError ());
+          assertEquals (sMsg, _getAsString (aBaselineUBL), _getAsString (aUBL));
+        }
+    }
+  }
+}
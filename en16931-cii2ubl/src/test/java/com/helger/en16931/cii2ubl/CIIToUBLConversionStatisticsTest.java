@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+
+/**
+ * Test class for class {@link CIIToUBLConversionStatistics}
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLConversionStatisticsTest
+{
+  @Test
+  public void testBuckets ()
+  {
+    long nLastMid = -1;
+    for (int i = 0; i < 100_000; ++i)
+    {
+      final int nIndex = CIIToUBLConversionStatistics.Histogram.getBucketIndex (i);
+      final long nMid = CIIToUBLConversionStatistics.Histogram.getBucketMidValue (nIndex);
+      // Relative error is at most 1/16
+      assertTrue (i + " -> " + nMid, Math.abs (nMid - i) <= i / 16 + 1);
+      assertTrue (nMid >= nLastMid);
+      nLastMid = nMid;
+    }
+  }
+
+  @Test
+  public void testPercentiles ()
+  {
+    final CIIToUBLConversionStatistics aStats = new CIIToUBLConversionStatistics ();
+    assertEquals (0, aStats.getTotalHistogram ().getPercentileNanos (50));
+
+    // 1ms to 100ms
+    for (int i = 1; i <= 100; ++i)
+      aStats.onConversion (new CIIToUBLConversionEvent (0, i * 1_000_000L, 0, 1024, 10, 0, true));
+    aStats.onConversion (new CIIToUBLConversionEvent (0, 0, 0, CIIToUBLConversionEvent.UNKNOWN, CIIToUBLConversionEvent.UNKNOWN, 2, false));
+
+    assertEquals (101, aStats.getDocumentCount ());
+    assertEquals (1, aStats.getFailedDocumentCount ());
+    assertEquals (2, aStats.getErrorCount ());
+    assertEquals (100 * 1024, aStats.getDocumentBytes ());
+    assertEquals (1000, aStats.getLineCount ());
+
+    final CIIToUBLConversionStatistics.Histogram aHG = aStats.getConvertHistogram ();
+    assertEquals (101, aHG.getCount ());
+    assertEquals (100_000_000L, aHG.getMaxNanos ());
+    assertEquals (50_000_000d, aHG.getPercentileNanos (50), 50_000_000d / 16);
+    assertEquals (95_000_000d, aHG.getPercentileNanos (95), 95_000_000d / 16);
+    assertEquals (99_000_000d, aHG.getPercentileNanos (99), 99_000_000d / 16);
+    assertEquals (100_000_000L, aHG.getPercentileNanos (100));
+    assertEquals (0, aStats.getReadHistogram ().getPercentileNanos (99));
+    assertNotNull (aStats.getSummary ());
+  }
+
+  @Test
+  public void testListener ()
+  {
+    final ICommonsList <CIIToUBLConversionEvent> aEvents = new CommonsArrayList <> ();
+    final CIIToUBLConversionStatistics aStats = new CIIToUBLConversionStatistics ();
+    final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ();
+    aConverter.setConversionListener (e -> {
+      aEvents.add (e);
+      aStats.onConversion (e);
+    });
+
+    int nCount = 0;
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      assertNotNull (aConverter.convertCIItoUBL (aFile, aErrorList));
+
+      final CIIToUBLConversionEvent aEvent = aEvents.getLast ();
+      assertTrue (aEvent.isSuccess ());
+      assertEquals (aFile.length (), aEvent.getDocumentBytes ());
+      assertTrue (aEvent.getLineCount () > 0);
+      assertEquals (0, aEvent.getWriteNanos ());
+      nCount++;
+    }
+    assertEquals (nCount, aEvents.size ());
+    assertEquals (nCount, aStats.getDocumentCount ());
+    assertTrue (aStats.getDocumentsPerSecond () > 0);
+
+    // Reading from a stream and writing
+    final byte [] aBytes = "<bla/>".getBytes (StandardCharsets.UTF_8);
+    final ErrorList aErrorList = new ErrorList ();
+    assertTrue (aConverter.convert (new NonBlockingByteArrayInputStream (aBytes), new NonBlockingByteArrayOutputStream (), aErrorList)
+                          .isFailure ());
+    final CIIToUBLConversionEvent aEvent = aEvents.getLast ();
+    assertFalse (aEvent.isSuccess ());
+    assertEquals (aBytes.length, aEvent.getDocumentBytes ());
+    assertEquals (CIIToUBLConversionEvent.UNKNOWN, aEvent.getLineCount ());
+    assertTrue (aEvent.getErrorCount () > 0);
+
+    // Not reported without listener
+    aConverter.setConversionListener (null);
+    assertNull (aConverter.getConversionListener ());
+    assertNotNull (aConverter.convertCIItoUBL (MockSettings.getAllTestFiles ().getFirst (), new ErrorList ()));
+    assertEquals (nCount + 1, aEvents.size ());
+  }
+
+  @Test
+  public void testInterleaved ()
+  {
+    final CIIToUBLConversionStatistics aStats = new CIIToUBLConversionStatistics ();
+    aStats.onConversion (new CIIToUBLConversionEvent (1_000_000L, 2_000_000L, 3_000_000L, 1024, 10, 0, true));
+    aStats.onConversion (CIIToUBLConversionEvent.createInterleaved (50_000_000L, 4096, 1000, 0, true));
+
+    // Only part of the interleaved and the total histograms
+    assertEquals (2, aStats.getDocumentCount ());
+    assertEquals (1010, aStats.getLineCount ());
+    assertEquals (1, aStats.getReadHistogram ().getCount ());
+    assertEquals (1_000_000L, aStats.getReadHistogram ().getMaxNanos ());
+    assertEquals (1, aStats.getConvertHistogram ().getCount ());
+    assertEquals (1, aStats.getWriteHistogram ().getCount ());
+    assertEquals (1, aStats.getInterleavedHistogram ().getCount ());
+    assertEquals (50_000_000L, aStats.getInterleavedHistogram ().getMaxNanos ());
+    assertEquals (2, aStats.getTotalHistogram ().getCount ());
+    assertEquals (56_000_000L, aStats.getTotalHistogram ().getTotalNanos ());
+    assertTrue (aStats.getSummary ().contains ("interleaved"));
+  }
+
+  @Test
+  public void testStreamingListener () throws Exception
+  {
+    final ICommonsList <CIIToUBLConversionEvent> aEvents = new CommonsArrayList <> ();
+    final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ();
+    aConverter.setConversionListener (aEvents::add);
+
+    final File aFile = MockSettings.getAllTestFiles ().getFirst ();
+    final ErrorList aErrorList = new ErrorList ();
+    assertTrue (aConverter.convertStreaming (aFile.toPath (), new NonBlockingByteArrayOutputStream (), aErrorList).isSuccess ());
+    assertEquals (1, aEvents.size ());
+
+    final CIIToUBLConversionEvent aEvent = aEvents.getFirst ();
+    assertTrue (aEvent.isInterleaved ());
+    assertTrue (aEvent.isSuccess ());
+    assertEquals (0, aEvent.getReadNanos ());
+    assertTrue (aEvent.getTotalNanos () > 0);
+    assertEquals (aFile.length (), aEvent.getDocumentBytes ());
+    assertEquals (CIIHeaderModel.getLineCount (CIIUnmarshallerPool.getShared (true).read (aFile, aErrorList)), aEvent.getLineCount ());
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.FileOperations;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link CIIToUBLDirectConverter}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLDirectConverterTest
+{
+  @Nonnull
+  private static Element _parse (@Nonnull final byte [] aBytes) throws Exception
+  {
+    final DocumentBuilderFactory aDBF = DocumentBuilderFactory.newInstance ();
+    aDBF.setNamespaceAware (true);
+    return aDBF.newDocumentBuilder ().parse (new ByteArrayInputStream (aBytes)).getDocumentElement ();
+  }
+
+  @Nonnull
+  private static Map <String, String> _getAttributes (@Nonnull final Element aElement)
+  {
+    final Map <String, String> ret = new TreeMap <> ();
+    final NamedNodeMap aAttrs = aElement.getAttributes ();
+    for (int i = 0; i < aAttrs.getLength (); ++i)
+    {
+      final Node aAttr = aAttrs.item (i);
+      // Namespace declarations may be placed differently
+      if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals (aAttr.getNamespaceURI ()))
+        ret.put ("{" + aAttr.getNamespaceURI () + "}" + aAttr.getLocalName (), aAttr.getNodeValue ());
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private static ICommonsList <Element> _getChildElements (@Nonnull final Element aElement)
+  {
+    final ICommonsList <Element> ret = new CommonsArrayList <> ();
+    for (Node aChild = aElement.getFirstChild (); aChild != null; aChild = aChild.getNextSibling ())
+      if (aChild.getNodeType () == Node.ELEMENT_NODE)
+        ret.add ((Element) aChild);
+    return ret;
+  }
+
+  /**
+   * Compare two elements while ignoring formatting, namespace prefixes and the
+   * location of namespace declarations.
+   */
+  private static void _assertEquals (@Nonnull final String sPath, @Nonnull final Element aExpected, @Nonnull final Element aActual)
+  {
+    assertEquals (sPath, aExpected.getNamespaceURI (), aActual.getNamespaceURI ());
+    assertEquals (sPath, aExpected.getLocalName (), aActual.getLocalName ());
+    assertEquals (sPath, _getAttributes (aExpected), _getAttributes (aActual));
+
+    final ICommonsList <Element> aExpectedChildren = _getChildElements (aExpected);
+    final ICommonsList <Element> aActualChildren = _getChildElements (aActual);
+    if (aExpectedChildren.isEmpty ())
+      assertEquals (sPath, aExpected.getTextContent (), aActual.getTextContent ());
+    assertEquals (sPath, aExpectedChildren.size (), aActualChildren.size ());
+    for (int i = 0; i < aExpectedChildren.size (); ++i)
+    {
+      final Element aChild = aExpectedChildren.get (i);
+      _assertEquals (sPath + "/" + aChild.getLocalName () + "[" + i + "]", aChild, aActualChildren.get (i));
+    }
+  }
+
+  /**
+   * @param aStoreDir
+   *        The directory for the externalizing attachment store.
+   * @return All settings that influence the line mapping.
+   */
+  @Nonnull
+  private static ICommonsList <CIIToUBLSettings> _getAllSettings (@Nonnull final Path aStoreDir) throws Exception
+  {
+    final ICommonsList <CIIToUBLSettings> ret = new CommonsArrayList <> ();
+    ret.add (CIIToUBLSettings.DEFAULT);
+    for (final boolean bSwapQuantity : new boolean [] { true, false })
+      for (final boolean bSwapPrice : new boolean [] { true, false })
+        ret.add (CIIToUBLSettings.builder ().swapQuantitySignIfNeeded (bSwapQuantity).swapPriceSignIfNeeded (bSwapPrice).build ());
+    ret.add (CIIToUBLSettings.builder ().vatScheme ("VAT2").cardAccountNetworkID ("mastercard").build ());
+    ret.add (CIIToUBLSettings.builder ().attachmentStore (new CIIToUBLAttachmentStore (1024 * 1024)).build ());
+    ret.add (CIIToUBLSettings.builder ().attachmentStore (new CIIToUBLAttachmentStore (0, aStoreDir, "https://example.org/att", 0)).build ());
+    return ret;
+  }
+
+  private static void _testSameAsJAXB (@Nonnull final String sName,
+                                       @Nonnull final CrossIndustryInvoiceType aCII,
+                                       @Nonnull final CIIToUBLSettings aSettings) throws Exception
+  {
+    for (final EUBLVersion eVersion : EUBLVersion.values ())
+    {
+      final AbstractCIIToUBLConverter <?> aConverter = eVersion.createConverter ();
+
+      // The regular way
+      final ErrorList aErrorList = new ErrorList ();
+      final Serializable aUBL = aConverter.convertCIItoUBL (aCII, aSettings, aErrorList);
+      assertNotNull (sName, aUBL);
+      final NonBlockingByteArrayOutputStream aExpected = new NonBlockingByteArrayOutputStream ();
+      assertTrue (sName, UBLMarshallerPool.getShared ().write (aUBL, aExpected, aErrorList).isSuccess ());
+      assertTrue (sName + ": " + aErrorList.toString (), aErrorList.containsNoError ());
+
+      // The direct way
+      try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+      {
+        final ErrorList aDirectErrorList = new ErrorList ();
+        assertTrue (sName, aConverter.convertDirect (aCII, aBAOS, aSettings, aDirectErrorList).isSuccess ());
+        assertTrue (sName + ": " + aDirectErrorList.toString (), aDirectErrorList.containsNoError ());
+
+        final Element aExpectedRoot = _parse (aExpected.toByteArray ());
+        _assertEquals (sName + " " + eVersion.getID () + " " + aSettings + ": /" + aExpectedRoot.getLocalName (),
+                       aExpectedRoot,
+                       _parse (aBAOS.toByteArray ()));
+      }
+    }
+  }
+
+  @Test
+  public void testAllTestFiles () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-direct");
+    try
+    {
+      final ICommonsList <CIIToUBLSettings> aAllSettings = _getAllSettings (aDir);
+      for (final File aFile : MockSettings.getAllTestFiles ())
+      {
+        final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, new ErrorList ());
+        assertNotNull (aFile.getName (), aCII);
+        for (final CIIToUBLSettings aSettings : aAllSettings)
+          _testSameAsJAXB (aFile.getName (), aCII, aSettings);
+      }
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testGenerated () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-direct");
+    try
+    {
+      final CrossIndustryInvoiceType aInvoice = CIIInvoiceGenerator.builder ()
+                                                                   .seed (4711)
+                                                                   .lineCount (100)
+                                                                   .taxCategoryCount (3)
+                                                                   .referencedDocumentCount (2)
+                                                                   .attachmentSize (1000)
+                                                                   .build ()
+                                                                   .getAsCrossIndustryInvoice ();
+      final CrossIndustryInvoiceType aCreditNote = CIIInvoiceGenerator.builder ()
+                                                                      .seed (4712)
+                                                                      .lineCount (20)
+                                                                      .creditNote (true)
+                                                                      .build ()
+                                                                      .getAsCrossIndustryInvoice ();
+      for (final CIIToUBLSettings aSettings : _getAllSettings (aDir))
+      {
+        _testSameAsJAXB ("invoice", aInvoice, aSettings);
+        _testSameAsJAXB ("credit note", aCreditNote, aSettings);
+      }
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testPreviousErrorsAreIgnored ()
+  {
+    final File aFile = MockSettings.getAllTestFiles ().getFirst ();
+    final ErrorList aErrorList = new ErrorList ();
+    aErrorList.add (SingleError.builderError ().errorText ("Previous error").build ());
+    final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, aErrorList);
+    assertNotNull (aCII);
+
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      assertTrue (new CIIToUBL23Converter ().convertDirect (aCII, aBAOS, aErrorList).isSuccess ());
+      assertTrue (aBAOS.size () > 0);
+      assertFalse (AbstractCIIToUBLConverter.containsErrorSince (aErrorList, 1));
+    }
+  }
+}
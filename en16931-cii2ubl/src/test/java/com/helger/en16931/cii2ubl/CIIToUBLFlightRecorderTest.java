@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link CIIToUBLFlightRecorder}
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLFlightRecorderTest
+{
+  @Test
+  public void testEvents () throws Exception
+  {
+    final File aFile = MockSettings.getAllTestFiles ().getFirst ();
+    final ICommonsList <RecordedEvent> aEvents = new CommonsArrayList <> ();
+    final Path aDumpFile = Files.createTempFile ("cii2ubl", ".jfr");
+    try
+    {
+      try (final Recording aRecording = new Recording ())
+      {
+        for (final String sName : new String [] { "CIIRead", "Convert", "LineBatch", "UBLWrite" })
+          aRecording.enable ("com.helger.en16931.cii2ubl." + sName).withoutThreshold ();
+        aRecording.start ();
+
+        final ErrorList aErrorList = new ErrorList ();
+        try (final InputStream aIS = Files.newInputStream (aFile.toPath ());
+            final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+        {
+          assertTrue (new CIIToUBL23Converter ().convert (aIS, aBAOS, aErrorList).isSuccess ());
+        }
+        assertTrue (aErrorList.containsNoError ());
+
+        aRecording.stop ();
+        aRecording.dump (aDumpFile);
+      }
+      aEvents.addAll (RecordingFile.readAllEvents (aDumpFile));
+    }
+    finally
+    {
+      Files.deleteIfExists (aDumpFile);
+    }
+
+    final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, new ErrorList ());
+    final String sInvoiceID = aCII.getExchangedDocument ().getIDValue ();
+    final int nLineCount = CIIHeaderModel.getLineCount (aCII);
+
+    final RecordedEvent aRead = aEvents.findFirst (x -> x.getEventType ().getName ().endsWith (".CIIRead"));
+    assertEquals (sInvoiceID, aRead.getString ("invoiceID"));
+    assertEquals (nLineCount, aRead.getInt ("lineCount"));
+    assertTrue (aRead.getLong ("size") > 0);
+    assertTrue (aRead.getBoolean ("success"));
+
+    final RecordedEvent aConvert = aEvents.findFirst (x -> x.getEventType ().getName ().endsWith (".Convert"));
+    assertEquals (sInvoiceID, aConvert.getString ("invoiceID"));
+    assertEquals (nLineCount, aConvert.getInt ("lineCount"));
+    assertTrue (aConvert.getBoolean ("success"));
+
+    final RecordedEvent aLineBatch = aEvents.findFirst (x -> x.getEventType ().getName ().endsWith (".LineBatch"));
+    assertEquals (sInvoiceID, aLineBatch.getString ("invoiceID"));
+    assertEquals (nLineCount, aLineBatch.getInt ("lineCount"));
+
+    final RecordedEvent aWrite = aEvents.findFirst (x -> x.getEventType ().getName ().endsWith (".UBLWrite"));
+    assertEquals (sInvoiceID, aWrite.getString ("invoiceID"));
+    assertTrue (aWrite.getLong ("size") > 0);
+    assertTrue (aWrite.getBoolean ("success"));
+  }
+}
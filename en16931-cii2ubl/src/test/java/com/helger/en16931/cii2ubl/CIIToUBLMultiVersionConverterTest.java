@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Serializable;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
+import com.helger.commons.error.list.ErrorList;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link CIIToUBLMultiVersionConverter}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLMultiVersionConverterTest
+{
+  @Test
+  public void testVersion ()
+  {
+    for (final EUBLVersion e : EUBLVersion.values ())
+    {
+      assertSame (e, EUBLVersion.getFromIDOrNull (e.getID ()));
+      assertNotNull (e.createConverter ());
+    }
+    assertNull (EUBLVersion.getFromIDOrNull ("2.0"));
+    assertTrue (EUBLVersion.UBL_21.createConverter () instanceof CIIToUBL21Converter);
+  }
+
+  @Test
+  public void testConvert ()
+  {
+    final CIIToUBLMultiVersionConverter aConverter = new CIIToUBLMultiVersionConverter (new CommonsArrayList <> (EUBLVersion.UBL_23,
+                                                                                                                EUBLVersion.UBL_21,
+                                                                                                                EUBLVersion.UBL_23),
+                                                                                        CIIToUBLSettings.DEFAULT);
+    assertEquals (new CommonsArrayList <> (EUBLVersion.UBL_23, EUBLVersion.UBL_21), new CommonsArrayList <> (aConverter.getAllVersions ()));
+    assertNull (aConverter.getConverter (EUBLVersion.UBL_22));
+
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = CIIUnmarshallerPool.getShared (true).read (aFile, aErrorList);
+      assertNotNull (aCII);
+
+      final ICommonsOrderedMap <EUBLVersion, Serializable> aMap = aConverter.convertCIItoUBL (aCII, aErrorList);
+      assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+      assertEquals (aConverter.getAllVersions (), aMap.copyOfKeySet ());
+
+      // Same result as the single version converter
+      assertEquals (new CIIToUBL21Converter ().convertCIItoUBL (aCII, new ErrorList ()), aMap.get (EUBLVersion.UBL_21));
+      assertEquals (new CIIToUBL23Converter ().convertCIItoUBL (aCII, new ErrorList ()), aMap.get (EUBLVersion.UBL_23));
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.FileOperations;
+import com.helger.commons.io.file.SimpleFileIO;
+
+/**
+ * Test class for class {@link CIIToUBLResultCache}
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLResultCacheTest
+{
+  @Test
+  public void testHeapTier () throws Exception
+  {
+    final CIIToUBLResultCache aCache = new CIIToUBLResultCache (CIIToUBLResultCache.DEFAULT_MAX_HEAP_BYTES, null);
+    final CIIToUBLSettings aOtherSettings = CIIToUBLSettings.builder ().vatScheme ("VAT2").build ();
+    int nCount = 0;
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final byte [] aCIIBytes = SimpleFileIO.getAllFileBytes (aFile);
+
+      ErrorList aErrorList = new ErrorList ();
+      final byte [] aUBL1 = aCache.getOrConvert (aCIIBytes, EUBLVersion.UBL_21, CIIToUBLSettings.DEFAULT, aErrorList);
+      assertNotNull (aFile.getName () + ": " + aErrorList.toString (), aUBL1);
+
+      // Same input - from the cache
+      aErrorList = new ErrorList ();
+      final byte [] aUBL2 = aCache.getOrConvert (aCIIBytes, EUBLVersion.UBL_21, CIIToUBLSettings.DEFAULT, aErrorList);
+      assertArrayEquals (aUBL1, aUBL2);
+      assertTrue (aErrorList.isEmpty ());
+
+      // Different version and different settings - new conversion
+      assertNotNull (aCache.getOrConvert (aCIIBytes, EUBLVersion.UBL_23, CIIToUBLSettings.DEFAULT, new ErrorList ()));
+      final byte [] aUBL3 = aCache.getOrConvert (aCIIBytes, EUBLVersion.UBL_21, aOtherSettings, new ErrorList ());
+      assertNotNull (aUBL3);
+      assertFalse (new String (aUBL1, StandardCharsets.UTF_8).equals (new String (aUBL3, StandardCharsets.UTF_8)));
+      nCount++;
+    }
+    assertEquals (nCount, aCache.getHeapHitCount ());
+    assertEquals (0, aCache.getDiskHitCount ());
+    assertEquals (3 * nCount, aCache.getMissCount ());
+    assertEquals (3 * nCount, aCache.getHeapEntryCount ());
+  }
+
+  @Test
+  public void testHeapEviction () throws Exception
+  {
+    final byte [] aCIIBytes1 = SimpleFileIO.getAllFileBytes (MockSettings.getAllTestFiles ().get (0));
+    final byte [] aCIIBytes2 = SimpleFileIO.getAllFileBytes (MockSettings.getAllTestFiles ().get (1));
+
+    // Determine the sizes without caching
+    final CIIToUBLResultCache aNoCache = new CIIToUBLResultCache (0, null);
+    final byte [] aUBL1 = aNoCache.getOrConvert (aCIIBytes1, EUBLVersion.UBL_21, CIIToUBLSettings.DEFAULT, new ErrorList ());
+    final byte [] aUBL2 = aNoCache.getOrConvert (aCIIBytes2, EUBLVersion.UBL_21, CIIToUBLSettings.DEFAULT, new ErrorList ());
+    assertNotNull (aUBL1);
+    assertNotNull (aUBL2);
+    assertEquals (0, aNoCache.getHeapEntryCount ());
+
+    // Room for only one of the documents
+    final long nMax = Math.max (aUBL1.length, aUBL2.length);
+    final CIIToUBLResultCache aCache = new CIIToUBLResultCache (nMax, null);
+    assertNotNull (aCache.getOrConvert (aCIIBytes1, EUBLVersion.UBL_21, CIIToUBLSettings.DEFAULT, new ErrorList ()));
+    assertEquals (1, aCache.getHeapEntryCount ());
+    assertEquals (aUBL1.length, aCache.getHeapBytes ());
+
+    assertNotNull (aCache.getOrConvert (aCIIBytes2, EUBLVersion.UBL_21, CIIToUBLSettings.DEFAULT, new ErrorList ()));
+    assertEquals (1, aCache.getHeapEntryCount ());
+    assertEquals (aUBL2.length, aCache.getHeapBytes ());
+
+    // The first one was evicted
+    assertArrayEquals (aUBL1, aCache.getOrConvert (aCIIBytes1, EUBLVersion.UBL_21, CIIToUBLSettings.DEFAULT, new ErrorList ()));
+    assertEquals (0, aCache.getHeapHitCount ());
+    assertEquals (3, aCache.getMissCount ());
+    assertTrue (aCache.getHeapBytes () <= nMax);
+  }
+
+  @Test
+  public void testDiskTier () throws Exception
+  {
+    final Path aDir = Files.createTempDirectory ("cii2ubl-cache");
+    try
+    {
+      final byte [] aCIIBytes = SimpleFileIO.getAllFileBytes (MockSettings.getAllTestFiles ().getFirst ());
+
+      final CIIToUBLResultCache aCache1 = new CIIToUBLResultCache (0, aDir);
+      final byte [] aUBL1 = aCache1.getOrConvert (aCIIBytes, EUBLVersion.UBL_22, CIIToUBLSettings.DEFAULT, new ErrorList ());
+      assertNotNull (aUBL1);
+      assertEquals (0, aCache1.getHeapEntryCount ());
+      assertEquals (1, aCache1.getMissCount ());
+
+      // A new cache instance reads from disk
+      final CIIToUBLResultCache aCache2 = new CIIToUBLResultCache (CIIToUBLResultCache.DEFAULT_MAX_HEAP_BYTES, aDir);
+      assertArrayEquals (aUBL1, aCache2.getOrConvert (aCIIBytes, EUBLVersion.UBL_22, CIIToUBLSettings.DEFAULT, new ErrorList ()));
+      assertEquals (1, aCache2.getDiskHitCount ());
+      assertEquals (0, aCache2.getMissCount ());
+
+      // And keeps it on heap afterwards
+      assertArrayEquals (aUBL1, aCache2.getOrConvert (aCIIBytes, EUBLVersion.UBL_22, CIIToUBLSettings.DEFAULT, new ErrorList ()));
+      assertEquals (1, aCache2.getHeapHitCount ());
+    }
+    finally
+    {
+      FileOperations.deleteDirRecursive (aDir.toFile ());
+    }
+  }
+
+  @Test
+  public void testInvalid () throws Exception
+  {
+    final CIIToUBLResultCache aCache = new CIIToUBLResultCache (CIIToUBLResultCache.DEFAULT_MAX_HEAP_BYTES, null);
+    final byte [] aCIIBytes = "<bla/>".getBytes (StandardCharsets.UTF_8);
+    for (int i = 0; i < 2; ++i)
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      assertNull (aCache.getOrConvert (aCIIBytes, EUBLVersion.UBL_21, CIIToUBLSettings.DEFAULT, aErrorList));
+      assertTrue (aErrorList.containsAtLeastOneError ());
+    }
+    // Errors are never cached
+    assertEquals (2, aCache.getMissCount ());
+    assertEquals (0, aCache.getHeapEntryCount ());
+  }
+
+  @Test
+  public void testCodeVersion ()
+  {
+    final String sVersion = CIIToUBLVersion.BUILD_VERSION;
+    assertTrue (CIIToUBLResultCache.CODE_VERSION.startsWith (sVersion));
+    // Without a release version the class files are hashed
+    if ("undefined".equals (sVersion) || sVersion.endsWith ("-SNAPSHOT"))
+      assertTrue (CIIToUBLResultCache.CODE_VERSION.length () > sVersion.length ());
+    else
+      assertEquals (sVersion, CIIToUBLResultCache.CODE_VERSION);
+  }
+}
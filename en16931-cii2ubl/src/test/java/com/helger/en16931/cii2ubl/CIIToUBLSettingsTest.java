@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+
+import org.junit.Test;
+
+import com.helger.cii.d16b.CIID16BReader;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.mock.CommonsTestHelper;
+
+import oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link CIIToUBLSettings}
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLSettingsTest
+{
+  @Test
+  public void testDefault ()
+  {
+    final CIIToUBLSettings aSettings = CIIToUBLSettings.DEFAULT;
+    assertSame (AbstractCIIToUBLConverter.DEFAULT_UBL_CREATION_MODE, aSettings.getUBLCreationMode ());
+    assertEquals (AbstractCIIToUBLConverter.DEFAULT_VAT_SCHEME, aSettings.getVATScheme ());
+    assertEquals (AbstractCIIToUBLConverter.DEFAULT_CUSTOMIZATION_ID, aSettings.getCustomizationID ());
+    assertEquals (AbstractCIIToUBLConverter.DEFAULT_PROFILE_ID, aSettings.getProfileID ());
+    assertEquals (AbstractCIIToUBLConverter.DEFAULT_CARD_ACCOUNT_NETWORK_ID, aSettings.getCardAccountNetworkID ());
+    assertTrue (aSettings.isSwapQuantitySignIfNeeded ());
+    assertTrue (aSettings.isSwapPriceSignIfNeeded ());
+    assertEquals (AbstractCIIToUBLConverter.DEFAULT_PARALLEL_LINE_THRESHOLD, aSettings.getParallelLineThreshold ());
+    assertEquals (AbstractCIIToUBLConverter.DEFAULT_PARALLEL_LINE_CHUNK_SIZE, aSettings.getParallelLineChunkSize ());
+    assertFalse (aSettings.isParallelLineConversion (Integer.MAX_VALUE));
+    assertFalse (aSettings.isFailFast ());
+    assertNull (aSettings.getAttachmentStore ());
+    assertEquals (AbstractCIIToUBLConverter.DEFAULT_ATTACHMENT_PASSTHROUGH_THRESHOLD, aSettings.getAttachmentPassthroughThreshold ());
+
+    CommonsTestHelper.testDefaultImplementationWithEqualContentObject (aSettings, CIIToUBLSettings.builder ().build ());
+    CommonsTestHelper.testDefaultImplementationWithEqualContentObject (aSettings, CIIToUBLSettings.builder (aSettings).build ());
+    CommonsTestHelper.testDefaultImplementationWithDifferentContentObject (aSettings,
+                                                                           CIIToUBLSettings.builder ().vatScheme ("VAT2").build ());
+    CommonsTestHelper.testDefaultImplementationWithDifferentContentObject (aSettings,
+                                                                           CIIToUBLSettings.builder ()
+                                                                                           .swapPriceSignIfNeeded (false)
+                                                                                           .build ());
+    CommonsTestHelper.testDefaultImplementationWithDifferentContentObject (aSettings,
+                                                                           CIIToUBLSettings.builder ()
+                                                                                           .parallelLineThreshold (1000)
+                                                                                           .build ());
+    CommonsTestHelper.testDefaultImplementationWithDifferentContentObject (aSettings,
+                                                                           CIIToUBLSettings.builder ()
+                                                                                           .parallelLineChunkSize (10)
+                                                                                           .build ());
+    CommonsTestHelper.testDefaultImplementationWithDifferentContentObject (aSettings, CIIToUBLSettings.builder ().failFast (true).build ());
+    CommonsTestHelper.testDefaultImplementationWithDifferentContentObject (aSettings,
+                                                                           CIIToUBLSettings.builder ()
+                                                                                           .attachmentStore (new CIIToUBLAttachmentStore (0))
+                                                                                           .build ());
+    CommonsTestHelper.testDefaultImplementationWithDifferentContentObject (aSettings,
+                                                                           CIIToUBLSettings.builder ()
+                                                                                           .attachmentPassthroughThreshold (1000)
+                                                                                           .build ());
+  }
+
+  @Test
+  public void testConverterSetters ()
+  {
+    final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ();
+    assertSame (CIIToUBLSettings.DEFAULT, aConverter.getSettings ());
+
+    final CIIToUBLSettings aOld = aConverter.getSettings ();
+    aConverter.setVATScheme ("VAT2").setSwapQuantitySignIfNeeded (false);
+    assertEquals ("VAT2", aConverter.getVATScheme ());
+    assertFalse (aConverter.isSwapQuantitySignIfNeeded ());
+
+    // The previous settings object was not modified
+    assertEquals (AbstractCIIToUBLConverter.DEFAULT_VAT_SCHEME, aOld.getVATScheme ());
+    assertTrue (aOld.isSwapQuantitySignIfNeeded ());
+  }
+
+  @Test
+  public void testExplicitSettings ()
+  {
+    // Converter settings are ignored if settings are passed explicitly
+    final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ().setCustomizationID ("ignored");
+    final CIIToUBLSettings aSettings = CIIToUBLSettings.builder ()
+                                                       .ublCreationMode (EUBLCreationMode.INVOICE)
+                                                       .customizationID ("urn:example:customization")
+                                                       .build ();
+
+    final CrossIndustryInvoiceType aCII = CIID16BReader.crossIndustryInvoice ().read (MockSettings.getAllTestFiles ().getFirst ());
+    assertNotNull (aCII);
+
+    final ErrorList aErrorList = new ErrorList ();
+    final Serializable aUBL = aConverter.convertCIItoUBL (aCII, aSettings, aErrorList);
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+    assertTrue (aUBL instanceof InvoiceType);
+    assertEquals ("urn:example:customization", ((InvoiceType) aUBL).getCustomizationIDValue ());
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Serializable;
+
+import org.junit.Test;
+
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.ubl23.UBL23Reader;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.CreditNoteLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.creditnote_23.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType;
+
+/**
+ * Test class for class {@link CIIToUBLStreamingConverter}.
+ *
+ * @author Philip Helger
+ */
+public final class CIIToUBLStreamingConverterTest
+{
+  @Test
+  public void testSameResultAsDefault ()
+  {
+    final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ();
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final Serializable aExpected = aConverter.convertCIItoUBL (aFile, aErrorList);
+      assertNotNull (aExpected);
+
+      try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+      {
+        assertTrue (aConverter.convertStreaming (aFile.toPath (), aBAOS, aErrorList).isSuccess ());
+        assertTrue (aFile.getName () + ": " + aErrorList.toString (), aErrorList.containsNoError ());
+
+        // Read it again with XML Schema validation
+        if (aExpected instanceof InvoiceType)
+        {
+          final InvoiceType aRead = UBL23Reader.invoice ().read (aBAOS.toByteArray ());
+          assertNotNull (aFile.getName (), aRead);
+          assertEquals (((InvoiceType) aExpected).getIDValue (), aRead.getIDValue ());
+          assertEquals (((InvoiceType) aExpected).getInvoiceLineCount (), aRead.getInvoiceLineCount ());
+          int i = 0;
+          for (final InvoiceLineType aLine : ((InvoiceType) aExpected).getInvoiceLine ())
+            assertEquals (aLine, aRead.getInvoiceLineAtIndex (i++));
+        }
+        else
+        {
+          final CreditNoteType aRead = UBL23Reader.creditNote ().read (aBAOS.toByteArray ());
+          assertNotNull (aFile.getName (), aRead);
+          assertEquals (((CreditNoteType) aExpected).getIDValue (), aRead.getIDValue ());
+          assertEquals (((CreditNoteType) aExpected).getCreditNoteLineCount (), aRead.getCreditNoteLineCount ());
+          int i = 0;
+          for (final CreditNoteLineType aLine : ((CreditNoteType) aExpected).getCreditNoteLine ())
+            assertEquals (aLine, aRead.getCreditNoteLineAtIndex (i++));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPreviousErrorsAreIgnored ()
+  {
+    final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ();
+    final File aFile = MockSettings.getAllTestFiles ().getFirst ();
+    final ErrorList aErrorList = new ErrorList ();
+    aErrorList.add (SingleError.builderError ().errorText ("Previous error").build ());
+
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      assertTrue (aConverter.convertStreaming (aFile.toPath (), aBAOS, aErrorList).isSuccess ());
+      assertTrue (aBAOS.size () > 0);
+      assertFalse (AbstractCIIToUBLConverter.containsErrorSince (aErrorList, 1));
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link CIIUnmarshallerPool}
+ *
+ * @author Philip Helger
+ */
+public final class CIIUnmarshallerPoolTest
+{
+  @Test
+  public void testShared ()
+  {
+    assertSame (CIIUnmarshallerPool.getShared (true), CIIUnmarshallerPool.getShared (true));
+    assertSame (CIIUnmarshallerPool.getShared (false), CIIUnmarshallerPool.getShared (false));
+    assertTrue (CIIUnmarshallerPool.getShared (true).isValidateSchema ());
+    assertFalse (CIIUnmarshallerPool.getShared (false).isValidateSchema ());
+  }
+
+  @Test
+  public void testReuse ()
+  {
+    final CIIUnmarshallerPool aPool = new CIIUnmarshallerPool (true, 2);
+    aPool.warmUp (5);
+    assertEquals (2, aPool.getIdleCount ());
+
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = aPool.read (aFile, aErrorList);
+      assertNotNull (aFile.getName (), aCII);
+      assertTrue (aFile.getName () + ": " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+
+    // All reads were served from the pre-warmed pool
+    assertEquals (MockSettings.getAllTestFiles ().size (), aPool.getHitCount ());
+    assertEquals (0, aPool.getMissCount ());
+    assertEquals (2, aPool.getIdleCount ());
+  }
+
+  @Test
+  public void testInvalid ()
+  {
+    final CIIUnmarshallerPool aPool = new CIIUnmarshallerPool (true, 2);
+    final ErrorList aErrorList = new ErrorList ();
+    final byte [] aBytes = "<rsm:CrossIndustryInvoice xmlns:rsm='urn:un:unece:uncefact:data:standard:CrossIndustryInvoice:100' />".getBytes (StandardCharsets.UTF_8);
+    aPool.read (new ByteArrayInputStream (aBytes), null, aErrorList);
+    assertTrue (aErrorList.containsAtLeastOneError ());
+
+    // Not well-formed
+    aErrorList.clear ();
+    assertNull (aPool.read (new ByteArrayInputStream ("<a>".getBytes (StandardCharsets.UTF_8)), null, aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  @Test
+  public void testMemoryMapped ()
+  {
+    // Map all files
+    final CIIUnmarshallerPool aPool = new CIIUnmarshallerPool (true, 2, 0);
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      assertNotNull (aFile.getName (), aPool.read (aFile.toPath (), aErrorList));
+      assertTrue (aFile.getName () + ": " + aErrorList.toString (), aErrorList.containsNoError ());
+
+      assertNotNull (aFile.getName (), aPool.readMapped (aFile.toPath (), aErrorList));
+      assertTrue (aFile.getName () + ": " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+
+    // Not existing
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (aPool.readMapped (new File ("target/does-not-exist.xml").toPath (), aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  @Test
+  public void testFailFast ()
+  {
+    assertSame (CIIUnmarshallerPool.getShared (true), CIIUnmarshallerPool.getShared (true, false));
+    assertSame (CIIUnmarshallerPool.getShared (true, true), CIIUnmarshallerPool.getShared (true, true));
+    assertTrue (CIIUnmarshallerPool.getShared (true, true).isFailFast ());
+    assertFalse (CIIUnmarshallerPool.getShared (true).isFailFast ());
+
+    final byte [] aBytes = ("<rsm:CrossIndustryInvoice xmlns:rsm='urn:un:unece:uncefact:data:standard:CrossIndustryInvoice:100'>" +
+                            "<rsm:Foo /><rsm:Bar />" +
+                            "</rsm:CrossIndustryInvoice>").getBytes (StandardCharsets.UTF_8);
+
+    // Collect all errors
+    ErrorList aErrorList = new ErrorList ();
+    assertNotNull (new CIIUnmarshallerPool (true, 2).read (aBytes, aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+
+    // Stop on the first error
+    final CIIUnmarshallerPool aPool = new CIIUnmarshallerPool (true, 2, CIIUnmarshallerPool.DEFAULT_MEMORY_MAP_THRESHOLD, true);
+    aErrorList = new ErrorList ();
+    assertNull (aPool.read (aBytes, aErrorList));
+    assertEquals (1, aErrorList.size ());
+    // The aborted unmarshaller is not reused
+    assertEquals (0, aPool.getIdleCount ());
+
+    // Valid files are not affected
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      aErrorList = new ErrorList ();
+      assertNotNull (aFile.getName (), aPool.read (aFile, aErrorList));
+      assertTrue (aFile.getName () + ": " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Serializable;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.ubl23.UBL23Reader;
+
+import oasis.names.specification.ubl.schema.xsd.creditnote_23.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Test class for class {@link UBLMarshallerPool}
+ *
+ * @author Philip Helger
+ */
+public final class UBLMarshallerPoolTest
+{
+  @Test
+  public void testSupportedClasses ()
+  {
+    assertTrue (UBLMarshallerPool.isSupportedClass (InvoiceType.class));
+    assertTrue (UBLMarshallerPool.isSupportedClass (CreditNoteType.class));
+    assertTrue (UBLMarshallerPool.isSupportedClass (oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType.class));
+    assertFalse (UBLMarshallerPool.isSupportedClass (String.class));
+    assertFalse (UBLMarshallerPool.isSupportedClass (null));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testUnsupported ()
+  {
+    UBLMarshallerPool.getShared ().write ("bla", new NonBlockingByteArrayOutputStream (), new ErrorList ());
+  }
+
+  @Test
+  public void testWriteAndReadBack ()
+  {
+    final UBLMarshallerPool aPool = new UBLMarshallerPool (true, true, 2);
+    aPool.warmUp (oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType.class, 1);
+    aPool.warmUp (CreditNoteType.class, 1);
+
+    final CIIToUBL23Converter aConverter = new CIIToUBL23Converter ();
+    int nCount = 0;
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final Serializable aUBL = aConverter.convertCIItoUBL (aFile, aErrorList);
+      assertNotNull (aUBL);
+
+      try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+      {
+        assertTrue (aPool.write (aUBL, aBAOS, aErrorList).isSuccess ());
+        assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+
+        if (aUBL instanceof CreditNoteType)
+          assertNotNull (UBL23Reader.creditNote ().read (aBAOS.toByteArray ()));
+        else
+          assertNotNull (UBL23Reader.invoice ().read (aBAOS.toByteArray ()));
+      }
+      nCount++;
+    }
+
+    // All writes were served from the pre-warmed pool
+    assertEquals (nCount, aPool.getHitCount ());
+    assertEquals (0, aPool.getMissCount ());
+  }
+}
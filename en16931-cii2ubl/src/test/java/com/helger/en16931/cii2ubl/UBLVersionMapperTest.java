@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2019-2022 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.cii2ubl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.BillingReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.DocumentReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_23.PartyLegalEntityType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.CompanyLegalFormType;
+import oasis.names.specification.ubl.schema.xsd.invoice_23.InvoiceType;
+
+/**
+ * Test class for class {@link UBLVersionMapper}.
+ *
+ * @author Philip Helger
+ */
+public final class UBLVersionMapperTest
+{
+  @Test
+  public void testSameType ()
+  {
+    final InvoiceType aInvoice = new InvoiceType ();
+    aInvoice.setID ("inv");
+    assertSame (aInvoice, new UBLVersionMapper ().map (aInvoice, InvoiceType.class));
+  }
+
+  @Test
+  public void testOtherVersion ()
+  {
+    final InvoiceType aInvoice = new InvoiceType ();
+    aInvoice.setID ("inv");
+    aInvoice.addNote (new oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_23.NoteType ("note"));
+    final InvoiceLineType aLine = new InvoiceLineType ();
+    aLine.setID ("1");
+    aLine.setInvoicedQuantity (BigDecimal.TEN).setUnitCode ("C62");
+    aInvoice.addInvoiceLine (aLine);
+
+    final Class <oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType> aDstClass = oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType.class;
+    final oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType aInvoice21 = new UBLVersionMapper ().map (aInvoice, aDstClass);
+    assertEquals ("inv", aInvoice21.getIDValue ());
+    assertEquals ("note", aInvoice21.getNoteAtIndex (0).getValue ());
+    assertEquals ("1", aInvoice21.getInvoiceLineAtIndex (0).getIDValue ());
+    assertEquals (BigDecimal.TEN, aInvoice21.getInvoiceLineAtIndex (0).getInvoicedQuantityValue ());
+    assertEquals ("C62", aInvoice21.getInvoiceLineAtIndex (0).getInvoicedQuantity ().getUnitCode ());
+  }
+
+  @Test
+  public void testCreditNote ()
+  {
+    final InvoiceType aInvoice = new InvoiceType ();
+    aInvoice.setInvoiceTypeCode ("381");
+    final BillingReferenceType aBillingRef = new BillingReferenceType ();
+    final DocumentReferenceType aDocRef = new DocumentReferenceType ();
+    aDocRef.setID ("ref");
+    aBillingRef.setInvoiceDocumentReference (aDocRef);
+    aInvoice.addBillingReference (aBillingRef);
+    final InvoiceLineType aLine = new InvoiceLineType ();
+    aLine.setInvoicedQuantity (BigDecimal.ONE);
+    aInvoice.addInvoiceLine (aLine);
+
+    // Same UBL version
+    final Class <oasis.names.specification.ubl.schema.xsd.creditnote_23.CreditNoteType> aDstClass = oasis.names.specification.ubl.schema.xsd.creditnote_23.CreditNoteType.class;
+    final oasis.names.specification.ubl.schema.xsd.creditnote_23.CreditNoteType aCreditNote = new UBLVersionMapper ().forCreditNote ()
+                                                                                                                       .map (aInvoice, aDstClass);
+    assertEquals ("381", aCreditNote.getCreditNoteTypeCodeValue ());
+    assertNotSame (aBillingRef, aCreditNote.getBillingReferenceAtIndex (0));
+    assertNull (aCreditNote.getBillingReferenceAtIndex (0).getInvoiceDocumentReference ());
+    assertSame (aDocRef, aCreditNote.getBillingReferenceAtIndex (0).getCreditNoteDocumentReference ());
+    assertEquals (BigDecimal.ONE, aCreditNote.getCreditNoteLineAtIndex (0).getCreditedQuantityValue ());
+  }
+
+  @Test
+  public void testUseFirstOnly ()
+  {
+    final PartyLegalEntityType aLegalEntity = new PartyLegalEntityType ();
+    aLegalEntity.addCompanyLegalForm (new CompanyLegalFormType ("a"));
+    aLegalEntity.addCompanyLegalForm (new CompanyLegalFormType ("b"));
+
+    final Class <oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyLegalEntityType> aDstClass = oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyLegalEntityType.class;
+    try
+    {
+      new UBLVersionMapper ().map (aLegalEntity, aDstClass);
+      fail ();
+    }
+    catch (final IllegalStateException ex)
+    {
+      // expected
+    }
+
+    assertEquals ("a",
+                  new UBLVersionMapper ().useFirstOnly (PartyLegalEntityType.class, "companyLegalForm")
+                                         .map (aLegalEntity, aDstClass)
+                                         .getCompanyLegalFormValue ());
+  }
+
+  @Test
+  public void testIgnoreField ()
+  {
+    final InvoiceType aInvoice = new InvoiceType ();
+    aInvoice.setInvoiceTypeCode ("381");
+    aInvoice.setDueDate (LocalDate.now ());
+
+    final Class <oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType> aDstClass = oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType.class;
+    try
+    {
+      new UBLVersionMapper ().forCreditNote ().map (aInvoice, aDstClass);
+      fail ();
+    }
+    catch (final IllegalStateException ex)
+    {
+      // expected
+    }
+
+    assertEquals ("381",
+                  new UBLVersionMapper ().forCreditNote ()
+                                         .ignoreField (InvoiceType.class, "dueDate")
+                                         .map (aInvoice, aDstClass)
+                                         .getCreditNoteTypeCodeValue ());
+  }
+}